@@ -0,0 +1,99 @@
+package org.infinispan.protostream.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.protostream.ProtobufUtil;
+import org.infinispan.protostream.impl.TagReaderImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures each {@code TagReaderImpl} decoder by reading the same encoded payload through the factory method that
+ * selects it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecoderBenchmark {
+
+   /**
+    * {@code ByteArrayDecoder}
+    */
+   @Benchmark
+   public Object byteArray(PayloadState state) throws IOException {
+      return state.read(TagReaderImpl.newInstance(state.ctx, state.bytes));
+   }
+
+   /**
+    * {@code ByteArrayDecoder} reached through a heap {@link ByteBuffer}.
+    */
+   @Benchmark
+   public Object heapByteBuffer(PayloadState state) throws IOException {
+      return state.read(TagReaderImpl.newInstance(state.ctx, ByteBuffer.wrap(state.bytes)));
+   }
+
+   /**
+    * {@code ByteBufferDecoder}
+    */
+   @Benchmark
+   public Object directByteBuffer(PayloadState state) throws IOException {
+      return state.read(TagReaderImpl.newInstance(state.ctx, state.directBytes.duplicate()));
+   }
+
+   /**
+    * {@code InputStreamDecoder} over a stream that supports mark.
+    */
+   @Benchmark
+   @SuppressWarnings("deprecation")
+   public Object inputStream(PayloadState state) throws IOException {
+      return state.read(TagReaderImpl.newInstance(state.ctx, new ByteArrayInputStream(state.bytes)));
+   }
+
+   /**
+    * {@code InputStreamDecoder} over a stream that does not support mark, like a socket stream.
+    */
+   @Benchmark
+   @SuppressWarnings("deprecation")
+   public Object unmarkableInputStream(PayloadState state) throws IOException {
+      return state.read(TagReaderImpl.newInstance(state.ctx, new UnmarkableInputStream(state.bytes)));
+   }
+
+   /**
+    * {@code LimitedInputStreamDecoder}, or {@code ByteArrayDecoder} for payloads under 512 bytes.
+    */
+   @Benchmark
+   public Object limitedInputStream(PayloadState state) throws IOException {
+      return state.read(TagReaderImpl.newInstance(state.ctx, new ByteArrayInputStream(state.bytes), state.bytes.length));
+   }
+
+   /**
+    * The full {@link ProtobufUtil#fromByteArray} entry point.
+    */
+   @Benchmark
+   public Object fromByteArray(PayloadState state) throws IOException {
+      return ProtobufUtil.fromByteArray(state.ctx, state.bytes, state.messageClass);
+   }
+
+   private static final class UnmarkableInputStream extends FilterInputStream {
+
+      UnmarkableInputStream(byte[] bytes) {
+         super(new ByteArrayInputStream(bytes));
+      }
+
+      @Override
+      public boolean markSupported() {
+         return false;
+      }
+   }
+}
@@ -0,0 +1,136 @@
+package org.infinispan.protostream.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.protostream.ProtobufUtil;
+import org.infinispan.protostream.RandomAccessOutputStream;
+import org.infinispan.protostream.impl.RandomAccessOutputStreamImpl;
+import org.infinispan.protostream.impl.TagWriterImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures each {@code TagWriterImpl} encoder by writing the same payload through the factory method that selects it.
+ * Target buffers are allocated once per trial so that only the encoding work is measured, except for
+ * {@link #toByteArray} which measures the full {@link ProtobufUtil#toByteArray} entry point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EncoderBenchmark {
+
+   private byte[] array;
+
+   private ByteBuffer heapBuffer;
+
+   private ByteBuffer directBuffer;
+
+   private RandomAccessOutputStream raos;
+
+   private final OutputStream sink = OutputStream.nullOutputStream();
+
+   @Setup
+   public void setup(PayloadState state) {
+      int size = state.bytes.length;
+      array = new byte[size];
+      heapBuffer = ByteBuffer.allocate(size);
+      directBuffer = ByteBuffer.allocateDirect(size);
+      raos = new RandomAccessOutputStreamImpl(size);
+   }
+
+   /**
+    * {@code ByteArrayEncoder}
+    */
+   @Benchmark
+   public byte[] byteArray(PayloadState state) throws IOException {
+      state.write(TagWriterImpl.newInstance(state.ctx, array));
+      return array;
+   }
+
+   /**
+    * {@code HeapByteBufferEncoder}
+    */
+   @Benchmark
+   public ByteBuffer heapByteBuffer(PayloadState state) throws IOException {
+      heapBuffer.clear();
+      state.write(TagWriterImpl.newInstance(state.ctx, heapBuffer));
+      return heapBuffer;
+   }
+
+   /**
+    * {@code ByteBufferEncoder}
+    */
+   @Benchmark
+   public ByteBuffer directByteBuffer(PayloadState state) throws IOException {
+      directBuffer.clear();
+      state.write(TagWriterImpl.newInstance(state.ctx, directBuffer));
+      return directBuffer;
+   }
+
+   /**
+    * {@code OutputStreamEncoder}
+    */
+   @Benchmark
+   @SuppressWarnings("deprecation")
+   public OutputStream bufferedOutputStream(PayloadState state) throws IOException {
+      state.write(TagWriterImpl.newInstance(state.ctx, sink, ProtobufUtil.DEFAULT_STREAM_BUFFER_SIZE));
+      return sink;
+   }
+
+   /**
+    * {@code OutputStreamNoBufferEncoder}
+    */
+   @Benchmark
+   public OutputStream outputStream(PayloadState state) throws IOException {
+      state.write(TagWriterImpl.newInstance(state.ctx, sink));
+      return sink;
+   }
+
+   /**
+    * {@code OutputStreamRandomAccessEncoder}, as used by {@link ProtobufUtil#writeTo}.
+    */
+   @Benchmark
+   public int randomAccessOutputStream(PayloadState state) throws IOException {
+      raos.reset();
+      state.write(TagWriterImpl.newInstance(state.ctx, raos));
+      return raos.getPosition();
+   }
+
+   /**
+    * {@code OutputStreamRandomAccessEncoder} including the stream allocation, growth and the final array copy.
+    */
+   @Benchmark
+   public byte[] toByteArray(PayloadState state) throws IOException {
+      return ProtobufUtil.toByteArray(state.ctx, state.message);
+   }
+
+   /**
+    * {@code NoOpEncoder}
+    */
+   @Benchmark
+   public int computeMessageSize(PayloadState state) throws IOException {
+      return ProtobufUtil.computeMessageSize(state.ctx, state.message);
+   }
+
+   /**
+    * {@code OverEstimateEncoder}
+    */
+   @Benchmark
+   public int estimateSize(PayloadState state) throws IOException {
+      return ProtobufUtil.estimateSize(state.ctx, state.message);
+   }
+}
@@ -0,0 +1,71 @@
+package org.infinispan.protostream.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.infinispan.protostream.benchmarks.domain.Batch;
+import org.infinispan.protostream.benchmarks.domain.Document;
+import org.infinispan.protostream.benchmarks.domain.Node;
+import org.infinispan.protostream.benchmarks.domain.Small;
+
+/**
+ * The payload shapes every benchmark is parameterized with.
+ */
+public enum Payload {
+
+   /**
+    * A handful of scalar fields, the typical small cache entry.
+    */
+   SMALL {
+      @Override
+      Object create() {
+         return new Small(42, 1_700_000_000_000L, true, 3.14159, "small-entry");
+      }
+   },
+
+   /**
+    * A chain of 32 nested messages.
+    */
+   DEEP_NESTED {
+      @Override
+      Object create() {
+         return Node.chain(32);
+      }
+   },
+
+   /**
+    * Mostly string content, including multibyte characters.
+    */
+   STRING_HEAVY {
+      @Override
+      Object create() {
+         String ascii = "Lorem ipsum dolor sit amet, consectetur adipiscing elit. ".repeat(64);
+         String localized = "Größenänderung, café, naïve façade, 東京, Привет мир. ".repeat(32);
+         List<String> tags = new ArrayList<>();
+         for (int i = 0; i < 64; i++) {
+            tags.add("tag-" + i);
+         }
+         return new Document("A string heavy document", ascii, localized, tags);
+      }
+   },
+
+   /**
+    * Thousands of repeated nested messages and primitive values.
+    */
+   LARGE_REPEATED {
+      @Override
+      Object create() {
+         List<Small> items = new ArrayList<>(5_000);
+         long[] samples = new long[10_000];
+         for (int i = 0; i < 5_000; i++) {
+            items.add(new Small(i, 1_700_000_000_000L + i, (i & 1) == 0, i * 0.5, "item-" + i));
+         }
+         for (int i = 0; i < samples.length; i++) {
+            samples[i] = (long) i * i;
+         }
+         return new Batch(items, samples);
+      }
+   };
+
+   abstract Object create();
+}
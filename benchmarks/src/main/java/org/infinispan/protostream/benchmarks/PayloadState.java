@@ -0,0 +1,75 @@
+package org.infinispan.protostream.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.infinispan.protostream.BaseMarshallerDelegate;
+import org.infinispan.protostream.ProtobufUtil;
+import org.infinispan.protostream.SerializationContext;
+import org.infinispan.protostream.benchmarks.domain.BenchmarkSchemaImpl;
+import org.infinispan.protostream.impl.SerializationContextImpl;
+import org.infinispan.protostream.impl.TagReaderImpl;
+import org.infinispan.protostream.impl.TagWriterImpl;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Shared benchmark state: a serialization context, the object being marshalled and its encoded forms.
+ */
+@State(Scope.Benchmark)
+public class PayloadState {
+
+   @Param({"SMALL", "DEEP_NESTED", "STRING_HEAVY", "LARGE_REPEATED"})
+   public Payload payload;
+
+   SerializationContext ctx;
+
+   Object message;
+
+   Class<?> messageClass;
+
+   BaseMarshallerDelegate<Object> delegate;
+
+   byte[] bytes;
+
+   byte[] wrappedBytes;
+
+   ByteBuffer directBytes;
+
+   @Setup
+   public void setup() throws IOException {
+      ctx = ProtobufUtil.newSerializationContext();
+      new BenchmarkSchemaImpl().register(ctx);
+      message = payload.create();
+      messageClass = message.getClass();
+      delegate = ((SerializationContextImpl) ctx).getMarshallerDelegate(message);
+      bytes = ProtobufUtil.toByteArray(ctx, message);
+      wrappedBytes = ProtobufUtil.toWrappedByteArray(ctx, message);
+      directBytes = ByteBuffer.allocateDirect(bytes.length);
+      directBytes.put(bytes).flip();
+
+      // records holding arrays do not have a value based equals, so compare the re-encoded form instead
+      Object copy = ProtobufUtil.fromByteArray(ctx, bytes, messageClass);
+      if (!Arrays.equals(bytes, ProtobufUtil.toByteArray(ctx, copy))) {
+         throw new IllegalStateException("Round trip of " + payload + " produced a different encoding");
+      }
+   }
+
+   /**
+    * Marshalls the payload with the given writer, the same way {@link ProtobufUtil} does internally.
+    */
+   void write(TagWriterImpl writer) throws IOException {
+      delegate.marshall(writer, null, message);
+      writer.flush();
+   }
+
+   /**
+    * Unmarshalls the payload with the given reader, the same way {@link ProtobufUtil} does internally.
+    */
+   Object read(TagReaderImpl reader) throws IOException {
+      return delegate.unmarshall(reader, null);
+   }
+}
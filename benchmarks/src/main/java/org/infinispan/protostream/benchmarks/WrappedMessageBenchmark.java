@@ -0,0 +1,41 @@
+package org.infinispan.protostream.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.protostream.ProtobufUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link org.infinispan.protostream.WrappedMessage} wrapping and unwrapping through the {@link ProtobufUtil}
+ * entry points, which is the path taken by every Infinispan cache entry.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WrappedMessageBenchmark {
+
+   @Benchmark
+   public byte[] wrap(PayloadState state) throws IOException {
+      return ProtobufUtil.toWrappedByteArray(state.ctx, state.message);
+   }
+
+   @Benchmark
+   public Object unwrap(PayloadState state) throws IOException {
+      return ProtobufUtil.fromWrappedByteArray(state.ctx, state.wrappedBytes);
+   }
+
+   @Benchmark
+   public Object roundTrip(PayloadState state) throws IOException {
+      byte[] bytes = ProtobufUtil.toWrappedByteArray(state.ctx, state.message);
+      return ProtobufUtil.fromWrappedByteArray(state.ctx, bytes);
+   }
+}
@@ -0,0 +1,12 @@
+package org.infinispan.protostream.benchmarks.domain;
+
+import java.util.List;
+
+import org.infinispan.protostream.annotations.Proto;
+
+/**
+ * A message with large repeated fields, both of nested messages and of primitive values.
+ */
+@Proto
+public record Batch(List<Small> items, long[] samples) {
+}
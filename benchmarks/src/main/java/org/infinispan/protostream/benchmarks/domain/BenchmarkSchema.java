@@ -0,0 +1,19 @@
+package org.infinispan.protostream.benchmarks.domain;
+
+import org.infinispan.protostream.GeneratedSchema;
+import org.infinispan.protostream.annotations.ProtoSchema;
+
+@ProtoSchema(
+      className = "BenchmarkSchemaImpl",
+      schemaFileName = "benchmarks.proto",
+      schemaFilePath = "/org/infinispan/protostream/benchmarks",
+      schemaPackageName = "org.infinispan.protostream.benchmarks",
+      includeClasses = {
+            Small.class,
+            Node.class,
+            Document.class,
+            Batch.class
+      }
+)
+public interface BenchmarkSchema extends GeneratedSchema {
+}
@@ -0,0 +1,12 @@
+package org.infinispan.protostream.benchmarks.domain;
+
+import java.util.List;
+
+import org.infinispan.protostream.annotations.Proto;
+
+/**
+ * A message dominated by string fields, mixing ASCII, Latin-1 and multibyte content.
+ */
+@Proto
+public record Document(String title, String body, String localizedBody, List<String> tags) {
+}
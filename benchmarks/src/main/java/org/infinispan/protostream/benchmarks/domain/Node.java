@@ -0,0 +1,18 @@
+package org.infinispan.protostream.benchmarks.domain;
+
+import org.infinispan.protostream.annotations.Proto;
+
+/**
+ * A linked chain of messages used to exercise nested message writing and reading.
+ */
+@Proto
+public record Node(int depth, String label, Node child) {
+
+   public static Node chain(int depth) {
+      Node node = null;
+      for (int i = depth; i > 0; i--) {
+         node = new Node(i, "node-" + i, node);
+      }
+      return node;
+   }
+}
@@ -0,0 +1,10 @@
+package org.infinispan.protostream.benchmarks.domain;
+
+import org.infinispan.protostream.annotations.Proto;
+
+/**
+ * A flat message made only of scalar fields and a short ASCII string.
+ */
+@Proto
+public record Small(int id, long timestamp, boolean active, double score, String name) {
+}
@@ -0,0 +1,252 @@
+package org.infinispan.protostream;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A view over a range of a byte array or of a buffer, used to access {@code bytes} and {@code string} values without
+ * copying them out of the input, see {@link TagReader#readBytesView(BytesView)}.
+ * <p>
+ * Views are mutable so that a single instance can be reused for reading many values. The view is only valid as long as
+ * the underlying bytes are not modified and the instance is not reused. {@link #equals(Object)} and {@link #hashCode()}
+ * depend on the contents, the hash code being the same as {@link Arrays#hashCode(byte[])} of the contents. Instances
+ * are not thread-safe.
+ *
+ * @since 6.0.11
+ */
+public final class BytesView implements Comparable<BytesView> {
+
+   private static final byte[] EMPTY = new byte[0];
+
+   // exactly one of them is set
+   private byte[] array = EMPTY;
+   private ByteBuffer buffer;
+
+   private int offset;
+   private int length;
+
+   public BytesView() {
+   }
+
+   public static BytesView of(byte[] array) {
+      return new BytesView().set(array, 0, array.length);
+   }
+
+   /**
+    * Views the UTF-8 encoding of a string, for comparing with views read from the input.
+    */
+   public static BytesView ofUtf8(String s) {
+      return of(s.getBytes(StandardCharsets.UTF_8));
+   }
+
+   /**
+    * Points this view to a range of an array.
+    *
+    * @return this view
+    */
+   public BytesView set(byte[] array, int offset, int length) {
+      if (offset < 0 || length < 0 || offset + length > array.length) {
+         throw new IndexOutOfBoundsException("The range is outside the array bounds");
+      }
+      this.array = array;
+      this.buffer = null;
+      this.offset = offset;
+      this.length = length;
+      return this;
+   }
+
+   /**
+    * Points this view to a range of a buffer, given as absolute positions. The position and limit of the buffer are
+    * not used nor modified.
+    *
+    * @return this view
+    */
+   public BytesView set(ByteBuffer buffer, int offset, int length) {
+      if (buffer.hasArray()) {
+         return set(buffer.array(), buffer.arrayOffset() + offset, length);
+      }
+      if (offset < 0 || length < 0 || offset + length > buffer.capacity()) {
+         throw new IndexOutOfBoundsException("The range is outside the buffer bounds");
+      }
+      this.array = null;
+      this.buffer = buffer;
+      this.offset = offset;
+      this.length = length;
+      return this;
+   }
+
+   public int length() {
+      return length;
+   }
+
+   public byte byteAt(int index) {
+      if (index < 0 || index >= length) {
+         throw new IndexOutOfBoundsException(index);
+      }
+      return array != null ? array[offset + index] : buffer.get(offset + index);
+   }
+
+   /**
+    * Whether the bytes are in an array, which can be accessed with {@link #array()} and {@link #offset()}.
+    */
+   public boolean hasArray() {
+      return array != null;
+   }
+
+   /**
+    * The array holding the bytes, starting at {@link #offset()}.
+    *
+    * @throws UnsupportedOperationException if the bytes are not in an array
+    */
+   public byte[] array() {
+      if (array == null) {
+         throw new UnsupportedOperationException("The view is not backed by an array");
+      }
+      return array;
+   }
+
+   public int offset() {
+      return offset;
+   }
+
+   public byte[] toByteArray() {
+      if (array != null) {
+         return Arrays.copyOfRange(array, offset, offset + length);
+      }
+      byte[] bytes = new byte[length];
+      buffer.get(offset, bytes);
+      return bytes;
+   }
+
+   /**
+    * Decodes the bytes as an UTF-8 string.
+    */
+   public String toUtf8String() {
+      if (array != null) {
+         return new String(array, offset, length, StandardCharsets.UTF_8);
+      }
+      return new String(toByteArray(), StandardCharsets.UTF_8);
+   }
+
+   public boolean contentEquals(byte[] other) {
+      if (other.length != length) {
+         return false;
+      }
+      if (array != null) {
+         return Arrays.equals(array, offset, offset + length, other, 0, length);
+      }
+      for (int i = 0; i < length; i++) {
+         if (buffer.get(offset + i) != other[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   public boolean contentEquals(BytesView other) {
+      if (other.length != length) {
+         return false;
+      }
+      if (array != null && other.array != null) {
+         return Arrays.equals(array, offset, offset + length, other.array, other.offset, other.offset + length);
+      }
+      for (int i = 0; i < length; i++) {
+         if (get(i) != other.get(i)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Checks if the bytes are the UTF-8 encoding of the string, without encoding it. Unpaired surrogates are encoded as
+    * {@code '?'}, as done by {@link String#getBytes(java.nio.charset.Charset)}.
+    */
+   public boolean contentEquals(CharSequence s) {
+      int pos = 0;
+      int n = s.length();
+      for (int i = 0; i < n; i++) {
+         int c = s.charAt(i);
+         if (Character.isSurrogate((char) c)) {
+            if (Character.isHighSurrogate((char) c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+               c = Character.toCodePoint((char) c, s.charAt(++i));
+            } else {
+               c = '?';
+            }
+         }
+         if (c < 0x80) {
+            if (pos + 1 > length || get(pos) != c) {
+               return false;
+            }
+            pos++;
+         } else if (c < 0x800) {
+            if (pos + 2 > length
+                  || get(pos) != (byte) (0xC0 | c >> 6)
+                  || get(pos + 1) != (byte) (0x80 | c & 0x3F)) {
+               return false;
+            }
+            pos += 2;
+         } else if (c < 0x10000) {
+            if (pos + 3 > length
+                  || get(pos) != (byte) (0xE0 | c >> 12)
+                  || get(pos + 1) != (byte) (0x80 | c >> 6 & 0x3F)
+                  || get(pos + 2) != (byte) (0x80 | c & 0x3F)) {
+               return false;
+            }
+            pos += 3;
+         } else {
+            if (pos + 4 > length
+                  || get(pos) != (byte) (0xF0 | c >> 18)
+                  || get(pos + 1) != (byte) (0x80 | c >> 12 & 0x3F)
+                  || get(pos + 2) != (byte) (0x80 | c >> 6 & 0x3F)
+                  || get(pos + 3) != (byte) (0x80 | c & 0x3F)) {
+               return false;
+            }
+            pos += 4;
+         }
+      }
+      return pos == length;
+   }
+
+   /**
+    * Compares the contents as unsigned bytes, which for UTF-8 strings is the order of their code points.
+    */
+   @Override
+   public int compareTo(BytesView other) {
+      if (array != null && other.array != null) {
+         return Arrays.compareUnsigned(array, offset, offset + length, other.array, other.offset, other.offset + other.length);
+      }
+      int n = Math.min(length, other.length);
+      for (int i = 0; i < n; i++) {
+         int c = Byte.compareUnsigned(get(i), other.get(i));
+         if (c != 0) {
+            return c;
+         }
+      }
+      return length - other.length;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      return this == o || o instanceof BytesView other && contentEquals(other);
+   }
+
+   @Override
+   public int hashCode() {
+      int h = 1;
+      for (int i = 0; i < length; i++) {
+         h = 31 * h + get(i);
+      }
+      return h;
+   }
+
+   @Override
+   public String toString() {
+      return "BytesView{length=" + length + '}';
+   }
+
+   private byte get(int index) {
+      return array != null ? array[offset + index] : buffer.get(offset + index);
+   }
+}
@@ -5,9 +5,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.infinispan.protostream.impl.parser.CompiledProtoFile;
+
 /**
  * Aggregator for source proto files to be passed to {@link SerializationContext#registerProtoFiles(FileDescriptorSource)}.
  * The files are guaranteed to be processed in the order they were added (for better predictability or error reporting).
@@ -24,6 +27,11 @@ public final class FileDescriptorSource {
     */
    private final Map<String, String> files = new LinkedHashMap<>();
 
+   /**
+    * The compiled form of some of the files, which is used instead of parsing their text.
+    */
+   private final Map<String, byte[]> compiledFiles = new HashMap<>();
+
    /**
     * Optional progress callback. If non-null it will be invoked based on the status of each parsed file.
     */
@@ -106,6 +114,21 @@ public final class FileDescriptorSource {
       // discard the leading slash
       String path = name.startsWith("/") ? name.substring(1) : name;
       files.put(path, fileContents);
+      compiledFiles.remove(path);
+      return this;
+   }
+
+   /**
+    * Add a proto file, given a name, the file contents as a {@link String} and its compiled form, as returned by
+    * {@link #compile(String, String)}. The compiled form is registered without parsing the text, which is only used if
+    * the compiled form was produced by an incompatible version of the library.
+    */
+   public FileDescriptorSource addProtoFile(String name, String fileContents, byte[] compiledFile) {
+      if (compiledFile == null) {
+         throw new IllegalArgumentException("compiledFile argument cannot be null");
+      }
+      addProtoFile(name, fileContents);
+      compiledFiles.put(name.startsWith("/") ? name.substring(1) : name, compiledFile);
       return this;
    }
 
@@ -122,6 +145,7 @@ public final class FileDescriptorSource {
       // discard the leading slash
       String path = name.startsWith("/") ? name.substring(1) : name;
       files.put(path, ResourceUtils.getContentsAsString(fileContents));
+      compiledFiles.remove(path);
       return this;
    }
 
@@ -138,6 +162,7 @@ public final class FileDescriptorSource {
       // discard the leading slash
       String path = name.startsWith("/") ? name.substring(1) : name;
       files.put(path, ResourceUtils.getContentsAsString(fileContents));
+      compiledFiles.remove(path);
       return this;
    }
 
@@ -154,6 +179,7 @@ public final class FileDescriptorSource {
       // discard the leading slash
       String path = name.startsWith("/") ? name.substring(1) : name;
       files.put(path, ResourceUtils.getContentsAsString(protoFile));
+      compiledFiles.remove(path);
       return this;
    }
 
@@ -174,6 +200,18 @@ public final class FileDescriptorSource {
       return new FileDescriptorSource().addProtoFile(name, fileContents);
    }
 
+   /**
+    * Parses a proto file and returns a compact binary form of it, to be registered later with
+    * {@link #addProtoFile(String, String, byte[])} without parsing the text again. Only the syntax of the file is
+    * checked, the types are resolved when the file is registered.
+    *
+    * @throws DescriptorParserException if the file cannot be parsed
+    */
+   public static byte[] compile(String name, String fileContents) throws DescriptorParserException {
+      String path = name.startsWith("/") ? name.substring(1) : name;
+      return CompiledProtoFile.compile(path, fileContents);
+   }
+
    /**
     * @deprecated This method was added for internal use and is deprecated since 4.3.4 to be removed in 5.
     * Replaced by {@link #getFiles()}
@@ -191,6 +229,13 @@ public final class FileDescriptorSource {
       return Collections.unmodifiableMap(files);
    }
 
+   /**
+    * The compiled form of the files added with {@link #addProtoFile(String, String, byte[])}, keyed by name.
+    */
+   public Map<String, byte[]> getCompiledFiles() {
+      return Collections.unmodifiableMap(compiledFiles);
+   }
+
    public ProgressCallback getProgressCallback() {
       return progressCallback;
    }
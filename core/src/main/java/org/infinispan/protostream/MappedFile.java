@@ -0,0 +1,102 @@
+package org.infinispan.protostream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A read-only memory mapping of a file of any size, for reading the entries stored in it in place, without copying them
+ * onto the heap. Entries are addressed with {@code long} offsets and {@link #slice(long, int)} returns a direct buffer
+ * over an entry, to be read with {@link ProtobufUtil#fromByteBuffer} or {@link ProtobufUtil#fromWrappedByteBuffer}.
+ * <p>
+ * The file is mapped lazily, in chunks of {@value #CHUNK_SIZE} bytes. Consecutive chunks overlap by
+ * {@value #OVERLAP} bytes, so that any entry not larger than that is contained in a single chunk. Larger entries
+ * crossing the end of a chunk get a mapping of their own. The file must not be truncated while mapped. Instances are
+ * thread-safe.
+ *
+ * @since 6.0.11
+ */
+public final class MappedFile implements Closeable {
+
+   static final int CHUNK_SIZE = 1 << 30;
+
+   static final int OVERLAP = 1 << 24;
+
+   private final FileChannel channel;
+
+   private final long size;
+
+   private final AtomicReferenceArray<MappedByteBuffer> chunks;
+
+   private MappedFile(FileChannel channel) throws IOException {
+      this.channel = channel;
+      this.size = channel.size();
+      this.chunks = new AtomicReferenceArray<>((int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE));
+   }
+
+   public static MappedFile open(Path path) throws IOException {
+      return new MappedFile(FileChannel.open(path, StandardOpenOption.READ));
+   }
+
+   /**
+    * Maps a file that was opened for reading. The channel is closed when this is closed.
+    */
+   public static MappedFile of(FileChannel channel) throws IOException {
+      return new MappedFile(channel);
+   }
+
+   public long size() {
+      return size;
+   }
+
+   /**
+    * Returns a read-only direct buffer over a range of the file. The buffer shares the memory of the
+    * mapping, the bytes are not read until accessed.
+    *
+    * @param offset the offset in the file of the first byte
+    * @param length the number of bytes
+    */
+   public ByteBuffer slice(long offset, int length) throws IOException {
+      if (offset < 0 || length < 0 || offset + length > size) {
+         throw new IndexOutOfBoundsException("The range is outside the file bounds");
+      }
+      if (length == 0) {
+         // an empty range at the end of the file has no chunk, the file may even be empty
+         return ByteBuffer.allocateDirect(0).asReadOnlyBuffer();
+      }
+      int index = (int) (offset / CHUNK_SIZE);
+      int chunkOffset = (int) (offset % CHUNK_SIZE);
+      MappedByteBuffer chunk = chunk(index);
+      if (chunkOffset + length <= chunk.capacity()) {
+         return chunk.slice(chunkOffset, length);
+      }
+      return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+   }
+
+   private MappedByteBuffer chunk(int index) throws IOException {
+      MappedByteBuffer chunk = chunks.get(index);
+      if (chunk == null) {
+         long start = (long) index * CHUNK_SIZE;
+         long length = Math.min(size - start, CHUNK_SIZE + OVERLAP);
+         chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+         if (!chunks.compareAndSet(index, null, chunk)) {
+            chunk = chunks.get(index);
+         }
+      }
+      return chunk;
+   }
+
+   /**
+    * Closes the channel. The memory of the mappings is released once the buffers returned by
+    * {@link #slice(long, int)} are no longer referenced.
+    */
+   @Override
+   public void close() throws IOException {
+      channel.close();
+   }
+}
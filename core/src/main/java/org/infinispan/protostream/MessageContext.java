@@ -1,10 +1,12 @@
 package org.infinispan.protostream;
 
 import java.io.IOException;
-import java.util.BitSet;
+import java.util.Arrays;
+import java.util.List;
 
 import org.infinispan.protostream.descriptors.Descriptor;
 import org.infinispan.protostream.descriptors.FieldDescriptor;
+import org.infinispan.protostream.impl.SparseBitSet;
 
 /**
  * A nested message processing context.
@@ -14,15 +16,20 @@ import org.infinispan.protostream.descriptors.FieldDescriptor;
  */
 public class MessageContext<E extends MessageContext<E>> {
 
+   /**
+    * Seen field numbers below this are tracked in {@link #seenWords}, the others in {@link #sparseSeenFields}.
+    */
+   private static final int MAX_DENSE_FIELD_NUMBER = 1024;
+
    /**
     * The context of the outer message or null if this is a top level message.
     */
-   private final E parentContext;
+   private E parentContext;
 
    /**
     * If this is a nested context this is the outer field being processed. This is null for the root context.
     */
-   private final FieldDescriptor fieldDescriptor;
+   private FieldDescriptor fieldDescriptor;
 
    /**
     * Dot separated path of the field.
@@ -32,13 +39,59 @@ public class MessageContext<E extends MessageContext<E>> {
    /**
     * The descriptor of the current message.
     */
-   private final Descriptor messageDescriptor;
+   private Descriptor messageDescriptor;
+
+   /**
+    * The number of fields marked in declaration order, as long as no field was marked out of that order. These fields
+    * are not tracked individually.
+    */
+   private int sequentialFields = 0;
+
+   /**
+    * Becomes true once a field is marked out of declaration order. From then on all seen fields are tracked in
+    * {@link #seenWords} and {@link #sparseSeenFields}.
+    */
+   private boolean trackingFields = false;
 
-   private final BitSet seenFields;      //todo [anistor] need a sparse bitset here to avoid memory waste
+   /**
+    * One bit per field number below {@link #MAX_DENSE_FIELD_NUMBER}, grown as needed.
+    */
+   private long[] seenWords;
+
+   /**
+    * The seen field numbers starting with {@link #MAX_DENSE_FIELD_NUMBER}, created on first use.
+    */
+   private SparseBitSet sparseSeenFields;
 
    private int maxSeenFieldNumber = 0;
 
    public MessageContext(E parentContext, FieldDescriptor fieldDescriptor, Descriptor messageDescriptor) {
+      init(parentContext, fieldDescriptor, messageDescriptor);
+   }
+
+   /**
+    * Prepares this context for processing another message. The memory used for tracking the seen fields is kept, so
+    * implementations can pool their contexts instead of creating one per message.
+    *
+    * @since 6.0.11
+    */
+   protected void reset(E parentContext, FieldDescriptor fieldDescriptor, Descriptor messageDescriptor) {
+      init(parentContext, fieldDescriptor, messageDescriptor);
+      fieldPath = null;
+      sequentialFields = 0;
+      maxSeenFieldNumber = 0;
+      if (trackingFields) {
+         trackingFields = false;
+         if (seenWords != null) {
+            Arrays.fill(seenWords, 0L);
+         }
+         if (sparseSeenFields != null) {
+            sparseSeenFields.clear();
+         }
+      }
+   }
+
+   private void init(E parentContext, FieldDescriptor fieldDescriptor, Descriptor messageDescriptor) {
       if (messageDescriptor == null) {
          throw new IllegalArgumentException("messageDescriptor cannot be null");
       }
@@ -52,8 +105,6 @@ public class MessageContext<E extends MessageContext<E>> {
       this.parentContext = parentContext;
       this.fieldDescriptor = fieldDescriptor;
       this.messageDescriptor = messageDescriptor;
-
-      seenFields = new BitSet(messageDescriptor.getFields().size() + messageDescriptor.getOneOfs().size());
    }
 
    public E getParentContext() {
@@ -100,8 +151,55 @@ public class MessageContext<E extends MessageContext<E>> {
       return fd;
    }
 
+   /**
+    * Resolves a field of the current message obtained from its {@link Descriptor} in advance. The field is returned as
+    * is if it belongs to the current message descriptor, otherwise, as when the schema was registered again after the
+    * field was obtained, it is looked up by name.
+    *
+    * @since 6.0.11
+    */
+   public FieldDescriptor resolveField(FieldDescriptor field) throws IOException {
+      if (field.getContainingMessage() == messageDescriptor) {
+         return field;
+      }
+      return getFieldByName(field.getName());
+   }
+
    public boolean isFieldMarked(int fieldNumber) {
-      return seenFields.get(fieldNumber);
+      if (!trackingFields) {
+         List<FieldDescriptor> fields = messageDescriptor.getFields();
+         for (int i = 0; i < sequentialFields; i++) {
+            if (fields.get(i).getNumber() == fieldNumber) {
+               return true;
+            }
+         }
+         return false;
+      }
+      if (fieldNumber < MAX_DENSE_FIELD_NUMBER) {
+         int word = fieldNumber >>> 6;
+         return seenWords != null && word < seenWords.length && (seenWords[word] & (1L << fieldNumber)) != 0;
+      }
+      return sparseSeenFields != null && sparseSeenFields.get(fieldNumber);
+   }
+
+   /**
+    * Mark a field as seen. Fields marked in declaration order are not tracked individually.
+    *
+    * @return true if it was added, false if it was already there
+    * @since 6.0.11
+    */
+   public boolean markField(FieldDescriptor field) {
+      if (!trackingFields) {
+         List<FieldDescriptor> fields = messageDescriptor.getFields();
+         if (sequentialFields < fields.size() && fields.get(sequentialFields) == field) {
+            sequentialFields++;
+            if (maxSeenFieldNumber < field.getNumber()) {
+               maxSeenFieldNumber = field.getNumber();
+            }
+            return true;
+         }
+      }
+      return markField(field.getNumber());
    }
 
    /**
@@ -111,16 +209,45 @@ public class MessageContext<E extends MessageContext<E>> {
     * @return true if it was added, false if it was already there
     */
    public boolean markField(int fieldNumber) {
-      if (seenFields.get(fieldNumber)) {
+      if (!trackingFields) {
+         // from now on all fields are tracked
+         trackingFields = true;
+         List<FieldDescriptor> fields = messageDescriptor.getFields();
+         for (int i = 0; i < sequentialFields; i++) {
+            setSeen(fields.get(i).getNumber());
+         }
+      }
+      if (!setSeen(fieldNumber)) {
          return false;
       }
-      seenFields.set(fieldNumber); //todo [anistor] this can cause the bitset grow dangerously
       if (maxSeenFieldNumber < fieldNumber) {
          maxSeenFieldNumber = fieldNumber;
       }
       return true;
    }
 
+   private boolean setSeen(int fieldNumber) {
+      if (fieldNumber >= MAX_DENSE_FIELD_NUMBER) {
+         // large numbers, as used for extension ranges, would make a plain bit set grow dangerously
+         if (sparseSeenFields == null) {
+            sparseSeenFields = new SparseBitSet(4);
+         }
+         return sparseSeenFields.set(fieldNumber);
+      }
+      int word = fieldNumber >>> 6;
+      if (seenWords == null) {
+         seenWords = new long[word + 1];
+      } else if (word >= seenWords.length) {
+         seenWords = Arrays.copyOf(seenWords, word + 1);
+      }
+      long mask = 1L << fieldNumber;
+      if ((seenWords[word] & mask) != 0) {
+         return false;
+      }
+      seenWords[word] |= mask;
+      return true;
+   }
+
    public int getMaxSeenFieldNumber() {
       return maxSeenFieldNumber;
    }
@@ -7,6 +7,8 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.Map;
 
+import org.infinispan.protostream.descriptors.FieldDescriptor;
+
 /**
  * Contract to be implemented by manually written marshallers for Protobuf message (entity) types. The marshaller
  * implementation must be stateless and thread-safe.
@@ -32,6 +34,10 @@ public interface MessageMarshaller<T> extends BaseMarshaller<T> {
    /**
     * A high-level interface for the wire encoding of a Protobuf stream that allows reading named (and typed) message
     * fields.
+    * <p>
+    * Fields can also be given as a {@link FieldDescriptor}, obtained once by the marshaller from the message
+    * {@link org.infinispan.protostream.descriptors.Descriptor} instead of being looked up by name on each read. Reading
+    * the fields in declaration order is the fastest, as the fields read are then not tracked individually.
     */
    interface ProtoStreamReader {
 
@@ -48,48 +54,128 @@ public interface MessageMarshaller<T> extends BaseMarshaller<T> {
        */
       Integer readInt(String fieldName) throws IOException;
 
+      default Integer readInt(FieldDescriptor field) throws IOException {
+         return readInt(field.getName());
+      }
+
       int[] readInts(String fieldName) throws IOException;
 
+      default int[] readInts(FieldDescriptor field) throws IOException {
+         return readInts(field.getName());
+      }
+
       Long readLong(String fieldName) throws IOException;  //TODO implement 'type-based' default values where a default value was not specified in schema
 
+      default Long readLong(FieldDescriptor field) throws IOException {
+         return readLong(field.getName());
+      }
+
       long[] readLongs(String fieldName) throws IOException;
 
+      default long[] readLongs(FieldDescriptor field) throws IOException {
+         return readLongs(field.getName());
+      }
+
       Date readDate(String fieldName) throws IOException;
 
+      default Date readDate(FieldDescriptor field) throws IOException {
+         return readDate(field.getName());
+      }
+
       Instant readInstant(String fieldName) throws IOException;
 
+      default Instant readInstant(FieldDescriptor field) throws IOException {
+         return readInstant(field.getName());
+      }
+
       Float readFloat(String fieldName) throws IOException;
 
+      default Float readFloat(FieldDescriptor field) throws IOException {
+         return readFloat(field.getName());
+      }
+
       float[] readFloats(String fieldName) throws IOException;
 
+      default float[] readFloats(FieldDescriptor field) throws IOException {
+         return readFloats(field.getName());
+      }
+
       Double readDouble(String fieldName) throws IOException;
 
+      default Double readDouble(FieldDescriptor field) throws IOException {
+         return readDouble(field.getName());
+      }
+
       double[] readDoubles(String fieldName) throws IOException;
 
+      default double[] readDoubles(FieldDescriptor field) throws IOException {
+         return readDoubles(field.getName());
+      }
+
       Boolean readBoolean(String fieldName) throws IOException;
 
+      default Boolean readBoolean(FieldDescriptor field) throws IOException {
+         return readBoolean(field.getName());
+      }
+
       boolean[] readBooleans(String fieldName) throws IOException;
 
+      default boolean[] readBooleans(FieldDescriptor field) throws IOException {
+         return readBooleans(field.getName());
+      }
+
       String readString(String fieldName) throws IOException;
 
+      default String readString(FieldDescriptor field) throws IOException {
+         return readString(field.getName());
+      }
+
       byte[] readBytes(String fieldName) throws IOException;
 
+      default byte[] readBytes(FieldDescriptor field) throws IOException {
+         return readBytes(field.getName());
+      }
+
       InputStream readBytesAsInputStream(String fieldName) throws IOException;
 
+      default InputStream readBytesAsInputStream(FieldDescriptor field) throws IOException {
+         return readBytesAsInputStream(field.getName());
+      }
+
       <E extends Enum<E>> E readEnum(String fieldName, Class<E> clazz) throws IOException;
 
+      default <E extends Enum<E>> E readEnum(FieldDescriptor field, Class<E> clazz) throws IOException {
+         return readEnum(field.getName(), clazz);
+      }
+
       <E> E readObject(String fieldName, Class<E> clazz) throws IOException;
 
+      default <E> E readObject(FieldDescriptor field, Class<E> clazz) throws IOException {
+         return readObject(field.getName(), clazz);
+      }
+
       <E, C extends Collection<? super E>> C readCollection(String fieldName, C collection, Class<E> elementClass) throws IOException;
 
+      default <E, C extends Collection<? super E>> C readCollection(FieldDescriptor field, C collection, Class<E> elementClass) throws IOException {
+         return readCollection(field.getName(), collection, elementClass);
+      }
+
       <E> E[] readArray(String fieldName, Class<? extends E> elementClass) throws IOException;
 
+      default <E> E[] readArray(FieldDescriptor field, Class<? extends E> elementClass) throws IOException {
+         return readArray(field.getName(), elementClass);
+      }
+
       <K, V, M extends Map<? super K, ? super V>> M readMap(String fieldName, M map, Class<K> keyClass, Class<V> valueClass) throws IOException;
+
+      default <K, V, M extends Map<? super K, ? super V>> M readMap(FieldDescriptor field, M map, Class<K> keyClass, Class<V> valueClass) throws IOException {
+         return readMap(field.getName(), map, keyClass, valueClass);
+      }
    }
 
    /**
     * A high-level interface for the wire encoding of a Protobuf stream that allows writing named (and typed) message
-    * fields.
+    * fields. As for the reader, fields can also be given as a {@link FieldDescriptor}.
     */
    interface ProtoStreamWriter {
 
@@ -101,46 +187,130 @@ public interface MessageMarshaller<T> extends BaseMarshaller<T> {
 
       void writeInt(String fieldName, int value) throws IOException;
 
+      default void writeInt(FieldDescriptor field, int value) throws IOException {
+         writeInt(field.getName(), value);
+      }
+
       void writeInt(String fieldName, Integer value) throws IOException;
 
+      default void writeInt(FieldDescriptor field, Integer value) throws IOException {
+         writeInt(field.getName(), value);
+      }
+
       void writeInts(String fieldName, int[] values) throws IOException;
 
+      default void writeInts(FieldDescriptor field, int[] values) throws IOException {
+         writeInts(field.getName(), values);
+      }
+
       void writeLong(String fieldName, long value) throws IOException;
 
+      default void writeLong(FieldDescriptor field, long value) throws IOException {
+         writeLong(field.getName(), value);
+      }
+
       void writeLong(String fieldName, Long value) throws IOException;
 
+      default void writeLong(FieldDescriptor field, Long value) throws IOException {
+         writeLong(field.getName(), value);
+      }
+
       void writeLongs(String fieldName, long[] values) throws IOException;
 
+      default void writeLongs(FieldDescriptor field, long[] values) throws IOException {
+         writeLongs(field.getName(), values);
+      }
+
       void writeDate(String fieldName, Date value) throws IOException;
 
+      default void writeDate(FieldDescriptor field, Date value) throws IOException {
+         writeDate(field.getName(), value);
+      }
+
       void writeInstant(String fieldName, Instant value) throws IOException;
 
+      default void writeInstant(FieldDescriptor field, Instant value) throws IOException {
+         writeInstant(field.getName(), value);
+      }
+
       void writeDouble(String fieldName, double value) throws IOException;
 
+      default void writeDouble(FieldDescriptor field, double value) throws IOException {
+         writeDouble(field.getName(), value);
+      }
+
       void writeDouble(String fieldName, Double value) throws IOException;
 
+      default void writeDouble(FieldDescriptor field, Double value) throws IOException {
+         writeDouble(field.getName(), value);
+      }
+
       void writeDoubles(String fieldName, double[] values) throws IOException;
 
+      default void writeDoubles(FieldDescriptor field, double[] values) throws IOException {
+         writeDoubles(field.getName(), values);
+      }
+
       void writeFloat(String fieldName, float value) throws IOException;
 
+      default void writeFloat(FieldDescriptor field, float value) throws IOException {
+         writeFloat(field.getName(), value);
+      }
+
       void writeFloat(String fieldName, Float value) throws IOException;
 
+      default void writeFloat(FieldDescriptor field, Float value) throws IOException {
+         writeFloat(field.getName(), value);
+      }
+
       void writeFloats(String fieldName, float[] values) throws IOException;
 
+      default void writeFloats(FieldDescriptor field, float[] values) throws IOException {
+         writeFloats(field.getName(), values);
+      }
+
       void writeBoolean(String fieldName, boolean value) throws IOException;
 
+      default void writeBoolean(FieldDescriptor field, boolean value) throws IOException {
+         writeBoolean(field.getName(), value);
+      }
+
       void writeBoolean(String fieldName, Boolean value) throws IOException;
 
+      default void writeBoolean(FieldDescriptor field, Boolean value) throws IOException {
+         writeBoolean(field.getName(), value);
+      }
+
       void writeBooleans(String fieldName, boolean[] values) throws IOException;
 
+      default void writeBooleans(FieldDescriptor field, boolean[] values) throws IOException {
+         writeBooleans(field.getName(), values);
+      }
+
       void writeString(String fieldName, String value) throws IOException;
 
+      default void writeString(FieldDescriptor field, String value) throws IOException {
+         writeString(field.getName(), value);
+      }
+
       void writeBytes(String fieldName, byte[] value) throws IOException;
 
+      default void writeBytes(FieldDescriptor field, byte[] value) throws IOException {
+         writeBytes(field.getName(), value);
+      }
+
       void writeBytes(String fieldName, InputStream input) throws IOException;
 
+      default void writeBytes(FieldDescriptor field, InputStream input) throws IOException {
+         writeBytes(field.getName(), input);
+      }
+
       <E> void writeObject(String fieldName, E value, Class<? extends E> clazz) throws IOException;
 
+      default <E> void writeObject(FieldDescriptor field, E value, Class<? extends E> clazz) throws IOException {
+         writeObject(field.getName(), value, clazz);
+      }
+
       /**
        * Writes an enum value.
        *
@@ -149,10 +319,26 @@ public interface MessageMarshaller<T> extends BaseMarshaller<T> {
        */
       <E extends Enum<E>> void writeEnum(String fieldName, E value) throws IOException;
 
+      default <E extends Enum<E>> void writeEnum(FieldDescriptor field, E value) throws IOException {
+         writeEnum(field.getName(), value);
+      }
+
       <E> void writeCollection(String fieldName, Collection<? super E> collection, Class<E> elementClass) throws IOException;
 
+      default <E> void writeCollection(FieldDescriptor field, Collection<? super E> collection, Class<E> elementClass) throws IOException {
+         writeCollection(field.getName(), collection, elementClass);
+      }
+
       <E> void writeArray(String fieldName, E[] array, Class<? extends E> elementClass) throws IOException;
 
+      default <E> void writeArray(FieldDescriptor field, E[] array, Class<? extends E> elementClass) throws IOException {
+         writeArray(field.getName(), array, elementClass);
+      }
+
       <K, V> void writeMap(String fieldName, Map<? super K, ? super V> map, Class<K> keyClass, Class<V> valueClass) throws IOException;
+
+      default <K, V> void writeMap(FieldDescriptor field, Map<? super K, ? super V> map, Class<K> keyClass, Class<V> valueClass) throws IOException {
+         writeMap(field.getName(), map, keyClass, valueClass);
+      }
    }
 }
@@ -0,0 +1,92 @@
+package org.infinispan.protostream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.infinispan.protostream.descriptors.Descriptor;
+import org.infinispan.protostream.descriptors.FieldDescriptor;
+import org.infinispan.protostream.impl.MessageViewImpl;
+
+/**
+ * A read-only view over a Protobuf encoded message, which decodes only the fields that are requested.
+ * <p>
+ * The offsets of the fields are indexed on first access, with a single pass over the tags of the message that skips
+ * over the values. Each value is decoded only when requested and nested messages are returned as views over the same
+ * bytes, without copying. This is meant for inspecting a few fields of a message without unmarshalling it whole, as
+ * done by query filters and projections.
+ * <p>
+ * Values are returned with the same Java types used by the {@link TagHandler} callbacks of {@link ProtobufParser}:
+ * enums as their {@code Integer} number, {@code bytes} as {@code byte[]} and nested messages, maps entries included,
+ * as {@code MessageView}. The bytes must not be modified while the view is in use. Instances are not thread-safe.
+ *
+ * @since 6.0.11
+ */
+public interface MessageView {
+
+   static MessageView of(Descriptor descriptor, byte[] bytes) {
+      return of(descriptor, bytes, 0, bytes.length);
+   }
+
+   static MessageView of(Descriptor descriptor, byte[] bytes, int offset, int length) {
+      return MessageViewImpl.newInstance(descriptor, bytes, offset, length);
+   }
+
+   /**
+    * Creates a view over the remaining bytes of the buffer. The position of the buffer is not modified.
+    */
+   static MessageView of(Descriptor descriptor, ByteBuffer buffer) {
+      return MessageViewImpl.newInstance(descriptor, buffer);
+   }
+
+   /**
+    * Creates a view over the message wrapped in a {@link WrappedMessage}, as produced by
+    * {@link ProtobufUtil#toWrappedByteArray}. The type of the message is resolved with the serialization context.
+    *
+    * @throws IllegalArgumentException if the bytes do not wrap a message
+    */
+   static MessageView ofWrapped(ImmutableSerializationContext ctx, byte[] bytes) throws IOException {
+      return MessageViewImpl.newWrappedInstance(ctx, bytes);
+   }
+
+   Descriptor getDescriptor();
+
+   /**
+    * Checks if the field is present in the encoded message.
+    */
+   boolean hasField(int fieldNumber) throws IOException;
+
+   default boolean hasField(String fieldName) throws IOException {
+      return hasField(field(fieldName).getNumber());
+   }
+
+   /**
+    * Decodes the value of a non-repeated field. When the field occurs more than once, the last value wins.
+    *
+    * @return the value or {@code null} if the field is not present
+    */
+   Object getField(int fieldNumber) throws IOException;
+
+   default Object getField(String fieldName) throws IOException {
+      return getField(field(fieldName).getNumber());
+   }
+
+   /**
+    * Decodes all the values of a repeated field, in order, accepting both packed and unpacked values.
+    *
+    * @return the values, or an empty list if the field is not present
+    */
+   List<Object> getRepeatedField(int fieldNumber) throws IOException;
+
+   default List<Object> getRepeatedField(String fieldName) throws IOException {
+      return getRepeatedField(field(fieldName).getNumber());
+   }
+
+   private FieldDescriptor field(String fieldName) {
+      FieldDescriptor fd = getDescriptor().findFieldByName(fieldName);
+      if (fd == null) {
+         throw new IllegalArgumentException("Unknown field '" + fieldName + "' in message " + getDescriptor().getFullName());
+      }
+      return fd;
+   }
+}
@@ -10,13 +10,20 @@ import java.util.Objects;
 import org.infinispan.protostream.descriptors.Descriptor;
 import org.infinispan.protostream.descriptors.FieldDescriptor;
 import org.infinispan.protostream.descriptors.Type;
+import org.infinispan.protostream.descriptors.WireType;
 import org.infinispan.protostream.impl.Log;
 import org.infinispan.protostream.impl.RandomAccessOutputStreamImpl;
+import org.infinispan.protostream.impl.TagReaderImpl;
 import org.infinispan.protostream.impl.TagWriterImpl;
 
 /**
  * Partially updates protobuf-serialized message bytes at the field level, without requiring Java POJOs.
  * Supports scalar field SET (including nested dotted paths), and collection ADD/REMOVE on repeated fields.
+ * <p>
+ * The message is scanned once, recording only where the updated fields are. Everything else, including untouched
+ * nested messages, is copied as raw byte ranges into a single output buffer, and each updated field is written where
+ * it first occurred. The nested messages along an update path are patched the same way, so the cost of an update
+ * depends on the size of the change rather than on the size of the message.
  *
  * @since 6.0
  */
@@ -51,82 +58,71 @@ public final class ProtobufFieldUpdater {
     * @return updated protobuf bytes
     */
    public static byte[] update(Descriptor descriptor, byte[] messageBytes, List<UpdateOperation> operations) throws IOException {
-      Map<Integer, List<Object>> fieldMap = collectFields(descriptor, messageBytes);
-
-      for (UpdateOperation op : operations) {
-         applyOperation(descriptor, fieldMap, op.type(), op.propertyPath(), 0, op.values());
-      }
-
-      return serializeFields(descriptor, fieldMap);
-   }
-
-   private static Map<Integer, List<Object>> collectFields(Descriptor descriptor, byte[] bytes) throws IOException {
-      FieldCollector collector = new FieldCollector();
-      ProtobufParser.INSTANCE.parse(collector, descriptor, bytes);
-      return collector.fields;
+      RandomAccessOutputStream out = new RandomAccessOutputStreamImpl(messageBytes.length + 128);
+      TagWriter writer = TagWriterImpl.newInstance(null, out);
+      patch(descriptor, messageBytes, 0, messageBytes.length, operations, 0, writer);
+      writer.flush();
+      return out.toByteArray();
    }
 
-   private static void applyOperation(Descriptor descriptor, Map<Integer, List<Object>> fieldMap,
-                                       OperationType type, String[] path, int pathIndex, List<Object> values) throws IOException {
-      String fieldName = path[pathIndex];
-      FieldDescriptor fd = descriptor.findFieldByName(fieldName);
-      if (fd == null) {
-         throw new IllegalArgumentException("Unknown field '" + fieldName + "' in message " + descriptor.getFullName());
+   /**
+    * Writes the message found at {@code bytes[offset, offset + length)} with the operations applied. The path element
+    * at {@code pathIndex} of each operation names a field of this message.
+    */
+   private static void patch(Descriptor descriptor, byte[] bytes, int offset, int length,
+                             List<UpdateOperation> operations, int pathIndex, TagWriter writer) throws IOException {
+      Map<Integer, FieldUpdate> updates = new LinkedHashMap<>();
+      for (UpdateOperation op : operations) {
+         String fieldName = op.propertyPath()[pathIndex];
+         FieldDescriptor fd = descriptor.findFieldByName(fieldName);
+         if (fd == null) {
+            throw new IllegalArgumentException("Unknown field '" + fieldName + "' in message " + descriptor.getFullName());
+         }
+         if (pathIndex < op.propertyPath().length - 1 && fd.getType() != Type.MESSAGE) {
+            throw new IllegalArgumentException("Field '" + fieldName + "' is not a message type, cannot traverse into it");
+         }
+         updates.computeIfAbsent(fd.getNumber(), k -> new FieldUpdate(fd)).operations.add(op);
       }
-      int fieldNumber = fd.getNumber();
-      boolean isLeaf = pathIndex == path.length - 1;
 
-      if (!isLeaf) {
-         if (fd.getType() != Type.MESSAGE) {
-            throw new IllegalArgumentException("Field '" + fieldName + "' is not a message type, cannot traverse into it");
+      // Only the tags are read, the values of the fields not being updated are skipped without decoding them
+      List<Occurrence> occurrences = new ArrayList<>();
+      TagReaderImpl in = TagReaderImpl.newInstance(null, bytes, offset, length);
+      while (true) {
+         int start = in.getPos();
+         int tag = in.readTag();
+         if (tag == 0) {
+            break;
          }
-         List<Object> existing = fieldMap.get(fieldNumber);
-         NestedMessage nested;
-         if (existing == null || existing.isEmpty()) {
-            nested = new NestedMessage(new byte[0], fd);
-            fieldMap.computeIfAbsent(fieldNumber, k -> new ArrayList<>()).add(nested);
-            existing = fieldMap.get(fieldNumber);
-         } else {
-            nested = (NestedMessage) existing.get(0);
+         in.skipField(tag);
+         FieldUpdate update = updates.get(WireType.getTagFieldNumber(tag));
+         if (update != null) {
+            Occurrence occurrence = new Occurrence(update, tag, start, in.getPos());
+            if (update.first == null) {
+               update.first = occurrence;
+            }
+            update.values.add(occurrence);
+            occurrences.add(occurrence);
          }
+      }
 
-         Descriptor nestedDescriptor = fd.getMessageType();
-         Map<Integer, List<Object>> nestedFieldMap = collectFields(nestedDescriptor, nested.bytes());
-         applyOperation(nestedDescriptor, nestedFieldMap, type, path, pathIndex + 1, values);
-         byte[] updatedNestedBytes = serializeFields(nestedDescriptor, nestedFieldMap);
-         existing.set(0, new NestedMessage(updatedNestedBytes, fd));
-         return;
+      for (FieldUpdate update : updates.values()) {
+         update.apply(bytes, pathIndex);
       }
 
-      switch (type) {
-         case SET -> {
-            if (values.size() == 1 && values.get(0) == null) {
-               fieldMap.remove(fieldNumber);
-            } else {
-               List<Object> converted = new ArrayList<>();
-               for (Object v : values) {
-                  converted.add(convertValue(fd, v));
-               }
-               fieldMap.put(fieldNumber, converted);
-            }
-         }
-         case ADD -> {
-            List<Object> existing = fieldMap.computeIfAbsent(fieldNumber, k -> new ArrayList<>());
-            for (Object v : values) {
-               existing.add(convertValue(fd, v));
-            }
+      int pos = offset;
+      for (Occurrence occurrence : occurrences) {
+         writer.writeRawBytes(bytes, pos, occurrence.start() - pos);
+         if (occurrence.update().first == occurrence) {
+            occurrence.update().write(bytes, pathIndex, writer);
          }
-         case REMOVE -> {
-            List<Object> existing = fieldMap.get(fieldNumber);
-            if (existing != null) {
-               for (Object v : values) {
-                  Object converted = convertValue(fd, v);
-                  existing.removeIf(e -> Objects.equals(e, converted));
-               }
-               if (existing.isEmpty()) {
-                  fieldMap.remove(fieldNumber);
-               }
-            }
+         pos = occurrence.end();
+      }
+      writer.writeRawBytes(bytes, pos, offset + length - pos);
+
+      // The fields not present before are appended
+      for (FieldUpdate update : updates.values()) {
+         if (update.first == null) {
+            update.write(bytes, pathIndex, writer);
          }
       }
    }
@@ -172,26 +168,26 @@ public final class ProtobufFieldUpdater {
       };
    }
 
-   private static byte[] serializeFields(Descriptor descriptor, Map<Integer, List<Object>> fieldMap) throws IOException {
-      RandomAccessOutputStream baos = new RandomAccessOutputStreamImpl(128);
-      TagWriter writer = TagWriterImpl.newInstance(null, baos);
-
-      for (var entry : fieldMap.entrySet()) {
-         int fieldNumber = entry.getKey();
-         List<Object> values = entry.getValue();
-         FieldDescriptor fd = descriptor != null ? descriptor.findFieldByNumber(fieldNumber) : null;
-
-         for (Object value : values) {
-            if (value instanceof NestedMessage nested) {
-               writer.writeBytes(fieldNumber, nested.bytes());
-            } else {
-               writeField(writer, fieldNumber, fd, value);
-            }
-         }
-      }
-
-      writer.flush();
-      return baos.toByteArray();
+   private static Object readValue(TagReader in, FieldDescriptor fd) throws IOException {
+      return switch (fd.getType()) {
+         case STRING -> in.readString();
+         case INT32 -> in.readInt32();
+         case INT64 -> in.readInt64();
+         case UINT32 -> in.readUInt32();
+         case UINT64 -> in.readUInt64();
+         case SINT32 -> in.readSInt32();
+         case SINT64 -> in.readSInt64();
+         case FIXED32 -> in.readFixed32();
+         case FIXED64 -> in.readFixed64();
+         case SFIXED32 -> in.readSFixed32();
+         case SFIXED64 -> in.readSFixed64();
+         case FLOAT -> in.readFloat();
+         case DOUBLE -> in.readDouble();
+         case BOOL -> in.readBool();
+         case ENUM -> in.readEnum();
+         case BYTES -> in.readByteArray();
+         default -> throw new IOException("Unsupported field type: " + fd.getType());
+      };
    }
 
    private static void writeField(TagWriter writer, int fieldNumber, FieldDescriptor fd, Object value) throws IOException {
@@ -220,54 +216,135 @@ public final class ProtobufFieldUpdater {
       }
    }
 
-   private record NestedMessage(byte[] bytes, FieldDescriptor fieldDescriptor) {
+   /**
+    * The bytes of one field found in the original message, from its tag up to the end of its value.
+    */
+   private record Occurrence(FieldUpdate update, int tag, int start, int end) {
+
+      List<Object> decode(byte[] bytes, FieldDescriptor fd) throws IOException {
+         TagReaderImpl in = TagReaderImpl.newInstance(null, bytes, start, end - start);
+         in.readTag();
+         List<Object> decoded = new ArrayList<>();
+         if (WireType.getTagWireType(tag) == WireType.WIRETYPE_LENGTH_DELIMITED && fd.getType().isPackable()) {
+            // a packed block, which ends with the occurrence
+            in.readUInt32();
+            while (!in.isAtEnd()) {
+               decoded.add(readValue(in, fd));
+            }
+         } else {
+            decoded.add(readValue(in, fd));
+         }
+         return decoded;
+      }
+   }
+
+   /**
+    * A nested message to patch with the operations addressing its fields, or to create if there is no source.
+    */
+   private record NestedUpdate(Occurrence source, List<UpdateOperation> operations) {
+
+      NestedUpdate(Occurrence source) {
+         this(source, new ArrayList<>());
+      }
+
+      void write(FieldDescriptor fd, byte[] bytes, int pathIndex, TagWriter writer) throws IOException {
+         int offset = 0;
+         int length = 0;
+         if (source != null) {
+            TagReaderImpl in = TagReaderImpl.newInstance(null, bytes, source.start(), source.end() - source.start());
+            in.readTag();
+            length = in.readUInt32();
+            offset = in.getPos();
+         }
+         try (TagWriter nestedWriter = writer.subWriter(fd.getNumber(), false)) {
+            patch(fd.getMessageType(), bytes, offset, length, operations, pathIndex, nestedWriter);
+         }
+      }
    }
 
-   private static class FieldCollector implements TagHandler {
-      final Map<Integer, List<Object>> fields = new LinkedHashMap<>();
-      private int depth = 0;
-      private int nestedFieldNumber = -1;
-      private FieldCollector nestedCollector;
+   /**
+    * The operations on a field of a message, and the values of the field resulting from them. The values are either
+    * untouched {@link Occurrence}s, a {@link NestedUpdate} or new values to encode.
+    */
+   private static final class FieldUpdate {
+      final FieldDescriptor fd;
+      final List<UpdateOperation> operations = new ArrayList<>();
+      final List<Object> values = new ArrayList<>();
+      Occurrence first;
 
-      @Override
-      public void onTag(int fieldNumber, FieldDescriptor fieldDescriptor, Object tagValue) {
-         if (depth > 0 && nestedCollector != null) {
-            nestedCollector.onTag(fieldNumber, fieldDescriptor, tagValue);
-            return;
+      FieldUpdate(FieldDescriptor fd) {
+         this.fd = fd;
+      }
+
+      void apply(byte[] bytes, int pathIndex) throws IOException {
+         for (UpdateOperation op : operations) {
+            if (pathIndex < op.propertyPath().length - 1) {
+               nestedUpdate().operations().add(op);
+               continue;
+            }
+            switch (op.type()) {
+               case SET -> {
+                  values.clear();
+                  if (op.values().size() != 1 || op.values().get(0) != null) {
+                     for (Object v : op.values()) {
+                        values.add(convertValue(fd, v));
+                     }
+                  }
+               }
+               case ADD -> {
+                  for (Object v : op.values()) {
+                     values.add(convertValue(fd, v));
+                  }
+               }
+               case REMOVE -> {
+                  for (Object v : op.values()) {
+                     remove(bytes, convertValue(fd, v));
+                  }
+               }
+            }
          }
-         fields.computeIfAbsent(fieldNumber, k -> new ArrayList<>()).add(tagValue);
       }
 
-      @Override
-      public void onStartNested(int fieldNumber, FieldDescriptor fieldDescriptor) {
-         if (depth > 0 && nestedCollector != null) {
-            nestedCollector.onStartNested(fieldNumber, fieldDescriptor);
-            depth++;
-            return;
+      private NestedUpdate nestedUpdate() {
+         if (values.isEmpty()) {
+            values.add(new NestedUpdate(null));
+         } else if (values.get(0) instanceof Occurrence occurrence) {
+            values.set(0, new NestedUpdate(occurrence));
          }
-         depth++;
-         nestedFieldNumber = fieldNumber;
-         nestedCollector = new FieldCollector();
+         return (NestedUpdate) values.get(0);
       }
 
-      @Override
-      public void onEndNested(int fieldNumber, FieldDescriptor fieldDescriptor) {
-         depth--;
-         if (depth > 0 && nestedCollector != null) {
-            nestedCollector.onEndNested(fieldNumber, fieldDescriptor);
-            return;
+      /**
+       * Removes the values equal to the given one. Only the occurrences holding such a value are decoded.
+       */
+      private void remove(byte[] bytes, Object value) throws IOException {
+         List<Object> remaining = new ArrayList<>(values.size());
+         for (Object v : values) {
+            if (v instanceof Occurrence occurrence && fd.getType() != Type.MESSAGE && fd.getType() != Type.GROUP) {
+               List<Object> decoded = occurrence.decode(bytes, fd);
+               if (decoded.contains(value)) {
+                  decoded.removeIf(e -> Objects.equals(e, value));
+                  remaining.addAll(decoded);
+                  continue;
+               }
+            } else if (Objects.equals(v, value)) {
+               continue;
+            }
+            remaining.add(v);
          }
-         if (nestedCollector != null) {
-            byte[] nestedBytes;
-            try {
-               Descriptor nestedDescriptor = fieldDescriptor != null ? fieldDescriptor.getMessageType() : null;
-               nestedBytes = serializeFields(nestedDescriptor, nestedCollector.fields);
-            } catch (IOException e) {
-               throw new RuntimeException(e);
+         values.clear();
+         values.addAll(remaining);
+      }
+
+      void write(byte[] bytes, int pathIndex, TagWriter writer) throws IOException {
+         for (Object value : values) {
+            if (value instanceof Occurrence occurrence) {
+               writer.writeRawBytes(bytes, occurrence.start(), occurrence.end() - occurrence.start());
+            } else if (value instanceof NestedUpdate nested) {
+               nested.write(fd, bytes, pathIndex + 1, writer);
+            } else {
+               writeField(writer, fd.getNumber(), fd, value);
             }
-            fields.computeIfAbsent(nestedFieldNumber, k -> new ArrayList<>()).add(new NestedMessage(nestedBytes, fieldDescriptor));
-            nestedCollector = null;
-            nestedFieldNumber = -1;
          }
       }
    }
@@ -3,14 +3,21 @@ package org.infinispan.protostream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.infinispan.protostream.config.Configuration;
 import org.infinispan.protostream.descriptors.Descriptor;
 import org.infinispan.protostream.descriptors.FieldDescriptor;
+import org.infinispan.protostream.descriptors.FileDescriptor;
 import org.infinispan.protostream.descriptors.MapDescriptor;
 import org.infinispan.protostream.descriptors.Type;
 import org.infinispan.protostream.descriptors.WireType;
+import org.infinispan.protostream.impl.SpecializedParser;
 import org.infinispan.protostream.impl.TagReaderImpl;
 
 /**
+ * Parses messages of a type known only by its {@link Descriptor}, passing the fields to a {@link TagHandler}. Types
+ * parsed more than {@link Configuration#parserSpecializationThreshold()} times get a parser specialized for them, which
+ * resolves the fields and their callbacks once instead of for each tag.
+ *
  * @author anistor@redhat.com
  * @since 1.0
  */
@@ -54,12 +61,23 @@ public final class ProtobufParser {
    }
 
    private void parseInternal(TagHandler tagHandler, Descriptor messageDescriptor, TagReader in) throws IOException {
+      SpecializedParser parser = SpecializedParser.forType(messageDescriptor, specializationThreshold(messageDescriptor));
       tagHandler.onStart(messageDescriptor);
-      parseMessage(tagHandler, messageDescriptor, in);
+      if (parser != null) {
+         parser.parseMessage(tagHandler, in, new BytesView());
+      } else {
+         parseMessage(tagHandler, messageDescriptor, in, new BytesView());
+      }
       tagHandler.onEnd();
    }
 
-   private void parseMessage(TagHandler tagHandler, Descriptor messageDescriptor, TagReader in) throws IOException {
+   private static int specializationThreshold(Descriptor messageDescriptor) {
+      FileDescriptor fileDescriptor = messageDescriptor.getFileDescriptor();
+      Configuration configuration = fileDescriptor != null ? fileDescriptor.getConfiguration() : null;
+      return configuration != null ? configuration.parserSpecializationThreshold() : Configuration.DEFAULT_PARSER_SPECIALIZATION_THRESHOLD;
+   }
+
+   private void parseMessage(TagHandler tagHandler, Descriptor messageDescriptor, TagReader in, BytesView bytes) throws IOException {
       int tag;
       while ((tag = in.readTag()) != 0) {
          final int fieldNumber = WireType.getTagFieldNumber(tag);
@@ -68,13 +86,12 @@ public final class ProtobufParser {
          switch (wireType) {
             case LENGTH_DELIMITED: {
                if (fd == null) {
-                  byte[] value = in.readByteArray();
-                  tagHandler.onTag(fieldNumber, null, value);
+                  onBytes(tagHandler, fieldNumber, null, in.readBytesView(bytes));
                } else if (fd instanceof MapDescriptor md) {
                   int length = in.readUInt32();
                   int oldLimit = in.pushLimit(length);
                   tagHandler.onStartNested(fieldNumber, fd);
-                  parseMessage(tagHandler, md.asDescriptor(), in);
+                  parseMessage(tagHandler, md.asDescriptor(), in, bytes);
                   tagHandler.onEndNested(fieldNumber, fd);
                   in.checkLastTagWas(0);
                   in.popLimit(oldLimit);
@@ -82,23 +99,32 @@ public final class ProtobufParser {
                   String value = in.readString();
                   tagHandler.onTag(fieldNumber, fd, value);
                } else if (fd.getType() == Type.BYTES) {
-                  byte[] value = in.readByteArray();
-                  tagHandler.onTag(fieldNumber, fd, value);
+                  onBytes(tagHandler, fieldNumber, fd, in.readBytesView(bytes));
                } else if (fd.getType() == Type.MESSAGE) {
                   int length = in.readUInt32();
                   int oldLimit = in.pushLimit(length);
                   tagHandler.onStartNested(fieldNumber, fd);
-                  parseMessage(tagHandler, fd.getMessageType(), in);
+                  parseMessage(tagHandler, fd.getMessageType(), in, bytes);
                   tagHandler.onEndNested(fieldNumber, fd);
                   in.checkLastTagWas(0);
                   in.popLimit(oldLimit);
+               } else if (fd.isRepeated() && fd.getType().isPackable()) {
+                  // packed repeated scalars, accepted regardless of the encoding the schema prefers
+                  int length = in.readUInt32();
+                  int oldLimit = in.pushLimit(length);
+                  while (!in.isAtEnd()) {
+                     parseScalar(tagHandler, fieldNumber, fd, in);
+                  }
+                  in.popLimit(oldLimit);
+               } else {
+                  throw new IOException("Unexpected field type " + fd.getType() + " for field " + fd.getNumber());
                }
                break;
             }
 
             case START_GROUP: {
                tagHandler.onStartNested(fieldNumber, fd);
-               parseMessage(tagHandler, fd == null ? null : fd.getMessageType(), in);
+               parseMessage(tagHandler, fd == null ? null : fd.getMessageType(), in, bytes);
                in.checkLastTagWas(WireType.makeTag(fieldNumber, WireType.WIRETYPE_END_GROUP));
                tagHandler.onEndNested(fieldNumber, fd);
                break;
@@ -109,32 +135,14 @@ public final class ProtobufParser {
             case VARINT: {
                if (fd == null) {
                   if (wireType == WireType.FIXED32) {
-                     tagHandler.onTag(fieldNumber, null, in.readFixed32());
+                     tagHandler.onInt32(fieldNumber, null, in.readFixed32());
                   } else if (wireType == WireType.FIXED64) {
-                     tagHandler.onTag(fieldNumber, null, in.readFixed64());
+                     tagHandler.onInt64(fieldNumber, null, in.readFixed64());
                   } else {
-                     tagHandler.onTag(fieldNumber, null, in.readUInt64());
+                     tagHandler.onInt64(fieldNumber, null, in.readUInt64());
                   }
                } else {
-                  Object value = switch (fd.getType()) {
-                     case DOUBLE -> in.readDouble();
-                     case FLOAT -> in.readFloat();
-                     case BOOL -> in.readBool();
-                     case INT32 -> in.readInt32();
-                     case SFIXED32 -> in.readSFixed32();
-                     case FIXED32 -> in.readFixed32();
-                     case UINT32 -> in.readUInt32();
-                     case SINT32 -> in.readSInt32();
-                     case INT64 -> in.readInt64();
-                     case UINT64 -> in.readUInt64();
-                     case FIXED64 -> in.readFixed64();
-                     case SFIXED64 -> in.readSFixed64();
-                     case SINT64 -> in.readSInt64();
-                     case ENUM -> in.readEnum();
-                     default ->
-                           throw new IOException("Unexpected field type " + fd.getType() + " for field " + fieldNumber);
-                  };
-                  tagHandler.onTag(fieldNumber, fd, value);
+                  parseScalar(tagHandler, fieldNumber, fd, in);
                }
                break;
             }
@@ -144,4 +152,38 @@ public final class ProtobufParser {
          }
       }
    }
+
+   private static void onBytes(TagHandler tagHandler, int fieldNumber, FieldDescriptor fd, BytesView bytes) {
+      if (bytes.hasArray()) {
+         // the bytes are passed without copying them out of the input
+         tagHandler.onBytes(fieldNumber, fd, bytes.array(), bytes.offset(), bytes.length());
+      } else {
+         byte[] value = bytes.toByteArray();
+         tagHandler.onBytes(fieldNumber, fd, value, 0, value.length);
+      }
+   }
+
+   /**
+    * Reads a scalar value and passes it to the typed callback of the handler, without boxing it.
+    */
+   private static void parseScalar(TagHandler tagHandler, int fieldNumber, FieldDescriptor fd, TagReader in) throws IOException {
+      switch (fd.getType()) {
+         case DOUBLE -> tagHandler.onDouble(fieldNumber, fd, in.readDouble());
+         case FLOAT -> tagHandler.onFloat(fieldNumber, fd, in.readFloat());
+         case BOOL -> tagHandler.onBool(fieldNumber, fd, in.readBool());
+         case INT32 -> tagHandler.onInt32(fieldNumber, fd, in.readInt32());
+         case SFIXED32 -> tagHandler.onInt32(fieldNumber, fd, in.readSFixed32());
+         case FIXED32 -> tagHandler.onInt32(fieldNumber, fd, in.readFixed32());
+         case UINT32 -> tagHandler.onInt32(fieldNumber, fd, in.readUInt32());
+         case SINT32 -> tagHandler.onInt32(fieldNumber, fd, in.readSInt32());
+         case INT64 -> tagHandler.onInt64(fieldNumber, fd, in.readInt64());
+         case UINT64 -> tagHandler.onInt64(fieldNumber, fd, in.readUInt64());
+         case FIXED64 -> tagHandler.onInt64(fieldNumber, fd, in.readFixed64());
+         case SFIXED64 -> tagHandler.onInt64(fieldNumber, fd, in.readSFixed64());
+         case SINT64 -> tagHandler.onInt64(fieldNumber, fd, in.readSInt64());
+         case ENUM -> tagHandler.onInt32(fieldNumber, fd, in.readEnum());
+         default ->
+               throw new IOException("Unexpected field type " + fd.getType() + " for field " + fd.getNumber());
+      }
+   }
 }
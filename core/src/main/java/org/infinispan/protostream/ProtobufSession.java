@@ -0,0 +1,184 @@
+package org.infinispan.protostream;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.infinispan.protostream.impl.RandomAccessOutputStreamImpl;
+import org.infinispan.protostream.impl.SerializationContextImpl;
+import org.infinispan.protostream.impl.TagReaderImpl;
+import org.infinispan.protostream.impl.TagWriterImpl;
+
+/**
+ * Reusable state for converting many small messages to and from byte arrays, an opt-in alternative to the equivalent
+ * methods of {@link ProtobufUtil}. A session keeps its writer, reader and output buffer and resets them between calls
+ * instead of allocating new ones, which removes the fixed per-call allocation that dominates for small messages.
+ * <p>
+ * Sessions are not thread-safe. Each thread gets its own for each context with
+ * {@link #current(ImmutableSerializationContext)}. Calls made from within a marshaller while the session is busy do
+ * not reuse anything, and a failed call discards the state it was using.
+ * <p>
+ * Per-thread sessions are meant for pooled platform threads, which make many calls each. A thread creating its first
+ * session takes a lock of the context, and the session may keep an output buffer of up to 1MB until the thread is
+ * gone. Short-lived threads, such as virtual threads created per task, get no reuse from this and should use
+ * {@link ProtobufUtil} directly, or create a session with {@link #ProtobufSession(ImmutableSerializationContext)} and
+ * keep it for the duration of their work.
+ * <p>
+ * The sessions returned by {@code current} are owned by their context and live as long as both the context and the
+ * thread do. A thread only refers to them weakly, so it never keeps a context or its classloader alive, and a thread
+ * switching between contexts keeps one session for each of them.
+ *
+ * @since 6.0.11
+ */
+public final class ProtobufSession {
+
+   // output buffers which grew larger than this are not kept
+   static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+   private static final byte[] EMPTY = new byte[0];
+
+   // a per-thread view of the sessions owned by the contexts, keeping neither the contexts nor the sessions alive
+   private static final ThreadLocal<Map<ImmutableSerializationContext, WeakReference<ProtobufSession>>> SESSIONS =
+         ThreadLocal.withInitial(WeakHashMap::new);
+
+   private final ImmutableSerializationContext ctx;
+
+   private RandomAccessOutputStream out;
+
+   // lazily initialized
+   private TagWriterImpl writer;
+
+   // lazily initialized
+   private TagReaderImpl reader;
+
+   private boolean busy;
+
+   public ProtobufSession(ImmutableSerializationContext ctx) {
+      this.ctx = ctx;
+   }
+
+   /**
+    * Returns the session of the current thread for a context, creating it on first use.
+    */
+   public static ProtobufSession current(ImmutableSerializationContext ctx) {
+      Map<ImmutableSerializationContext, WeakReference<ProtobufSession>> sessions = SESSIONS.get();
+      WeakReference<ProtobufSession> ref = sessions.get(ctx);
+      ProtobufSession session = ref != null ? ref.get() : null;
+      if (session == null) {
+         session = ((SerializationContextImpl) ctx).getSession(Thread.currentThread());
+         sessions.put(ctx, new WeakReference<>(session));
+      }
+      return session;
+   }
+
+   public byte[] toByteArray(Object t) throws IOException {
+      if (busy) {
+         return ProtobufUtil.toByteArray(ctx, t);
+      }
+      busy = true;
+      TagWriterImpl writer = writer();
+      try {
+         ProtobufUtil.write(ctx, writer, t);
+         return out.toByteArray();
+      } catch (Throwable e) {
+         this.writer = null;
+         throw e;
+      } finally {
+         releaseWriter();
+      }
+   }
+
+   public byte[] toWrappedByteArray(Object t) throws IOException {
+      if (busy) {
+         return ProtobufUtil.toWrappedByteArray(ctx, t);
+      }
+      busy = true;
+      TagWriterImpl writer = writer();
+      try {
+         WrappedMessage.write(ctx, writer, t);
+         writer.flush();
+         return out.toByteArray();
+      } catch (Throwable e) {
+         this.writer = null;
+         throw e;
+      } finally {
+         releaseWriter();
+      }
+   }
+
+   public <A> A fromByteArray(byte[] bytes, Class<A> clazz) throws IOException {
+      return fromByteArray(bytes, 0, bytes.length, clazz);
+   }
+
+   public <A> A fromByteArray(byte[] bytes, int offset, int length, Class<A> clazz) throws IOException {
+      if (busy) {
+         return ProtobufUtil.fromByteArray(ctx, bytes, offset, length, clazz);
+      }
+      busy = true;
+      try {
+         return ProtobufUtil.readFrom(reader(bytes, offset, length), clazz);
+      } catch (Throwable e) {
+         reader = null;
+         throw e;
+      } finally {
+         releaseReader();
+      }
+   }
+
+   public <A> A fromWrappedByteArray(byte[] bytes) throws IOException {
+      return fromWrappedByteArray(bytes, 0, bytes.length);
+   }
+
+   public <A> A fromWrappedByteArray(byte[] bytes, int offset, int length) throws IOException {
+      if (busy) {
+         return ProtobufUtil.fromWrappedByteArray(ctx, bytes, offset, length);
+      }
+      busy = true;
+      try {
+         return WrappedMessage.read(ctx, reader(bytes, offset, length));
+      } catch (Throwable e) {
+         reader = null;
+         throw e;
+      } finally {
+         releaseReader();
+      }
+   }
+
+   private TagWriterImpl writer() {
+      if (writer == null) {
+         out = new RandomAccessOutputStreamImpl(ProtobufUtil.DEFAULT_ARRAY_BUFFER_SIZE);
+         writer = TagWriterImpl.newInstance(ctx, out);
+      }
+      return writer;
+   }
+
+   private void releaseWriter() {
+      if (writer != null) {
+         if (out.getLongPosition() > MAX_RETAINED_BUFFER_SIZE) {
+            writer = null;
+         } else {
+            out.reset();
+            writer.reset();
+         }
+      }
+      busy = false;
+   }
+
+   private TagReaderImpl reader(byte[] bytes, int offset, int length) {
+      if (reader == null) {
+         reader = TagReaderImpl.newInstance(ctx, bytes, offset, length);
+      } else {
+         reader.reset(bytes, offset, length);
+      }
+      return reader;
+   }
+
+   private void releaseReader() {
+      if (reader != null) {
+         // do not keep the array alive
+         reader.reset(EMPTY, 0, 0);
+      }
+      busy = false;
+   }
+}
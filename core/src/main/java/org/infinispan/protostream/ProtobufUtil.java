@@ -3,8 +3,12 @@ package org.infinispan.protostream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 import org.infinispan.protostream.config.Configuration;
@@ -73,7 +77,7 @@ public final class ProtobufUtil {
       return out.getWrittenBytes();
    }
 
-   private static <A> void write(ImmutableSerializationContext ctx, TagWriterImpl out, A t) throws IOException {
+   static <A> void write(ImmutableSerializationContext ctx, TagWriterImpl out, A t) throws IOException {
       Objects.requireNonNull(t, "Object to marshall cannot be null");
       BaseMarshallerDelegate<A> marshallerDelegate = ((SerializationContextImpl) ctx).getMarshallerDelegate(t);
       marshallerDelegate.marshall(out, null, t);
@@ -89,19 +93,37 @@ public final class ProtobufUtil {
       write(ctx, writer, t);
    }
 
+   /**
+    * Writes the message to a channel with a single gathering write, without copying large {@code bytes} fields.
+    *
+    * @throws java.nio.channels.IllegalBlockingModeException if the channel is not in blocking mode
+    */
+   public static void writeTo(ImmutableSerializationContext ctx, GatheringByteChannel out, Object t) throws IOException {
+      write(ctx, TagWriterImpl.newInstance(ctx, out), t);
+   }
+
    public static byte[] toByteArray(ImmutableSerializationContext ctx, Object t) throws IOException {
       RandomAccessOutputStream baos = new RandomAccessOutputStreamImpl(DEFAULT_ARRAY_BUFFER_SIZE);
       writeTo(ctx, baos, t);
       return baos.toByteArray();
    }
 
+   /**
+    * Serializes to an array of the exact size of the message, with no wasted capacity. The marshaller is invoked twice,
+    * first to compute the sizes of the message and of its nested messages and then to write it, so it must produce the
+    * same output both times.
+    */
+   public static byte[] toExactByteArray(ImmutableSerializationContext ctx, Object t) throws IOException {
+      return TagWriterImpl.writeExactSize(ctx, out -> write(ctx, out, t));
+   }
+
    public static ByteBuffer toByteBuffer(ImmutableSerializationContext ctx, Object t) throws IOException {
       RandomAccessOutputStream baos = new RandomAccessOutputStreamImpl(DEFAULT_ARRAY_BUFFER_SIZE);
       writeTo(ctx, baos, t);
       return baos.getByteBuffer();
    }
 
-   private static <A> A readFrom(TagReaderImpl in, Class<A> clazz) throws IOException {
+   static <A> A readFrom(TagReaderImpl in, Class<A> clazz) throws IOException {
       if (clazz.isEnum()) {
          throw new IllegalArgumentException("The Class argument must not be an Enum");
       }
@@ -114,7 +136,9 @@ public final class ProtobufUtil {
     * as we need to know how many bytes in the stream to read from
     */
    public static <A> A readFrom(ImmutableSerializationContext ctx, InputStream in, Class<A> clazz) throws IOException {
-      return readFrom(TagReaderImpl.newInstance(ctx, in), clazz);
+      try (TagReaderImpl reader = TagReaderImpl.newInstance(ctx, in)) {
+         return readFrom(reader, clazz);
+      }
    }
 
    public static <A> A readFrom(ImmutableSerializationContext ctx, InputStream in, int length, Class<A> clazz) throws IOException {
@@ -160,7 +184,9 @@ public final class ProtobufUtil {
     * as we need to know how many bytes in the stream to read from
     */
    public static <A> A fromWrappedStream(ImmutableSerializationContext ctx, InputStream in) throws IOException {
-      return WrappedMessage.read(ctx, TagReaderImpl.newInstance(ctx, in));
+      try (TagReaderImpl reader = TagReaderImpl.newInstance(ctx, in)) {
+         return WrappedMessage.read(ctx, reader);
+      }
    }
 
    public static <A> A fromWrappedStream(ImmutableSerializationContext ctx, InputStream in, int exactSize) throws IOException {
@@ -179,6 +205,13 @@ public final class ProtobufUtil {
       return baos.toByteArray();
    }
 
+   /**
+    * Like {@link #toExactByteArray} but the message is wrapped, as done by {@link #toWrappedByteArray}.
+    */
+   public static byte[] toExactWrappedByteArray(ImmutableSerializationContext ctx, Object t) throws IOException {
+      return TagWriterImpl.writeExactSize(ctx, out -> WrappedMessage.write(ctx, out, t));
+   }
+
    public static ByteBuffer toWrappedByteBuffer(ImmutableSerializationContext ctx, Object t) throws IOException {
       RandomAccessOutputStream baos = new RandomAccessOutputStreamImpl(DEFAULT_ARRAY_BUFFER_SIZE);
       WrappedMessage.write(ctx, TagWriterImpl.newInstance(ctx, baos), t);
@@ -194,6 +227,12 @@ public final class ProtobufUtil {
       WrappedMessage.write(ctx, writer, t);
    }
 
+   public static void toWrappedStream(ImmutableSerializationContext ctx, GatheringByteChannel out, Object t) throws IOException {
+      TagWriter writer = TagWriterImpl.newInstance(ctx, out);
+      WrappedMessage.write(ctx, writer, t);
+      writer.flush();
+   }
+
    /**
     * @deprecated since 5.0.10 Please use {@link #toWrappedStream(ImmutableSerializationContext, OutputStream, Object)} with a {@link java.io.BufferedOutputStream} instead
     */
@@ -229,7 +268,67 @@ public final class ProtobufUtil {
       return JsonUtils.toCanonicalJSON(ctx, bytes, prettyPrint);
    }
 
+   /**
+    * Writes the <a href="https://developers.google.com/protocol-buffers/docs/proto3#json">canonical JSON
+    * representation</a> of a Protobuf encoded message to an {@link Appendable}, such as a {@link java.io.Writer}. The
+    * JSON is written while the message is parsed, it is never held in memory as a whole.
+    *
+    * @param ctx         the serialization context
+    * @param bytes       the Protobuf encoded message bytes to parse
+    * @param out         the output of the JSON
+    * @param prettyPrint indicates if the JSON output should use a 'pretty' human-readable format or a compact format
+    * @throws IOException if I/O operations fail
+    */
+   public static void toCanonicalJSON(ImmutableSerializationContext ctx, byte[] bytes, Appendable out, boolean prettyPrint) throws IOException {
+      JsonUtils.toCanonicalJSON(ctx, bytes, out, prettyPrint);
+   }
+
+   /**
+    * Writes the <a href="https://developers.google.com/protocol-buffers/docs/proto3#json">canonical JSON
+    * representation</a> of a Protobuf encoded message to a stream, encoded in UTF-8. The JSON is written while the
+    * message is parsed, it is never held in memory as a whole. The stream is flushed but not closed.
+    *
+    * @param ctx         the serialization context
+    * @param bytes       the Protobuf encoded message bytes to parse
+    * @param out         the stream to write the JSON to
+    * @param prettyPrint indicates if the JSON output should use a 'pretty' human-readable format or a compact format
+    * @throws IOException if I/O operations fail
+    */
+   public static void toCanonicalJSONStream(ImmutableSerializationContext ctx, byte[] bytes, OutputStream out, boolean prettyPrint) throws IOException {
+      Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+      JsonUtils.toCanonicalJSON(ctx, bytes, writer, prettyPrint);
+      writer.flush();
+   }
+
    public static byte[] fromCanonicalJSON(ImmutableSerializationContext ctx, Reader reader) throws IOException {
       return JsonUtils.fromCanonicalJSON(ctx, reader);
    }
+
+   /**
+    * Converts the canonical JSON read from a stream, encoded in UTF-8, to the Protobuf encoding. The bytes are written
+    * directly to the output, starting at its current position, and the lengths of nested messages are patched in place
+    * instead of buffering each message separately. The input stream is not closed.
+    *
+    * @param ctx the serialization context
+    * @param in  the stream to read the JSON from
+    * @param out the output to write the Protobuf encoded bytes to
+    * @throws IOException if I/O operations fail
+    */
+   public static void fromCanonicalJSON(ImmutableSerializationContext ctx, InputStream in, RandomAccessOutputStream out) throws IOException {
+      JsonUtils.fromCanonicalJSON(ctx, in, out);
+   }
+
+   /**
+    * Converts the canonical JSON in the remaining bytes of the buffer, encoded in UTF-8, to the Protobuf encoding. The
+    * bytes are written directly to the output, starting at its current position. The position of the buffer is not
+    * modified.
+    *
+    * @param ctx the serialization context
+    * @param in  the buffer to read the JSON from
+    * @param out the output to write the Protobuf encoded bytes to
+    * @throws IOException if I/O operations fail
+    */
+   public static void fromCanonicalJSON(ImmutableSerializationContext ctx, ByteBuffer in, RandomAccessOutputStream out) throws IOException {
+      JsonUtils.fromCanonicalJSON(ctx, in, out);
+   }
 }
@@ -5,10 +5,15 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import org.infinispan.protostream.impl.ChunkedRandomAccessOutputStream;
 import org.infinispan.protostream.impl.RandomAccessOutputStreamImpl;
 
 /**
  * A byte output stream that exposes positional arguments in order to allow existing bytes in the stream to be overwritten.
+ * <p>
+ * Since 6.0.11 every positional method has a {@code long} variant, so that implementations like {@link #chunked(int)}
+ * can hold more than 2GB. The {@code long} variants are default methods that delegate to the {@code int} ones, so
+ * implementations written against earlier releases keep working up to 2GB.
  *
  * @author Ryan Emerson
  * @since 6.0
@@ -17,21 +22,56 @@ public interface RandomAccessOutputStream extends Closeable {
 
    /**
     * @return the position in the stream where the next {@link #write(int)} will be written.
+    * @deprecated since 6.0.11, use {@link #getLongPosition()} instead
     */
+   @Deprecated
    int getPosition();
 
+   /**
+    * @return the position in the stream where the next {@link #write(int)} will be written.
+    * @since 6.0.11
+    */
+   default long getLongPosition() {
+      return getPosition();
+   }
+
    /**
     * Set the position in the stream where the next {@link #write(int)} will be written.
+    *
+    * @deprecated since 6.0.11, use {@link #setPosition(long)} instead
     */
+   @Deprecated
    void setPosition(int position);
 
+   /**
+    * Set the position in the stream where the next {@link #write(int)} will be written.
+    *
+    * @throws IllegalArgumentException if the position is negative or beyond what the stream can hold
+    * @since 6.0.11
+    */
+   default void setPosition(long position) {
+      setPosition(toIntPosition(position));
+   }
+
    /**
     * Ensure that the stream has sufficient capacity to hold at least `capacity` bytes.
     *
     * @param capacity the minimum number of bytes that should be writeable
+    * @deprecated since 6.0.11, use {@link #ensureCapacity(long)} instead
     */
+   @Deprecated
    void ensureCapacity(int capacity);
 
+   /**
+    * Ensure that the stream has sufficient capacity to hold at least `capacity` bytes.
+    *
+    * @param capacity the minimum number of bytes that should be writeable
+    * @since 6.0.11
+    */
+   default void ensureCapacity(long capacity) {
+      ensureCapacity(toIntPosition(capacity));
+   }
+
    /**
     * Reset the position of the stream to zero, so that all currently accumulated output in the stream is discarded.
     * The output stream can then be used again, reusing the already allocated buffer space.
@@ -42,27 +82,40 @@ public interface RandomAccessOutputStream extends Closeable {
 
    /**
     * @return a {@link ByteBuffer} representation of the stream
+    * @throws IllegalStateException if the stream holds more bytes than a buffer can
     */
    ByteBuffer getByteBuffer();
 
    /**
-    * @return a trimmed <code>byte[]</code> instance based upon the current {@link #getPosition()} of the array
+    * @return a trimmed <code>byte[]</code> instance based upon the current {@link #getLongPosition()} of the array
+    * @throws IllegalStateException if the stream holds more bytes than an array can
     */
    byte[] toByteArray();
 
    /**
     * @param position the position in the stream to read the byte from
     * @return the byte associated with the specified position
+    * @deprecated since 6.0.11, use {@link #get(long)} instead
     */
+   @Deprecated
    byte get(int position);
 
+   /**
+    * @param position the position in the stream to read the byte from
+    * @return the byte associated with the specified position
+    * @since 6.0.11
+    */
+   default byte get(long position) {
+      return get(toIntPosition(position));
+   }
+
    /**
     * Write a single byte to the head of the stream.
     *
     * @param b the byte to be written
     */
    default void write(int b) throws IOException {
-      write(getPosition(), b);
+      write(getLongPosition(), b);
    }
 
    /**
@@ -82,7 +135,7 @@ public interface RandomAccessOutputStream extends Closeable {
     * @param len the number of bytes from the array to be written
     */
    default void write(byte[] b, int off, int len) throws IOException {
-      write(getPosition(), b, off, len);
+      write(getLongPosition(), b, off, len);
    }
 
    /**
@@ -90,19 +143,45 @@ public interface RandomAccessOutputStream extends Closeable {
     *
     * @param position the position in the stream to write the byte to
     * @param b the byte to be written
+    * @deprecated since 6.0.11, use {@link #write(long, int)} instead
     */
+   @Deprecated
    void write(int position, int b) throws IOException;
 
+   /**
+    * Write a single byte to the specified position in the stream.
+    *
+    * @param position the position in the stream to write the byte to
+    * @param b the byte to be written
+    * @since 6.0.11
+    */
+   default void write(long position, int b) throws IOException {
+      write(toIntPosition(position), b);
+   }
+
    /**
     * Write all bytes to the specified position in the stream.
     *
     * @param position the position in the stream to write the bytes to
     * @param b the array of bytes to be written
+    * @deprecated since 6.0.11, use {@link #write(long, byte[])} instead
     */
+   @Deprecated
    default void write(int position, byte[] b) throws IOException {
       write(position, b, 0, b.length);
    }
 
+   /**
+    * Write all bytes to the specified position in the stream.
+    *
+    * @param position the position in the stream to write the bytes to
+    * @param b the array of bytes to be written
+    * @since 6.0.11
+    */
+   default void write(long position, byte[] b) throws IOException {
+      write(position, b, 0, b.length);
+   }
+
    /**
     * Write all bytes to the specified position in the stream.
     *
@@ -110,17 +189,45 @@ public interface RandomAccessOutputStream extends Closeable {
     * @param b the array of bytes to be written
     * @param off the offset within the array to be written
     * @param len the number of bytes from the array to be written
+    * @deprecated since 6.0.11, use {@link #write(long, byte[], int, int)} instead
     */
+   @Deprecated
    void write(int position, byte[] b, int off, int len) throws IOException;
 
+   /**
+    * Write all bytes to the specified position in the stream.
+    *
+    * @param position the position in the stream to write the bytes to
+    * @param b the array of bytes to be written
+    * @param off the offset within the array to be written
+    * @param len the number of bytes from the array to be written
+    * @since 6.0.11
+    */
+   default void write(long position, byte[] b, int off, int len) throws IOException {
+      write(toIntPosition(position), b, off, len);
+   }
+
    /**
     * Moves bytes forward in the internal data stream.
     * @param startPos the starting position of the existing data
     * @param length how many bytes to be moved
     * @param newPos the new starting position of the data
+    * @deprecated since 6.0.11, use {@link #move(long, long, long)} instead
     */
+   @Deprecated
    void move(int startPos, int length, int newPos);
 
+   /**
+    * Moves bytes forward in the internal data stream.
+    * @param startPos the starting position of the existing data
+    * @param length how many bytes to be moved
+    * @param newPos the new starting position of the data
+    * @since 6.0.11
+    */
+   default void move(long startPos, long length, long newPos) {
+      move(toIntPosition(startPos), toIntPosition(length), toIntPosition(newPos));
+   }
+
    /**
     * Write all bytes in this stream to the provided {@link DataOutput} stream
     * @param output the stream to write this stream's bytes to
@@ -136,7 +243,9 @@ public interface RandomAccessOutputStream extends Closeable {
     * @param position The position to start writing.
     * @param value    The 32-bit value to write.
     * @throws IOException if an IO error occurs.
+    * @deprecated since 6.0.11, use {@link #writeFixed32Direct(long, int)} instead
     */
+   @Deprecated
    default void writeFixed32Direct(int position, int value) throws IOException {
       write(position, (byte) (value));
       write(position + 1, (byte) (value >> 8));
@@ -144,6 +253,24 @@ public interface RandomAccessOutputStream extends Closeable {
       write(position + 3, (byte) (value >> 24));
    }
 
+   /**
+    * Write a 32-bit value, starting into {@code position} using little endian byte order.
+    * <p>
+    * The implementation does not require updating the internal position as the caller should invoke
+    * {@link #setPosition(long)} at some point after this method invocation.
+    *
+    * @param position The position to start writing.
+    * @param value    The 32-bit value to write.
+    * @throws IOException if an IO error occurs.
+    * @since 6.0.11
+    */
+   default void writeFixed32Direct(long position, int value) throws IOException {
+      write(position, (byte) (value));
+      write(position + 1, (byte) (value >> 8));
+      write(position + 2, (byte) (value >> 16));
+      write(position + 3, (byte) (value >> 24));
+   }
+
    /**
     * Write a 64-bit value, starting into {@code position} using little endian byte order.
     * <p>
@@ -153,7 +280,9 @@ public interface RandomAccessOutputStream extends Closeable {
     * @param position The position to start writing.
     * @param value    The 64-bit value to write.
     * @throws IOException if an IO error occurs.
+    * @deprecated since 6.0.11, use {@link #writeFixed64Direct(long, long)} instead
     */
+   @Deprecated
    default void writeFixed64Direct(int position, long value) throws IOException {
       write(position, (byte) (value));
       write(position + 1, (byte) (value >> 8));
@@ -165,7 +294,46 @@ public interface RandomAccessOutputStream extends Closeable {
       write(position + 7, (byte) (value >> 56));
    }
 
+   /**
+    * Write a 64-bit value, starting into {@code position} using little endian byte order.
+    * <p>
+    * The implementation does not require updating the internal position as the caller should invoke
+    * {@link #setPosition(long)} at some point after this method invocation.
+    *
+    * @param position The position to start writing.
+    * @param value    The 64-bit value to write.
+    * @throws IOException if an IO error occurs.
+    * @since 6.0.11
+    */
+   default void writeFixed64Direct(long position, long value) throws IOException {
+      write(position, (byte) (value));
+      write(position + 1, (byte) (value >> 8));
+      write(position + 2, (byte) (value >> 16));
+      write(position + 3, (byte) (value >> 24));
+      write(position + 4, (byte) (value >> 32));
+      write(position + 5, (byte) (value >> 40));
+      write(position + 6, (byte) (value >> 48));
+      write(position + 7, (byte) (value >> 56));
+   }
+
+   private static int toIntPosition(long position) {
+      if (position < 0 || position > Integer.MAX_VALUE) {
+         throw new IllegalArgumentException("Position " + position + " cannot be addressed by this stream, use RandomAccessOutputStream.chunked instead");
+      }
+      return (int) position;
+   }
+
    static RandomAccessOutputStream withCapacity(int capacity) {
       return new RandomAccessOutputStreamImpl(capacity);
    }
+
+   /**
+    * Creates a stream that stores its bytes in a list of fixed size chunks, for output that can exceed 2GB. Growing
+    * the stream allocates new chunks and never copies the bytes already written.
+    *
+    * @param chunkSize the size of the chunks, rounded up to a power of two
+    */
+   static RandomAccessOutputStream chunked(int chunkSize) {
+      return new ChunkedRandomAccessOutputStream(chunkSize);
+   }
 }
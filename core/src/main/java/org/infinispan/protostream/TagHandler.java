@@ -1,5 +1,6 @@
 package org.infinispan.protostream;
 
+import java.util.Arrays;
 
 import org.infinispan.protostream.descriptors.FieldDescriptor;
 import org.infinispan.protostream.descriptors.GenericDescriptor;
@@ -29,6 +30,71 @@ public interface TagHandler {
    default void onTag(int fieldNumber, FieldDescriptor fieldDescriptor, Object tagValue) {
    }
 
+   /**
+    * A field of type {@code int32}, {@code uint32}, {@code sint32}, {@code fixed32}, {@code sfixed32} or {@code enum},
+    * or an unknown {@code fixed32} field. Implementations that override this avoid boxing the value. Defaults to
+    * {@link #onTag(int, FieldDescriptor, Object)}.
+    *
+    * @param fieldNumber     the field number
+    * @param fieldDescriptor the field descriptor, or {@code null} if this is an unknown field.
+    * @since 6.0.11
+    */
+   default void onInt32(int fieldNumber, FieldDescriptor fieldDescriptor, int value) {
+      onTag(fieldNumber, fieldDescriptor, value);
+   }
+
+   /**
+    * A field of type {@code int64}, {@code uint64}, {@code sint64}, {@code fixed64} or {@code sfixed64}, or an unknown
+    * {@code varint} or {@code fixed64} field. Defaults to {@link #onTag(int, FieldDescriptor, Object)}.
+    *
+    * @param fieldNumber     the field number
+    * @param fieldDescriptor the field descriptor, or {@code null} if this is an unknown field.
+    * @since 6.0.11
+    */
+   default void onInt64(int fieldNumber, FieldDescriptor fieldDescriptor, long value) {
+      onTag(fieldNumber, fieldDescriptor, value);
+   }
+
+   /**
+    * A field of type {@code float}. Defaults to {@link #onTag(int, FieldDescriptor, Object)}.
+    *
+    * @since 6.0.11
+    */
+   default void onFloat(int fieldNumber, FieldDescriptor fieldDescriptor, float value) {
+      onTag(fieldNumber, fieldDescriptor, value);
+   }
+
+   /**
+    * A field of type {@code double}. Defaults to {@link #onTag(int, FieldDescriptor, Object)}.
+    *
+    * @since 6.0.11
+    */
+   default void onDouble(int fieldNumber, FieldDescriptor fieldDescriptor, double value) {
+      onTag(fieldNumber, fieldDescriptor, value);
+   }
+
+   /**
+    * A field of type {@code bool}. Defaults to {@link #onTag(int, FieldDescriptor, Object)}.
+    *
+    * @since 6.0.11
+    */
+   default void onBool(int fieldNumber, FieldDescriptor fieldDescriptor, boolean value) {
+      onTag(fieldNumber, fieldDescriptor, value);
+   }
+
+   /**
+    * A field of type {@code bytes}, or an unknown length delimited field. The bytes are a range of the input being
+    * parsed, so they must be copied if needed after the method returns. Defaults to
+    * {@link #onTag(int, FieldDescriptor, Object)}, with a copy of the range.
+    *
+    * @param fieldNumber     the field number
+    * @param fieldDescriptor the field descriptor, or {@code null} if this is an unknown field.
+    * @since 6.0.11
+    */
+   default void onBytes(int fieldNumber, FieldDescriptor fieldDescriptor, byte[] buffer, int offset, int length) {
+      onTag(fieldNumber, fieldDescriptor, Arrays.copyOfRange(buffer, offset, offset + length));
+   }
+
    /**
     * Start of a nested message.
     *
@@ -57,6 +57,20 @@ public interface TagReader {
     */
    ByteBuffer readByteBuffer() throws IOException;
 
+   /**
+    * Reads a {@code bytes} or {@code string} value into a view over the input, without copying it when the input is
+    * an array or a buffer. The view is only valid as long as the input is not modified. Strings can be compared and
+    * hashed through the view without decoding them.
+    *
+    * @param view the view to point to the value, which is reused to avoid allocating one per value
+    * @return the view
+    * @since 6.0.11
+    */
+   default BytesView readBytesView(BytesView view) throws IOException {
+      byte[] bytes = readByteArray();
+      return view.set(bytes, 0, bytes.length);
+   }
+
    double readDouble() throws IOException;
 
    float readFloat() throws IOException;
@@ -27,6 +27,27 @@ public interface TagWriter extends AutoCloseable {
 
    void writeVarint64(long value) throws IOException;
 
+   /**
+    * Writes a 32 bit value in little endian order, without a tag. Implementations should override this to avoid
+    * allocating the bytes.
+    *
+    * @since 6.0.11
+    */
+   default void writeRawFixed32(int value) throws IOException {
+      writeRawBytes(new byte[]{(byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24)}, 0, 4);
+   }
+
+   /**
+    * Writes a 64 bit value in little endian order, without a tag. Implementations should override this to avoid
+    * allocating the bytes.
+    *
+    * @since 6.0.11
+    */
+   default void writeRawFixed64(long value) throws IOException {
+      writeRawBytes(new byte[]{(byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24),
+            (byte) (value >> 32), (byte) (value >> 40), (byte) (value >> 48), (byte) (value >> 56)}, 0, 8);
+   }
+
    void writeRawBytes(byte[] value, int offset, int length) throws IOException;
    // end low level ops
 
@@ -70,7 +91,8 @@ public interface TagWriter extends AutoCloseable {
 
    /**
     * Used to write a sub message that can be optimized by implementation. When the sub writer is complete, flush
-    * should also be invoked to ensure all data is pushed to the parent writer as necessary.
+    * should also be invoked to ensure all data is pushed to the parent writer as necessary. The elements of a packed
+    * repeated field are written the same way, using the low level ops that write values without a tag.
     * @param number the field type number
     * @param nested if the subWriter is nested in another message
     * @return a writer that will handle the nested message writing
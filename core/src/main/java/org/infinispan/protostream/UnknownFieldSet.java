@@ -3,7 +3,7 @@ package org.infinispan.protostream;
 import java.io.IOException;
 import java.io.Serializable;
 
-import org.infinispan.protostream.impl.UnknownFieldSetImpl;
+import org.infinispan.protostream.impl.RawUnknownFieldSet;
 
 /**
  * {@code UnknownFieldSet} keeps track of fields seen during parsing of a protocol message but whose field numbers are
@@ -24,8 +24,12 @@ import org.infinispan.protostream.impl.UnknownFieldSetImpl;
  */
 public interface UnknownFieldSet extends Serializable {
 
+   /**
+    * Creates an empty set, which keeps the fields in their encoded form and writes them back in the order they were
+    * read.
+    */
    static UnknownFieldSet newInstance() {
-      return new UnknownFieldSetImpl();
+      return new RawUnknownFieldSet();
    }
 
    /**
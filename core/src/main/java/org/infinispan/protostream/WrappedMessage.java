@@ -12,6 +12,7 @@ import java.util.Objects;
 import org.infinispan.protostream.containers.ElementContainerAdapter;
 import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
 import org.infinispan.protostream.containers.IterableElementContainerAdapter;
+import org.infinispan.protostream.containers.PrimitiveElementContainerAdapter;
 import org.infinispan.protostream.descriptors.Descriptor;
 import org.infinispan.protostream.descriptors.FieldDescriptor;
 import org.infinispan.protostream.descriptors.GenericDescriptor;
@@ -229,6 +230,13 @@ public final class WrappedMessage {
 
    public static final int WRAPPED_CONTAINER_MESSAGE = 30;
 
+   /**
+    * The (optional) packed elements of a container of primitives, see {@link PrimitiveElementContainerAdapter}. Only
+    * written if {@link org.infinispan.protostream.config.Configuration#packPrimitiveContainerElements()} is enabled, as
+    * only releases 6.0.11 and later can read it, but always accepted when reading.
+    */
+   public static final int WRAPPED_CONTAINER_ELEMENTS = 31;
+
    public static final String CONTAINER_SIZE_CONTEXT_PARAM = "containerSize";
 
    /**
@@ -304,20 +312,33 @@ public final class WrappedMessage {
          out.flush();
          return;
       }
-      // This is either a message type or an enum. Try to lookup a marshaller.
-      BaseMarshallerDelegate<T> marshallerDelegate = ((SerializationContextImpl) ctx).getMarshallerDelegate(t);
+      // This is either a message type or an enum. Try to lookup a marshaller, with its type discriminator already encoded.
+      SerializationContextImpl.WrappedType wrappedType = ((SerializationContextImpl) ctx).getWrappedType(t.getClass());
+      BaseMarshallerDelegate<T> marshallerDelegate;
+      byte[] header;
+      if (wrappedType != null) {
+         marshallerDelegate = (BaseMarshallerDelegate<T>) wrappedType.marshallerDelegate();
+         header = wrappedType.header();
+      } else {
+         marshallerDelegate = ((SerializationContextImpl) ctx).getMarshallerDelegate(t);
+         header = null;
+      }
       BaseMarshaller<T> marshaller = marshallerDelegate.getMarshaller();
 
       if (marshaller instanceof ElementContainerAdapter) {
-         writeContainer(ctx, out, marshallerDelegate, t);
+         writeContainer(ctx, out, marshallerDelegate, header, t);
       } else {
          // Write the type discriminator, either the fully qualified name or a numeric type id.
-         String typeName = marshaller.getTypeName();
-         int typeId = mapTypeIdOut(typeName, ctx);
-         if (typeId < 0) {
-            out.writeString(WRAPPED_TYPE_NAME, typeName);
+         if (header != null) {
+            out.writeRawBytes(header, 0, header.length);
          } else {
-            out.writeUInt32(WRAPPED_TYPE_ID, typeId);
+            String typeName = marshaller.getTypeName();
+            int typeId = mapTypeIdOut(typeName, ctx);
+            if (typeId < 0) {
+               out.writeString(WRAPPED_TYPE_NAME, typeName);
+            } else {
+               out.writeUInt32(WRAPPED_TYPE_ID, typeId);
+            }
          }
 
          if (t.getClass().isEnum()) {
@@ -331,15 +352,18 @@ public final class WrappedMessage {
       out.flush();
    }
 
-   private static void writeContainer(ImmutableSerializationContext ctx, TagWriter out, BaseMarshallerDelegate marshallerDelegate, Object container) throws IOException {
+   private static void writeContainer(ImmutableSerializationContext ctx, TagWriter out, BaseMarshallerDelegate marshallerDelegate, byte[] header, Object container) throws IOException {
       BaseMarshaller containerMarshaller = marshallerDelegate.getMarshaller();
-      String typeName = containerMarshaller.getTypeName();
-      int typeId = mapTypeIdOut(typeName, ctx);
-
-      if (typeId < 0) {
-         out.writeString(WRAPPED_CONTAINER_TYPE_NAME, typeName);
+      if (header != null) {
+         out.writeRawBytes(header, 0, header.length);
       } else {
-         out.writeUInt32(WRAPPED_CONTAINER_TYPE_ID, typeId);
+         String typeName = containerMarshaller.getTypeName();
+         int typeId = mapTypeIdOut(typeName, ctx);
+         if (typeId < 0) {
+            out.writeString(WRAPPED_CONTAINER_TYPE_NAME, typeName);
+         } else {
+            out.writeUInt32(WRAPPED_CONTAINER_TYPE_ID, typeId);
+         }
       }
 
       int containerSize = ((ElementContainerAdapter) containerMarshaller).getNumElements(container);
@@ -349,6 +373,14 @@ public final class WrappedMessage {
          marshallerDelegate.marshall(nestedCtx, null, container);
       }
 
+      if (containerMarshaller instanceof PrimitiveElementContainerAdapter && containerSize > 0
+            && ctx.getConfiguration().packPrimitiveContainerElements()) {
+         // the elements of a primitive container are written as a single packed block instead of one by one
+         try (TagWriter elementsWriter = out.subWriter(WRAPPED_CONTAINER_ELEMENTS, false)) {
+            ((PrimitiveElementContainerAdapter) containerMarshaller).writeElements(container, elementsWriter);
+         }
+         return;
+      }
 
       if (ctx.getConfiguration().wrapCollectionElements()) {
          writeContainerWrappingElements(containerMarshaller, containerSize, container, ctx, out);
@@ -411,7 +443,11 @@ public final class WrappedMessage {
    }
 
    private static <T> T readMessage(ImmutableSerializationContext ctx, TagReader in, boolean nulls) throws IOException {
-      ValueOrTag<T> primitiveValue = tryReadPrimitive(in, nulls);
+      return readMessage(ctx, in, in.readTag(), nulls);
+   }
+
+   private static <T> T readMessage(ImmutableSerializationContext ctx, TagReader in, int tag, boolean nulls) throws IOException {
+      ValueOrTag<T> primitiveValue = tryReadPrimitive(tag, in, nulls);
       if (primitiveValue.hasValue()) {
          return primitiveValue.getValue();
       }
@@ -420,8 +456,7 @@ public final class WrappedMessage {
       return readCustomObject(primitiveValue.getTag(), ctx, in);
    }
 
-   private static <T> ValueOrTag<T> tryReadPrimitive(TagReader in, boolean nulls) throws IOException {
-      var tag = in.readTag();
+   private static <T> ValueOrTag<T> tryReadPrimitive(int tag, TagReader in, boolean nulls) throws IOException {
       Object value = null;
       switch (tag) {
          case WRAPPED_EMPTY << WireType.TAG_TYPE_NUM_BITS | WireType.WIRETYPE_VARINT: {
@@ -677,24 +712,39 @@ public final class WrappedMessage {
          throw new IllegalStateException("The unmarshalled container must not be null");
       }
 
-      if (ctx.getConfiguration().wrapCollectionElements()) {
-         readContainerWithWrappedElements(containerMarshaller, containerSize, container, ctx, in);
+      if (containerSize == 0) {
+         return container;
+      }
+
+      // the elements follow either packed in a single field or one by one, starting with the tag read here
+      int firstTag = in.readTag();
+      if (firstTag == (WRAPPED_CONTAINER_ELEMENTS << WireType.TAG_TYPE_NUM_BITS | WireType.WIRETYPE_LENGTH_DELIMITED)) {
+         if (!(containerMarshaller instanceof PrimitiveElementContainerAdapter adapter)) {
+            throw new IllegalStateException("The unmarshaller is not a primitive container adapter : " + containerMarshaller.getJavaClass().getName());
+         }
+         TagReaderImpl elementsInput = TagReaderImpl.newNestedInstance((ProtobufTagMarshaller.ReadContext) in, in.readByteBuffer());
+         adapter.readElements(container, containerSize, elementsInput);
+         if (!elementsInput.isAtEnd()) {
+            throw new IOException("Invalid WrappedMessage encoding.");
+         }
+      } else if (ctx.getConfiguration().wrapCollectionElements()) {
+         readContainerWithWrappedElements(containerMarshaller, containerSize, container, ctx, in, firstTag);
       } else {
-         readContainerWithoutWrappedElements(containerMarshaller, containerSize, container, ctx, in);
+         readContainerWithoutWrappedElements(containerMarshaller, containerSize, container, ctx, in, firstTag);
       }
 
       return container;
    }
 
    private static void readContainerWithWrappedElements(BaseMarshaller<?> containerMarshaller, int containerSize,
-                                                        Object container, ImmutableSerializationContext ctx, TagReader in) throws IOException {
+                                                        Object container, ImmutableSerializationContext ctx, TagReader in, int firstTag) throws IOException {
       if (containerMarshaller instanceof IterableElementContainerAdapter adapter) {
          for (int i = 0; i < containerSize; i++) {
-            adapter.appendElement(container, readContainerElementWrapped(ctx, in));
+            adapter.appendElement(container, readContainerElementWrapped(ctx, in, i == 0 ? firstTag : in.readTag()));
          }
       } else if (containerMarshaller instanceof IndexedElementContainerAdapter adapter) {
          for (int i = 0; i < containerSize; i++) {
-            adapter.setElement(container, i, readContainerElementWrapped(ctx, in));
+            adapter.setElement(container, i, readContainerElementWrapped(ctx, in, i == 0 ? firstTag : in.readTag()));
          }
       } else {
          throw new IllegalStateException("Unknown container adapter kind : " + containerMarshaller.getJavaClass().getName());
@@ -702,27 +752,26 @@ public final class WrappedMessage {
    }
 
    private static void readContainerWithoutWrappedElements(BaseMarshaller<?> containerMarshaller, int containerSize,
-                                                           Object container, ImmutableSerializationContext ctx, TagReader in) throws IOException {
+                                                           Object container, ImmutableSerializationContext ctx, TagReader in, int firstTag) throws IOException {
       if (containerMarshaller instanceof IterableElementContainerAdapter adapter) {
          for (int i = 0; i < containerSize; i++) {
-            adapter.appendElement(container, readMessage(ctx, in, true));
+            adapter.appendElement(container, readMessage(ctx, in, i == 0 ? firstTag : in.readTag(), true));
          }
       } else if (containerMarshaller instanceof IndexedElementContainerAdapter adapter) {
          for (int i = 0; i < containerSize; i++) {
-            adapter.setElement(container, i, readMessage(ctx, in, true));
+            adapter.setElement(container, i, readMessage(ctx, in, i == 0 ? firstTag : in.readTag(), true));
          }
       } else {
          throw new IllegalStateException("Unknown container adapter kind : " + containerMarshaller.getJavaClass().getName());
       }
    }
 
-   private static <E> E readContainerElementWrapped(ImmutableSerializationContext ctx, TagReader in) throws IOException {
-      ValueOrTag<E> primitiveValue = tryReadPrimitive(in, true);
+   private static <E> E readContainerElementWrapped(ImmutableSerializationContext ctx, TagReader in, int tag) throws IOException {
+      ValueOrTag<E> primitiveValue = tryReadPrimitive(tag, in, true);
       if (primitiveValue.hasValue()) {
          return primitiveValue.getValue();
       }
       assert primitiveValue.hasTag();
-      var tag = primitiveValue.getTag();
       if (tag != (WRAPPED_MESSAGE << WireType.TAG_TYPE_NUM_BITS | WireType.WIRETYPE_LENGTH_DELIMITED)) {
          throw new IllegalStateException("Unexpected tag : " + tag + " (Field number : "
                + WireType.getTagFieldNumber(tag) + ", Wire type : " + WireType.getTagWireType(tag) + ")");
@@ -783,7 +832,8 @@ public final class WrappedMessage {
             || number == WRAPPED_CONTAINER_SIZE
             || number == WRAPPED_CONTAINER_TYPE_NAME
             || number == WRAPPED_CONTAINER_TYPE_ID
-            || number == WRAPPED_CONTAINER_MESSAGE;
+            || number == WRAPPED_CONTAINER_MESSAGE
+            || number == WRAPPED_CONTAINER_ELEMENTS;
    }
 
    /**
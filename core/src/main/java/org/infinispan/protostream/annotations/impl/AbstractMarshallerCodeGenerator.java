@@ -168,6 +168,29 @@ public abstract class AbstractMarshallerCodeGenerator {
       return "__a$" + field.getNumber();
    }
 
+   /*
+    * Make a local variable name for the number of elements accumulated so far in a primitive array field.
+    */
+   private String makeArraySizeLocalVar(ProtoFieldMetadata field) {
+      return "__n$" + field.getNumber();
+   }
+
+   /*
+    * Repeated fields mapped to an array of primitives are accumulated directly in a growable array of the component
+    * type instead of a collection, so the elements are never boxed.
+    */
+   private static boolean isPrimitiveArray(ProtoFieldMetadata field) {
+      return field.isArray() && field.getJavaType().isPrimitive();
+   }
+
+   private void appendToPrimitiveArray(IndentWriter iw, ProtoFieldMetadata field, String value) {
+      String a = makeArrayLocalVar(field);
+      String n = makeArraySizeLocalVar(field);
+      iw.printf("if (%s == null) %s = new %s[8];\n", a, a, field.getJavaTypeName());
+      iw.printf("else if (%s == %s.length) %s = java.util.Arrays.copyOf(%s, Math.max(8, %s << 1));\n", n, a, a, a, n);
+      iw.printf("%s[%s++] = %s;\n", a, n, value);
+   }
+
    /*
     * Make field name for caching a marshaller delegate for a related message.
     */
@@ -254,7 +277,11 @@ public abstract class AbstractMarshallerCodeGenerator {
       }
 
       for (ProtoFieldMetadata fieldMetadata : messageTypeMetadata.getFields().values()) {
-         if (fieldMetadata.isRepeated()) {
+         if (isPrimitiveArray(fieldMetadata)) {
+            // a growable array local variable and its element count
+            iw.printf("%s[] %s = null;\n", fieldMetadata.getJavaTypeName(), makeArrayLocalVar(fieldMetadata));
+            iw.printf("int %s = 0;\n", makeArraySizeLocalVar(fieldMetadata));
+         } else if (fieldMetadata.isRepeated()) {
             // a collection local variable
             iw.printf("%s %s = ", fieldMetadata.getRepeatedImplementation().getCanonicalName(), makeCollectionLocalVar(fieldMetadata));
             if (noDefaults || fieldMetadata.isArray()) {
@@ -327,9 +354,23 @@ public abstract class AbstractMarshallerCodeGenerator {
             // For any type that is repeated we have to loop over it, so use a while loop otherwise any single
             // field values an if is good
             String fieldClause = fieldMetadata.isRepeated() ? "while" : "if";
-            iw.printf("%s (tag == %s) {\n", fieldClause, makeFieldTagPrecedence(fieldNumber, fieldMetadata.getProtobufType().getWireType()));
-            iw.inc();
-            generateFieldReadInnerMethod(messageTypeMetadata, fieldMetadata, iw, noFactory, trackedFields, getUnknownFieldSetFieldStatement, setUnknownFieldSetFieldStatement);
+            if (isPackable(fieldMetadata)) {
+               // accept both the packed and the unpacked encoding
+               String packedTag = makeFieldTagPrecedence(fieldNumber, WireType.LENGTH_DELIMITED);
+               iw.printf("while (tag == %s || tag == %s) {\n", makeFieldTagPrecedence(fieldNumber, fieldMetadata.getProtobufType().getWireType()), packedTag);
+               iw.inc();
+               iw.printf("if (tag == %s) {\n", packedTag);
+               iw.inc();
+               generatePackedFieldReadInnerMethod(messageTypeMetadata, fieldMetadata, iw, noFactory, trackedFields, getUnknownFieldSetFieldStatement, setUnknownFieldSetFieldStatement);
+               iw.dec().println("} else {");
+               iw.inc();
+               generateFieldReadInnerMethod(messageTypeMetadata, fieldMetadata, iw, noFactory, trackedFields, getUnknownFieldSetFieldStatement, setUnknownFieldSetFieldStatement);
+               iw.dec().println("}");
+            } else {
+               iw.printf("%s (tag == %s) {\n", fieldClause, makeFieldTagPrecedence(fieldNumber, fieldMetadata.getProtobufType().getWireType()));
+               iw.inc();
+               generateFieldReadInnerMethod(messageTypeMetadata, fieldMetadata, iw, noFactory, trackedFields, getUnknownFieldSetFieldStatement, setUnknownFieldSetFieldStatement);
+            }
             iw.printf("tag = %s;\n", readStringForField(fieldNumber));
             iw.dec();
             iw.println("}");
@@ -386,7 +427,9 @@ public abstract class AbstractMarshallerCodeGenerator {
             iw.printf("if %s {\n", makeTestFieldWasNotSet(fieldMetadata, trackedFields));
             iw.inc();
             String val = toJavaLiteral(defaultValue, fieldMetadata.getJavaType());
-            if (fieldMetadata.isRepeated()) {
+            if (isPrimitiveArray(fieldMetadata)) {
+               appendToPrimitiveArray(iw, fieldMetadata, val);
+            } else if (fieldMetadata.isRepeated()) {
                String c = makeCollectionLocalVar(fieldMetadata);
                if (noDefaults || fieldMetadata.isArray()) {
                   iw.printf("if (%s == null) %s = new %s();\n", c, c, fieldMetadata.getRepeatedImplementation().getCanonicalName());
@@ -406,23 +449,17 @@ public abstract class AbstractMarshallerCodeGenerator {
 
       for (ProtoFieldMetadata fieldMetadata : messageTypeMetadata.getFields().values()) {
          if (fieldMetadata.isRepeated()) {
-            String c = makeCollectionLocalVar(fieldMetadata);
+            String c = isPrimitiveArray(fieldMetadata) ? makeArrayLocalVar(fieldMetadata) : makeCollectionLocalVar(fieldMetadata);
             if (fieldMetadata.isArray()) {
                if (fieldMetadata.getDefaultValue() == null) {
                   iw.printf("if (%s != null)", c);
                }
                iw.println("{");
                iw.inc();
-               String a = makeArrayLocalVar(fieldMetadata);
-               if (fieldMetadata.getJavaType().isPrimitive()) {
-                  if (noFactory) {
-                     iw.printf("%s[] ", fieldMetadata.getJavaTypeName());
-                  }
-                  iw.printf("%s = new %s[%s.size()];\n", a, fieldMetadata.getJavaTypeName(), c);
-                  XClass boxedType = box(fieldMetadata.getJavaType());
-                  iw.println("int _j =0;");
-                  iw.printf("for (java.util.Iterator _it = %s.iterator(); _it.hasNext();) %s[_j++] = %s;\n", c, a, unbox("((" + boxedType.getName() + ") _it.next())", boxedType));
-                  c = a;
+               if (isPrimitiveArray(fieldMetadata)) {
+                  // trim the growable array to the number of elements actually read
+                  String n = makeArraySizeLocalVar(fieldMetadata);
+                  iw.printf("if (%s != %s.length) %s = java.util.Arrays.copyOf(%s, %s);\n", n, c, c, c, n);
                } else {
                   c = "(" + fieldMetadata.getJavaTypeName() + "[])" + c + ".toArray(new " + fieldMetadata.getJavaTypeName() + "[0])";
                }
@@ -539,6 +576,39 @@ public abstract class AbstractMarshallerCodeGenerator {
       generateFieldReadInnerMethod(messageTypeMetadata, fieldMetadata, iw, noFactory, trackedFields, getUnknownFieldSetFieldStatement, setUnknownFieldSetFieldStatement);
       iw.println("break;");
       iw.dec().println("}");
+      if (isPackable(fieldMetadata)) {
+         // accept the packed encoding too, whatever encoding we write
+         iw.printf("case %s: {\n", makeFieldTag(fieldMetadata.getNumber(), WireType.LENGTH_DELIMITED));
+         iw.inc();
+         generatePackedFieldReadInnerMethod(messageTypeMetadata, fieldMetadata, iw, noFactory, trackedFields, getUnknownFieldSetFieldStatement, setUnknownFieldSetFieldStatement);
+         iw.println("break;");
+         iw.dec().println("}");
+      }
+   }
+
+   private static boolean isPackable(ProtoFieldMetadata fieldMetadata) {
+      return fieldMetadata.isRepeated() && fieldMetadata.getProtobufType().isPackable();
+   }
+
+   private void generatePackedFieldReadInnerMethod(ProtoMessageTypeMetadata messageTypeMetadata, ProtoFieldMetadata fieldMetadata, IndentWriter iw, boolean noFactory, Map<String, Integer> trackedFields, String getUnknownFieldSetFieldStatement, String setUnknownFieldSetFieldStatement) {
+      WireType wireType = fieldMetadata.getProtobufType().getWireType();
+      if (isPrimitiveArray(fieldMetadata) && wireType != WireType.VARINT) {
+         // fixed width elements, so the array can be sized upfront for the whole block
+         String a = makeArrayLocalVar(fieldMetadata);
+         String n = makeArraySizeLocalVar(fieldMetadata);
+         iw.println("int packedLength = $in.readUInt32();");
+         iw.println("int packedLimit = $in.pushLimit(packedLength);");
+         iw.printf("int packedCount = packedLength / %d;\n", wireType == WireType.FIXED64 ? 8 : 4);
+         iw.printf("if (%s == null) %s = new %s[packedCount];\n", a, a, fieldMetadata.getJavaTypeName());
+         iw.printf("else if (%s.length - %s < packedCount) %s = java.util.Arrays.copyOf(%s, %s + packedCount);\n", a, n, a, a, n);
+      } else {
+         iw.println("int packedLimit = $in.pushLimit($in.readUInt32());");
+      }
+      iw.println("while (!$in.isAtEnd()) {");
+      iw.inc();
+      generateFieldReadInnerMethod(messageTypeMetadata, fieldMetadata, iw, noFactory, trackedFields, getUnknownFieldSetFieldStatement, setUnknownFieldSetFieldStatement);
+      iw.dec().println("}");
+      iw.println("$in.popLimit(packedLimit);");
    }
 
    private void generateFieldReadInnerMethod(ProtoMessageTypeMetadata messageTypeMetadata, ProtoFieldMetadata fieldMetadata, IndentWriter iw, boolean noFactory, Map<String, Integer> trackedFields, String getUnknownFieldSetFieldStatement, String setUnknownFieldSetFieldStatement) {
@@ -745,7 +815,9 @@ public abstract class AbstractMarshallerCodeGenerator {
 
    private void genSetField(IndentWriter iw, ProtoFieldMetadata fieldMetadata, Map<String, Integer> trackedFields, ProtoMessageTypeMetadata messageTypeMetadata) {
       final String v = makeFieldLocalVar(fieldMetadata);
-      if (fieldMetadata.isRepeated()) {
+      if (isPrimitiveArray(fieldMetadata)) {
+         appendToPrimitiveArray(iw, fieldMetadata, v);
+      } else if (fieldMetadata.isRepeated()) {
          if (!fieldMetadata.isMap()) {
             String c = makeCollectionLocalVar(fieldMetadata);
             if (noDefaults || fieldMetadata.isArray()) {
@@ -783,6 +855,9 @@ public abstract class AbstractMarshallerCodeGenerator {
       if (!messageTypeMetadata.getFields().isEmpty() || getUnknownFieldSetFieldStatement != null) {
          iw.print("var $out = $1.getWriter();\n");
          iw.printf("final %s o = (%s) $2;\n", messageTypeMetadata.getJavaClassName(), messageTypeMetadata.getJavaClassName());
+         if (messageTypeMetadata.hasPackedFields()) {
+            iw.print("final boolean $packed = $1.getSerializationContext().getConfiguration().packRepeatedScalarFields();\n");
+         }
          for (ProtoFieldMetadata fieldMetadata : messageTypeMetadata.getFields().values()) {
             iw.println("{");
             iw.inc();
@@ -791,6 +866,7 @@ public abstract class AbstractMarshallerCodeGenerator {
             }
             final String v = makeFieldLocalVar(fieldMetadata);
             final String f = fieldMetadata.isRepeated() ? (fieldMetadata.isArray() ? makeArrayLocalVar(fieldMetadata) : makeCollectionLocalVar(fieldMetadata)) : v;
+            final boolean packed = messageTypeMetadata.isPacked(fieldMetadata);
             iw.print("final ");
             if (fieldMetadata.isRepeated()) {
                if (fieldMetadata.isArray()) {
@@ -831,46 +907,21 @@ public abstract class AbstractMarshallerCodeGenerator {
             if (fieldMetadata.isRepeated()) {
                iw.append('\n');
                iw.inc();
-               if (fieldMetadata.isArray()) {
-                  iw.printf("for (int i = 0; i < %s.length; i++) {\n", f);
-                  iw.inc();
-                  iw.printf("final %s %s = %s[i];\n", fieldMetadata.getJavaTypeName(), v, f);
-               } else if (fieldMetadata.isMap()) {
-                  ProtoMapMetadata mapFieldMetadata = (ProtoMapMetadata) fieldMetadata;
-                  iw.printf("for (java.util.Iterator<java.util.Map.Entry<%s, %s>> it = %s.entrySet().iterator(); it.hasNext(); ) {\n",
-                        mapFieldMetadata.getKey().getJavaTypeName(),
-                        mapFieldMetadata.getValue().getJavaTypeName(),
-                        f);
+               if (packed) {
+                  // the packed encoding is only written when the configuration asks for it
+                  iw.println("if ($packed) {");
                   iw.inc();
-                  iw.printf("final java.util.Map.Entry<%s, %s> %s = it.next();\n",
-                        mapFieldMetadata.getKey().getJavaTypeName(),
-                        mapFieldMetadata.getValue().getJavaTypeName(),
-                        v
-                  );
-                  iw.printf("try (var $n = $out.subWriter(%d, true)) {\n", fieldMetadata.getNumber());
+                  writePackedRepeatedField(fieldMetadata, iw, f, v);
+                  iw.dec().println("} else {");
                   iw.inc();
-                  writeFieldValue(mapFieldMetadata.getKey(), iw, v + ".getKey()", "$n");
-                  writeMapFieldValue(mapFieldMetadata, mapFieldMetadata.getValue(), iw, v + ".getValue()", "$n");
-                  iw.dec();
-                  iw.println("}");
+                  writeRepeatedField(fieldMetadata, iw, f, v);
+                  iw.dec().println("}");
                } else {
-                  if (useGenerics) {
-                     iw.printf("for (java.util.Iterator<%s> it = %s.iterator(); it.hasNext(); ) {\n", fieldMetadata.getJavaTypeName(), f);
-                     iw.inc();
-                     iw.printf("final %s %s = it.next();\n", fieldMetadata.getJavaTypeName(), v);
-                  } else {
-                     iw.printf("for (java.util.Iterator it = %s.iterator(); it.hasNext(); ) {\n", f);
-                     iw.inc();
-                     iw.printf("final %s %s = (%s) it.next();\n", fieldMetadata.getJavaTypeName(), v, fieldMetadata.getJavaTypeName());
-                  }
+                  writeRepeatedField(fieldMetadata, iw, f, v);
                }
-            }
-            if (!fieldMetadata.isMap()) {
-               writeFieldValue(fieldMetadata, iw, v);
-            }
-            if (fieldMetadata.isRepeated()) {
-               iw.dec().println("}");
                iw.dec();
+            } else {
+               writeFieldValue(fieldMetadata, iw, v);
             }
             iw.dec().println("}");
          }
@@ -885,6 +936,95 @@ public abstract class AbstractMarshallerCodeGenerator {
       }
    }
 
+   private void writeRepeatedField(ProtoFieldMetadata fieldMetadata, IndentWriter iw, String f, String v) {
+      if (fieldMetadata.isArray()) {
+         iw.printf("for (int i = 0; i < %s.length; i++) {\n", f);
+         iw.inc();
+         iw.printf("final %s %s = %s[i];\n", fieldMetadata.getJavaTypeName(), v, f);
+      } else if (fieldMetadata.isMap()) {
+         ProtoMapMetadata mapFieldMetadata = (ProtoMapMetadata) fieldMetadata;
+         iw.printf("for (java.util.Iterator<java.util.Map.Entry<%s, %s>> it = %s.entrySet().iterator(); it.hasNext(); ) {\n",
+               mapFieldMetadata.getKey().getJavaTypeName(),
+               mapFieldMetadata.getValue().getJavaTypeName(),
+               f);
+         iw.inc();
+         iw.printf("final java.util.Map.Entry<%s, %s> %s = it.next();\n",
+               mapFieldMetadata.getKey().getJavaTypeName(),
+               mapFieldMetadata.getValue().getJavaTypeName(),
+               v
+         );
+         iw.printf("try (var $n = $out.subWriter(%d, true)) {\n", fieldMetadata.getNumber());
+         iw.inc();
+         writeFieldValue(mapFieldMetadata.getKey(), iw, v + ".getKey()", "$n");
+         writeMapFieldValue(mapFieldMetadata, mapFieldMetadata.getValue(), iw, v + ".getValue()", "$n");
+         iw.dec();
+         iw.println("}");
+      } else {
+         printIteratorLoop(fieldMetadata, iw, f, v);
+      }
+      if (!fieldMetadata.isMap()) {
+         writeFieldValue(fieldMetadata, iw, v);
+      }
+      iw.dec().println("}");
+   }
+
+   /**
+    * Writes all the values in a single length delimited block. An empty field is not written at all.
+    */
+   private void writePackedRepeatedField(ProtoFieldMetadata fieldMetadata, IndentWriter iw, String f, String v) {
+      if (fieldMetadata.isArray()) {
+         iw.printf("if (%s.length != 0) try (var $p = $out.subWriter(%d, true)) {\n", f, fieldMetadata.getNumber());
+         iw.inc();
+         iw.printf("for (int i = 0; i < %s.length; i++) {\n", f);
+         iw.inc();
+         iw.printf("final %s %s = %s[i];\n", fieldMetadata.getJavaTypeName(), v, f);
+         writePackedFieldValue(fieldMetadata, iw, v, "$p");
+         iw.dec().println("}");
+         iw.dec().println("}");
+      } else if (fieldMetadata.isIterable() || fieldMetadata.isStream()) {
+         // Iterable and Stream have no emptiness check, so the iterator is opened before the block
+         iw.println("{");
+         iw.inc();
+         if (useGenerics) {
+            iw.printf("final java.util.Iterator<%s> it = %s.iterator();\n", fieldMetadata.getJavaTypeName(), f);
+         } else {
+            iw.printf("final java.util.Iterator it = %s.iterator();\n", f);
+         }
+         iw.printf("if (it.hasNext()) try (var $p = $out.subWriter(%d, true)) {\n", fieldMetadata.getNumber());
+         iw.inc();
+         iw.println("do {");
+         iw.inc();
+         if (useGenerics) {
+            iw.printf("final %s %s = it.next();\n", fieldMetadata.getJavaTypeName(), v);
+         } else {
+            iw.printf("final %s %s = (%s) it.next();\n", fieldMetadata.getJavaTypeName(), v, fieldMetadata.getJavaTypeName());
+         }
+         writePackedFieldValue(fieldMetadata, iw, v, "$p");
+         iw.dec().println("} while (it.hasNext());");
+         iw.dec().println("}");
+         iw.dec().println("}");
+      } else {
+         iw.printf("if (!%s.isEmpty()) try (var $p = $out.subWriter(%d, true)) {\n", f, fieldMetadata.getNumber());
+         iw.inc();
+         printIteratorLoop(fieldMetadata, iw, f, v);
+         writePackedFieldValue(fieldMetadata, iw, v, "$p");
+         iw.dec().println("}");
+         iw.dec().println("}");
+      }
+   }
+
+   private void printIteratorLoop(ProtoFieldMetadata fieldMetadata, IndentWriter iw, String f, String v) {
+      if (useGenerics) {
+         iw.printf("for (java.util.Iterator<%s> it = %s.iterator(); it.hasNext(); ) {\n", fieldMetadata.getJavaTypeName(), f);
+         iw.inc();
+         iw.printf("final %s %s = it.next();\n", fieldMetadata.getJavaTypeName(), v);
+      } else {
+         iw.printf("for (java.util.Iterator it = %s.iterator(); it.hasNext(); ) {\n", f);
+         iw.inc();
+         iw.printf("final %s %s = (%s) it.next();\n", fieldMetadata.getJavaTypeName(), v, fieldMetadata.getJavaTypeName());
+      }
+   }
+
    private void printFieldAssignmentWithGenerics(String type, ProtoFieldMetadata fieldMeta, IndentWriter iw) {
       if (useGenerics) {
          iw.printf("%s<%s>", type, fieldMeta.getJavaTypeName());
@@ -951,6 +1091,35 @@ public abstract class AbstractMarshallerCodeGenerator {
       }
    }
 
+   /**
+    * Writes an element of a packed repeated field, without a tag, encoded the same as the corresponding TagWriter
+    * high level op would.
+    */
+   private void writePackedFieldValue(ProtoFieldMetadata fieldMetadata, IndentWriter iw, String v, String out) {
+      String value = unbox(v, fieldMetadata.getJavaType());
+      switch (fieldMetadata.getProtobufType()) {
+         case DOUBLE -> iw.printf("%s.writeRawFixed64(java.lang.Double.doubleToRawLongBits(%s));\n", out, value);
+         case FLOAT -> iw.printf("%s.writeRawFixed32(java.lang.Float.floatToRawIntBits(%s));\n", out, value);
+         case FIXED64, SFIXED64 -> iw.printf("%s.writeRawFixed64(%s);\n", out, value);
+         case FIXED32, SFIXED32 -> iw.printf("%s.writeRawFixed32(%s);\n", out, value);
+         // int32 is sign extended to 64 bits, so negative values take 10 bytes
+         case INT64, UINT64, INT32 -> iw.printf("%s.writeVarint64(%s);\n", out, value);
+         case UINT32 -> iw.printf("%s.writeVarint32(%s);\n", out, value);
+         case SINT32 -> iw.printf("%s.writeVarint32((%s << 1) ^ (%s >> 31));\n", out, value, value);
+         case SINT64 -> iw.printf("%s.writeVarint64((%s << 1) ^ (%s >> 63));\n", out, value, value);
+         case BOOL -> iw.printf("%s.writeVarint32(%s ? 1 : 0);\n", out, value);
+         case ENUM -> {
+            iw.println("{");
+            iw.inc();
+            String mdField = initMarshallerDelegateField(iw, fieldMetadata);
+            iw.printf("%s.writeVarint64(%s.getMarshaller().encode(%s));\n", out, mdField, v);
+            iw.dec();
+            iw.println("}");
+         }
+         default -> throw new IllegalStateException("Field type cannot be packed : " + fieldMetadata.getProtobufType());
+      }
+   }
+
    private void writeMapFieldValue(ProtoMapMetadata mapMetadata, ProtoFieldMetadata fieldMetadata, IndentWriter iw, String v, String out) {
       String fieldName, mdField;
       switch (fieldMetadata.getProtobufType()) {
@@ -41,6 +41,7 @@ import org.infinispan.protostream.containers.IndexedElementContainer;
 import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
 import org.infinispan.protostream.containers.IterableElementContainer;
 import org.infinispan.protostream.containers.IterableElementContainerAdapter;
+import org.infinispan.protostream.containers.PrimitiveElementContainerAdapter;
 import org.infinispan.protostream.descriptors.JavaType;
 import org.infinispan.protostream.descriptors.Type;
 import org.infinispan.protostream.impl.Log;
@@ -70,6 +71,8 @@ public class ProtoMessageTypeMetadata extends ProtoTypeMetadata {
 
    private final boolean isIterableContainer;
 
+   private final boolean isPrimitiveContainer;
+
    private final boolean isOrderedMarshallable;
 
    private XExecutable factory;
@@ -90,6 +93,7 @@ public class ProtoMessageTypeMetadata extends ProtoTypeMetadata {
       this.isAdapter = javaClass != annotatedClass;
       this.isIndexedContainer = annotatedClass.isAssignableTo(isAdapter ? IndexedElementContainerAdapter.class : IndexedElementContainer.class);
       this.isIterableContainer = annotatedClass.isAssignableTo(isAdapter ? IterableElementContainerAdapter.class : IterableElementContainer.class);
+      this.isPrimitiveContainer = isAdapter && annotatedClass.isAssignableTo(PrimitiveElementContainerAdapter.class);
       this.isOrderedMarshallable = protoSchemaGenerator.orderedMarshaller();
 
       checkInstantiability();
@@ -125,6 +129,13 @@ public class ProtoMessageTypeMetadata extends ProtoTypeMetadata {
       return isIterableContainer;
    }
 
+   /**
+    * An indexed container adapter that also reads and writes its elements as a packed block.
+    */
+   public boolean isPrimitiveContainer() {
+      return isPrimitiveContainer;
+   }
+
    public boolean isContainer() {
       return isIterableContainer || isIndexedContainer;
    }
@@ -133,6 +144,28 @@ public class ProtoMessageTypeMetadata extends ProtoTypeMetadata {
       return isOrderedMarshallable;
    }
 
+   /**
+    * Repeated scalar fields can be written packed when generating proto3 schemas, where packed is the default encoding.
+    * The generated marshaller still checks {@link org.infinispan.protostream.config.Configuration#packRepeatedScalarFields()}
+    * at runtime and writes them unpacked unless it is enabled.
+    */
+   public boolean isPacked(ProtoFieldMetadata fieldMetadata) {
+      return fieldMetadata.isRepeated() && fieldMetadata.getProtobufType().isPackable()
+            && protoSchemaGenerator.syntax() == ProtoSyntax.PROTO3;
+   }
+
+   /**
+    * Whether the generated marshaller writes any packed field, in which case its code depends on the schema syntax.
+    */
+   public boolean hasPackedFields() {
+      for (ProtoFieldMetadata fieldMetadata : getFields().values()) {
+         if (isPacked(fieldMetadata)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
    public XExecutable getFactory() {
       scanMemberAnnotations();
       return factory;
@@ -17,6 +17,8 @@ public interface Configuration {
 
    int DEFAULT_MAX_NESTED_DEPTH = 100;
 
+   int DEFAULT_PARSER_SPECIALIZATION_THRESHOLD = 100;
+
    /**
     * The name of the TypeId annotation. This optional annotation defines a unique positive integer type identifier for
     * each message or enum type. This can be used alternatively instead of the fully qualified type name during
@@ -52,6 +54,32 @@ public interface Configuration {
 
    boolean wrapCollectionElements();
 
+   /**
+    * Whether the elements of arrays of primitives are written packed in a single block. Both layouts are always read.
+    * Default to {@code false}
+    *
+    * @since 6.0.11
+    */
+   boolean packPrimitiveContainerElements();
+
+   /**
+    * Whether repeated scalar fields declared packed by their schema, either by the proto3 default or by an explicit
+    * {@code packed} option, are written packed in a single block. Both encodings are always read.
+    * Default to {@code false}
+    *
+    * @since 6.0.11
+    */
+   boolean packRepeatedScalarFields();
+
+   /**
+    * The number of times {@link org.infinispan.protostream.ProtobufParser} parses a message type before creating a
+    * parser specialized for it. Zero creates it on first use and a negative number disables specialized parsers.
+    * Default to {@link #DEFAULT_PARSER_SPECIALIZATION_THRESHOLD}
+    *
+    * @since 6.0.11
+    */
+   int parserSpecializationThreshold();
+
    AnnotationsConfig annotationsConfig();
 
    interface AnnotationsConfig {
@@ -107,6 +135,47 @@ public interface Configuration {
        */
       Builder wrapCollectionElements(boolean wrapCollectionElements);
 
+      /**
+       * Writes the elements of arrays of primitives (int[], long[], double[], etc.) packed in a single
+       * {@code wrappedContainerElements} field instead of one wrapped element at a time.
+       * <p>
+       * WARNING: enabling this option will change the binary format in an incompatible way. Only readers of release
+       * 6.0.11 or later can read the packed layout, so only enable it once all the readers have been upgraded. Both
+       * layouts are read regardless of this option.
+       *
+       * @param packPrimitiveContainerElements {@code true} to pack the elements, {@code false} otherwise.
+       * @return This instance.
+       * @since 6.0.11
+       */
+      Builder packPrimitiveContainerElements(boolean packPrimitiveContainerElements);
+
+      /**
+       * Writes the repeated scalar fields declared packed by their schema (the default in proto3, or with an explicit
+       * {@code [packed=true]} option) in a single length delimited block instead of one tag per element. This applies
+       * to generated marshallers, {@link org.infinispan.protostream.MessageMarshaller}s and JSON conversion alike.
+       * <p>
+       * WARNING: enabling this option will change the binary format in an incompatible way. Only readers of release
+       * 6.0.11 or later can read the packed encoding, so only enable it once all the readers have been upgraded. Both
+       * encodings are read regardless of this option.
+       *
+       * @param packRepeatedScalarFields {@code true} to write packed fields packed, {@code false} otherwise.
+       * @return This instance.
+       * @since 6.0.11
+       */
+      Builder packRepeatedScalarFields(boolean packRepeatedScalarFields);
+
+      /**
+       * Sets how many times {@link org.infinispan.protostream.ProtobufParser} parses a message type before creating a
+       * parser specialized for it. The specialized parser resolves the fields of the type once instead of for each tag,
+       * and produces the same callbacks as the generic one.
+       *
+       * @param parserSpecializationThreshold the number of parses before specializing, {@code 0} to specialize on first
+       *                                      use, or a negative number to never specialize.
+       * @return This instance.
+       * @since 6.0.11
+       */
+      Builder parserSpecializationThreshold(int parserSpecializationThreshold);
+
       AnnotationsConfig.Builder annotationsConfig();
 
       Configuration build();
@@ -19,6 +19,9 @@ public final class ConfigurationImpl implements Configuration {
    private final int maxNestedMessageDepth;
    private final SchemaValidation schemaValidation;
    private final boolean wrapCollectionElements;
+   private final boolean packPrimitiveContainerElements;
+   private final boolean packRepeatedScalarFields;
+   private final int parserSpecializationThreshold;
 
    private ConfigurationImpl(BuilderImpl builder, Map<String, AnnotationConfigurationImpl> annotations) {
       this.logOutOfSequenceReads = builder.logOutOfSequenceReads;
@@ -27,6 +30,9 @@ public final class ConfigurationImpl implements Configuration {
       this.maxNestedMessageDepth = builder.maxNestedMessageDepth;
       this.schemaValidation = builder.schemaValidation;
       this.wrapCollectionElements = builder.wrapCollectionElements;
+      this.packPrimitiveContainerElements = builder.packPrimitiveContainerElements;
+      this.packRepeatedScalarFields = builder.packRepeatedScalarFields;
+      this.parserSpecializationThreshold = builder.parserSpecializationThreshold;
       this.annotationsConfig = new AnnotationsConfigImpl(annotations, builder.logUndefinedAnnotations);
    }
 
@@ -55,6 +61,21 @@ public final class ConfigurationImpl implements Configuration {
       return wrapCollectionElements;
    }
 
+   @Override
+   public boolean packPrimitiveContainerElements() {
+      return packPrimitiveContainerElements;
+   }
+
+   @Override
+   public boolean packRepeatedScalarFields() {
+      return packRepeatedScalarFields;
+   }
+
+   @Override
+   public int parserSpecializationThreshold() {
+      return parserSpecializationThreshold;
+   }
+
    @Override
    public AnnotationsConfig annotationsConfig() {
       return annotationsConfig;
@@ -69,6 +90,9 @@ public final class ConfigurationImpl implements Configuration {
             ", annotationsConfig=" + annotationsConfig +
             ", maxNestedMessageDepth=" + maxNestedMessageDepth +
             ", schemaValidation=" + schemaValidation +
+            ", packPrimitiveContainerElements=" + packPrimitiveContainerElements +
+            ", packRepeatedScalarFields=" + packRepeatedScalarFields +
+            ", parserSpecializationThreshold=" + parserSpecializationThreshold +
             '}';
    }
 
@@ -108,6 +132,9 @@ public final class ConfigurationImpl implements Configuration {
       private Boolean logUndefinedAnnotations;
       private SchemaValidation schemaValidation = SchemaValidation.DEFAULT;
       private boolean wrapCollectionElements;
+      private boolean packPrimitiveContainerElements;
+      private boolean packRepeatedScalarFields;
+      private int parserSpecializationThreshold = Configuration.DEFAULT_PARSER_SPECIALIZATION_THRESHOLD;
 
       final class AnnotationsConfigBuilderImpl implements AnnotationsConfig.Builder {
 
@@ -179,6 +206,24 @@ public final class ConfigurationImpl implements Configuration {
          return this;
       }
 
+      @Override
+      public Builder packPrimitiveContainerElements(boolean packPrimitiveContainerElements) {
+         this.packPrimitiveContainerElements = packPrimitiveContainerElements;
+         return this;
+      }
+
+      @Override
+      public Builder packRepeatedScalarFields(boolean packRepeatedScalarFields) {
+         this.packRepeatedScalarFields = packRepeatedScalarFields;
+         return this;
+      }
+
+      @Override
+      public Builder parserSpecializationThreshold(int parserSpecializationThreshold) {
+         this.parserSpecializationThreshold = parserSpecializationThreshold;
+         return this;
+      }
+
       @Override
       public AnnotationsConfig.Builder annotationsConfig() {
          if (annotationsConfigBuilder == null) {
@@ -0,0 +1,37 @@
+package org.infinispan.protostream.containers;
+
+import java.io.IOException;
+
+import org.infinispan.protostream.TagReader;
+import org.infinispan.protostream.TagWriter;
+import org.infinispan.protostream.descriptors.Type;
+
+/**
+ * An indexed container adapter for arrays of primitives. Instead of wrapping each element separately, all elements are
+ * written as a single packed block and are read back directly into the container, without boxing.
+ * <p>
+ * The methods inherited from {@link IndexedElementContainerAdapter} are still used when reading data written with one
+ * wrapped element at a time.
+ *
+ * @param <C> the container type
+ * @param <E> the boxed element type
+ * @since 6.0.11
+ */
+public interface PrimitiveElementContainerAdapter<C, E> extends IndexedElementContainerAdapter<C, E> {
+
+   /**
+    * The Protobuf type of the elements. This must be a packable scalar type, ie. a varint or fixed width type.
+    */
+   Type getElementType();
+
+   /**
+    * Writes all the elements of the container, without tags, using the low level ops of the writer.
+    */
+   void writeElements(C container, TagWriter out) throws IOException;
+
+   /**
+    * Reads {@code numElements} elements written by {@link #writeElements} into a container created by the factory of
+    * the adapter.
+    */
+   void readElements(C container, int numElements, TagReader in) throws IOException;
+}
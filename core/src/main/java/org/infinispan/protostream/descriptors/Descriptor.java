@@ -14,6 +14,7 @@ import org.infinispan.protostream.config.AnnotationConfiguration;
 import org.infinispan.protostream.config.Configuration;
 import org.infinispan.protostream.impl.Log;
 import org.infinispan.protostream.impl.SparseBitSet;
+import org.infinispan.protostream.impl.SpecializedParser;
 
 /**
  * Represents a message type declaration in a proto file.
@@ -23,16 +24,21 @@ import org.infinispan.protostream.impl.SparseBitSet;
  * @since 2.0
  */
 public final class Descriptor extends ReservableDescriptor implements GenericDescriptor {
+
    private Integer typeId;
    private final List<Option> options;
    private final List<FieldDescriptor> fields;
    private final List<OneOfDescriptor> oneofs;
    private final List<Descriptor> nestedMessageTypes;
    private final List<EnumDescriptor> nestedEnumTypes;
-   private final Map<Integer, FieldDescriptor> fieldsByNumber;
+   // all the fields, including those of the oneofs, sorted by number and looked up with fieldIndex
+   private final FieldDescriptor[] sortedFields;
+   private final FieldNumberIndex fieldIndex;
    private final Map<String, FieldDescriptor> fieldsByName;
    private FileDescriptor fileDescriptor;
    private Descriptor containingType;
+   // used by ProtobufParser for the types it parses often
+   private final SpecializedParser.Cache specializedParserCache = new SpecializedParser.Cache();
 
    private Descriptor(Builder builder) {
       super(builder.name, builder.fullName, builder.documentation, builder.reservedNumbers, builder.reservedNames);
@@ -40,13 +46,19 @@ public final class Descriptor extends ReservableDescriptor implements GenericDes
       this.fields = List.copyOf(builder.fields);
       this.oneofs = List.copyOf(builder.oneOfs);
       int totalFields = this.fields.size() + this.oneofs.size();
-      fieldsByNumber = new HashMap<>(totalFields);
+      Map<Integer, FieldDescriptor> byNumber = new HashMap<>(totalFields);
       fieldsByName = new HashMap<>(totalFields);
-      addFields(builder.fields);
+      addFields(builder.fields, byNumber);
       for (OneOfDescriptor oneOf : oneofs) {
-         addFields(oneOf.getFields());
+         addFields(oneOf.getFields(), byNumber);
          oneOf.setContainingMessage(this);
       }
+      int[] sortedNumbers = byNumber.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+      sortedFields = new FieldDescriptor[sortedNumbers.length];
+      for (int i = 0; i < sortedNumbers.length; i++) {
+         sortedFields[i] = byNumber.get(sortedNumbers[i]);
+      }
+      fieldIndex = new FieldNumberIndex(sortedNumbers);
       this.nestedMessageTypes = List.copyOf(builder.nestedMessageTypes);
       this.nestedEnumTypes = List.copyOf(builder.nestedEnumTypes);
       for (Descriptor nested : nestedMessageTypes) {
@@ -57,7 +69,7 @@ public final class Descriptor extends ReservableDescriptor implements GenericDes
       }
    }
 
-   private void addFields(List<? extends FieldDescriptor> fields) {
+   private void addFields(List<? extends FieldDescriptor> fields, Map<Integer, FieldDescriptor> byNumber) {
       for (FieldDescriptor field : fields) {
          if (reservedNames.contains(field.getName())) {
             throw Log.LOG.reservedName(field.getName(), fullName);
@@ -65,7 +77,7 @@ public final class Descriptor extends ReservableDescriptor implements GenericDes
          if (reservedNumbers.get(field.getNumber())) {
             throw Log.LOG.reservedNumber(field.getNumber(), field.getName(), fullName);
          }
-         FieldDescriptor existing = fieldsByNumber.put(field.getNumber(), field);
+         FieldDescriptor existing = byNumber.put(field.getNumber(), field);
          if (existing != null) {
             throw new IllegalStateException("Field number " + field.getNumber()
                   + " has already been used in \"" + fullName + "\" by field \"" + existing.getName() + "\".");
@@ -106,13 +118,48 @@ public final class Descriptor extends ReservableDescriptor implements GenericDes
    }
 
    public FieldDescriptor findFieldByNumber(int number) {
-      return fieldsByNumber.get(number);
+      int i = fieldIndex.indexOf(number);
+      return i >= 0 ? sortedFields[i] : null;
    }
 
    public FieldDescriptor findFieldByName(String name) {
       return fieldsByName.get(name);
    }
 
+   /**
+    * All the fields, including those of the oneofs, sorted by number. Must not be modified.
+    * <p>
+    * This method is not part of the public API. May be removed in future versions.
+    */
+   public FieldDescriptor[] getSortedFields() {
+      return sortedFields;
+   }
+
+   /**
+    * The position of a field number in {@link #getSortedFields()}, or -1 if there is no such field.
+    * <p>
+    * This method is not part of the public API. May be removed in future versions.
+    */
+   public int indexOfField(int number) {
+      return fieldIndex.indexOf(number);
+   }
+
+   /**
+    * The parser specialized for this type by {@link org.infinispan.protostream.ProtobufParser}.
+    * <p>
+    * This method is not part of the public API. May be removed in future versions.
+    */
+   public SpecializedParser.Cache getSpecializedParserCache() {
+      return specializedParserCache;
+   }
+
+   void discardSpecializedParser() {
+      specializedParserCache.discard();
+      for (Descriptor nested : nestedMessageTypes) {
+         nested.discardSpecializedParser();
+      }
+   }
+
    void setFileDescriptor(FileDescriptor fileDescriptor) {
       this.fileDescriptor = fileDescriptor;
       for (FieldDescriptor fieldDescriptor : fields) {
@@ -77,6 +77,23 @@ public class FieldDescriptor extends AnnotatedDescriptorImpl implements Annotate
       return label == Label.REPEATED;
    }
 
+   /**
+    * Returns {@code true} if this is a repeated scalar field using the packed encoding. Packed is the default for proto3
+    * and must be requested with the {@code packed} option in proto2. Readers must accept both encodings regardless.
+    * Writers only use the packed encoding when {@link org.infinispan.protostream.config.Configuration#packRepeatedScalarFields()}
+    * is enabled.
+    */
+   public boolean isPacked() {
+      if (!isRepeated() || !getType().isPackable()) {
+         return false;
+      }
+      Option packed = getOptionByName("packed");
+      if (packed != null) {
+         return Boolean.parseBoolean(packed.getValue().toString());
+      }
+      return fileDescriptor != null && fileDescriptor.getSyntax() == FileDescriptor.Syntax.PROTO3;
+   }
+
    public boolean isMap() {
       return false;
    }
@@ -0,0 +1,44 @@
+package org.infinispan.protostream.descriptors;
+
+import java.util.Arrays;
+
+/**
+ * Finds the position of a field number among the field numbers of a message, sorted in ascending order. The numbers are
+ * looked up in an array indexed by number if they are dense enough, and by binary search otherwise.
+ */
+final class FieldNumberIndex {
+
+   // field numbers below this are always looked up in an array indexed by number
+   private static final int MIN_DENSE_NUMBERS = 64;
+
+   static final FieldNumberIndex EMPTY = new FieldNumberIndex(new int[0]);
+
+   private final int[] numbers;
+
+   // index + 1 of each field number if the numbers are dense enough, otherwise null
+   private final int[] indexesByNumber;
+
+   FieldNumberIndex(int[] sortedNumbers) {
+      this.numbers = sortedNumbers;
+      int maxNumber = sortedNumbers.length == 0 ? 0 : sortedNumbers[sortedNumbers.length - 1];
+      if (maxNumber < Math.max(MIN_DENSE_NUMBERS, sortedNumbers.length * 4)) {
+         indexesByNumber = new int[maxNumber + 1];
+         for (int i = 0; i < sortedNumbers.length; i++) {
+            indexesByNumber[sortedNumbers[i]] = i + 1;
+         }
+      } else {
+         indexesByNumber = null;
+      }
+   }
+
+   /**
+    * @return the position of the number in the sorted numbers, or -1 if it is not one of them
+    */
+   int indexOf(int number) {
+      if (indexesByNumber != null) {
+         return number >= 0 && number < indexesByNumber.length ? indexesByNumber[number] - 1 : -1;
+      }
+      int i = Arrays.binarySearch(numbers, number);
+      return i >= 0 ? i : -1;
+   }
+}
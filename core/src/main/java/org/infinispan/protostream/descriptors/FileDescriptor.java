@@ -149,12 +149,23 @@ public final class FileDescriptor {
       return Stream.concat(dependencies.stream(), publicDependencies.stream()).toList();
    }
 
+   /**
+    * The public imports, which are also included in {@link #getDependencies()}.
+    */
+   public List<String> getPublicDependencies() {
+      return publicDependencies;
+   }
+
    public boolean isResolved() {
       return status.isResolved();
    }
 
    public void markUnresolved() {
       status = Status.UNRESOLVED;
+      // the parsers may refer to the types of the files this depends on
+      for (Descriptor descriptor : messageTypes) {
+         descriptor.discardSpecializedParser();
+      }
    }
 
    void markError() {
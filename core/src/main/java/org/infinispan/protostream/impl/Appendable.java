@@ -1,5 +1,7 @@
 package org.infinispan.protostream.impl;
 
+import java.io.IOException;
+
 /**
  * Interface that accepts an output to write in text form.
  *
@@ -11,7 +13,8 @@ public interface Appendable {
     * Writes the given output.
     *
     * @param out The output to write the tokens.
+    * @throws IOException if writing to the output fails.
     */
-   void append(StringBuilder out);
+   void append(java.lang.Appendable out) throws IOException;
 
 }
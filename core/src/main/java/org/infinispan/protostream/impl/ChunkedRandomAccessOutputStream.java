@@ -0,0 +1,232 @@
+package org.infinispan.protostream.impl;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.infinispan.protostream.RandomAccessOutputStream;
+
+/**
+ * A {@link RandomAccessOutputStream} backed by a list of chunks of the same power of two size, addressed with
+ * {@code long} positions. Growing allocates new chunks and never copies the existing ones, and the total size is not
+ * limited by the maximum array size.
+ *
+ * @since 6.0.11
+ */
+public final class ChunkedRandomAccessOutputStream extends OutputStream implements RandomAccessOutputStream {
+
+   static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+   private final int chunkShift;
+   private final int chunkMask;
+
+   private byte[][] chunks = new byte[8][];
+
+   // number of allocated chunks
+   private int count;
+
+   private long pos;
+
+   public ChunkedRandomAccessOutputStream() {
+      this(DEFAULT_CHUNK_SIZE);
+   }
+
+   public ChunkedRandomAccessOutputStream(int chunkSize) {
+      if (chunkSize <= 0 || chunkSize > 1 << 30) {
+         throw new IllegalArgumentException("Chunk size must be between 1 and 2^30: " + chunkSize);
+      }
+      int size = chunkSize == 1 ? 1 : Integer.highestOneBit(chunkSize - 1) << 1;
+      this.chunkShift = Integer.numberOfTrailingZeros(size);
+      this.chunkMask = size - 1;
+   }
+
+   private int chunkSize() {
+      return chunkMask + 1;
+   }
+
+   @Override
+   public int getPosition() {
+      if (pos > Integer.MAX_VALUE) {
+         throw new IllegalStateException("Position " + pos + " does not fit in an int, use getLongPosition instead");
+      }
+      return (int) pos;
+   }
+
+   @Override
+   public long getLongPosition() {
+      return pos;
+   }
+
+   @Override
+   public void setPosition(int position) {
+      setPosition((long) position);
+   }
+
+   @Override
+   public void setPosition(long position) {
+      if (position < 0) {
+         throw new IllegalArgumentException("Negative position: " + position);
+      }
+      // the bytes up to the position are part of the output, so their chunks must exist
+      ensureCapacity(position);
+      this.pos = position;
+   }
+
+   @Override
+   public void ensureCapacity(int capacity) {
+      ensureCapacity((long) capacity);
+   }
+
+   @Override
+   public void ensureCapacity(long capacity) {
+      long chunksRequired = (capacity + chunkMask) >>> chunkShift;
+      if (chunksRequired > RandomAccessOutputStreamImpl.MAX_ARRAY_SIZE) {
+         throw new IllegalStateException("Required capacity " + capacity + " exceeds the maximum number of chunks");
+      }
+      int required = (int) chunksRequired;
+      if (required > count) {
+         if (required > chunks.length) {
+            // only the references are copied
+            chunks = Arrays.copyOf(chunks, Math.max(required, chunks.length << 1));
+         }
+         for (int i = count; i < required; i++) {
+            chunks[i] = new byte[chunkSize()];
+         }
+         count = required;
+      }
+   }
+
+   @Override
+   public byte get(int position) {
+      return get((long) position);
+   }
+
+   @Override
+   public byte get(long position) {
+      return chunks[(int) (position >>> chunkShift)][(int) position & chunkMask];
+   }
+
+   @Override
+   public void write(int b) {
+      ensureCapacity(pos + 1);
+      write(pos++, b);
+   }
+
+   @Override
+   public void write(byte[] b, int off, int len) {
+      if (len == 0)
+         return;
+
+      ensureCapacity(pos + len);
+      write(pos, b, off, len);
+      pos += len;
+   }
+
+   @Override
+   public void write(int position, int b) {
+      write((long) position, b);
+   }
+
+   @Override
+   public void write(long position, int b) {
+      chunks[(int) (position >>> chunkShift)][(int) position & chunkMask] = (byte) b;
+   }
+
+   @Override
+   public void write(int position, byte[] b, int off, int len) {
+      write((long) position, b, off, len);
+   }
+
+   @Override
+   public void write(long position, byte[] b, int off, int len) {
+      while (len > 0) {
+         int offset = (int) position & chunkMask;
+         int n = Math.min(len, chunkSize() - offset);
+         System.arraycopy(b, off, chunks[(int) (position >>> chunkShift)], offset, n);
+         position += n;
+         off += n;
+         len -= n;
+      }
+   }
+
+   @Override
+   public void writeFixed32Direct(long position, int value) throws IOException {
+      int offset = (int) position & chunkMask;
+      if (offset <= chunkMask - 3) {
+         VarHandlesUtil.INT.set(chunks[(int) (position >>> chunkShift)], offset, value);
+      } else {
+         RandomAccessOutputStream.super.writeFixed32Direct(position, value);
+      }
+   }
+
+   @Override
+   public void writeFixed64Direct(long position, long value) throws IOException {
+      int offset = (int) position & chunkMask;
+      if (offset <= chunkMask - 7) {
+         VarHandlesUtil.LONG.set(chunks[(int) (position >>> chunkShift)], offset, value);
+      } else {
+         RandomAccessOutputStream.super.writeFixed64Direct(position, value);
+      }
+   }
+
+   @Override
+   public void move(int startPos, int length, int newPos) {
+      move((long) startPos, length, newPos);
+   }
+
+   @Override
+   public void move(long startPos, long length, long newPos) {
+      assert startPos < newPos;
+      ensureCapacity(newPos + length);
+      // copy backwards, one piece within a single source and a single target chunk at a time, so the bytes are not
+      // overwritten before being copied
+      while (length > 0) {
+         long srcLast = startPos + length - 1;
+         long dstLast = newPos + length - 1;
+         int srcOffset = (int) srcLast & chunkMask;
+         int dstOffset = (int) dstLast & chunkMask;
+         int n = (int) Math.min(length, Math.min(srcOffset, dstOffset) + 1);
+         System.arraycopy(chunks[(int) (srcLast >>> chunkShift)], srcOffset - n + 1,
+               chunks[(int) (dstLast >>> chunkShift)], dstOffset - n + 1, n);
+         length -= n;
+      }
+   }
+
+   /**
+    * Returns the bytes as a buffer, which wraps the first chunk if all bytes are in it and is a copy otherwise.
+    */
+   @Override
+   public ByteBuffer getByteBuffer() {
+      if (pos <= chunkSize()) {
+         return count == 0 ? ByteBuffer.wrap(new byte[0]) : ByteBuffer.wrap(chunks[0], 0, (int) pos);
+      }
+      return ByteBuffer.wrap(toByteArray());
+   }
+
+   @Override
+   public byte[] toByteArray() {
+      if (pos > RandomAccessOutputStreamImpl.MAX_ARRAY_SIZE) {
+         throw new IllegalStateException("The stream holds " + pos + " bytes, more than an array can");
+      }
+      byte[] bytes = new byte[(int) pos];
+      long remaining = pos;
+      for (int i = 0; remaining > 0; i++) {
+         int n = (int) Math.min(remaining, chunkSize());
+         System.arraycopy(chunks[i], 0, bytes, i << chunkShift, n);
+         remaining -= n;
+      }
+      return bytes;
+   }
+
+   @Override
+   public void copyTo(DataOutput output) throws IOException {
+      long remaining = pos;
+      for (int i = 0; remaining > 0; i++) {
+         int n = (int) Math.min(remaining, chunkSize());
+         output.write(chunks[i], 0, n);
+         remaining -= n;
+      }
+   }
+}
@@ -1,9 +1,12 @@
 package org.infinispan.protostream.impl;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 
 import org.infinispan.protostream.ImmutableSerializationContext;
+import org.infinispan.protostream.RandomAccessOutputStream;
 import org.infinispan.protostream.impl.json.JsonReader;
 import org.infinispan.protostream.impl.json.JsonWriter;
 
@@ -22,6 +25,14 @@ public final class JsonUtils {
       return JsonReader.fromJson(ctx, reader);
    }
 
+   public static void fromCanonicalJSON(ImmutableSerializationContext ctx, InputStream in, RandomAccessOutputStream out) throws IOException {
+      JsonReader.fromJson(ctx, in, out);
+   }
+
+   public static void fromCanonicalJSON(ImmutableSerializationContext ctx, ByteBuffer in, RandomAccessOutputStream out) throws IOException {
+      JsonReader.fromJson(ctx, in, out);
+   }
+
    /**
     * Converts a Protobuf encoded message to its <a href="https://developers.google.com/protocol-buffers/docs/proto3#json">
     * canonical JSON representation</a>.
@@ -40,4 +51,22 @@ public final class JsonUtils {
 
       return JsonWriter.toJson(ctx, bytes, prettyPrint);
    }
+
+   /**
+    * Writes the canonical JSON representation of a Protobuf encoded message to the output as the message is parsed.
+    *
+    * @param ctx         the serialization context
+    * @param bytes       the Protobuf encoded message bytes to parse
+    * @param out         the output of the JSON
+    * @param prettyPrint indicates if the JSON output should use a 'pretty' human-readable format or a compact format
+    * @throws IOException if I/O operations fail
+    */
+   public static void toCanonicalJSON(ImmutableSerializationContext ctx, byte[] bytes, java.lang.Appendable out, boolean prettyPrint) throws IOException {
+      if (bytes.length == 0) {
+         out.append(NULL);
+         return;
+      }
+
+      JsonWriter.writeJson(ctx, bytes, out, prettyPrint);
+   }
 }
@@ -90,7 +90,7 @@ final class MessageMarshallerDelegate<T> extends BaseMarshallerDelegate<T> {
       unknownFieldSet.readAllFields(ctx.getReader());
 
       if (unknownFieldSetHandler != null && !unknownFieldSet.isEmpty()) {
-         unknownFieldSetHandler.setUnknownFieldSet(message, unknownFieldSet);
+         unknownFieldSetHandler.setUnknownFieldSet(message, messageContext.releaseUnknownFieldSet());
       }
 
       reader.exitContext();
@@ -0,0 +1,256 @@
+package org.infinispan.protostream.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.infinispan.protostream.ImmutableSerializationContext;
+import org.infinispan.protostream.MessageView;
+import org.infinispan.protostream.WrappedMessage;
+import org.infinispan.protostream.descriptors.Descriptor;
+import org.infinispan.protostream.descriptors.FieldDescriptor;
+import org.infinispan.protostream.descriptors.GenericDescriptor;
+import org.infinispan.protostream.descriptors.MapDescriptor;
+import org.infinispan.protostream.descriptors.WireType;
+
+/**
+ * A {@link MessageView} over a range of a byte array or of a buffer without a backing array.
+ * <p>
+ * The index holds the tag and the offset of the value of every field of the message, in the order they were found.
+ * It is built on first access by skipping over the values. Messages are small enough that a scan of the index is
+ * cheaper than hashing the field numbers.
+ *
+ * @since 6.0.11
+ */
+public final class MessageViewImpl implements MessageView {
+
+   private static final int INITIAL_INDEX_SIZE = 16;
+
+   private final Descriptor descriptor;
+
+   // exactly one of them is set, a buffer is only used when it does not have a backing array
+   private final byte[] array;
+   private final ByteBuffer buffer;
+
+   // the range of the message, as absolute positions in the array or buffer
+   private final int start;
+   private final int end;
+
+   // lazily initialized
+   private int[] tags;
+   private int[] offsets;
+   private int size = -1;
+
+   private MessageViewImpl(Descriptor descriptor, byte[] array, ByteBuffer buffer, int start, int end) {
+      this.descriptor = descriptor;
+      this.array = array;
+      this.buffer = buffer;
+      this.start = start;
+      this.end = end;
+   }
+
+   public static MessageViewImpl newInstance(Descriptor descriptor, byte[] bytes, int offset, int length) {
+      if (descriptor == null) {
+         throw new IllegalArgumentException("descriptor cannot be null");
+      }
+      if (offset < 0 || length < 0 || offset + length > bytes.length) {
+         throw new IllegalArgumentException("The range is outside the array bounds");
+      }
+      return new MessageViewImpl(descriptor, bytes, null, offset, offset + length);
+   }
+
+   public static MessageViewImpl newInstance(Descriptor descriptor, ByteBuffer buffer) {
+      if (buffer.hasArray()) {
+         return newInstance(descriptor, buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      }
+      if (descriptor == null) {
+         throw new IllegalArgumentException("descriptor cannot be null");
+      }
+      return new MessageViewImpl(descriptor, null, buffer, buffer.position(), buffer.limit());
+   }
+
+   public static MessageViewImpl newWrappedInstance(ImmutableSerializationContext ctx, byte[] bytes) throws IOException {
+      MessageViewImpl wrapper = newInstance(ctx.getMessageDescriptor(WrappedMessage.PROTOBUF_TYPE_NAME), bytes, 0, bytes.length);
+      Object typeId = wrapper.getField(WrappedMessage.WRAPPED_TYPE_ID);
+      GenericDescriptor type = typeId != null
+            ? ctx.getDescriptorByTypeId((Integer) typeId)
+            : ctx.getDescriptorByName((String) wrapper.getField(WrappedMessage.WRAPPED_TYPE_NAME));
+      int i = wrapper.lastOccurrence(WrappedMessage.WRAPPED_MESSAGE);
+      if (!(type instanceof Descriptor) || i < 0) {
+         throw new IllegalArgumentException("The bytes do not contain a wrapped message");
+      }
+      // the wrapped message is declared as bytes, so it is viewed with the descriptor of its actual type
+      int from = wrapper.offsets[i];
+      TagReaderImpl in = wrapper.reader(from);
+      return wrapper.nested((Descriptor) type, in, from, in.readUInt32());
+   }
+
+   @Override
+   public Descriptor getDescriptor() {
+      return descriptor;
+   }
+
+   @Override
+   public boolean hasField(int fieldNumber) throws IOException {
+      index();
+      return lastOccurrence(fieldNumber) >= 0;
+   }
+
+   @Override
+   public Object getField(int fieldNumber) throws IOException {
+      FieldDescriptor fd = field(fieldNumber);
+      index();
+      int i = lastOccurrence(fieldNumber);
+      if (i < 0) {
+         return null;
+      }
+      int from = offsets[i];
+      TagReaderImpl in = reader(from);
+      if (WireType.getTagWireType(tags[i]) == WireType.WIRETYPE_LENGTH_DELIMITED && fd.getType().isPackable()) {
+         // a packed block holds several values, of which the last one wins
+         int limit = in.pushLimit(in.readUInt32());
+         Object value = null;
+         while (!in.isAtEnd()) {
+            value = readValue(fd, tags[i], in, from);
+         }
+         in.popLimit(limit);
+         return value;
+      }
+      return readValue(fd, tags[i], in, from);
+   }
+
+   @Override
+   public List<Object> getRepeatedField(int fieldNumber) throws IOException {
+      FieldDescriptor fd = field(fieldNumber);
+      index();
+      List<Object> values = null;
+      for (int i = 0; i < size; i++) {
+         if (WireType.getTagFieldNumber(tags[i]) != fieldNumber) {
+            continue;
+         }
+         if (values == null) {
+            values = new ArrayList<>();
+         }
+         int from = offsets[i];
+         TagReaderImpl in = reader(from);
+         if (WireType.getTagWireType(tags[i]) == WireType.WIRETYPE_LENGTH_DELIMITED && fd.getType().isPackable()) {
+            int limit = in.pushLimit(in.readUInt32());
+            while (!in.isAtEnd()) {
+               values.add(readValue(fd, tags[i], in, from));
+            }
+            in.popLimit(limit);
+         } else {
+            values.add(readValue(fd, tags[i], in, from));
+         }
+      }
+      return values == null ? Collections.emptyList() : values;
+   }
+
+   private FieldDescriptor field(int fieldNumber) {
+      FieldDescriptor fd = descriptor.findFieldByNumber(fieldNumber);
+      if (fd == null) {
+         throw new IllegalArgumentException("Unknown field number " + fieldNumber + " in message " + descriptor.getFullName());
+      }
+      return fd;
+   }
+
+   private int lastOccurrence(int fieldNumber) {
+      for (int i = size - 1; i >= 0; i--) {
+         if (WireType.getTagFieldNumber(tags[i]) == fieldNumber) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   private void index() throws IOException {
+      if (size >= 0) {
+         return;
+      }
+      int[] tags = new int[INITIAL_INDEX_SIZE];
+      int[] offsets = new int[INITIAL_INDEX_SIZE];
+      int size = 0;
+      TagReaderImpl in = reader(start);
+      int tag;
+      while ((tag = in.readTag()) != 0) {
+         if (size == tags.length) {
+            tags = Arrays.copyOf(tags, size << 1);
+            offsets = Arrays.copyOf(offsets, size << 1);
+         }
+         tags[size] = tag;
+         offsets[size++] = position(in, start);
+         if (!in.skipField(tag)) {
+            throw new IOException("Unexpected end group tag in message " + descriptor.getFullName());
+         }
+      }
+      this.tags = tags;
+      this.offsets = offsets;
+      this.size = size;
+   }
+
+   private Object readValue(FieldDescriptor fd, int tag, TagReaderImpl in, int base) throws IOException {
+      return switch (fd.getType()) {
+         case DOUBLE -> in.readDouble();
+         case FLOAT -> in.readFloat();
+         case BOOL -> in.readBool();
+         case INT32 -> in.readInt32();
+         case SFIXED32 -> in.readSFixed32();
+         case FIXED32 -> in.readFixed32();
+         case UINT32 -> in.readUInt32();
+         case SINT32 -> in.readSInt32();
+         case INT64 -> in.readInt64();
+         case UINT64 -> in.readUInt64();
+         case FIXED64 -> in.readFixed64();
+         case SFIXED64 -> in.readSFixed64();
+         case SINT64 -> in.readSInt64();
+         case ENUM -> in.readEnum();
+         case STRING -> in.readString();
+         case BYTES -> in.readByteArray();
+         case MESSAGE, MAP -> nested(fd instanceof MapDescriptor md ? md.asDescriptor() : fd.getMessageType(), in, base, in.readUInt32());
+         case GROUP -> {
+            int from = position(in, base);
+            in.skipField(tag);
+            // the end of the group excludes its closing tag
+            int endTag = WireType.makeTag(fd.getNumber(), WireType.WIRETYPE_END_GROUP);
+            yield new MessageViewImpl(fd.getMessageType(), array, buffer, from, position(in, base) - varintSize(endTag));
+         }
+      };
+   }
+
+   private MessageViewImpl nested(Descriptor type, TagReaderImpl in, int base, int length) {
+      int from = position(in, base);
+      if (length < 0 || from + length > end) {
+         throw new IllegalStateException("Nested message of type " + type.getFullName() + " is truncated");
+      }
+      return new MessageViewImpl(type, array, buffer, from, from + length);
+   }
+
+   /**
+    * A reader from the given position up to the end of the message.
+    */
+   private TagReaderImpl reader(int from) {
+      if (array != null) {
+         return TagReaderImpl.newInstance(null, array, from, end - from);
+      }
+      return TagReaderImpl.newInstance(null, buffer.duplicate().limit(end).position(from));
+   }
+
+   /**
+    * The absolute position of a reader created with {@link #reader(int)} from the given base position.
+    */
+   private int position(TagReaderImpl in, int base) {
+      // positions are absolute in arrays, but relative to where the reader started in buffers
+      return array != null ? in.getPos() : base + in.getPos();
+   }
+
+   private static int varintSize(int value) {
+      int size = 1;
+      while ((value >>>= 7) != 0) {
+         size++;
+      }
+      return size;
+   }
+}
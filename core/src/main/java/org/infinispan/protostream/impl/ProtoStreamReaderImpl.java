@@ -62,16 +62,44 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
 
    private ReadMessageContext messageContext;
 
+   /**
+    * The context of the top level message, kept for reuse along with the contexts nested in it.
+    */
+   private ReadMessageContext rootContext;
+
    static final class ReadMessageContext extends MessageContext<ReadMessageContext> {
 
-      final TagReaderImpl in;
+      TagReaderImpl in;
+
+      UnknownFieldSet unknownFieldSet = new UnknownFieldSetImpl();
 
-      final UnknownFieldSet unknownFieldSet = new UnknownFieldSetImpl();
+      /**
+       * The context last used for a message nested in this one, reused for the next nested message.
+       */
+      ReadMessageContext nestedContext;
 
       ReadMessageContext(ReadMessageContext parent, FieldDescriptor fieldDescriptor, Descriptor messageDescriptor, TagReaderImpl in) {
          super(parent, fieldDescriptor, messageDescriptor);
          this.in = in;
       }
+
+      void reset(ReadMessageContext parent, FieldDescriptor fieldDescriptor, Descriptor messageDescriptor, TagReaderImpl in) {
+         reset(parent, fieldDescriptor, messageDescriptor);
+         this.in = in;
+         if (!unknownFieldSet.isEmpty()) {
+            // left over by a failed read
+            unknownFieldSet = new UnknownFieldSetImpl();
+         }
+      }
+
+      /**
+       * Hands over the unknown fields of the message. The returned set is not reused by this context.
+       */
+      UnknownFieldSet releaseUnknownFieldSet() {
+         UnknownFieldSet released = unknownFieldSet;
+         unknownFieldSet = new UnknownFieldSetImpl();
+         return released;
+      }
    }
 
    ProtoStreamReaderImpl(TagReaderImpl ctx, SerializationContextImpl serCtx) {
@@ -81,8 +109,20 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
    }
 
    ReadMessageContext enterContext(FieldDescriptor fd, Descriptor messageDescriptor, TagReaderImpl in) {
-      messageContext = new ReadMessageContext(messageContext, fd, messageDescriptor, in);
-      return messageContext;
+      ReadMessageContext parent = messageContext;
+      ReadMessageContext context = parent == null ? rootContext : parent.nestedContext;
+      if (context == null) {
+         context = new ReadMessageContext(parent, fd, messageDescriptor, in);
+         if (parent == null) {
+            rootContext = context;
+         } else {
+            parent.nestedContext = context;
+         }
+      } else {
+         context.reset(parent, fd, messageDescriptor, in);
+      }
+      messageContext = context;
+      return context;
    }
 
    void exitContext() {
@@ -93,8 +133,7 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
       return messageContext.unknownFieldSet;
    }
 
-   private Object readPrimitive(String fieldName, JavaType javaType) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+   private Object readPrimitive(FieldDescriptor fd, JavaType javaType) throws IOException {
       final Type type = fd.getType();
       if (type == Type.ENUM
             || type == Type.GROUP
@@ -180,12 +219,22 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
 
    @Override
    public Integer readInt(String fieldName) throws IOException {
-      return (Integer) readPrimitive(fieldName, JavaType.INT);
+      return (Integer) readPrimitive(messageContext.getFieldByName(fieldName), JavaType.INT);
+   }
+
+   @Override
+   public Integer readInt(FieldDescriptor field) throws IOException {
+      return (Integer) readPrimitive(messageContext.resolveField(field), JavaType.INT);
    }
 
    @Override
    public int[] readInts(String fieldName) throws IOException {
-      List<Integer> values = readCollection(fieldName, new ArrayList<>(), Integer.class);
+      return readInts(messageContext.getFieldByName(fieldName));
+   }
+
+   @Override
+   public int[] readInts(FieldDescriptor field) throws IOException {
+      List<Integer> values = readCollection(field, new ArrayList<>(), Integer.class);
       int[] result = new int[values.size()];
       for (int i = 0; i < values.size(); i++) {
          result[i] = values.get(i);
@@ -195,12 +244,22 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
 
    @Override
    public Long readLong(String fieldName) throws IOException {
-      return (Long) readPrimitive(fieldName, JavaType.LONG);
+      return (Long) readPrimitive(messageContext.getFieldByName(fieldName), JavaType.LONG);
+   }
+
+   @Override
+   public Long readLong(FieldDescriptor field) throws IOException {
+      return (Long) readPrimitive(messageContext.resolveField(field), JavaType.LONG);
    }
 
    @Override
    public long[] readLongs(String fieldName) throws IOException {
-      List<Long> values = readCollection(fieldName, new ArrayList<>(), Long.class);
+      return readLongs(messageContext.getFieldByName(fieldName));
+   }
+
+   @Override
+   public long[] readLongs(FieldDescriptor field) throws IOException {
+      List<Long> values = readCollection(field, new ArrayList<>(), Long.class);
       long[] result = new long[values.size()];
       for (int i = 0; i < values.size(); i++) {
          result[i] = values.get(i);
@@ -210,24 +269,44 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
 
    @Override
    public Date readDate(String fieldName) throws IOException {
-      Long tstamp = readLong(fieldName);
+      return readDate(messageContext.getFieldByName(fieldName));
+   }
+
+   @Override
+   public Date readDate(FieldDescriptor field) throws IOException {
+      Long tstamp = readLong(field);
       return tstamp == null ? null : new Date(tstamp);
    }
 
    @Override
    public Instant readInstant(String fieldName) throws IOException {
-      Long tstamp = readLong(fieldName);
+      return readInstant(messageContext.getFieldByName(fieldName));
+   }
+
+   @Override
+   public Instant readInstant(FieldDescriptor field) throws IOException {
+      Long tstamp = readLong(field);
       return tstamp == null ? null : Instant.ofEpochMilli(tstamp);
    }
 
    @Override
    public Float readFloat(String fieldName) throws IOException {
-      return (Float) readPrimitive(fieldName, JavaType.FLOAT);
+      return (Float) readPrimitive(messageContext.getFieldByName(fieldName), JavaType.FLOAT);
+   }
+
+   @Override
+   public Float readFloat(FieldDescriptor field) throws IOException {
+      return (Float) readPrimitive(messageContext.resolveField(field), JavaType.FLOAT);
    }
 
    @Override
    public float[] readFloats(String fieldName) throws IOException {
-      List<Float> values = readCollection(fieldName, new ArrayList<>(), Float.class);
+      return readFloats(messageContext.getFieldByName(fieldName));
+   }
+
+   @Override
+   public float[] readFloats(FieldDescriptor field) throws IOException {
+      List<Float> values = readCollection(field, new ArrayList<>(), Float.class);
       float[] result = new float[values.size()];
       for (int i = 0; i < values.size(); i++) {
          result[i] = values.get(i);
@@ -237,12 +316,22 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
 
    @Override
    public Double readDouble(String fieldName) throws IOException {
-      return (Double) readPrimitive(fieldName, JavaType.DOUBLE);
+      return (Double) readPrimitive(messageContext.getFieldByName(fieldName), JavaType.DOUBLE);
+   }
+
+   @Override
+   public Double readDouble(FieldDescriptor field) throws IOException {
+      return (Double) readPrimitive(messageContext.resolveField(field), JavaType.DOUBLE);
    }
 
    @Override
    public double[] readDoubles(String fieldName) throws IOException {
-      List<Double> values = readCollection(fieldName, new ArrayList<>(), Double.class);
+      return readDoubles(messageContext.getFieldByName(fieldName));
+   }
+
+   @Override
+   public double[] readDoubles(FieldDescriptor field) throws IOException {
+      List<Double> values = readCollection(field, new ArrayList<>(), Double.class);
       double[] result = new double[values.size()];
       for (int i = 0; i < values.size(); i++) {
          result[i] = values.get(i);
@@ -252,12 +341,22 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
 
    @Override
    public Boolean readBoolean(String fieldName) throws IOException {
-      return (Boolean) readPrimitive(fieldName, JavaType.BOOLEAN);
+      return (Boolean) readPrimitive(messageContext.getFieldByName(fieldName), JavaType.BOOLEAN);
+   }
+
+   @Override
+   public Boolean readBoolean(FieldDescriptor field) throws IOException {
+      return (Boolean) readPrimitive(messageContext.resolveField(field), JavaType.BOOLEAN);
    }
 
    @Override
    public boolean[] readBooleans(String fieldName) throws IOException {
-      List<Boolean> values = readCollection(fieldName, new ArrayList<>(), Boolean.class);
+      return readBooleans(messageContext.getFieldByName(fieldName));
+   }
+
+   @Override
+   public boolean[] readBooleans(FieldDescriptor field) throws IOException {
+      List<Boolean> values = readCollection(field, new ArrayList<>(), Boolean.class);
       boolean[] result = new boolean[values.size()];
       for (int i = 0; i < values.size(); i++) {
          result[i] = values.get(i);
@@ -267,28 +366,53 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
 
    @Override
    public String readString(String fieldName) throws IOException {
-      return (String) readPrimitive(fieldName, JavaType.STRING);
+      return (String) readPrimitive(messageContext.getFieldByName(fieldName), JavaType.STRING);
+   }
+
+   @Override
+   public String readString(FieldDescriptor field) throws IOException {
+      return (String) readPrimitive(messageContext.resolveField(field), JavaType.STRING);
    }
 
    @Override
    public byte[] readBytes(String fieldName) throws IOException {
-      return (byte[]) readPrimitive(fieldName, JavaType.BYTE_STRING);
+      return (byte[]) readPrimitive(messageContext.getFieldByName(fieldName), JavaType.BYTE_STRING);
+   }
+
+   @Override
+   public byte[] readBytes(FieldDescriptor field) throws IOException {
+      return (byte[]) readPrimitive(messageContext.resolveField(field), JavaType.BYTE_STRING);
    }
 
    @Override
    public InputStream readBytesAsInputStream(String fieldName) throws IOException {
-      byte[] bytes = readBytes(fieldName);
+      return readBytesAsInputStream(messageContext.getFieldByName(fieldName));
+   }
+
+   @Override
+   public InputStream readBytesAsInputStream(FieldDescriptor field) throws IOException {
+      byte[] bytes = readBytes(field);
       return bytes != null ? new ByteArrayInputStream(bytes) : null;
    }
 
    @Override
    public <E extends Enum<E>> E readEnum(String fieldName, Class<E> clazz) throws IOException {
-      return readObject(fieldName, clazz);
+      return readEnum(messageContext.getFieldByName(fieldName), clazz);
+   }
+
+   @Override
+   public <E extends Enum<E>> E readEnum(FieldDescriptor field, Class<E> clazz) throws IOException {
+      return readObject(field, clazz);
    }
 
    @Override
    public <E> E readObject(String fieldName, Class<E> clazz) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      return readObject(messageContext.getFieldByName(fieldName), clazz);
+   }
+
+   @Override
+   public <E> E readObject(FieldDescriptor field, Class<E> clazz) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkFieldRead(fd, false);
 
       if (fd.getType() == Type.ENUM) {
@@ -346,7 +470,12 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
 
    @Override
    public <E, C extends Collection<? super E>> C readCollection(String fieldName, C collection, Class<E> elementClass) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      return readCollection(messageContext.getFieldByName(fieldName), collection, elementClass);
+   }
+
+   @Override
+   public <E, C extends Collection<? super E>> C readCollection(FieldDescriptor field, C collection, Class<E> elementClass) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkFieldRead(fd, true);
 
       if (primitiveTypes.contains(fd.getType())) {
@@ -384,6 +513,17 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
          collection.add(e);
       }
 
+      final int packedTag = enumMarshallerDelegate != null ? WireType.makeTag(fd.getNumber(), WireType.WIRETYPE_LENGTH_DELIMITED) : -1;
+      if (packedTag != -1) {
+         while (true) {
+            Object o = messageContext.unknownFieldSet.consumeTag(packedTag);
+            if (o == null) {
+               break;
+            }
+            readPackedEnums(collection, enumMarshallerDelegate, expectedTag, TagReaderImpl.newNestedInstance(messageContext.in, (byte[]) o));
+         }
+      }
+
       while (true) {
          int tag = messageContext.in.readTag();
          if (tag == 0) {
@@ -391,6 +531,11 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
          }
          if (tag == expectedTag) {
             collection.add(readNestedObject(fd, elementClass, messageContext.in, -1));
+         } else if (tag == packedTag) {
+            int length = messageContext.in.readUInt32();
+            int oldLimit = messageContext.in.pushLimit(length);
+            readPackedEnums(collection, enumMarshallerDelegate, expectedTag, messageContext.in);
+            messageContext.in.popLimit(oldLimit);
          } else {
             messageContext.unknownFieldSet.readSingleField(tag, messageContext.in);
          }
@@ -398,9 +543,17 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
       return collection;
    }
 
+   private <E> void readPackedEnums(Collection<? super E> collection, EnumMarshallerDelegate<?> enumMarshallerDelegate, int expectedTag, TagReader in) throws IOException {
+      while (!in.isAtEnd()) {
+         collection.add((E) enumMarshallerDelegate.decode(expectedTag, in.readEnum(), messageContext.unknownFieldSet));
+      }
+   }
+
    private void readPrimitiveCollection(FieldDescriptor fd, Collection<? super Object> collection, Class<?> elementClass) throws IOException {
       final int expectedTag = fd.getWireTag();
       Type type = fd.getType();
+      // the packed encoding is accepted for packable types no matter what the schema prefers
+      final int packedTag = type.isPackable() ? WireType.makeTag(fd.getNumber(), WireType.WIRETYPE_LENGTH_DELIMITED) : -1;
 
       while (true) {
          Object o = messageContext.unknownFieldSet.consumeTag(expectedTag);
@@ -409,6 +562,18 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
          }
          collection.add(convertWireTypeToJavaType(type, o));   //todo check that (o.getClass() == elementClass)
       }
+      if (packedTag != -1) {
+         while (true) {
+            Object o = messageContext.unknownFieldSet.consumeTag(packedTag);
+            if (o == null) {
+               break;
+            }
+            TagReaderImpl in = TagReaderImpl.newNestedInstance(messageContext.in, (byte[]) o);
+            while (!in.isAtEnd()) {
+               collection.add(readPrimitiveValue(type, in));
+            }
+         }
+      }
 
       while (true) {
          int tag = messageContext.in.readTag();
@@ -416,35 +581,50 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
             break;
          }
          if (tag == expectedTag) {
-            Object value = switch (type) {
-               case DOUBLE -> messageContext.in.readDouble();
-               case FLOAT -> messageContext.in.readFloat();
-               case BOOL -> messageContext.in.readBool();
-               case STRING -> messageContext.in.readString();
-               case BYTES -> messageContext.in.readByteArray();
-               case INT64 -> messageContext.in.readInt64();
-               case UINT64 -> messageContext.in.readUInt64();
-               case FIXED64 -> messageContext.in.readFixed64();
-               case SFIXED64 -> messageContext.in.readSFixed64();
-               case SINT64 -> messageContext.in.readSInt64();
-               case INT32 -> messageContext.in.readInt32();
-               case FIXED32 -> messageContext.in.readFixed32();
-               case UINT32 -> messageContext.in.readUInt32();
-               case SFIXED32 -> messageContext.in.readSFixed32();
-               case SINT32 -> messageContext.in.readSInt32();
-               default -> throw new IllegalStateException("Unexpected field type : " + type);
-            };
-            collection.add(value);
+            collection.add(readPrimitiveValue(type, messageContext.in));
+         } else if (tag == packedTag) {
+            int length = messageContext.in.readUInt32();
+            int oldLimit = messageContext.in.pushLimit(length);
+            while (!messageContext.in.isAtEnd()) {
+               collection.add(readPrimitiveValue(type, messageContext.in));
+            }
+            messageContext.in.popLimit(oldLimit);
          } else {
             messageContext.unknownFieldSet.readSingleField(tag, messageContext.in);
          }
       }
    }
 
+   private static Object readPrimitiveValue(Type type, TagReader in) throws IOException {
+      return switch (type) {
+         case DOUBLE -> in.readDouble();
+         case FLOAT -> in.readFloat();
+         case BOOL -> in.readBool();
+         case STRING -> in.readString();
+         case BYTES -> in.readByteArray();
+         case INT64 -> in.readInt64();
+         case UINT64 -> in.readUInt64();
+         case FIXED64 -> in.readFixed64();
+         case SFIXED64 -> in.readSFixed64();
+         case SINT64 -> in.readSInt64();
+         case INT32 -> in.readInt32();
+         case FIXED32 -> in.readFixed32();
+         case UINT32 -> in.readUInt32();
+         case SFIXED32 -> in.readSFixed32();
+         case SINT32 -> in.readSInt32();
+         default -> throw new IllegalStateException("Unexpected field type : " + type);
+      };
+   }
+
    @Override
    public <E> E[] readArray(String fieldName, Class<? extends E> elementClass) throws IOException {
+      return readArray(messageContext.getFieldByName(fieldName), elementClass);
+   }
+
+   @Override
+   public <E> E[] readArray(FieldDescriptor field, Class<? extends E> elementClass) throws IOException {
       // the number of repeated elements is not known in advance
-      List<E> values = readCollection(fieldName, new ArrayList<>(), elementClass);
+      List<E> values = readCollection(field, new ArrayList<>(), elementClass);
       return values.toArray((E[]) Array.newInstance(elementClass, values.size()));
    }
 
@@ -459,7 +639,7 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
          }
       }
 
-      if (!messageContext.markField(fd.getNumber())) {
+      if (!messageContext.markField(fd)) {
          throw new IllegalStateException("A field cannot be read twice : " + fd.getFullName());
       }
 
@@ -472,7 +652,12 @@ public final class ProtoStreamReaderImpl implements MessageMarshaller.ProtoStrea
 
    @Override
    public <K, V, M extends Map<? super K, ? super V>> M readMap(String fieldName, M map, Class<K> keyClass, Class<V> valueClass) throws IOException {
-      final MapDescriptor md = (MapDescriptor) messageContext.getFieldByName(fieldName);
+      return readMap(messageContext.getFieldByName(fieldName), map, keyClass, valueClass);
+   }
+
+   @Override
+   public <K, V, M extends Map<? super K, ? super V>> M readMap(FieldDescriptor field, M map, Class<K> keyClass, Class<V> valueClass) throws IOException {
+      final MapDescriptor md = (MapDescriptor) messageContext.resolveField(field);
       TagReaderImpl in = (TagReaderImpl) ctx.getReader();
       final int expectedTag = md.getWireTag();
       while (true) {
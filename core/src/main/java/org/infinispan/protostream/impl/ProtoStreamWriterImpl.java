@@ -3,6 +3,7 @@ package org.infinispan.protostream.impl;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedList;
@@ -10,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.infinispan.protostream.BaseMarshallerDelegate;
+import org.infinispan.protostream.EnumMarshaller;
 import org.infinispan.protostream.ImmutableSerializationContext;
 import org.infinispan.protostream.MessageContext;
 import org.infinispan.protostream.MessageMarshaller;
@@ -36,25 +38,63 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    private final SerializationContextImpl serCtx;
 
+   private final boolean packRepeatedScalarFields;
+
    private WriteMessageContext messageContext;
 
+   /**
+    * The context of the top level message, kept for reuse along with the contexts nested in it.
+    */
+   private WriteMessageContext rootContext;
+
    static final class WriteMessageContext extends MessageContext<WriteMessageContext> {
 
-      final TagWriterImpl out;
+      TagWriterImpl out;
+
+      /**
+       * The context last used for a message nested in this one, reused for the next nested message.
+       */
+      WriteMessageContext nestedContext;
 
       WriteMessageContext(WriteMessageContext parent, FieldDescriptor fieldDescriptor, Descriptor messageDescriptor, TagWriterImpl out) {
          super(parent, fieldDescriptor, messageDescriptor);
          this.out = out;
       }
+
+      void reset(WriteMessageContext parent, FieldDescriptor fieldDescriptor, Descriptor messageDescriptor, TagWriterImpl out) {
+         reset(parent, fieldDescriptor, messageDescriptor);
+         this.out = out;
+      }
    }
 
    ProtoStreamWriterImpl(SerializationContextImpl serCtx) {
       this.serCtx = serCtx;
+      this.packRepeatedScalarFields = serCtx.getConfiguration().packRepeatedScalarFields();
+   }
+
+   /**
+    * Whether the field is written packed. Older readers do not understand the packed encoding, so the schema is only
+    * followed when the configuration enables it.
+    */
+   private boolean isPacked(FieldDescriptor fd) {
+      return packRepeatedScalarFields && fd.isPacked();
    }
 
    WriteMessageContext enterContext(FieldDescriptor fd, Descriptor messageDescriptor, TagWriterImpl out) {
-      messageContext = new WriteMessageContext(messageContext, fd, messageDescriptor, out);
-      return messageContext;
+      WriteMessageContext parent = messageContext;
+      WriteMessageContext context = parent == null ? rootContext : parent.nestedContext;
+      if (context == null) {
+         context = new WriteMessageContext(parent, fd, messageDescriptor, out);
+         if (parent == null) {
+            rootContext = context;
+         } else {
+            parent.nestedContext = context;
+         }
+      } else {
+         context.reset(parent, fd, messageDescriptor, out);
+      }
+      messageContext = context;
+      return context;
    }
 
    void exitContext() {
@@ -68,7 +108,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeInt(String fieldName, int value) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeInt(messageContext.getFieldByName(fieldName), value);
+   }
+
+   @Override
+   public void writeInt(FieldDescriptor field, int value) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkFieldWrite(fd);
       switch (fd.getType()) {
          case INT32:
@@ -93,7 +138,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeInt(String fieldName, Integer value) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeInt(messageContext.getFieldByName(fieldName), value);
+   }
+
+   @Override
+   public void writeInt(FieldDescriptor field, Integer value) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkFieldWrite(fd);
       if (value == null) {
          if (fd.getLabel() == Label.REQUIRED) {
@@ -124,7 +174,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeInts(String fieldName, int[] array) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeInts(messageContext.getFieldByName(fieldName), array);
+   }
+
+   @Override
+   public void writeInts(FieldDescriptor field, int[] array) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkRepeatedFieldWrite(fd);
       if (array == null) {
          // a repeated field can never be flagged as required
@@ -132,6 +187,16 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
       }
       final TagWriter out = messageContext.out;
       final int fieldNumber = fd.getNumber();
+      if (isPacked(fd)) {
+         if (array.length != 0) {
+            try (TagWriter packed = out.subWriter(fieldNumber, true)) {
+               for (int value : array) {
+                  writePackedInt(packed, fd, value);
+               }
+            }
+         }
+         return;
+      }
       switch (fd.getType()) {
          case INT32:
             for (int value : array) {
@@ -165,7 +230,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeLong(String fieldName, long value) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeLong(messageContext.getFieldByName(fieldName), value);
+   }
+
+   @Override
+   public void writeLong(FieldDescriptor field, long value) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkFieldWrite(fd);
       switch (fd.getType()) {
          case INT64:
@@ -190,7 +260,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeLong(String fieldName, Long value) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeLong(messageContext.getFieldByName(fieldName), value);
+   }
+
+   @Override
+   public void writeLong(FieldDescriptor field, Long value) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkFieldWrite(fd);
       if (value == null) {
          if (fd.getLabel() == Label.REQUIRED) {
@@ -221,7 +296,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeLongs(String fieldName, long[] array) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeLongs(messageContext.getFieldByName(fieldName), array);
+   }
+
+   @Override
+   public void writeLongs(FieldDescriptor field, long[] array) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkRepeatedFieldWrite(fd);
       if (array == null) {
          // a repeated field can never be flagged as required
@@ -229,6 +309,16 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
       }
       final TagWriter out = messageContext.out;
       final int fieldNumber = fd.getNumber();
+      if (isPacked(fd)) {
+         if (array.length != 0) {
+            try (TagWriter packed = out.subWriter(fieldNumber, true)) {
+               for (long value : array) {
+                  writePackedLong(packed, fd, value);
+               }
+            }
+         }
+         return;
+      }
       switch (fd.getType()) {
          case INT64:
             for (long value : array) {
@@ -262,21 +352,42 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeDate(String fieldName, Date value) throws IOException {
+      // nothing is written for null, so do not look up the field either
+      if (value != null) {
+         writeLong(messageContext.getFieldByName(fieldName), value.getTime());
+      }
+   }
+
+   @Override
+   public void writeDate(FieldDescriptor field, Date value) throws IOException {
       if (value != null) {
-         writeLong(fieldName, value.getTime());
+         writeLong(field, value.getTime());
       }
    }
 
    @Override
    public void writeInstant(String fieldName, Instant value) throws IOException {
+      // nothing is written for null, so do not look up the field either
       if (value != null) {
-         writeLong(fieldName, value.toEpochMilli());
+         writeLong(messageContext.getFieldByName(fieldName), value.toEpochMilli());
+      }
+   }
+
+   @Override
+   public void writeInstant(FieldDescriptor field, Instant value) throws IOException {
+      if (value != null) {
+         writeLong(field, value.toEpochMilli());
       }
    }
 
    @Override
    public void writeDouble(String fieldName, double value) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeDouble(messageContext.getFieldByName(fieldName), value);
+   }
+
+   @Override
+   public void writeDouble(FieldDescriptor field, double value) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkFieldWrite(fd);
       if (fd.getType() != Type.DOUBLE) {
          throw new IllegalArgumentException("The Protobuf declared field type is not compatible with the written type : " + fd.getFullName());
@@ -286,7 +397,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeDouble(String fieldName, Double value) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeDouble(messageContext.getFieldByName(fieldName), value);
+   }
+
+   @Override
+   public void writeDouble(FieldDescriptor field, Double value) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       if (fd.getType() != Type.DOUBLE) {
          throw new IllegalArgumentException("The Protobuf declared field type is not compatible with the written type : " + fd.getFullName());
       }
@@ -302,7 +418,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeDoubles(String fieldName, double[] array) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeDoubles(messageContext.getFieldByName(fieldName), array);
+   }
+
+   @Override
+   public void writeDoubles(FieldDescriptor field, double[] array) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       if (fd.getType() != Type.DOUBLE) {
          throw new IllegalArgumentException("The Protobuf declared field type is not compatible with the written type : " + fd.getFullName());
       }
@@ -313,6 +434,16 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
       }
       final TagWriter out = messageContext.out;
       final int fieldNumber = fd.getNumber();
+      if (isPacked(fd)) {
+         if (array.length != 0) {
+            try (TagWriter packed = out.subWriter(fieldNumber, true)) {
+               for (double value : array) {
+                  packed.writeRawFixed64(Double.doubleToRawLongBits(value));
+               }
+            }
+         }
+         return;
+      }
       for (double value : array) {
          out.writeDouble(fieldNumber, value);
       }
@@ -320,7 +451,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeFloat(String fieldName, float value) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeFloat(messageContext.getFieldByName(fieldName), value);
+   }
+
+   @Override
+   public void writeFloat(FieldDescriptor field, float value) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       if (fd.getType() != Type.FLOAT) {
          throw new IllegalArgumentException("The Protobuf declared field type is not compatible with the written type : " + fd.getFullName());
       }
@@ -330,7 +466,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeFloat(String fieldName, Float value) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeFloat(messageContext.getFieldByName(fieldName), value);
+   }
+
+   @Override
+   public void writeFloat(FieldDescriptor field, Float value) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       if (fd.getType() != Type.FLOAT) {
          throw new IllegalArgumentException("The Protobuf declared field type is not compatible with the written type : " + fd.getFullName());
       }
@@ -346,7 +487,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeFloats(String fieldName, float[] array) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeFloats(messageContext.getFieldByName(fieldName), array);
+   }
+
+   @Override
+   public void writeFloats(FieldDescriptor field, float[] array) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       if (fd.getType() != Type.FLOAT) {
          throw new IllegalArgumentException("The Protobuf declared field type is not compatible with the written type : " + fd.getFullName());
       }
@@ -357,6 +503,16 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
       }
       final TagWriter out = messageContext.out;
       final int fieldNumber = fd.getNumber();
+      if (isPacked(fd)) {
+         if (array.length != 0) {
+            try (TagWriter packed = out.subWriter(fieldNumber, true)) {
+               for (float value : array) {
+                  packed.writeRawFixed32(Float.floatToRawIntBits(value));
+               }
+            }
+         }
+         return;
+      }
       for (float value : array) {
          out.writeFloat(fieldNumber, value);
       }
@@ -364,7 +520,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeBoolean(String fieldName, boolean value) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeBoolean(messageContext.getFieldByName(fieldName), value);
+   }
+
+   @Override
+   public void writeBoolean(FieldDescriptor field, boolean value) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       if (fd.getType() != Type.BOOL) {
          throw new IllegalArgumentException("The Protobuf declared field type is not compatible with the written type : " + fd.getFullName());
       }
@@ -374,7 +535,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeBoolean(String fieldName, Boolean value) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeBoolean(messageContext.getFieldByName(fieldName), value);
+   }
+
+   @Override
+   public void writeBoolean(FieldDescriptor field, Boolean value) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       if (fd.getType() != Type.BOOL) {
          throw new IllegalArgumentException("The Protobuf declared field type is not compatible with the written type : " + fd.getFullName());
       }
@@ -390,7 +556,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeBooleans(String fieldName, boolean[] array) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeBooleans(messageContext.getFieldByName(fieldName), array);
+   }
+
+   @Override
+   public void writeBooleans(FieldDescriptor field, boolean[] array) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       if (fd.getType() != Type.BOOL) {
          throw new IllegalArgumentException("The Protobuf declared field type is not compatible with the written type : " + fd.getFullName());
       }
@@ -401,6 +572,16 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
       }
       final TagWriter out = messageContext.out;
       final int fieldNumber = fd.getNumber();
+      if (isPacked(fd)) {
+         if (array.length != 0) {
+            try (TagWriter packed = out.subWriter(fieldNumber, true)) {
+               for (boolean value : array) {
+                  packed.writeVarint32(value ? 1 : 0);
+               }
+            }
+         }
+         return;
+      }
       for (boolean value : array) {
          out.writeBool(fieldNumber, value);
       }
@@ -408,7 +589,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeString(String fieldName, String value) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeString(messageContext.getFieldByName(fieldName), value);
+   }
+
+   @Override
+   public void writeString(FieldDescriptor field, String value) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkFieldWrite(fd);
       if (fd.getType() != Type.STRING) {
          throw new IllegalArgumentException("Declared field type is not of type string : " + fd.getFullName());
@@ -424,7 +610,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeBytes(String fieldName, byte[] value) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeBytes(messageContext.getFieldByName(fieldName), value);
+   }
+
+   @Override
+   public void writeBytes(FieldDescriptor field, byte[] value) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkFieldWrite(fd);
       if (fd.getType() != Type.BYTES) {
          throw new IllegalArgumentException("Declared field type is not of type bytes : " + fd.getFullName());
@@ -440,7 +631,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public void writeBytes(String fieldName, InputStream input) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeBytes(messageContext.getFieldByName(fieldName), input);
+   }
+
+   @Override
+   public void writeBytes(FieldDescriptor field, InputStream input) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkFieldWrite(fd);
       if (fd.getType() != Type.BYTES) {
          throw new IllegalArgumentException("Declared field type is not of type bytes : " + fd.getFullName());
@@ -470,7 +666,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public <E> void writeObject(String fieldName, E value, Class<? extends E> clazz) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeObject(messageContext.getFieldByName(fieldName), value, clazz);
+   }
+
+   @Override
+   public <E> void writeObject(FieldDescriptor field, E value, Class<? extends E> clazz) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkFieldWrite(fd);
       if (value == null) {
          if (fd.getLabel() == Label.REQUIRED) {
@@ -483,7 +684,7 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
       } else if (fd.getType() == Type.MESSAGE) {
          writeMessage(fd, value, clazz);
       } else if (fd.getType() == Type.ENUM) {
-         writeEnum(fd, (Enum) value);
+         writeEnumValue(fd, (Enum) value);
       } else {
          throw new IllegalArgumentException("Declared field type is not a message or an enum : " + fd.getFullName());
       }
@@ -491,7 +692,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public <E extends Enum<E>> void writeEnum(String fieldName, E value) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeEnum(messageContext.getFieldByName(fieldName), value);
+   }
+
+   @Override
+   public <E extends Enum<E>> void writeEnum(FieldDescriptor field, E value) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       if (fd.getType() != Type.ENUM) {
          throw new IllegalArgumentException("Declared field type is not an enum : " + fd.getFullName());
       }
@@ -502,7 +708,7 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
          }
          return;
       }
-      writeEnum(fd, value);
+      writeEnumValue(fd, value);
    }
 
    private void writeMessage(FieldDescriptor fd, Object value, Class<?> clazz) throws IOException {
@@ -519,14 +725,19 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
       messageContext.out.writeTag(fd.getNumber(), WireType.WIRETYPE_END_GROUP);
    }
 
-   private <T extends Enum<T>> void writeEnum(FieldDescriptor fd, T value) throws IOException {
+   private <T extends Enum<T>> void writeEnumValue(FieldDescriptor fd, T value) throws IOException {
       BaseMarshallerDelegate<T> marshallerDelegate = (BaseMarshallerDelegate<T>) serCtx.getMarshallerDelegate(value.getClass());
       marshallerDelegate.marshall(messageContext.out, fd, value);
    }
 
    @Override
    public <E> void writeCollection(String fieldName, Collection<? super E> collection, Class<E> elementClass) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeCollection(messageContext.getFieldByName(fieldName), collection, elementClass);
+   }
+
+   @Override
+   public <E> void writeCollection(FieldDescriptor field, Collection<? super E> collection, Class<E> elementClass) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkRepeatedFieldWrite(fd);
       if (collection == null) {
          // a repeated field can never be flagged as required
@@ -535,6 +746,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
       final TagWriter out = messageContext.out;
       final int fieldNumber = fd.getNumber();
+      if (isPacked(fd)) {
+         if (!collection.isEmpty()) {
+            writePacked(fd, collection, elementClass);
+         }
+         return;
+      }
       switch (fd.getType()) {
          case GROUP:
             for (Object t : collection) {
@@ -551,7 +768,7 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
          case ENUM:
             for (Object t : collection) {
                validateElement(t, elementClass);
-               writeEnum(fd, (Enum) t);
+               writeEnumValue(fd, (Enum) t);
             }
             break;
          case DOUBLE:
@@ -666,7 +883,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public <E> void writeArray(String fieldName, E[] array, Class<? extends E> elementClass) throws IOException {
-      final FieldDescriptor fd = messageContext.getFieldByName(fieldName);
+      writeArray(messageContext.getFieldByName(fieldName), array, elementClass);
+   }
+
+   @Override
+   public <E> void writeArray(FieldDescriptor field, E[] array, Class<? extends E> elementClass) throws IOException {
+      final FieldDescriptor fd = messageContext.resolveField(field);
       checkRepeatedFieldWrite(fd);
       if (array == null) {
          // a repeated field can never be flagged as required
@@ -675,6 +897,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
       final TagWriter out = messageContext.out;
       final int fieldNumber = fd.getNumber();
+      if (isPacked(fd)) {
+         if (array.length != 0) {
+            writePacked(fd, Arrays.asList(array), elementClass);
+         }
+         return;
+      }
       switch (fd.getType()) {
          case GROUP:
             for (Object t : array) {
@@ -691,7 +919,7 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
          case ENUM:
             for (Object t : array) {
                validateElement(t, elementClass);
-               writeEnum(fd, (Enum) t);
+               writeEnumValue(fd, (Enum) t);
             }
             break;
          case DOUBLE:
@@ -806,7 +1034,12 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
 
    @Override
    public <K, V> void writeMap(String fieldName, Map<? super K, ? super V> map, Class<K> keyClass, Class<V> valueClass) throws IOException {
-      final MapDescriptor md = (MapDescriptor) messageContext.getFieldByName(fieldName);
+      writeMap(messageContext.getFieldByName(fieldName), map, keyClass, valueClass);
+   }
+
+   @Override
+   public <K, V> void writeMap(FieldDescriptor field, Map<? super K, ? super V> map, Class<K> keyClass, Class<V> valueClass) throws IOException {
+      final MapDescriptor md = (MapDescriptor) messageContext.resolveField(field);
       if (map == null) {
          // a map can never be flagged as required
          return;
@@ -888,6 +1121,60 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
       }
    }
 
+   private void writePacked(FieldDescriptor fd, Collection<?> elements, Class<?> elementClass) throws IOException {
+      final Type type = fd.getType();
+      EnumMarshaller enumMarshaller = null;
+      switch (type.getJavaType()) {
+         case DOUBLE -> validateElementClass(elementClass, Double.class);
+         case FLOAT -> validateElementClass(elementClass, Float.class);
+         case BOOLEAN -> validateElementClass(elementClass, Boolean.class);
+         case LONG -> validateElementClass(elementClass, Long.class);
+         case INT -> validateElementClass(elementClass, Integer.class);
+         case ENUM -> enumMarshaller = (EnumMarshaller) serCtx.getMarshallerDelegate(elementClass).getMarshaller();
+      }
+      try (TagWriter packed = messageContext.out.subWriter(fd.getNumber(), true)) {
+         for (Object value : elements) {
+            validateElement(value, elementClass);
+            switch (type) {
+               case DOUBLE -> packed.writeRawFixed64(Double.doubleToRawLongBits((Double) value));
+               case FLOAT -> packed.writeRawFixed32(Float.floatToRawIntBits((Float) value));
+               case BOOL -> packed.writeVarint32((Boolean) value ? 1 : 0);
+               case ENUM -> packed.writeVarint64(enumMarshaller.encode((Enum) value));
+               case INT64, UINT64, FIXED64, SFIXED64, SINT64 -> writePackedLong(packed, fd, (Long) value);
+               default -> writePackedInt(packed, fd, (Integer) value);
+            }
+         }
+      }
+   }
+
+   /**
+    * Writes an element of a packed repeated field of a 32-bit integer type, without a tag.
+    */
+   private static void writePackedInt(TagWriter out, FieldDescriptor fd, int value) throws IOException {
+      switch (fd.getType()) {
+         // sign extended to 64 bits, like TagWriter.writeInt32 does
+         case INT32 -> out.writeVarint64(value);
+         case UINT32 -> out.writeVarint32(value);
+         case SINT32 -> out.writeVarint32((value << 1) ^ (value >> 31));
+         case FIXED32, SFIXED32 -> out.writeRawFixed32(value);
+         default ->
+               throw new IllegalArgumentException("The Protobuf declared field type is not compatible with the written type : " + fd.getFullName());
+      }
+   }
+
+   /**
+    * Writes an element of a packed repeated field of a 64-bit integer type, without a tag.
+    */
+   private static void writePackedLong(TagWriter out, FieldDescriptor fd, long value) throws IOException {
+      switch (fd.getType()) {
+         case INT64, UINT64 -> out.writeVarint64(value);
+         case SINT64 -> out.writeVarint64((value << 1) ^ (value >> 63));
+         case FIXED64, SFIXED64 -> out.writeRawFixed64(value);
+         default ->
+               throw new IllegalArgumentException("The Protobuf declared field type is not compatible with the written type : " + fd.getFullName());
+      }
+   }
+
    private void validateElementClass(Class<?> elementClass, Class<?> expectedElementClass) {
       if (elementClass != expectedElementClass) {
          throw new IllegalArgumentException("elementClass argument should be " + expectedElementClass.getCanonicalName());
@@ -911,7 +1198,7 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
          throw new IllegalStateException("A repeated field should be written with one of the methods intended for collections or arrays: " + fd.getFullName());
       }
 
-      if (!messageContext.markField(fd.getNumber())) {
+      if (!messageContext.markField(fd)) {
          throw new IllegalStateException("A field cannot be written twice : " + fd.getFullName());
       }
 
@@ -930,7 +1217,7 @@ final class ProtoStreamWriterImpl implements MessageMarshaller.ProtoStreamWriter
          throw new IllegalStateException("This field is not repeated and cannot be written with the methods intended for collections or arrays: " + fd.getFullName());
       }
 
-      if (!messageContext.markField(fd.getNumber())) {
+      if (!messageContext.markField(fd)) {
          throw new IllegalStateException("A field cannot be written twice : " + fd.getFullName());
       }
 
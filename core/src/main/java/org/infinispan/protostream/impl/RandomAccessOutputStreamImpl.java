@@ -14,6 +14,9 @@ public class RandomAccessOutputStreamImpl extends OutputStream implements Random
 
    static final int DEFAULT_DOUBLING_SIZE = 4 * 1024 * 1024; // 4MB
 
+   // some VMs reserve header words in arrays
+   static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
    protected byte[] buf;
    protected int pos = 0;
 
@@ -31,6 +34,11 @@ public class RandomAccessOutputStreamImpl extends OutputStream implements Random
       return buf[position];
    }
 
+   @Override
+   public byte get(long position) {
+      return buf[(int) position];
+   }
+
    @Override
    public void write(int b) {
       int newpos = pos + 1;
@@ -44,9 +52,9 @@ public class RandomAccessOutputStreamImpl extends OutputStream implements Random
       if (len == 0)
          return;
 
+      ensureCapacity((long) pos + len);
       final int newcount = pos + len;
-      ensureCapacity(newcount);
-      write(pos, b, off, len);
+      write((long) pos, b, off, len);
       pos = newcount;
    }
 
@@ -55,24 +63,47 @@ public class RandomAccessOutputStreamImpl extends OutputStream implements Random
       buf[position] = (byte) b;
    }
 
+   @Override
+   public void write(long position, int b) {
+      buf[(int) position] = (byte) b;
+   }
+
    @Override
    public void write(int position, byte[] b, int off, int len) {
       System.arraycopy(b, off, buf, position, len);
    }
 
+   @Override
+   public void write(long position, byte[] b, int off, int len) {
+      System.arraycopy(b, off, buf, (int) position, len);
+   }
+
    @Override
    public void move(int startPos, int length, int newPos) {
+      move((long) startPos, length, newPos);
+   }
+
+   @Override
+   public void move(long startPos, long length, long newPos) {
       assert startPos < newPos;
       ensureCapacity(newPos + length);
-      System.arraycopy(buf, startPos, buf, newPos, length);
+      System.arraycopy(buf, (int) startPos, buf, (int) newPos, (int) length);
    }
 
    @Override
    public void ensureCapacity(int capacity) {
+      ensureCapacity((long) capacity);
+   }
+
+   @Override
+   public void ensureCapacity(long capacity) {
+      if (capacity > MAX_ARRAY_SIZE) {
+         throw new IllegalStateException("Required capacity " + capacity + " exceeds the maximum array size, use RandomAccessOutputStream.chunked instead");
+      }
       if (buf == null) {
-         buf = new byte[Math.max(MIN_SIZE, capacity)];
+         buf = new byte[Math.max(MIN_SIZE, (int) capacity)];
       } else if (capacity > buf.length) {
-         byte[] newbuf = new byte[getNewBufferSize(buf.length, capacity)];
+         byte[] newbuf = new byte[getNewBufferSize(buf.length, (int) capacity)];
          System.arraycopy(buf, 0, newbuf, 0, pos);
          buf = newbuf;
       }
@@ -82,7 +113,7 @@ public class RandomAccessOutputStreamImpl extends OutputStream implements Random
       if (curSize <= DEFAULT_DOUBLING_SIZE)
          return Math.max(curSize << 1, minNewSize);
       else
-         return Math.max(curSize + (curSize >> 2), minNewSize);
+         return (int) Math.min(Math.max(curSize + (long) (curSize >> 2), minNewSize), MAX_ARRAY_SIZE);
    }
 
    @Override
@@ -90,9 +121,22 @@ public class RandomAccessOutputStreamImpl extends OutputStream implements Random
       return pos;
    }
 
+   @Override
+   public long getLongPosition() {
+      return pos;
+   }
+
    @Override
    public void setPosition(int position) {
-      this.pos = position;
+      setPosition((long) position);
+   }
+
+   @Override
+   public void setPosition(long position) {
+      if (position < 0 || position > MAX_ARRAY_SIZE) {
+         throw new IllegalArgumentException("Position " + position + " is outside the maximum array size, use RandomAccessOutputStream.chunked instead");
+      }
+      this.pos = (int) position;
    }
 
    @Override
@@ -117,8 +161,18 @@ public class RandomAccessOutputStreamImpl extends OutputStream implements Random
       VarHandlesUtil.INT.set(buf, position, value);
    }
 
+   @Override
+   public void writeFixed32Direct(long position, int value) {
+      VarHandlesUtil.INT.set(buf, (int) position, value);
+   }
+
    @Override
    public void writeFixed64Direct(int position, long value) {
       VarHandlesUtil.LONG.set(buf, position, value);
    }
+
+   @Override
+   public void writeFixed64Direct(long position, long value) {
+      VarHandlesUtil.LONG.set(buf, (int) position, value);
+   }
 }
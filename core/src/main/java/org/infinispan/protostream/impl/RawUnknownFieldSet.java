@@ -0,0 +1,260 @@
+package org.infinispan.protostream.impl;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+import org.infinispan.protostream.BytesView;
+import org.infinispan.protostream.TagReader;
+import org.infinispan.protostream.TagWriter;
+import org.infinispan.protostream.UnknownFieldSet;
+import org.infinispan.protostream.descriptors.WireType;
+
+/**
+ * {@link UnknownFieldSet} implementation keeping the fields in their encoded form, in the order they were read. The
+ * fields are copied once from the input into a single array and {@link #writeTo(TagWriter)} writes that array back as
+ * is. Only the tag and the start of each field are indexed. Values are decoded when they are consumed with
+ * {@link #consumeTag(int)}, as {@link Long} for varint and fixed64 fields, {@link Integer} for fixed32 fields,
+ * {@code byte[]} for length delimited fields and {@link UnknownFieldSet} for groups.
+ * <p>
+ * This is not thread-safe. This class should never be directly instantiated by users even though it is marked
+ * {@code public}.
+ *
+ * @since 6.0.11
+ */
+public final class RawUnknownFieldSet implements UnknownFieldSet, Externalizable {
+
+   private static final byte[] EMPTY_BYTES = new byte[0];
+
+   private static final int[] EMPTY_INTS = new int[0];
+
+   // the encoded fields
+   private byte[] bytes = EMPTY_BYTES;
+   private int size;
+
+   // the tag and the start of each field
+   private int[] tags = EMPTY_INTS;
+   private int[] starts = EMPTY_INTS;
+   private int count;
+
+   public RawUnknownFieldSet() {
+      // needs to be public to be Serializable/Externalizable
+   }
+
+   @Override
+   public boolean isEmpty() {
+      return count == 0;
+   }
+
+   @Override
+   public void readAllFields(TagReader input) throws IOException {
+      while (true) {
+         int tag = input.readTag();
+         if (tag == 0 || !readSingleField(tag, input)) {
+            break;
+         }
+      }
+   }
+
+   @Override
+   public boolean readSingleField(int tag, TagReader input) throws IOException {
+      if (WireType.getTagWireType(tag) == WireType.WIRETYPE_END_GROUP) {
+         return false;
+      }
+      int start = size;
+      addField(tag, start);
+      try {
+         appendField(tag, input);
+      } catch (IOException | RuntimeException e) {
+         // do not keep a partially read field
+         count--;
+         size = start;
+         throw e;
+      }
+      return true;
+   }
+
+   /**
+    * Copies the tag and the value of a field to the end of the array.
+    */
+   private void appendField(int tag, TagReader input) throws IOException {
+      switch (WireType.getTagWireType(tag)) {
+         case WireType.WIRETYPE_VARINT -> {
+            writeVarint(tag);
+            writeVarint(input.readUInt64());
+         }
+         case WireType.WIRETYPE_FIXED64 -> {
+            writeVarint(tag);
+            ensureCapacity(8);
+            VarHandlesUtil.LONG.set(bytes, size, input.readFixed64());
+            size += 8;
+         }
+         case WireType.WIRETYPE_FIXED32 -> {
+            writeVarint(tag);
+            ensureCapacity(4);
+            VarHandlesUtil.INT.set(bytes, size, input.readFixed32());
+            size += 4;
+         }
+         case WireType.WIRETYPE_LENGTH_DELIMITED -> {
+            writeVarint(tag);
+            BytesView value = input.readBytesView(new BytesView());
+            writeVarint(value.length());
+            ensureCapacity(value.length());
+            if (value.hasArray()) {
+               System.arraycopy(value.array(), value.offset(), bytes, size, value.length());
+            } else {
+               System.arraycopy(value.toByteArray(), 0, bytes, size, value.length());
+            }
+            size += value.length();
+         }
+         case WireType.WIRETYPE_START_GROUP -> {
+            writeVarint(tag);
+            while (true) {
+               int nestedTag = input.readTag();
+               if (nestedTag == 0 || WireType.getTagWireType(nestedTag) == WireType.WIRETYPE_END_GROUP) {
+                  break;
+               }
+               appendField(nestedTag, input);
+            }
+            int endTag = WireType.makeTag(WireType.getTagFieldNumber(tag), WireType.WIRETYPE_END_GROUP);
+            input.checkLastTagWas(endTag);
+            writeVarint(endTag);
+         }
+         default -> throw new IOException("Protocol message tag " + tag + " has invalid wire type " + WireType.getTagWireType(tag));
+      }
+   }
+
+   @Override
+   public void putVarintField(int tag, int value) {
+      if (tag == 0) {
+         throw new IllegalArgumentException("0 is not a valid tag");
+      }
+      if (WireType.getTagWireType(tag) != WireType.WIRETYPE_VARINT) {
+         throw new IllegalArgumentException("The tag is not a VARINT: " + tag);
+      }
+      addField(tag, size);
+      writeVarint(tag);
+      // negative values are sign extended, as for int32 fields
+      writeVarint(value);
+   }
+
+   @Override
+   public void writeTo(TagWriter output) throws IOException {
+      if (count > 0) {
+         output.writeRawBytes(bytes, 0, size);
+         output.flush();
+      }
+   }
+
+   @Override
+   public <A> A consumeTag(int tag) {
+      if (tag == 0) {
+         throw new IllegalArgumentException("0 is not a valid tag number");
+      }
+      if (WireType.getTagWireType(tag) == WireType.WIRETYPE_END_GROUP) {
+         throw new IllegalArgumentException("Tag " + tag + " is an end group tag");
+      }
+      int i = indexOf(tag);
+      if (i < 0) {
+         return null;
+      }
+      int start = starts[i];
+      int end = i + 1 < count ? starts[i + 1] : size;
+      Object value;
+      try {
+         TagReader input = TagReaderImpl.newInstance(null, bytes, start, end - start);
+         input.readTag();
+         value = switch (WireType.getTagWireType(tag)) {
+            case WireType.WIRETYPE_VARINT -> input.readInt64();
+            case WireType.WIRETYPE_FIXED64 -> input.readFixed64();
+            case WireType.WIRETYPE_FIXED32 -> input.readFixed32();
+            case WireType.WIRETYPE_LENGTH_DELIMITED -> input.readByteArray();
+            default -> {
+               RawUnknownFieldSet group = new RawUnknownFieldSet();
+               group.readAllFields(input);
+               yield group;
+            }
+         };
+      } catch (IOException e) {
+         // the bytes were validated when the field was read
+         throw new IllegalStateException(e);
+      }
+      removeField(i, end - start);
+      return (A) value;
+   }
+
+   @Override
+   public boolean hasTag(int tag) {
+      if (tag == 0) {
+         throw new IllegalArgumentException("0 is not a valid tag number");
+      }
+      return indexOf(tag) >= 0;
+   }
+
+   private int indexOf(int tag) {
+      for (int i = 0; i < count; i++) {
+         if (tags[i] == tag) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   private void addField(int tag, int start) {
+      if (count == tags.length) {
+         int length = Math.max(4, count << 1);
+         tags = Arrays.copyOf(tags, length);
+         starts = Arrays.copyOf(starts, length);
+      }
+      tags[count] = tag;
+      starts[count] = start;
+      count++;
+   }
+
+   private void removeField(int i, int length) {
+      int start = starts[i];
+      System.arraycopy(bytes, start + length, bytes, start, size - start - length);
+      size -= length;
+      count--;
+      for (int j = i; j < count; j++) {
+         tags[j] = tags[j + 1];
+         starts[j] = starts[j + 1] - length;
+      }
+   }
+
+   private void ensureCapacity(int length) {
+      if (size + length > bytes.length) {
+         bytes = Arrays.copyOf(bytes, Math.max(size + length, Math.max(64, bytes.length << 1)));
+      }
+   }
+
+   private void writeVarint(long value) {
+      ensureCapacity(WireType.MAX_VARINT_SIZE);
+      while ((value & 0xFFFFFFFFFFFFFF80L) != 0) {
+         bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+         value >>>= 7;
+      }
+      bytes[size++] = (byte) value;
+   }
+
+   @Override
+   public void writeExternal(ObjectOutput out) throws IOException {
+      out.writeInt(size);
+      out.write(bytes, 0, size);
+   }
+
+   @Override
+   public void readExternal(ObjectInput in) throws IOException {
+      int len = in.readInt();
+      byte[] bytes = new byte[len];
+      in.readFully(bytes);
+      readAllFields(TagReaderImpl.newInstance(null, bytes));
+   }
+
+   @Override
+   public String toString() {
+      return "RawUnknownFieldSet{tags=" + Arrays.toString(Arrays.copyOf(tags, count)) + ", size=" + size + '}';
+   }
+}
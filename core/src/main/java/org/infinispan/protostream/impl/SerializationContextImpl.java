@@ -1,5 +1,7 @@
 package org.infinispan.protostream.impl;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -7,6 +9,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.infinispan.protostream.BaseMarshaller;
@@ -16,9 +19,15 @@ import org.infinispan.protostream.EnumMarshaller;
 import org.infinispan.protostream.EnumMarshallerDelegate;
 import org.infinispan.protostream.FileDescriptorSource;
 import org.infinispan.protostream.MessageMarshaller;
+import org.infinispan.protostream.ProtobufSession;
 import org.infinispan.protostream.ProtobufTagMarshaller;
+import org.infinispan.protostream.RandomAccessOutputStream;
 import org.infinispan.protostream.SerializationContext;
+import org.infinispan.protostream.SerializationContextInitializer;
+import org.infinispan.protostream.TagWriter;
+import org.infinispan.protostream.WrappedMessage;
 import org.infinispan.protostream.config.Configuration;
+import org.infinispan.protostream.containers.ElementContainerAdapter;
 import org.infinispan.protostream.descriptors.Descriptor;
 import org.infinispan.protostream.descriptors.EnumDescriptor;
 import org.infinispan.protostream.descriptors.EnumValueDescriptor;
@@ -51,6 +60,23 @@ public final class SerializationContextImpl implements SerializationContext {
    private final ReentrantLock marshallerWriteLock = new ReentrantLock();
    private volatile MarshallerSnapshot marshallers = MarshallerSnapshot.EMPTY;
 
+   /*
+    * The headers of the classes written as WrappedMessages, valid for the current snapshots only.
+    */
+   private volatile WrappedTypes wrappedTypes;
+
+   /*
+    * The registrations deferred while initializers are registered in bulk. Only accessed by the thread holding both
+    * write locks.
+    */
+   private Batch batch;
+
+   /*
+    * The ProtobufSession of each thread using this context, dropped when the thread dies. The context owns them so a
+    * session never outlives its context.
+    */
+   private final Map<Thread, ProtobufSession> sessions = new WeakHashMap<>();
+
    public SerializationContextImpl(Configuration configuration) {
       if (configuration == null) {
          throw new IllegalArgumentException("configuration argument cannot be null");
@@ -59,6 +85,16 @@ public final class SerializationContextImpl implements SerializationContext {
       parser = new ProtostreamProtoParser(configuration);
    }
 
+   /**
+    * Returns the session of a thread for this context, creating it on first use. The session lives as long as both
+    * this context and the thread do. Use {@link ProtobufSession#current} instead, which avoids the lock.
+    */
+   public ProtobufSession getSession(Thread thread) {
+      synchronized (sessions) {
+         return sessions.computeIfAbsent(thread, t -> new ProtobufSession(this));
+      }
+   }
+
    @Override
    public Configuration getConfiguration() {
       return configuration;
@@ -76,12 +112,137 @@ public final class SerializationContextImpl implements SerializationContext {
       return Map.copyOf(ds.genericDescriptors);
    }
 
+   @Override
+   public void register(Iterable<? extends SerializationContextInitializer> initializers) throws DescriptorParserException {
+      descriptorWriteLock.lock();
+      marshallerWriteLock.lock();
+      try {
+         if (batch != null) {
+            // already deferring, as an initializer is registering others
+            for (SerializationContextInitializer initializer : initializers) {
+               initializer.register(this);
+            }
+            return;
+         }
+         Batch b = new Batch();
+         batch = b;
+         try {
+            for (SerializationContextInitializer initializer : initializers) {
+               initializer.registerSchema(this);
+            }
+            for (SerializationContextInitializer initializer : initializers) {
+               initializer.registerMarshallers(this);
+            }
+         } finally {
+            batch = null;
+         }
+         applyDescriptorOps(b.descriptorOps);
+         applyMarshallerOps(b.marshallerOps);
+      } finally {
+         marshallerWriteLock.unlock();
+         descriptorWriteLock.unlock();
+      }
+   }
+
+   /**
+    * Parses the sources of consecutive registrations and resolves them all at once.
+    */
+   private void applyDescriptorOps(List<Object> ops) {
+      Map<String, FileDescriptor> fileDescriptorMap = new LinkedHashMap<>();
+      Map<String, FileDescriptorSource.ProgressCallback> progressCallbacks = new HashMap<>();
+      for (Object op : ops) {
+         if (op instanceof FileDescriptorSource source) {
+            if (log.isDebugEnabled()) {
+               log.debugf("Registering proto files : %s", source.getFiles().keySet());
+            }
+            Map<String, FileDescriptor> parsed = parser.parse(source);
+            fileDescriptorMap.putAll(parsed);
+            for (String fileName : parsed.keySet()) {
+               if (source.getProgressCallback() != null) {
+                  progressCallbacks.put(fileName, source.getProgressCallback());
+               } else {
+                  progressCallbacks.remove(fileName);
+               }
+            }
+         } else {
+            registerBatchedFileDescriptors(fileDescriptorMap, progressCallbacks);
+            ((Runnable) op).run();
+         }
+      }
+      registerBatchedFileDescriptors(fileDescriptorMap, progressCallbacks);
+   }
+
+   private void registerBatchedFileDescriptors(Map<String, FileDescriptor> fileDescriptorMap, Map<String, FileDescriptorSource.ProgressCallback> progressCallbacks) {
+      if (fileDescriptorMap.isEmpty()) {
+         return;
+      }
+      FileDescriptorSource.ProgressCallback progressCallback = null;
+      if (!progressCallbacks.isEmpty()) {
+         Map<String, FileDescriptorSource.ProgressCallback> callbacks = Map.copyOf(progressCallbacks);
+         // errors in files of sources without a callback are reported immediately, as they would be when registered alone
+         progressCallback = new FileDescriptorSource.ProgressCallback() {
+            @Override
+            public void handleError(String fileName, DescriptorParserException exception) {
+               FileDescriptorSource.ProgressCallback callback = callbacks.get(fileName);
+               if (callback == null) {
+                  throw exception;
+               }
+               callback.handleError(fileName, exception);
+            }
+
+            @Override
+            public void handleSuccess(String fileName) {
+               FileDescriptorSource.ProgressCallback callback = callbacks.get(fileName);
+               if (callback != null) {
+                  callback.handleSuccess(fileName);
+               }
+            }
+         };
+      }
+      registerFileDescriptors(Map.copyOf(fileDescriptorMap), progressCallback);
+      fileDescriptorMap.clear();
+      progressCallbacks.clear();
+   }
+
+   /**
+    * Registers consecutive marshallers into a single copy of the marshaller maps, which is published once.
+    */
+   private void applyMarshallerOps(List<Object> ops) {
+      MarshallerSnapshot ms = null;
+      for (Object op : ops) {
+         if (op instanceof BaseMarshaller<?> marshaller) {
+            if (ms == null) {
+               ms = marshallers;
+               ms = new MarshallerSnapshot(new HashMap<>(ms.byName), new HashMap<>(ms.byClass), new SmallIntMap<>(ms.typeIds), ms.legacyProviders);
+            }
+            registerMarshaller(marshaller, ms.byName, ms.byClass, ms.typeIds);
+         } else {
+            if (ms != null) {
+               marshallers = ms;
+               ms = null;
+            }
+            ((Runnable) op).run();
+         }
+      }
+      if (ms != null) {
+         marshallers = ms;
+      }
+   }
+
    @Override
    public void registerProtoFiles(FileDescriptorSource source) throws DescriptorParserException {
+      if (descriptorWriteLock.isHeldByCurrentThread() && batch != null) {
+         // logged when the batch is applied
+         batch.descriptorOps.add(source);
+         return;
+      }
       if (log.isDebugEnabled()) {
          log.debugf("Registering proto files : %s", source.getFiles().keySet());
       }
-      Map<String, FileDescriptor> fileDescriptorMap = parser.parse(source);
+      registerFileDescriptors(parser.parse(source), source.getProgressCallback());
+   }
+
+   private void registerFileDescriptors(Map<String, FileDescriptor> fileDescriptorMap, FileDescriptorSource.ProgressCallback progressCallback) {
       descriptorWriteLock.lock();
       try {
          Map<String, FileDescriptor> fileDescriptors = new LinkedHashMap<>(descriptors.fileDescriptors);
@@ -114,7 +275,7 @@ public final class SerializationContextImpl implements SerializationContext {
 
          // resolve imports and types for all files
          ResolutionContext resolutionContext = new ResolutionContext(
-               source.getProgressCallback(),
+               progressCallback,
                fileDescriptors,
                genericDescriptors,
                typeIds,
@@ -135,6 +296,10 @@ public final class SerializationContextImpl implements SerializationContext {
       log.debugf("Unregistering proto file : %s", fileName);
       descriptorWriteLock.lock();
       try {
+         if (batch != null) {
+            batch.descriptorOps.add((Runnable) () -> unregisterProtoFile(fileName));
+            return;
+         }
          Map<String, FileDescriptor> fileDescriptors = new LinkedHashMap<>(descriptors.fileDescriptors);
          Map<String, GenericDescriptor> genericDescriptors = new HashMap<>(descriptors.genericDescriptors);
          Map<String, EnumValueDescriptor> enumDescriptors = new HashMap<>(descriptors.enumDescriptors);
@@ -158,6 +323,10 @@ public final class SerializationContextImpl implements SerializationContext {
       log.debugf("Unregistering proto files : %s", fileNames);
       descriptorWriteLock.lock();
       try {
+         if (batch != null) {
+            batch.descriptorOps.add((Runnable) () -> unregisterProtoFiles(fileNames));
+            return;
+         }
          Map<String, FileDescriptor> fileDescriptors = new LinkedHashMap<>(descriptors.fileDescriptors);
          Map<String, GenericDescriptor> genericDescriptors = new HashMap<>(descriptors.genericDescriptors);
          Map<String, EnumValueDescriptor> enumDescriptors = new HashMap<>(descriptors.enumDescriptors);
@@ -240,70 +409,77 @@ public final class SerializationContextImpl implements SerializationContext {
 
       marshallerWriteLock.lock();
       try {
+         if (batch != null) {
+            batch.marshallerOps.add(marshaller);
+            return;
+         }
          MarshallerSnapshot ms = marshallers;
          Map<String, Registration> marshallersByName = new HashMap<>(ms.byName);
          Map<Class<?>, Registration> marshallersByClass = new HashMap<>(ms.byClass);
          SmallIntMap<Registration> marshallersByTypeId = new SmallIntMap<>(ms.typeIds);
+         registerMarshaller(marshaller, marshallersByName, marshallersByClass, marshallersByTypeId);
+         marshallers = new MarshallerSnapshot(marshallersByName, marshallersByClass, marshallersByTypeId, ms.legacyProviders);
+      } finally {
+         marshallerWriteLock.unlock();
+      }
+   }
 
-         boolean isInterface = marshaller.getJavaClass().isInterface();
-         Registration existingByName = marshallersByName.get(marshaller.getTypeName());
-         Registration existingByClass = marshallersByClass.get(marshaller.getJavaClass());
-         if (existingByName != null && existingByName.marshallerProvider != null ||
-               existingByClass != null && existingByClass.marshallerProvider != null) {
-            throw new IllegalArgumentException("The given marshaller attempts to override an existing marshaller registered indirectly via an InstanceMarshallerProvider. Please unregister it first.");
-         }
+   private void registerMarshaller(BaseMarshaller<?> marshaller, Map<String, Registration> marshallersByName,
+                                   Map<Class<?>, Registration> marshallersByClass, SmallIntMap<Registration> marshallersByTypeId) {
+      boolean isInterface = marshaller.getJavaClass().isInterface();
+      Registration existingByName = marshallersByName.get(marshaller.getTypeName());
+      Registration existingByClass = marshallersByClass.get(marshaller.getJavaClass());
+      if (existingByName != null && existingByName.marshallerProvider != null ||
+            existingByClass != null && existingByClass.marshallerProvider != null) {
+         throw new IllegalArgumentException("The given marshaller attempts to override an existing marshaller registered indirectly via an InstanceMarshallerProvider. Please unregister it first.");
+      }
 
-         final Class<?>[] subClasses;
-         String[] subClassNames = marshaller.getSubClassNames();
-         if (subClassNames.length > 0) {
-            subClasses = Arrays.stream(subClassNames).map(SerializationContextImpl::classForName).toArray(Class[]::new);
-         } else {
-            subClasses = EMPTY_CLASSES;
-         }
+      final Class<?>[] subClasses;
+      String[] subClassNames = marshaller.getSubClassNames();
+      if (subClassNames.length > 0) {
+         subClasses = Arrays.stream(subClassNames).map(SerializationContextImpl::classForName).toArray(Class[]::new);
+      } else {
+         subClasses = EMPTY_CLASSES;
+      }
 
-         if (existingByName != null) {
-            Registration anotherByClass = marshallersByClass.get(existingByName.marshallerDelegate.getMarshaller().getJavaClass());
-            if (!isInterface) {
-               if (anotherByClass == null) {
+      if (existingByName != null) {
+         Registration anotherByClass = marshallersByClass.get(existingByName.marshallerDelegate.getMarshaller().getJavaClass());
+         if (!isInterface) {
+            if (anotherByClass == null) {
+               throw new IllegalStateException("Inconsistent marshaller definitions!");
+            }
+            if (anotherByClass.marshallerProvider != null) {
+               throw new IllegalArgumentException("The given marshaller attempts to override an existing marshaller registered indirectly via an InstanceMarshallerProvider. Please unregister that first.");
+            } else {
+               if (!anotherByClass.marshallerDelegate.getMarshaller().getTypeName().equals(marshaller.getTypeName())) {
                   throw new IllegalStateException("Inconsistent marshaller definitions!");
                }
-               if (anotherByClass.marshallerProvider != null) {
-                  throw new IllegalArgumentException("The given marshaller attempts to override an existing marshaller registered indirectly via an InstanceMarshallerProvider. Please unregister that first.");
-               } else {
-                  if (!anotherByClass.marshallerDelegate.getMarshaller().getTypeName().equals(marshaller.getTypeName())) {
-                     throw new IllegalStateException("Inconsistent marshaller definitions!");
-                  }
-               }
-               marshallersByClass.remove(existingByName.marshallerDelegate.getMarshaller().getJavaClass());
-            }
-            for (Class<?> subClass : subClasses) {
-               marshallersByClass.remove(subClass);
             }
+            marshallersByClass.remove(existingByName.marshallerDelegate.getMarshaller().getJavaClass());
          }
-         if (existingByClass != null) {
-            marshallersByName.remove(existingByClass.marshallerDelegate.getMarshaller().getTypeName());
-            if (existingByClass.id != null) {
-               marshallersByTypeId.remove(existingByClass.id);
-            }
-         }
-
-         Integer typeId = getTypeIdByName(marshaller.getTypeName());
-         Registration registration = new Registration(makeMarshallerDelegate(marshaller), typeId);
-         // If the Class associated with the marshaller is an interface, then we only add the subClassName implementations
-         if (!isInterface)
-            marshallersByClass.put(marshaller.getJavaClass(), registration);
-
-         marshallersByName.put(marshaller.getTypeName(), registration);
          for (Class<?> subClass : subClasses) {
-            marshallersByClass.put(subClass, registration);
+            marshallersByClass.remove(subClass);
          }
-         if (typeId != null) {
-            marshallersByTypeId.put(typeId, registration);
+      }
+      if (existingByClass != null) {
+         marshallersByName.remove(existingByClass.marshallerDelegate.getMarshaller().getTypeName());
+         if (existingByClass.id != null) {
+            marshallersByTypeId.remove(existingByClass.id);
          }
+      }
 
-         marshallers = new MarshallerSnapshot(marshallersByName, marshallersByClass, marshallersByTypeId, ms.legacyProviders);
-      } finally {
-         marshallerWriteLock.unlock();
+      Integer typeId = getTypeIdByName(marshaller.getTypeName());
+      Registration registration = new Registration(makeMarshallerDelegate(marshaller), typeId);
+      // If the Class associated with the marshaller is an interface, then we only add the subClassName implementations
+      if (!isInterface)
+         marshallersByClass.put(marshaller.getJavaClass(), registration);
+
+      marshallersByName.put(marshaller.getTypeName(), registration);
+      for (Class<?> subClass : subClasses) {
+         marshallersByClass.put(subClass, registration);
+      }
+      if (typeId != null) {
+         marshallersByTypeId.put(typeId, registration);
       }
    }
 
@@ -341,6 +517,10 @@ public final class SerializationContextImpl implements SerializationContext {
 
       marshallerWriteLock.lock();
       try {
+         if (batch != null) {
+            batch.marshallerOps.add((Runnable) () -> unregisterMarshaller(marshaller));
+            return;
+         }
          MarshallerSnapshot ms = marshallers;
          Map<String, Registration> marshallersByName = new HashMap<>(ms.byName);
          Map<Class<?>, Registration> marshallersByClass = new HashMap<>(ms.byClass);
@@ -374,6 +554,10 @@ public final class SerializationContextImpl implements SerializationContext {
       }
       marshallerWriteLock.lock();
       try {
+         if (batch != null) {
+            batch.marshallerOps.add((Runnable) () -> registerMarshallerProvider(marshallerProvider));
+            return;
+         }
          MarshallerSnapshot ms = marshallers;
          List<MarshallerProvider> legacyMarshallerProviders = new ArrayList<>(ms.legacyProviders);
          legacyMarshallerProviders.add(marshallerProvider);
@@ -392,6 +576,10 @@ public final class SerializationContextImpl implements SerializationContext {
 
       marshallerWriteLock.lock();
       try {
+         if (batch != null) {
+            batch.marshallerOps.add((Runnable) () -> unregisterMarshallerProvider(marshallerProvider));
+            return;
+         }
          MarshallerSnapshot ms = marshallers;
          List<MarshallerProvider> legacyMarshallerProviders = new ArrayList<>(ms.legacyProviders);
          legacyMarshallerProviders.remove(marshallerProvider);
@@ -409,6 +597,10 @@ public final class SerializationContextImpl implements SerializationContext {
 
       marshallerWriteLock.lock();
       try {
+         if (batch != null) {
+            batch.marshallerOps.add((Runnable) () -> registerMarshallerProvider(marshallerProvider));
+            return;
+         }
          MarshallerSnapshot ms = marshallers;
          Map<Class<?>, Registration> marshallersByClass = new HashMap<>(ms.byClass);
          Map<String, Registration> marshallersByName = new HashMap<>(ms.byName);
@@ -451,6 +643,10 @@ public final class SerializationContextImpl implements SerializationContext {
 
       marshallerWriteLock.lock();
       try {
+         if (batch != null) {
+            batch.marshallerOps.add((Runnable) () -> unregisterMarshallerProvider(marshallerProvider));
+            return;
+         }
          MarshallerSnapshot ms = marshallers;
          Map<Class<?>, Registration> marshallersByClass = new HashMap<>(ms.byClass);
          Map<String, Registration> marshallersByName = new HashMap<>(ms.byName);
@@ -627,6 +823,69 @@ public final class SerializationContextImpl implements SerializationContext {
       return null;
    }
 
+   /**
+    * The marshaller and the pre-encoded WrappedMessage header of a class.
+    *
+    * @return the header or {@code null} if the class has no marshaller registered for it directly, in which case the
+    * slower lookups must be used
+    */
+   public WrappedType getWrappedType(Class<?> javaClass) {
+      WrappedTypes wt = wrappedTypes;
+      DescriptorSnapshot ds = descriptors;
+      MarshallerSnapshot ms = marshallers;
+      if (wt == null || wt.descriptors != ds || wt.marshallers != ms) {
+         // the headers are computed again after any registration change
+         wt = new WrappedTypes(ds, ms);
+         wrappedTypes = wt;
+      }
+      return wt.get(javaClass);
+   }
+
+   /**
+    * The marshaller of a class and the encoded type discriminator of the WrappedMessage, either the type id or the
+    * type name, for messages, enums or containers.
+    */
+   public record WrappedType(BaseMarshallerDelegate<?> marshallerDelegate, byte[] header) {
+   }
+
+   private static final class WrappedTypes extends ClassValue<WrappedType> {
+
+      final DescriptorSnapshot descriptors;
+      final MarshallerSnapshot marshallers;
+
+      WrappedTypes(DescriptorSnapshot descriptors, MarshallerSnapshot marshallers) {
+         this.descriptors = descriptors;
+         this.marshallers = marshallers;
+      }
+
+      @Override
+      protected WrappedType computeValue(Class<?> javaClass) {
+         Registration registration = marshallers.byClass.get(javaClass);
+         if (registration == null || registration.marshallerProvider != null) {
+            return null;
+         }
+         BaseMarshaller<?> marshaller = registration.marshallerDelegate.getMarshaller();
+         GenericDescriptor descriptor = descriptors.genericDescriptors.get(marshaller.getTypeName());
+         if (descriptor == null) {
+            return null;
+         }
+         boolean container = marshaller instanceof ElementContainerAdapter;
+         RandomAccessOutputStream out = new RandomAccessOutputStreamImpl(16);
+         TagWriter writer = TagWriterImpl.newInstance(null, out);
+         try {
+            if (descriptor.getTypeId() == null) {
+               writer.writeString(container ? WrappedMessage.WRAPPED_CONTAINER_TYPE_NAME : WrappedMessage.WRAPPED_TYPE_NAME, descriptor.getFullName());
+            } else {
+               writer.writeUInt32(container ? WrappedMessage.WRAPPED_CONTAINER_TYPE_ID : WrappedMessage.WRAPPED_TYPE_ID, descriptor.getTypeId());
+            }
+            writer.flush();
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+         return new WrappedType(registration.marshallerDelegate, out.toByteArray());
+      }
+   }
+
    @Deprecated
    @Override
    public String getTypeNameById(Integer typeId) {
@@ -667,6 +926,16 @@ public final class SerializationContextImpl implements SerializationContext {
       return descriptor;
    }
 
+   /**
+    * The registrations requested while initializers are registered in bulk, in order. The descriptor operations are
+    * {@link FileDescriptorSource}s to register or {@link Runnable}s and the marshaller operations are
+    * {@link BaseMarshaller}s to register or {@link Runnable}s. All of them are applied once the initializers are done.
+    */
+   private static final class Batch {
+      final List<Object> descriptorOps = new ArrayList<>();
+      final List<Object> marshallerOps = new ArrayList<>();
+   }
+
    private record MarshallerSnapshot(
          Map<String, Registration> byName,
          Map<Class<?>, Registration> byClass,
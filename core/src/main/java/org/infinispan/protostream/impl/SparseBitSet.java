@@ -227,25 +227,18 @@ public class SparseBitSet implements ReservedNumbers {
       if (fromIndex < 0) {
          throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
       }
+      // the bits of a missing word are all clear
       int wordIndex = findWord(fromIndex);
-      if (wordIndex < 0) {
-         wordIndex = -wordIndex - 1;
-         fromIndex = adjustBase(fromIndex, wordIndex);
-      }
-      while (wordIndex < size) {
+      while (wordIndex >= 0) {
          if ((words[wordIndex] & (1L << (fromIndex & 63))) == 0) {
             return fromIndex;
          }
          fromIndex++;
          if ((fromIndex % 64) == 0) {
             wordIndex = findWord(fromIndex);
-            if (wordIndex < 0) {
-               wordIndex = -wordIndex - 1;
-               fromIndex = adjustBase(fromIndex, wordIndex);
-            }
          }
       }
-      return -1;
+      return fromIndex;
    }
 
    /**
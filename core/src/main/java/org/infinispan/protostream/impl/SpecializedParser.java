@@ -0,0 +1,282 @@
+package org.infinispan.protostream.impl;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.infinispan.protostream.BytesView;
+import org.infinispan.protostream.TagHandler;
+import org.infinispan.protostream.TagReader;
+import org.infinispan.protostream.descriptors.Descriptor;
+import org.infinispan.protostream.descriptors.FieldDescriptor;
+import org.infinispan.protostream.descriptors.MapDescriptor;
+import org.infinispan.protostream.descriptors.WireType;
+
+/**
+ * A parser specialized for a message type, used by {@link org.infinispan.protostream.ProtobufParser} for the types it
+ * parses often. Everything the generic parser works out for each tag, the field, its wire type and the callback to
+ * invoke, is resolved once when this is created. Parsing a field then takes the lookup of its number with
+ * {@link Descriptor#indexOfField(int)}, a comparison with the expected tag and a switch over small constants.
+ * <p>
+ * Values whose wire type does not match the one of their field are handled, and rejected, exactly as the generic parser
+ * does. Instances are obtained with {@link #forType(Descriptor, int)} and are thread-safe.
+ * <p>
+ * This class is not part of the public API. May be removed in future versions.
+ *
+ * @since 6.0.11
+ */
+public final class SpecializedParser {
+
+   private static final byte DOUBLE = 0;
+   private static final byte FLOAT = 1;
+   private static final byte BOOL = 2;
+   private static final byte INT32 = 3;
+   private static final byte SFIXED32 = 4;
+   private static final byte FIXED32 = 5;
+   private static final byte UINT32 = 6;
+   private static final byte SINT32 = 7;
+   private static final byte INT64 = 8;
+   private static final byte UINT64 = 9;
+   private static final byte FIXED64 = 10;
+   private static final byte SFIXED64 = 11;
+   private static final byte SINT64 = 12;
+   private static final byte ENUM = 13;
+   private static final byte STRING = 14;
+   private static final byte BYTES = 15;
+   private static final byte MESSAGE = 16;
+   private static final byte MAP = 17;
+   private static final byte GROUP = 18;
+
+   // for groups of unknown fields
+   private static final SpecializedParser EMPTY = new SpecializedParser(new Descriptor.Builder().withName("").withFullName("").build());
+
+   // the field numbers are looked up by the descriptor
+   private final Descriptor descriptor;
+
+   // shared with the descriptor, the fields are sorted by number
+   private final FieldDescriptor[] fields;
+
+   private final int[] tags;
+   // the tag of the packed encoding of repeated scalars, otherwise 0
+   private final int[] packedTags;
+   private final byte[] actions;
+
+   // the parsers of the nested messages, created on first use
+   private final SpecializedParser[] nested;
+
+   private SpecializedParser(Descriptor descriptor) {
+      this.descriptor = descriptor;
+      this.fields = descriptor.getSortedFields();
+      int count = fields.length;
+      tags = new int[count];
+      packedTags = new int[count];
+      actions = new byte[count];
+      nested = new SpecializedParser[count];
+      for (int i = 0; i < count; i++) {
+         FieldDescriptor fd = fields[i];
+         byte action = action(fd);
+         int wireType = switch (action) {
+            case FLOAT, SFIXED32, FIXED32 -> WireType.WIRETYPE_FIXED32;
+            case DOUBLE, SFIXED64, FIXED64 -> WireType.WIRETYPE_FIXED64;
+            case STRING, BYTES, MESSAGE, MAP -> WireType.WIRETYPE_LENGTH_DELIMITED;
+            case GROUP -> WireType.WIRETYPE_START_GROUP;
+            default -> WireType.WIRETYPE_VARINT;
+         };
+         tags[i] = WireType.makeTag(fd.getNumber(), wireType);
+         if (fd.isRepeated() && action < STRING) {
+            packedTags[i] = WireType.makeTag(fd.getNumber(), WireType.WIRETYPE_LENGTH_DELIMITED);
+         }
+         actions[i] = action;
+      }
+   }
+
+   /**
+    * The specialized parser of a message type and the number of times it was asked for before being created. Each
+    * {@link Descriptor} keeps one.
+    */
+   public static final class Cache {
+
+      private final AtomicInteger parseCount = new AtomicInteger();
+
+      private volatile SpecializedParser parser;
+
+      /**
+       * Discards the parser, as when the file defining the type, or one it depends on, is unregistered.
+       */
+      public void discard() {
+         parser = null;
+         parseCount.set(0);
+      }
+   }
+
+   /**
+    * Returns the parser specialized for a type, which is created once this was invoked more than {@code threshold}
+    * times for that type.
+    *
+    * @param threshold the number of invocations before creating the parser, or a negative number to never create it
+    * @return the parser, or {@code null} if not created yet
+    */
+   public static SpecializedParser forType(Descriptor descriptor, int threshold) {
+      Cache cache = descriptor.getSpecializedParserCache();
+      SpecializedParser parser = cache.parser;
+      if (parser == null && threshold >= 0 && cache.parseCount.getAndIncrement() >= threshold) {
+         // concurrent callers may each create one, any of them can be kept
+         parser = new SpecializedParser(descriptor);
+         cache.parser = parser;
+      }
+      return parser;
+   }
+
+   private static byte action(FieldDescriptor fd) {
+      if (fd instanceof MapDescriptor) {
+         return MAP;
+      }
+      return switch (fd.getType()) {
+         case DOUBLE -> DOUBLE;
+         case FLOAT -> FLOAT;
+         case BOOL -> BOOL;
+         case INT32 -> INT32;
+         case SFIXED32 -> SFIXED32;
+         case FIXED32 -> FIXED32;
+         case UINT32 -> UINT32;
+         case SINT32 -> SINT32;
+         case INT64 -> INT64;
+         case UINT64 -> UINT64;
+         case FIXED64 -> FIXED64;
+         case SFIXED64 -> SFIXED64;
+         case SINT64 -> SINT64;
+         case ENUM -> ENUM;
+         case STRING -> STRING;
+         case BYTES -> BYTES;
+         case MESSAGE -> MESSAGE;
+         case GROUP -> GROUP;
+         case MAP -> MAP;
+      };
+   }
+
+   /**
+    * Parses the fields of a message until the end of the input or the end of a group.
+    */
+   public void parseMessage(TagHandler tagHandler, TagReader in, BytesView bytes) throws IOException {
+      int tag;
+      while ((tag = in.readTag()) != 0) {
+         int fieldNumber = WireType.getTagFieldNumber(tag);
+         int i = descriptor.indexOfField(fieldNumber);
+         if (i < 0) {
+            parseUnknown(tagHandler, tag, in, bytes);
+         } else if (tag == tags[i]) {
+            parseField(tagHandler, fieldNumber, i, in, bytes);
+         } else {
+            parseMismatched(tagHandler, tag, i, in, bytes);
+         }
+      }
+   }
+
+   private void parseField(TagHandler tagHandler, int fieldNumber, int i, TagReader in, BytesView bytes) throws IOException {
+      FieldDescriptor fd = fields[i];
+      switch (actions[i]) {
+         case STRING -> tagHandler.onTag(fieldNumber, fd, in.readString());
+         case BYTES -> onBytes(tagHandler, fieldNumber, fd, in.readBytesView(bytes));
+         case MESSAGE, MAP -> {
+            int length = in.readUInt32();
+            int oldLimit = in.pushLimit(length);
+            tagHandler.onStartNested(fieldNumber, fd);
+            nested(i).parseMessage(tagHandler, in, bytes);
+            tagHandler.onEndNested(fieldNumber, fd);
+            in.checkLastTagWas(0);
+            in.popLimit(oldLimit);
+         }
+         case GROUP -> parseGroup(tagHandler, fieldNumber, fd, nested(i), in, bytes);
+         default -> parseScalar(tagHandler, fieldNumber, fd, actions[i], in);
+      }
+   }
+
+   /**
+    * Parses a known field whose wire type is not the one of its type, exactly as
+    * {@link org.infinispan.protostream.ProtobufParser} does for the types it did not specialize.
+    */
+   private void parseMismatched(TagHandler tagHandler, int tag, int i, TagReader in, BytesView bytes) throws IOException {
+      int fieldNumber = WireType.getTagFieldNumber(tag);
+      FieldDescriptor fd = fields[i];
+      switch (WireType.fromTag(tag)) {
+         case LENGTH_DELIMITED -> {
+            if (packedTags[i] == 0) {
+               throw new IOException("Unexpected field type " + fd.getType() + " for field " + fd.getNumber());
+            }
+            // packed repeated scalars, accepted regardless of the encoding the schema prefers
+            int length = in.readUInt32();
+            int oldLimit = in.pushLimit(length);
+            while (!in.isAtEnd()) {
+               parseScalar(tagHandler, fieldNumber, fd, actions[i], in);
+            }
+            in.popLimit(oldLimit);
+         }
+         case START_GROUP -> {
+            Descriptor messageType = fd.getMessageType();
+            parseGroup(tagHandler, fieldNumber, fd, messageType == null ? EMPTY : forType(messageType, 0), in, bytes);
+         }
+         // the value is read as the type of the field requires, whatever its wire type
+         case VARINT, FIXED32, FIXED64 -> parseScalar(tagHandler, fieldNumber, fd, actions[i], in);
+         default -> throw new IOException("Found tag with invalid wire type : tag=" + tag + ", wireType=" + WireType.fromTag(tag));
+      }
+   }
+
+   private static void parseGroup(TagHandler tagHandler, int fieldNumber, FieldDescriptor fd, SpecializedParser parser, TagReader in, BytesView bytes) throws IOException {
+      tagHandler.onStartNested(fieldNumber, fd);
+      parser.parseMessage(tagHandler, in, bytes);
+      in.checkLastTagWas(WireType.makeTag(fieldNumber, WireType.WIRETYPE_END_GROUP));
+      tagHandler.onEndNested(fieldNumber, fd);
+   }
+
+   private SpecializedParser nested(int i) {
+      SpecializedParser parser = nested[i];
+      if (parser == null) {
+         // recursive types reuse the parser of their descriptor instead of creating one per nesting level
+         FieldDescriptor fd = fields[i];
+         parser = fd instanceof MapDescriptor md ? new SpecializedParser(md.asDescriptor()) : forType(fd.getMessageType(), 0);
+         nested[i] = parser;
+      }
+      return parser;
+   }
+
+   private static void parseScalar(TagHandler tagHandler, int fieldNumber, FieldDescriptor fd, byte action, TagReader in) throws IOException {
+      switch (action) {
+         case DOUBLE -> tagHandler.onDouble(fieldNumber, fd, in.readDouble());
+         case FLOAT -> tagHandler.onFloat(fieldNumber, fd, in.readFloat());
+         case BOOL -> tagHandler.onBool(fieldNumber, fd, in.readBool());
+         case INT32 -> tagHandler.onInt32(fieldNumber, fd, in.readInt32());
+         case SFIXED32 -> tagHandler.onInt32(fieldNumber, fd, in.readSFixed32());
+         case FIXED32 -> tagHandler.onInt32(fieldNumber, fd, in.readFixed32());
+         case UINT32 -> tagHandler.onInt32(fieldNumber, fd, in.readUInt32());
+         case SINT32 -> tagHandler.onInt32(fieldNumber, fd, in.readSInt32());
+         case INT64 -> tagHandler.onInt64(fieldNumber, fd, in.readInt64());
+         case UINT64 -> tagHandler.onInt64(fieldNumber, fd, in.readUInt64());
+         case FIXED64 -> tagHandler.onInt64(fieldNumber, fd, in.readFixed64());
+         case SFIXED64 -> tagHandler.onInt64(fieldNumber, fd, in.readSFixed64());
+         case SINT64 -> tagHandler.onInt64(fieldNumber, fd, in.readSInt64());
+         case ENUM -> tagHandler.onInt32(fieldNumber, fd, in.readEnum());
+         default -> throw new IOException("Unexpected field type " + fd.getType() + " for field " + fd.getNumber());
+      }
+   }
+
+   private static void parseUnknown(TagHandler tagHandler, int tag, TagReader in, BytesView bytes) throws IOException {
+      int fieldNumber = WireType.getTagFieldNumber(tag);
+      switch (WireType.fromTag(tag)) {
+         case VARINT -> tagHandler.onInt64(fieldNumber, null, in.readUInt64());
+         case FIXED64 -> tagHandler.onInt64(fieldNumber, null, in.readFixed64());
+         case FIXED32 -> tagHandler.onInt32(fieldNumber, null, in.readFixed32());
+         case LENGTH_DELIMITED -> onBytes(tagHandler, fieldNumber, null, in.readBytesView(bytes));
+         case START_GROUP -> parseGroup(tagHandler, fieldNumber, null, EMPTY, in, bytes);
+         default -> throw new IOException("Found tag with invalid wire type : tag=" + tag + ", wireType=" + WireType.fromTag(tag));
+      }
+   }
+
+   private static void onBytes(TagHandler tagHandler, int fieldNumber, FieldDescriptor fd, BytesView bytes) {
+      if (bytes.hasArray()) {
+         // the bytes are passed without copying them out of the input
+         tagHandler.onBytes(fieldNumber, fd, bytes.array(), bytes.offset(), bytes.length());
+      } else {
+         byte[] value = bytes.toByteArray();
+         tagHandler.onBytes(fieldNumber, fd, value, 0, value.length);
+      }
+   }
+}
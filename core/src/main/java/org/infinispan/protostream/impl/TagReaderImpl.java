@@ -8,8 +8,7 @@ import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PushbackInputStream;
-import java.nio.BufferUnderflowException;
+import java.io.SequenceInputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -17,6 +16,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.infinispan.protostream.BytesView;
 import org.infinispan.protostream.ImmutableSerializationContext;
 import org.infinispan.protostream.MalformedProtobufException;
 import org.infinispan.protostream.ProtobufTagMarshaller;
@@ -27,7 +27,7 @@ import org.infinispan.protostream.descriptors.WireType;
  * @author anistor@redhat.com
  * @since 3.0
  */
-public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.ReadContext {
+public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.ReadContext, AutoCloseable {
 
    private static final Log log = Log.LogFactory.getLog(TagReaderImpl.class);
 
@@ -67,6 +67,19 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
       this.startingPos = decoder.getPos();
    }
 
+   /**
+    * Points a top level reader created over an array to another array, in order to reuse it for reading another
+    * message. The params are cleared.
+    */
+   public void reset(byte[] buf, int offset, int length) {
+      // the CCE here will signal misuse; let it happen
+      ((ByteArrayDecoder) decoder).reset(buf, offset, length);
+      startingPos = decoder.getPos();
+      if (params != null) {
+         params.clear();
+      }
+   }
+
    public static TagReaderImpl newNestedInstance(ProtobufTagMarshaller.ReadContext parent, InputStream input) {
       return new TagReaderImpl((TagReaderImpl) parent, new InputStreamDecoder(input));
    }
@@ -121,11 +134,29 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
       return new TagReaderImpl((SerializationContextImpl) serCtx, new ByteArrayDecoder(buf, offset, length));
    }
 
+   /**
+    * Releases the reader. A reader over an {@link InputStream} of unknown length reads ahead into an internal buffer;
+    * closing it gives back any buffered bytes that were not consumed so the stream can be read further by the caller.
+    * The underlying stream is never closed.
+    */
+   @Override
+   public void close() throws IOException {
+      decoder.close();
+   }
+
    @Override
    public boolean isAtEnd() throws IOException {
       return decoder.isAtEnd();
    }
 
+   /**
+    * The position of the next byte to be read. For a reader over an array this is the absolute index in that array, for
+    * a buffer or a stream it is the number of bytes consumed since the reader was created.
+    */
+   public int getPos() {
+      return decoder.getPos();
+   }
+
    @Override
    public int readTag() throws IOException {
       return decoder.readTag();
@@ -207,6 +238,12 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
       return decoder.readRawByteBuffer(length);
    }
 
+   @Override
+   public BytesView readBytesView(BytesView view) throws IOException {
+      int length = decoder.readVarint32();
+      return decoder.readRawBytesView(length, view);
+   }
+
    @Override
    public int readUInt32() throws IOException {
       return decoder.readVarint32();
@@ -435,6 +472,14 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
 
       abstract ByteBuffer readRawByteBuffer(int length) throws IOException;
 
+      /**
+       * Points the view to the next bytes. Decoders that do not have all the input at hand copy them.
+       */
+      BytesView readRawBytesView(int length, BytesView view) throws IOException {
+         byte[] bytes = readRawByteArray(length);
+         return view.set(bytes, 0, bytes.length);
+      }
+
       /**
        * Reads a Varint (possibly 64 bits wide) and silently discards the upper bits if larger than 32 bits.
        */
@@ -460,15 +505,21 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
        * because the memory allocation already happened.
        */
       abstract int setGlobalLimit(int globalLimit);
+
+      /**
+       * Invoked when the reader is no longer used. Stream based decoders use this to give back read ahead bytes.
+       */
+      void close() throws IOException {
+      }
    }
 
    private static final class ByteArrayDecoder extends Decoder {
 
-      private final byte[] array;
+      private byte[] array;
 
       // all positions are absolute
-      private final int start;
-      private final int stop;
+      private int start;
+      private int stop;
       private int pos;
       private int end; // limit adjusted
 
@@ -476,6 +527,10 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
       private int limit;
 
       private ByteArrayDecoder(byte[] array, int offset, int length) {
+         reset(array, offset, length);
+      }
+
+      void reset(byte[] array, int offset, int length) {
          if (array == null) {
             throw new IllegalArgumentException("array cannot be null");
          }
@@ -495,6 +550,8 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
          this.start = this.pos = offset;
          this.limit = length;
          this.stop = this.end = offset + length;
+         this.globalLimit = Integer.MAX_VALUE;
+         this.lastTag = 0;
          adjustEnd();
       }
 
@@ -565,6 +622,19 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
          throw log.messageTruncated();
       }
 
+      @Override
+      BytesView readRawBytesView(int length, BytesView view) throws IOException {
+         if (length >= 0 && length <= end - pos) {
+            view.set(array, pos, length);
+            pos += length;
+            return view;
+         }
+         if (length < 0) {
+            throw log.negativeLength();
+         }
+         throw log.messageTruncated();
+      }
+
       @Override
       ByteBuffer readRawByteBuffer(int length) throws IOException {
          if (length > 0 && length <= end - pos) {
@@ -774,6 +844,19 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
          throw log.messageTruncated();
       }
 
+      @Override
+      BytesView readRawBytesView(int length, BytesView view) throws IOException {
+         if (length >= 0 && length <= end - buf.position()) {
+            view.set(buf, buf.position(), length);
+            buf.position(buf.position() + length);
+            return view;
+         }
+         if (length < 0) {
+            throw log.negativeLength();
+         }
+         throw log.messageTruncated();
+      }
+
       @Override
       ByteBuffer readRawByteBuffer(int length) throws IOException {
          if (length > 0 && length <= end - buf.position()) {
@@ -793,70 +876,71 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
 
       @Override
       protected void skipVarint() throws IOException {
-         if (end - buf.position() >= MAX_VARINT_SIZE) {
-            for (int i = 0; i < MAX_VARINT_SIZE; i++) {
-               if (buf.get() >= 0) {
-                  return;
-               }
-            }
-         } else {
-            for (int i = 0; i < MAX_VARINT_SIZE; i++) {
-               if (readRawByte() >= 0) {
-                  return;
-               }
+         int pos = buf.position();
+         int max = Math.min(end - pos, MAX_VARINT_SIZE);
+         for (int i = 0; i < max; i++) {
+            if (buf.get(pos + i) >= 0) {
+               buf.position(pos + i + 1);
+               return;
             }
          }
+         if (max < MAX_VARINT_SIZE) {
+            throw log.messageTruncated();
+         }
          throw log.malformedVarint();
       }
 
       @Override
       long readVarint64() throws IOException {
+         // absolute gets on a local position, the buffer position is only updated once the varint is complete
+         int pos = buf.position();
+         int max = Math.min(end, pos + MAX_VARINT_SIZE);
          long value = 0;
-         if (end - buf.position() >= MAX_VARINT_SIZE) {
-            for (int i = 0; i < 64; i += 7) {
-               byte b = buf.get();
-               value |= (long) (b & 0x7F) << i;
-               if (b >= 0) {
-                  return value;
-               }
-            }
-         } else {
-            for (int i = 0; i < 64; i += 7) {
-               byte b = readRawByte();
-               value |= (long) (b & 0x7F) << i;
-               if (b >= 0) {
-                  return value;
-               }
+         for (int i = 0; pos < max; i += 7) {
+            byte b = buf.get(pos++);
+            value |= (long) (b & 0x7F) << i;
+            if (b >= 0) {
+               buf.position(pos);
+               return value;
             }
          }
+         if (pos == end && pos - buf.position() < MAX_VARINT_SIZE) {
+            throw log.messageTruncated();
+         }
          throw log.malformedVarint();
       }
 
       @Override
       int readFixed32() throws IOException {
-         try {
-            return buf.getInt();  //todo [anistor] should we worry about byte order?
-         } catch (BufferUnderflowException e) {
-            throw log.messageTruncated(e);
+         int pos = buf.position();
+         if (end - pos >= FIXED_32_SIZE) {
+            int value = (int) VarHandlesUtil.BUFFER_INT.get(buf, pos);
+            buf.position(pos + FIXED_32_SIZE);
+            return value;
          }
+         throw log.messageTruncated();
       }
 
       @Override
       long readFixed64() throws IOException {
-         try {
-            return buf.getLong();  //todo [anistor] should we worry about byte order?
-         } catch (BufferUnderflowException e) {
-            throw log.messageTruncated(e);
+         int pos = buf.position();
+         if (end - pos >= FIXED_64_SIZE) {
+            long value = (long) VarHandlesUtil.BUFFER_LONG.get(buf, pos);
+            buf.position(pos + FIXED_64_SIZE);
+            return value;
          }
+         throw log.messageTruncated();
       }
 
       @Override
       byte readRawByte() throws IOException {
-         try {
-            return buf.get();
-         } catch (BufferUnderflowException e) {
-            throw log.messageTruncated(e);
+         int pos = buf.position();
+         if (pos < end) {
+            byte b = buf.get(pos);
+            buf.position(pos + 1);
+            return b;
          }
+         throw log.messageTruncated();
       }
 
       @Override
@@ -893,10 +977,28 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
       }
    }
 
+   /**
+    * A decoder for streams of unknown length. Bytes are read from the stream in chunks into an internal buffer and all
+    * decoding happens against that buffer. A refill never reads past the end of the current nested message. Outside
+    * any nested message the end is unknown, so the decoder only reads ahead if the stream supports
+    * {@code mark/reset}, which lets {@link #close()} give back the bytes that were buffered but not consumed. Any other
+    * stream is read one byte at a time there, so that nothing after the message is consumed.
+    */
    private static final class InputStreamDecoder extends Decoder {
 
+      private static final int BUFFER_SIZE = 1024;
+
       private final InputStream in;
 
+      private final boolean markSupported;
+
+      // lazily allocated on first refill
+      private byte[] buffer;
+
+      private int bufferPos;
+
+      private int bufferSize;
+
       /**
        * Current position.
        */
@@ -911,17 +1013,56 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
          if (in == null) {
             throw new IllegalArgumentException("input stream cannot be null");
          }
-         if (in.markSupported()) {
-            this.in = in;
+         this.in = in;
+         this.markSupported = in.markSupported();
+      }
+
+      private int remaining() {
+         return bufferSize - bufferPos;
+      }
+
+      /**
+       * Refills the buffer once it has been fully consumed. The buffer is always filled from its start so that a mark
+       * placed before the read lets {@link #close()} rewind the stream to the first unconsumed byte. The read is bounded
+       * by the end of the current nested message. Outside any nested message only a stream that can be rewound is read
+       * ahead.
+       *
+       * @return {@code false} if the end of the stream was reached
+       */
+      private boolean refill() throws IOException {
+         if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+         }
+         int end = Math.min(limit, globalLimit);
+         int length;
+         if (end != Integer.MAX_VALUE) {
+            length = Math.max(Math.min(end - pos, BUFFER_SIZE), 1);
          } else {
-            this.in = new PushbackInputStream(in);
+            length = markSupported ? BUFFER_SIZE : 1;
+         }
+         if (markSupported) {
+            in.mark(length);
          }
+         bufferPos = 0;
+         bufferSize = 0;
+         int read = in.read(buffer, 0, length);
+         if (read <= 0) {
+            return false;
+         }
+         bufferSize = read;
+         return true;
       }
 
       @Override
       String readString() throws IOException {
          int length = readVarint32();
          if (length > 0 && length <= limit - pos) {
+            if (length <= remaining()) {
+               String value = new String(buffer, bufferPos, length, UTF8);
+               bufferPos += length;
+               pos += length;
+               return value;
+            }
             byte[] bytes = readRawByteArray(length);
             return new String(bytes, 0, length, UTF8);
          }
@@ -956,11 +1097,26 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
       @Override
       long readVarint64() throws IOException {
          long value = 0;
-         for (int i = 0; i < 64; i += 7) {
-            byte b = readRawByte();
-            value |= (long) (b & 0x7F) << i;
-            if (b >= 0) {
-               return value;
+         if (Math.min(remaining(), limit - pos) >= MAX_VARINT_SIZE) {
+            byte[] buffer = this.buffer;
+            int start = bufferPos;
+            int bufferPos = start;
+            for (int i = 0; i < 64; i += 7) {
+               byte b = buffer[bufferPos++];
+               value |= (long) (b & 0x7F) << i;
+               if (b >= 0) {
+                  pos += bufferPos - start;
+                  this.bufferPos = bufferPos;
+                  return value;
+               }
+            }
+         } else {
+            for (int i = 0; i < 64; i += 7) {
+               byte b = readRawByte();
+               value |= (long) (b & 0x7F) << i;
+               if (b >= 0) {
+                  return value;
+               }
             }
          }
          throw log.malformedVarint();
@@ -971,6 +1127,12 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
          if (limit - pos < FIXED_32_SIZE) {
             throw log.messageTruncated();
          }
+         if (remaining() >= FIXED_32_SIZE) {
+            int value = (int) VarHandlesUtil.INT.get(buffer, bufferPos);
+            bufferPos += FIXED_32_SIZE;
+            pos += FIXED_32_SIZE;
+            return value;
+         }
          return (readRawByte() & 0xFF)
                | ((readRawByte() & 0xFF) << 8)
                | ((readRawByte() & 0xFF) << 16)
@@ -982,6 +1144,12 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
          if (limit - pos < FIXED_64_SIZE) {
             throw log.messageTruncated();
          }
+         if (remaining() >= FIXED_64_SIZE) {
+            long value = (long) VarHandlesUtil.LONG.get(buffer, bufferPos);
+            bufferPos += FIXED_64_SIZE;
+            pos += FIXED_64_SIZE;
+            return value;
+         }
          return (readRawByte() & 0xFFL)
                | ((readRawByte() & 0xFFL) << 8)
                | ((readRawByte() & 0xFFL) << 16)
@@ -1039,20 +1207,42 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
          }
          if (globalLimit == Integer.MAX_VALUE) {
             pos = Integer.MAX_VALUE;
-            return in.readAllBytes();
+            byte[] rest = in.readAllBytes();
+            int remaining = remaining();
+            if (remaining == 0) {
+               return rest;
+            }
+            byte[] array = Arrays.copyOfRange(buffer, bufferPos, bufferPos + remaining + rest.length);
+            System.arraycopy(rest, 0, array, remaining, rest.length);
+            bufferPos = bufferSize;
+            return array;
          } else {
             int length = globalLimit - pos;
             return readRawByteArray(length);
          }
       }
 
+      /**
+       * Returns a stream positioned at the first unconsumed byte, made of the bytes still buffered followed by the
+       * rest of the underlying stream.
+       */
       InputStream getInputStream() {
-         return in;
+         int remaining = remaining();
+         if (remaining == 0) {
+            return in;
+         }
+         InputStream buffered = new ByteArrayInputStream(buffer, bufferPos, remaining);
+         bufferPos = bufferSize;
+         return new SequenceInputStream(buffered, in);
       }
 
       @Override
       boolean isAtEnd() throws IOException {
-         return pos == limit || in.available() <= 0;
+         if (limit != Integer.MAX_VALUE) {
+            // inside a nested message the end is known, whatever the stream reports as available
+            return pos == limit;
+         }
+         return remaining() == 0 && in.available() <= 0;
       }
 
       @Override
@@ -1060,12 +1250,11 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
          if (pos >= limit) {
             throw log.messageTruncated();
          }
-         int byteValue = in.read();
-         if (byteValue < 0) {
+         if (bufferPos == bufferSize && !refill()) {
             throw log.messageTruncated();
          }
          pos++;
-         return (byte) byteValue;
+         return buffer[bufferPos++];
       }
 
       @Override
@@ -1075,16 +1264,13 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
             if (pos > globalLimit) {
                throw log.globalLimitExceeded();
             }
-            int readTotal = 0;
-            int readAmount;
             byte[] array = new byte[length];
-            while ((readAmount = in.read(array, readTotal, length - readTotal)) != -1) {
-               readTotal += readAmount;
-               if (readTotal == length) {
-                  break;
-               }
+            int fromBuffer = Math.min(length, remaining());
+            if (fromBuffer > 0) {
+               System.arraycopy(buffer, bufferPos, array, 0, fromBuffer);
+               bufferPos += fromBuffer;
             }
-            if (readTotal != length) {
+            if (fromBuffer < length && in.readNBytes(array, fromBuffer, length - fromBuffer) != length - fromBuffer) {
                throw log.messageTruncated();
             }
             return array;
@@ -1102,7 +1288,15 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
       protected void skipRawBytes(int length) throws IOException {
          if (length <= limit - pos && length >= 0) {
             pos += length;
-            skipNBytes(length);
+            int fromBuffer = Math.min(length, remaining());
+            bufferPos += fromBuffer;
+            if (fromBuffer < length) {
+               try {
+                  in.skipNBytes(length - fromBuffer);
+               } catch (EOFException e) {
+                  throw log.messageTruncated();
+               }
+            }
          } else {
             if (length < 0) {
                throw log.negativeLength();
@@ -1111,24 +1305,21 @@ public final class TagReaderImpl implements TagReader, ProtobufTagMarshaller.Rea
          }
       }
 
-      // Copied from InputStream, we can't use Java 12 or newer just yet, can be removed when on a newer version.
-      private void skipNBytes(long n) throws IOException {
-         while (n > 0) {
-            long ns = in.skip(n);
-            if (ns > 0 && ns <= n) {
-               // adjust number to skip
-               n -= ns;
-            } else if (ns == 0) { // no bytes skipped
-               // read one byte to check for EOS
-               if (in.read() == -1) {
-                  throw log.messageTruncated();
-               }
-               // one byte read so decrement number to skip
-               n--;
-            } else { // skipped negative or too many bytes
-               throw new IOException("Unable to skip exactly");
-            }
+      /**
+       * Gives back to the stream the bytes that were buffered but not consumed, so the stream is left positioned right
+       * after the last byte that was decoded. Only a stream that supports {@code mark/reset} can have buffered bytes
+       * left over. The stream itself is not closed.
+       */
+      @Override
+      void close() throws IOException {
+         if (remaining() == 0) {
+            return;
+         }
+         if (markSupported) {
+            in.reset();
+            in.skipNBytes(bufferPos);
          }
+         bufferPos = bufferSize;
       }
    }
 
@@ -9,16 +9,21 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SelectableChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.infinispan.protostream.ImmutableSerializationContext;
 import org.infinispan.protostream.ProtobufTagMarshaller;
 import org.infinispan.protostream.RandomAccessOutputStream;
 import org.infinispan.protostream.TagWriter;
+import org.infinispan.protostream.config.Configuration;
 import org.infinispan.protostream.descriptors.WireType;
 
 /**
@@ -100,6 +105,14 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
       return new TagWriterImpl((SerializationContextImpl) serCtx, encoder);
    }
 
+   /**
+    * Creates a writer that accumulates the output as a list of buffers, referencing large {@code bytes} values instead of
+    * copying them, and writes them to the channel with a single gathering write on {@link #flush()}.
+    */
+   public static TagWriterImpl newInstance(ImmutableSerializationContext serCtx, GatheringByteChannel channel) {
+      return new TagWriterImpl((SerializationContextImpl) serCtx, new GatheringEncoder(channel));
+   }
+
    public static TagWriterImpl newInstance(ImmutableSerializationContext serCtx) {
       return new TagWriterImpl((SerializationContextImpl) serCtx, new NoOpEncoder());
    }
@@ -116,6 +129,48 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
       return new TagWriterImpl((SerializationContextImpl) ctx, new OutputStreamNoBufferEncoder(out));
    }
 
+   /**
+    * A write operation to perform on a writer, see {@link #writeExactSize}.
+    */
+   @FunctionalInterface
+   public interface WriteOperation {
+      void write(TagWriterImpl writer) throws IOException;
+   }
+
+   /**
+    * Serializes to an array of the exact size of the output by performing the write operation twice. The first pass
+    * only computes the size of the output and of each nested message, and the second one writes to an array of that
+    * size, with the length of each nested message known before its contents. The operation must produce the same
+    * output both times.
+    *
+    * @throws IllegalStateException if the two passes produce different output
+    */
+   public static byte[] writeExactSize(ImmutableSerializationContext serCtx, WriteOperation operation) throws IOException {
+      SizingEncoder sizing = new SizingEncoder();
+      operation.write(new TagWriterImpl((SerializationContextImpl) serCtx, sizing));
+      int size = sizing.getWrittenBytes();
+      if (size == 0) {
+         return new byte[0];
+      }
+      byte[] bytes = new byte[size];
+      ExactSizeEncoder encoder = new ExactSizeEncoder(bytes, sizing);
+      operation.write(new TagWriterImpl((SerializationContextImpl) serCtx, encoder));
+      if (!encoder.isComplete()) {
+         throw new IllegalStateException("The output of the writing pass differs from the sizing pass");
+      }
+      return bytes;
+   }
+
+   /**
+    * Clears the params of a top level writer, in order to reuse it for writing another message to the same output
+    * after the output was reset.
+    */
+   public void reset() {
+      if (params != null) {
+         params.clear();
+      }
+   }
+
    public int getWrittenBytes() {
       // the CCE here will signal misuse; let it happen
       return ((OverEstimateEncoder) encoder).getWrittenBytes();
@@ -151,6 +206,16 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
       encoder.writeVarint64(value);
    }
 
+   @Override
+   public void writeRawFixed32(int value) throws IOException {
+      encoder.writeFixed32(value);
+   }
+
+   @Override
+   public void writeRawFixed64(long value) throws IOException {
+      encoder.writeFixed64(value);
+   }
+
    @Override
    public void writeString(int number, String value) throws IOException {
       encoder.writeUTF8Field(number, value);
@@ -254,7 +319,8 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
    @Override
    public TagWriter subWriter(int number, boolean nested) throws IOException {
-      Encoder subEncoder = encoder.subEncoder(number, serCtx.getConfiguration().maxNestedMessageDepth());
+      int maxDepth = serCtx != null ? serCtx.getConfiguration().maxNestedMessageDepth() : Configuration.DEFAULT_MAX_NESTED_DEPTH;
+      Encoder subEncoder = encoder.subEncoder(number, maxDepth);
       if (subEncoder.canReuseWriter()) {
          return this;
       }
@@ -420,6 +486,38 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       abstract void writeBytes(ByteBuffer value) throws IOException;
 
+      /**
+       * Pushes the start position of a nested message on a stack of positions, growing it as needed but never beyond
+       * the maximum nesting depth.
+       */
+      static long[] pushNestedPosition(long[] positions, int head, long position, int maxDepth) {
+         if (positions == null) {
+            positions = new long[10];
+         } else if (head == positions.length) {
+            int newSize = Math.min(head + 10, maxDepth);
+            if (newSize == maxDepth) {
+               throw log.maxNestedMessageDepth(maxDepth, null);
+            }
+            positions = Arrays.copyOf(positions, newSize);
+         }
+         positions[head] = position;
+         return positions;
+      }
+
+      static int[] pushNestedPosition(int[] positions, int head, int position, int maxDepth) {
+         if (positions == null) {
+            positions = new int[10];
+         } else if (head == positions.length) {
+            int newSize = Math.min(head + 10, maxDepth);
+            if (newSize == maxDepth) {
+               throw log.maxNestedMessageDepth(maxDepth, null);
+            }
+            positions = Arrays.copyOf(positions, newSize);
+         }
+         positions[head] = position;
+         return positions;
+      }
+
       Encoder subEncoder(int number, int maxDepth) throws IOException {
          RandomAccessOutputStream raos = new RandomAccessOutputStreamImpl();
          return new WrappedEncoder(new OutputStreamRandomAccessEncoder(raos)) {
@@ -735,7 +833,81 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
    }
 
    /**
-    * Writes to a user provided byte array.
+    * The sizing pass of {@link #writeExactSize}. Counts the bytes like {@link NoOpEncoder} and also records the lengths
+    * of the nested messages, in the order they are opened.
+    */
+   private static final class SizingEncoder extends NoOpEncoder {
+
+      private int[] sizes = new int[16];
+
+      private int sizeCount;
+
+      // indexes in sizes of the currently open nested messages
+      private int[] slots;
+
+      private int slotHead;
+
+      @Override
+      Encoder subEncoder(int number, int maxDepth) {
+         super.subEncoder(number, maxDepth);
+         if (sizeCount == sizes.length) {
+            sizes = Arrays.copyOf(sizes, sizeCount << 1);
+         }
+         slots = pushNestedPosition(slots, slotHead++, sizeCount++, maxDepth);
+         return this;
+      }
+
+      @Override
+      public void close() {
+         if (head > 0) {
+            sizes[slots[--slotHead]] = count - nestedPositions[head - 1];
+            super.close();
+         }
+      }
+   }
+
+   /**
+    * The writing pass of {@link #writeExactSize}. Writes to an array of the exact size of the message, taking the
+    * lengths of the nested messages from the sizing pass, so they are written upfront and never moved.
+    */
+   private static final class ExactSizeEncoder extends ByteArrayEncoder {
+
+      private final int[] sizes;
+
+      private final int sizeCount;
+
+      private int next;
+
+      private ExactSizeEncoder(byte[] array, SizingEncoder sizing) {
+         super(array, 0, array.length);
+         this.sizes = sizing.sizes;
+         this.sizeCount = sizing.sizeCount;
+      }
+
+      @Override
+      Encoder subEncoder(int number, int maxDepth) throws IOException {
+         if (next == sizeCount) {
+            throw new IllegalStateException("The output of the writing pass differs from the sizing pass");
+         }
+         writeVarint32(WireType.makeTag(number, WireType.WIRETYPE_LENGTH_DELIMITED));
+         writeVarint32(sizes[next++]);
+         return this;
+      }
+
+      @Override
+      void close() {
+         // the lengths are already written
+      }
+
+      boolean isComplete() {
+         return next == sizeCount && pos == limit;
+      }
+   }
+
+   /**
+    * Writes to a user provided byte array. Nested messages are written in place: a single byte is reserved for the
+    * length and backpatched when the nested message is closed, moving the message forward in the rare case its length
+    * needs a longer varint.
     */
    private static class ByteArrayEncoder extends Encoder {
 
@@ -747,6 +919,11 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       protected int pos;
 
+      // start positions of the currently open nested messages
+      private int[] nestedPositions;
+
+      private int head;
+
       private ByteArrayEncoder(byte[] array, int offset, int length) {
          if (array == null) {
             throw new IllegalArgumentException("array cannot be null");
@@ -906,6 +1083,42 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
             throw log.outOfWriteBufferSpace(e);
          }
       }
+
+      @Override
+      boolean canReuseWriter() {
+         return true;
+      }
+
+      @Override
+      Encoder subEncoder(int number, int maxDepth) throws IOException {
+         writeVarint32(WireType.makeTag(number, WireType.WIRETYPE_LENGTH_DELIMITED));
+         // We just skip a byte, assuming the nested message is less than 128. If it isn't we will move it later
+         writeByte((byte) 0);
+         nestedPositions = pushNestedPosition(nestedPositions, head++, pos, maxDepth);
+         return this;
+      }
+
+      @Override
+      void close() throws IOException {
+         if (head == 0) {
+            flush();
+            return;
+         }
+         int start = nestedPositions[--head];
+         int length = pos - start;
+         if (length < 128) {
+            array[start - 1] = (byte) length;
+         } else {
+            int shift = varIntBytes(length) - 1;
+            if (shift > limit - pos) {
+               throw log.outOfWriteBufferSpace(null);
+            }
+            System.arraycopy(array, start, array, start + shift, length);
+            pos = start - 1;
+            writeVarint32(length);
+            pos += length;
+         }
+      }
    }
 
    /**
@@ -931,21 +1144,20 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
    }
 
    /**
-    * Writes to a {@link ByteBuffer} using put() operations. Only used for off-heap buffers.
+    * Writes to a {@link ByteBuffer} using put() operations. Only used for off-heap buffers. Nested messages are written
+    * in place with a backpatched length, like {@link ByteArrayEncoder} does.
     */
    private static final class ByteBufferEncoder extends Encoder {
 
       private final ByteBuffer buffer;
 
-      /**
-       * If buffer byte order is not LITTLE_ENDIAN as expected by Protobuf binary format then we need to reverse bytes
-       * whenever we write a fixed32 or fixed64 value.
-       */
-      private final boolean reverse;
+      // start positions of the currently open nested messages
+      private int[] nestedPositions;
+
+      private int head;
 
       private ByteBufferEncoder(ByteBuffer buffer) {
          this.buffer = buffer;
-         this.reverse = buffer.order() == ByteOrder.BIG_ENDIAN;
       }
 
       @Override
@@ -1011,29 +1223,259 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       void writeFixed32(int value) throws IOException {
-         if (reverse) {
-            value = Integer.reverseBytes(value);
-         }
-         try {
-            buffer.putInt(value);
-         } catch (BufferOverflowException e) {
-            throw log.outOfWriteBufferSpace(e);
+         // little endian as required by the Protobuf binary format, whatever the byte order of the buffer is
+         int pos = buffer.position();
+         if (buffer.limit() - pos < FIXED_32_SIZE) {
+            throw log.outOfWriteBufferSpace(new BufferOverflowException());
          }
+         VarHandlesUtil.BUFFER_INT.set(buffer, pos, value);
+         buffer.position(pos + FIXED_32_SIZE);
       }
 
       @Override
       void writeFixed64(long value) throws IOException {
-         if (reverse) {
-            value = Long.reverseBytes(value);
+         // little endian as required by the Protobuf binary format, whatever the byte order of the buffer is
+         int pos = buffer.position();
+         if (buffer.limit() - pos < FIXED_64_SIZE) {
+            throw log.outOfWriteBufferSpace(new BufferOverflowException());
          }
-         try {
-            buffer.putLong(value);
-         } catch (BufferOverflowException e) {
-            throw log.outOfWriteBufferSpace(e);
+         VarHandlesUtil.BUFFER_LONG.set(buffer, pos, value);
+         buffer.position(pos + FIXED_64_SIZE);
+      }
+
+      @Override
+      boolean canReuseWriter() {
+         return true;
+      }
+
+      @Override
+      Encoder subEncoder(int number, int maxDepth) throws IOException {
+         writeVarint32(WireType.makeTag(number, WireType.WIRETYPE_LENGTH_DELIMITED));
+         // We just skip a byte, assuming the nested message is less than 128. If it isn't we will move it later
+         writeByte((byte) 0);
+         nestedPositions = pushNestedPosition(nestedPositions, head++, buffer.position(), maxDepth);
+         return this;
+      }
+
+      @Override
+      void close() throws IOException {
+         if (head == 0) {
+            return;
+         }
+         int start = nestedPositions[--head];
+         int end = buffer.position();
+         int length = end - start;
+         if (length < 128) {
+            buffer.put(start - 1, (byte) length);
+         } else {
+            int shift = varIntBytes(length) - 1;
+            if (shift > buffer.remaining()) {
+               throw log.outOfWriteBufferSpace(null);
+            }
+            // the copy may overlap, which absolute bulk put handles like System.arraycopy
+            buffer.put(start + shift, buffer, start, length);
+            buffer.position(start - 1);
+            writeVarint32(length);
+            buffer.position(end + shift);
          }
       }
    }
 
+   /**
+    * Builds the output as a list of buffers which are written at once to a {@link GatheringByteChannel} on flush.
+    * Small values are copied to scratch arrays, while {@code bytes} values of at least {@link #REFERENCE_THRESHOLD}
+    * bytes are referenced as they are and must not be modified until the writer is flushed. The length of a nested
+    * message goes to a buffer of its own which is filled in when the nested message is closed, so nothing is ever moved.
+    * The channel must be in blocking mode, a non-blocking channel is rejected with {@link IllegalBlockingModeException}.
+    */
+   private static final class GatheringEncoder extends Encoder {
+
+      static final int SCRATCH_SIZE = 4096;
+
+      static final int REFERENCE_THRESHOLD = 512;
+
+      private final GatheringByteChannel channel;
+
+      private final List<ByteBuffer> segments = new ArrayList<>();
+
+      private byte[] scratch = new byte[SCRATCH_SIZE];
+
+      // start of the part of the scratch array not yet added to the segments
+      private int segmentStart;
+
+      private int pos;
+
+      // number of bytes written since the last flush
+      private long written;
+
+      // indexes of the segments reserved for the lengths of the currently open nested messages, and their start
+      private int[] nestedSegments;
+      private long[] nestedPositions;
+
+      private int head;
+
+      private GatheringEncoder(GatheringByteChannel channel) {
+         if (channel instanceof SelectableChannel sc && !sc.isBlocking()) {
+            throw new IllegalBlockingModeException();
+         }
+         this.channel = channel;
+      }
+
+      private void ensure(int length) {
+         if (SCRATCH_SIZE - pos < length) {
+            closeSegment();
+            // the old array is still referenced by the segments
+            scratch = new byte[SCRATCH_SIZE];
+            segmentStart = pos = 0;
+         }
+      }
+
+      private void closeSegment() {
+         if (pos > segmentStart) {
+            segments.add(ByteBuffer.wrap(scratch, segmentStart, pos - segmentStart));
+            segmentStart = pos;
+         }
+      }
+
+      @Override
+      void writeVarint32(int value) {
+         ensure(MAX_INT_VARINT_SIZE);
+         int start = pos;
+         while (true) {
+            if ((value & 0xFFFFFF80) == 0) {
+               scratch[pos++] = (byte) value;
+               break;
+            } else {
+               scratch[pos++] = (byte) (value & 0x7F | 0x80);
+               value >>>= 7;
+            }
+         }
+         written += pos - start;
+      }
+
+      @Override
+      void writeVarint64(long value) {
+         ensure(MAX_VARINT_SIZE);
+         int start = pos;
+         while (true) {
+            if ((value & 0xFFFFFFFFFFFFFF80L) == 0) {
+               scratch[pos++] = (byte) value;
+               break;
+            } else {
+               scratch[pos++] = (byte) ((int) value & 0x7F | 0x80);
+               value >>>= 7;
+            }
+         }
+         written += pos - start;
+      }
+
+      @Override
+      void writeFixed32(int value) {
+         ensure(FIXED_32_SIZE);
+         VarHandlesUtil.INT.set(scratch, pos, value);
+         pos += FIXED_32_SIZE;
+         written += FIXED_32_SIZE;
+      }
+
+      @Override
+      void writeFixed64(long value) {
+         ensure(FIXED_64_SIZE);
+         VarHandlesUtil.LONG.set(scratch, pos, value);
+         pos += FIXED_64_SIZE;
+         written += FIXED_64_SIZE;
+      }
+
+      @Override
+      void writeByte(byte value) {
+         ensure(1);
+         scratch[pos++] = value;
+         written++;
+      }
+
+      @Override
+      void writeBytes(byte[] value, int offset, int length) {
+         if (length >= REFERENCE_THRESHOLD) {
+            closeSegment();
+            segments.add(ByteBuffer.wrap(value, offset, length));
+         } else {
+            ensure(length);
+            System.arraycopy(value, offset, scratch, pos, length);
+            pos += length;
+         }
+         written += length;
+      }
+
+      @Override
+      void writeBytes(ByteBuffer value) {
+         int length = value.remaining();
+         if (length >= REFERENCE_THRESHOLD) {
+            closeSegment();
+            segments.add(value.slice());
+         } else {
+            ensure(length);
+            value.get(value.position(), scratch, pos, length);
+            pos += length;
+         }
+         value.position(value.limit());
+         written += length;
+      }
+
+      @Override
+      boolean canReuseWriter() {
+         return true;
+      }
+
+      @Override
+      Encoder subEncoder(int number, int maxDepth) throws IOException {
+         writeVarint32(WireType.makeTag(number, WireType.WIRETYPE_LENGTH_DELIMITED));
+         closeSegment();
+         nestedSegments = pushNestedPosition(nestedSegments, head, segments.size(), maxDepth);
+         nestedPositions = pushNestedPosition(nestedPositions, head++, written, maxDepth);
+         // a placeholder for the length
+         segments.add(null);
+         return this;
+      }
+
+      @Override
+      void close() throws IOException {
+         if (head == 0) {
+            flush();
+            return;
+         }
+         int segment = nestedSegments[--head];
+         // a nested message cannot be larger than 2GB, its length is a 32 bit varint
+         int length = Math.toIntExact(written - nestedPositions[head]);
+         closeSegment();
+         writeVarint32(length);
+         segments.set(segment, ByteBuffer.wrap(scratch, segmentStart, pos - segmentStart));
+         segmentStart = pos;
+      }
+
+      @Override
+      void flush() throws IOException {
+         if (head > 0) {
+            // the lengths of the open nested messages are not known yet
+            return;
+         }
+         closeSegment();
+         if (!segments.isEmpty()) {
+            ByteBuffer[] buffers = segments.toArray(new ByteBuffer[0]);
+            long remaining = written;
+            while (remaining > 0) {
+               long n = channel.write(buffers);
+               if (n == 0) {
+                  // a blocking channel writes all the bytes, only a non-blocking one can accept none
+                  throw new IllegalBlockingModeException();
+               }
+               remaining -= n;
+            }
+            segments.clear();
+         }
+         segmentStart = pos = 0;
+         written = 0;
+      }
+   }
+
    private static class OutputStreamNoBufferEncoder extends Encoder {
 
       private final OutputStream out;
@@ -1248,7 +1690,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       void writeUInt32Field(int fieldNumber, int value) throws IOException {
-         int pos = out.getPosition();
+         long pos = out.getLongPosition();
          int tag = WireType.makeTag(fieldNumber, WireType.WIRETYPE_VARINT);
          out.ensureCapacity(pos + MAX_INT_VARINT_SIZE + MAX_INT_VARINT_SIZE);
 
@@ -1259,7 +1701,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       void writeUInt64Field(int fieldNumber, long value) throws IOException {
-         int pos = out.getPosition();
+         long pos = out.getLongPosition();
          int tag = WireType.makeTag(fieldNumber, WireType.WIRETYPE_VARINT);
          out.ensureCapacity(pos + MAX_INT_VARINT_SIZE + MAX_VARINT_SIZE);
 
@@ -1270,7 +1712,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       void writeFixed32Field(int fieldNumber, int value) throws IOException {
-         int pos = out.getPosition();
+         long pos = out.getLongPosition();
          int tag = WireType.makeTag(fieldNumber, WireType.WIRETYPE_FIXED32);
          out.ensureCapacity(pos + MAX_INT_VARINT_SIZE + FIXED_32_SIZE);
 
@@ -1281,7 +1723,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       void writeFixed64Field(int fieldNumber, long value) throws IOException {
-         int pos = out.getPosition();
+         long pos = out.getLongPosition();
          int tag = WireType.makeTag(fieldNumber, WireType.WIRETYPE_FIXED64);
          out.ensureCapacity(pos + MAX_INT_VARINT_SIZE + FIXED_64_SIZE);
 
@@ -1292,7 +1734,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       void writeBoolField(int fieldNumber, boolean value) throws IOException {
-         int pos = out.getPosition();
+         long pos = out.getLongPosition();
          int tag = WireType.makeTag(fieldNumber, WireType.WIRETYPE_VARINT);
          out.ensureCapacity(pos + MAX_INT_VARINT_SIZE + 1);
 
@@ -1303,7 +1745,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       void writeLengthDelimitedField(int fieldNumber, int length) throws IOException {
-         int pos = out.getPosition();
+         long pos = out.getLongPosition();
          int tag = WireType.makeTag(fieldNumber, WireType.WIRETYPE_LENGTH_DELIMITED);
          out.ensureCapacity(pos + MAX_INT_VARINT_SIZE + MAX_INT_VARINT_SIZE);
 
@@ -1314,29 +1756,30 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       void writeBytes(int fieldNumber, ByteBuffer value) throws IOException {
-         int pos = out.getPosition();
+         long pos = out.getLongPosition();
          if (value.hasArray()) {
             int length = value.remaining();
             writeBytes(fieldNumber, value.array(), value.arrayOffset() + value.position(), length);
             value.position(value.position() + length);
          } else {
             int bbPos = value.position();
-            int bbLen = bbPos + value.remaining();
+            int bbLen = value.remaining();
 
             int tag = WireType.makeTag(fieldNumber, WireType.WIRETYPE_LENGTH_DELIMITED);
             out.ensureCapacity(pos + MAX_INT_VARINT_SIZE + MAX_INT_VARINT_SIZE + bbLen);
 
             pos = writeVarInt32Direct(pos, tag);
             pos = writeVarInt32Direct(pos, bbLen);
-            for (int i = bbPos; i < bbLen; i++)
+            for (int i = bbPos; i < bbPos + bbLen; i++)
                out.write(pos++, value.get(i));
-            out.setPosition(bbPos);
+            out.setPosition(pos);
+            value.position(bbPos + bbLen);
          }
       }
 
       @Override
       void writeBytes(int fieldNumber, byte[] value, int offset, int length) throws IOException {
-         int pos = out.getPosition();
+         long pos = out.getLongPosition();
          int tag = WireType.makeTag(fieldNumber, WireType.WIRETYPE_LENGTH_DELIMITED);
 
          out.ensureCapacity(pos + MAX_INT_VARINT_SIZE + MAX_INT_VARINT_SIZE + length);
@@ -1348,7 +1791,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       void writeVarint32(int value) throws IOException {
-         int pos = out.getPosition();
+         long pos = out.getLongPosition();
          out.ensureCapacity(pos + MAX_INT_VARINT_SIZE);
          pos = writeVarInt32Direct(pos, value);
          out.setPosition(pos);
@@ -1356,7 +1799,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       void writeVarint64(long value) throws IOException {
-         int pos = out.getPosition();
+         long pos = out.getLongPosition();
          out.ensureCapacity(pos + MAX_VARINT_SIZE);
          pos = writeVarInt64Direct(pos, value);
          out.setPosition(pos);
@@ -1364,7 +1807,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       void writeFixed32(int value) throws IOException {
-         var pos = out.getPosition();
+         var pos = out.getLongPosition();
          var newPos = pos + FIXED_32_SIZE;
          out.ensureCapacity(newPos);
          out.writeFixed32Direct(pos, value);
@@ -1373,7 +1816,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       void writeFixed64(long value) throws IOException {
-         var pos = out.getPosition();
+         var pos = out.getLongPosition();
          var newPos = pos + FIXED_64_SIZE;
          out.ensureCapacity(newPos);
          out.writeFixed64Direct(pos, value);
@@ -1387,7 +1830,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       void writeBytes(byte[] value, int offset, int length) throws IOException {
-         int pos = out.getPosition();
+         long pos = out.getLongPosition();
          out.ensureCapacity(pos + length);
          out.write(pos, value, offset, length);
          out.setPosition(pos + length);
@@ -1411,15 +1854,15 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
       void writeLatin1RawBytes(int number, byte[] bytes) throws IOException {
          int byteLen = bytes.length;
          int tag = WireType.makeTag(number, WireType.WIRETYPE_LENGTH_DELIMITED);
-         int startPos = out.getPosition();
+         long startPos = out.getLongPosition();
 
          // Assume worst case of all characters larger than unsigned byte 127
          out.ensureCapacity(startPos + MAX_INT_VARINT_SIZE + MAX_INT_VARINT_SIZE + (byteLen * 2));
 
          startPos = writeVarInt32Direct(startPos, tag);
-         int lengthPos = startPos;
-         int dataStartPos = writeVarInt32Direct(startPos, byteLen);
-         int localPos = dataStartPos;
+         long lengthPos = startPos;
+         long dataStartPos = writeVarInt32Direct(startPos, byteLen);
+         long localPos = dataStartPos;
 
          int i = 0;
          for (; i <= byteLen - 8; i += 8) {
@@ -1445,8 +1888,8 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
          updatePositionFromMultiByte(byteLen, lengthPos, dataStartPos, localPos);
       }
 
-      private void updatePositionFromMultiByte(int originalByteLen, int lengthPos, int dataStartPos, int localPos) throws IOException {
-         int newByteLen = localPos - dataStartPos;
+      private void updatePositionFromMultiByte(int originalByteLen, long lengthPos, long dataStartPos, long localPos) throws IOException {
+         int newByteLen = (int) (localPos - dataStartPos);
          int oldLengthVarIntBytes = varIntBytes(originalByteLen);
          int newLengthVarIntBytes = varIntBytes(newByteLen);
 
@@ -1462,7 +1905,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
          }
       }
 
-      private int writeLatin1Char(int localPos, byte b) throws IOException {
+      private long writeLatin1Char(long localPos, byte b) throws IOException {
          if (b >= 0) {
             out.write(localPos++, b);
          } else {
@@ -1476,7 +1919,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
       void writeUTF8FieldWithRewind(int number, String s) throws IOException {
          int strlen = s.length();
          int tag = WireType.makeTag(number, WireType.WIRETYPE_LENGTH_DELIMITED);
-         int startPos = out.getPosition();
+         long startPos = out.getLongPosition();
 
          // First optimize for 1 - 127 case
          // Just assume worse case for strLength and and tag and allocate 5 per
@@ -1485,9 +1928,9 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
          // Need to set position so the resize below will work if required
          out.setPosition(startPos);
          // Note this will be overwritten if not all 1 - 127 characters below
-         int varIntBytesLen = writeVarInt32Direct(startPos, strlen) - startPos;
+         int varIntBytesLen = (int) (writeVarInt32Direct(startPos, strlen) - startPos);
 
-         int localPos = startPos + varIntBytesLen;
+         long localPos = startPos + varIntBytesLen;
 
          int c;
          int i;
@@ -1512,7 +1955,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
          out.setPosition(startPos + utf8buffer.length);
       }
 
-      int writeVarInt32Direct(int i, int value) throws IOException {
+      long writeVarInt32Direct(long i, int value) throws IOException {
          while (true) {
             if ((value & 0xFFFFFF80) == 0) {
                out.write(i++, (byte) value);
@@ -1525,7 +1968,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
          return i;
       }
 
-      private int writeVarInt64Direct(int i, long value) throws IOException {
+      private long writeVarInt64Direct(long i, long value) throws IOException {
          while (true) {
             if ((value & 0xFFFFFFFFFFFFFF80L) == 0) {
                out.write(i++, (byte) value);
@@ -1541,7 +1984,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
       @Override
       Encoder subEncoder(int number, int maxDepth) throws IOException {
          // We assume worse case for tag and 1 byte for length
-         int pos = out.getPosition();
+         long pos = out.getLongPosition();
          out.ensureCapacity(pos + MAX_INT_VARINT_SIZE + 1);
          pos = writeVarInt32Direct(pos, WireType.makeTag(number, WireType.WIRETYPE_LENGTH_DELIMITED));
          out.setPosition(pos + 1);
@@ -1567,7 +2010,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
    }
 
    static class ChildOutputStreamRandomAccessEncoder extends OutputStreamRandomAccessEncoder {
-      private int[] positions;
+      private long[] positions;
       private int head;
 
       private ChildOutputStreamRandomAccessEncoder(RandomAccessOutputStream raos) {
@@ -1581,20 +2024,11 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
 
       @Override
       Encoder subEncoder(int number, int maxDepth) throws IOException {
-         int pos = out.getPosition();
+         long pos = out.getLongPosition();
          out.ensureCapacity(pos + MAX_INT_VARINT_SIZE + 1);
          pos = writeVarInt32Direct(pos, WireType.makeTag(number, WireType.WIRETYPE_LENGTH_DELIMITED));
          out.setPosition(pos + 1);
-         if (positions == null) {
-            positions = new int[10];
-         } else if (head == positions.length) {
-            int newSize = Math.min(head + 10, maxDepth);
-            if (newSize == maxDepth) {
-               throw log.maxNestedMessageDepth(maxDepth, null);
-            }
-            positions = Arrays.copyOf(positions, newSize);
-         }
-         positions[head++] = pos + 1;
+         positions = pushNestedPosition(positions, head++, pos + 1, maxDepth);
          return this;
       }
 
@@ -1603,8 +2037,9 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
          if (positions == null || head == 0) {
             return;
          }
-         int storedPos = positions[--head];
-         int posDifference = out.getPosition() - storedPos;
+         long storedPos = positions[--head];
+         // a nested message cannot be larger than 2GB, its length is a 32 bit varint
+         int posDifference = Math.toIntExact(out.getLongPosition() - storedPos);
          if (posDifference < 128) {
             out.write(storedPos - 1, posDifference);
          } else {
@@ -1612,7 +2047,7 @@ public final class TagWriterImpl implements TagWriter, ProtobufTagMarshaller.Wri
             int bytesRequired = varIntBytes(posDifference);
             out.move(storedPos, posDifference, storedPos + bytesRequired - 1);
             writeVarInt32Direct(storedPos - 1, posDifference);
-            out.setPosition(out.getPosition() + bytesRequired - 1);
+            out.setPosition(out.getLongPosition() + bytesRequired - 1);
          }
       }
    }
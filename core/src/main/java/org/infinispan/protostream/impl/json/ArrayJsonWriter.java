@@ -1,6 +1,5 @@
 package org.infinispan.protostream.impl.json;
 
-import java.util.List;
 import java.util.Objects;
 
 import org.infinispan.protostream.ImmutableSerializationContext;
@@ -45,8 +44,8 @@ final class ArrayJsonWriter extends BaseJsonWriter {
    private boolean done;
    private boolean isMessageType;
 
-   ArrayJsonWriter(ImmutableSerializationContext ctx, List<JsonTokenWriter> ast, FieldDescriptor descriptor) {
-      super(ctx, ast, descriptor);
+   ArrayJsonWriter(ImmutableSerializationContext ctx, JsonTokenStream tokens, FieldDescriptor descriptor) {
+      super(ctx, tokens, descriptor);
    }
 
    @Override
@@ -101,6 +100,20 @@ final class ArrayJsonWriter extends BaseJsonWriter {
       writePrimitiveOrDispatch(fieldNumber, fieldDescriptor, tagValue, delegate);
    }
 
+   @Override
+   protected FieldAwareTagHandler scalarTarget(int fieldNumber, FieldDescriptor fieldDescriptor) {
+      Objects.requireNonNull(delegate, "Handling tag without starting nested");
+      if (delegate.isComplexObject() || isMessageType) {
+         return delegate;
+      }
+      return fieldDescriptor != null && fieldDescriptor.getMessageType() == null ? this : null;
+   }
+
+   @Override
+   protected void writeScalar(FieldDescriptor fieldDescriptor, JsonTokenWriter value) {
+      writeRawPrimitive(value);
+   }
+
    @Override
    public void onEnd() {
       if (delegate.isComplexObject() || isMessageType)
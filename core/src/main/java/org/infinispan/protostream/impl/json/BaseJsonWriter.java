@@ -15,13 +15,15 @@ import static org.infinispan.protostream.impl.json.JsonHelper.JSON_TYPE_FIELD;
 import static org.infinispan.protostream.impl.json.JsonHelper.JSON_VALUE_FIELD;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.List;
 import java.util.Objects;
 import java.util.TimeZone;
 
@@ -47,8 +49,8 @@ import org.infinispan.protostream.descriptors.Type;
  * </p>
  *
  * <p>
- * This class maintains the internal stack with the JSON tokens to write later, and it propagates these values when
- * creating a new delegate writer.
+ * This class pushes the JSON tokens to the {@link JsonTokenStream} shared by all the writers, which renders them to the
+ * output as they come, and it propagates the stream when creating a new delegate writer.
  *
  * <h2>JSON Requirements:</h2>
  *
@@ -77,7 +79,9 @@ import org.infinispan.protostream.descriptors.Type;
  *
  *    <li>{@link #onTag(int, FieldDescriptor, Object)}: When reading fields from the proto object. This method will
  *    handle the base primitives (int, long, etc.), wrapped primitives, and special field for wrapped objects. At this
- *    stage, a delegate might be created to handle the remaining fields in the stream.
+ *    stage, a delegate might be created to handle the remaining fields in the stream. The object and array writers
+ *    also implement the typed callbacks, like {@link #onInt32(int, FieldDescriptor, int)}, to write plain scalar
+ *    fields without boxing them, and hand everything else to this method.
  *    </li>
  *
  *    <li>{@link #onEnd()}: When the object/stream has finished. First, close the delegate and then close the outer
@@ -139,8 +143,8 @@ abstract class BaseJsonWriter implements FieldAwareTagHandler {
    // This will hold information about the field "key".
    protected final FieldDescriptor descriptor;
 
-   // Holds the tokens to generate the JSON in string format and the context to read the fields/descriptors.
-   protected final List<JsonTokenWriter> ast;
+   // The stream rendering the JSON tokens and the context to read the fields/descriptors.
+   protected final JsonTokenStream tokens;
    protected final ImmutableSerializationContext ctx;
 
    // The current delegate to redirect operations.
@@ -151,14 +155,14 @@ abstract class BaseJsonWriter implements FieldAwareTagHandler {
    protected Integer wrappedTypeId;
    protected String wrappedTypeName;
 
-   protected BaseJsonWriter(ImmutableSerializationContext ctx, List<JsonTokenWriter> ast, FieldDescriptor descriptor) {
+   protected BaseJsonWriter(ImmutableSerializationContext ctx, JsonTokenStream tokens, FieldDescriptor descriptor) {
       this.ctx = ctx;
-      this.ast = ast;
+      this.tokens = tokens;
       this.descriptor = descriptor;
    }
 
-   protected BaseJsonWriter(ImmutableSerializationContext ctx, List<JsonTokenWriter> ast) {
-      this(ctx, ast, null);
+   protected BaseJsonWriter(ImmutableSerializationContext ctx, JsonTokenStream tokens) {
+      this(ctx, tokens, null);
    }
 
    @Override
@@ -186,7 +190,7 @@ abstract class BaseJsonWriter implements FieldAwareTagHandler {
       // This means the actual message is not wrapped withing a WrappedMessage, it is written directly to the stream.
       // We create the delegate during the start to parse the fields of the container.
       if (JsonHelper.isContainerAdapter(ctx, descriptor)) {
-         delegate = new ContainerObjectWriter(ctx, ast, null);
+         delegate = new ContainerObjectWriter(ctx, tokens, null, descriptor);
       }
       pushToken(JsonToken.LEFT_BRACE);
       if (descriptor == null) return;
@@ -352,6 +356,28 @@ abstract class BaseJsonWriter implements FieldAwareTagHandler {
       }
    }
 
+   /**
+    * The delegate {@link #onTag(int, FieldDescriptor, Object)} would hand the field to as it is, or {@code null} if
+    * this writer handles the field itself.
+    */
+   protected final FieldAwareTagHandler fieldDelegate(int fieldNumber) {
+      return delegate != null && (delegate.field() == fieldNumber || delegate.acceptField(fieldNumber)) ? delegate : null;
+   }
+
+   /**
+    * Whether {@link #onTag(int, FieldDescriptor, Object)} would write the field as a plain {@code "name": value} pair
+    * of the current object, which the typed callbacks can do without boxing the value.
+    */
+   protected final boolean isPlainScalarField(int fieldNumber, FieldDescriptor fieldDescriptor) {
+      if (delegate != null || fieldDescriptor == null) {
+         return false;
+      }
+      if (fieldDescriptor.getMessageType() != null || fieldDescriptor.getEnumType() != null || WrappedMessage.isWrappedMessageField(fieldDescriptor)) {
+         return false;
+      }
+      return field() == fieldNumber || !fieldDescriptor.isRepeated() && !isRoot();
+   }
+
    @Override
    public void onEnd() {
       if (delegate != null) {
@@ -372,7 +398,7 @@ abstract class BaseJsonWriter implements FieldAwareTagHandler {
 
          // If we are the current root and are writing a primitive, we need to initialize a proper delegate.
          if (isRoot()) {
-            TagHandler root = new RootJsonWriter(ctx, ast, fieldDescriptor, true);
+            TagHandler root = new RootJsonWriter(ctx, tokens, fieldDescriptor, true);
             root.onStartNested(fieldNumber, fieldDescriptor);
             root.onTag(fieldNumber, fieldDescriptor, tagValue);
             root.onEndNested(fieldNumber, fieldDescriptor);
@@ -383,6 +409,16 @@ abstract class BaseJsonWriter implements FieldAwareTagHandler {
    }
 
    private void writeValue(FieldDescriptor fieldDescriptor, Object tagValue, boolean forceValueField) {
+      writeValueName(fieldDescriptor, forceValueField);
+      writeTagValue(fieldDescriptor, tagValue);
+   }
+
+   protected final void writeValue(FieldDescriptor fieldDescriptor, JsonTokenWriter value) {
+      writeValueName(fieldDescriptor, false);
+      pushToken(value);
+   }
+
+   private void writeValueName(FieldDescriptor fieldDescriptor, boolean forceValueField) {
       // Type is already written, now we write the comma and the value.
       if (JsonToken.followedByComma(lastToken()))
          pushToken(JsonToken.COMMA);
@@ -393,7 +429,6 @@ abstract class BaseJsonWriter implements FieldAwareTagHandler {
       String name = forceValueField || isRoot() ? JSON_VALUE_FIELD : fieldDescriptor.getName();
       pushToken(JsonTokenWriter.string(name));
       pushToken(JsonToken.COLON);
-      writeTagValue(fieldDescriptor, tagValue);
    }
 
    protected final void writePrimitiveOrDispatch(int fieldNumber, FieldDescriptor fieldDescriptor, Object tagValue, TagHandler dispatcher) {
@@ -437,6 +472,13 @@ abstract class BaseJsonWriter implements FieldAwareTagHandler {
       writeTagValue(fieldDescriptor, tagValue);
    }
 
+   protected final void writeRawPrimitive(JsonTokenWriter value) {
+      if (JsonToken.followedByComma(lastToken()))
+         pushToken(JsonToken.COMMA);
+
+      pushToken(value);
+   }
+
    protected final void writeType(AnnotatedDescriptor descriptor) {
       String type;
       if (descriptor instanceof FieldDescriptor fd) {
@@ -468,7 +510,7 @@ abstract class BaseJsonWriter implements FieldAwareTagHandler {
    private void wrappedMessage(byte[] message, FieldDescriptor fd) {
       try {
          Descriptor descriptor = (Descriptor) getDescriptor();
-         BaseJsonWriter handler = new ObjectJsonWriter(ctx, ast, fd);
+         BaseJsonWriter handler = new ObjectJsonWriter(ctx, tokens, fd);
          ProtobufParser.INSTANCE.parse(handler, descriptor, message);
       } catch (IOException e) {
          throw new RuntimeException("Failed handling nested message", e);
@@ -484,25 +526,15 @@ abstract class BaseJsonWriter implements FieldAwareTagHandler {
    }
 
    protected void pushToken(JsonTokenWriter token) {
-      ast.add(token);
+      tokens.push(token);
    }
 
    protected void replaceLastToken(JsonToken prev, JsonTokenWriter curr) {
-      if (ast.isEmpty()) return;
-
-      int last = ast.size() - 1;
-      JsonTokenWriter jtw = Objects.requireNonNull(ast.get(last));
-      if (jtw.token() != prev)
-         throw new IllegalArgumentException("Last token is not " + prev);
-
-      ast.set(last, curr);
+      tokens.replaceLastToken(prev, curr);
    }
 
    protected final JsonToken lastToken() {
-      if (ast.isEmpty()) return null;
-
-      JsonTokenWriter jtw = Objects.requireNonNull(ast.get(ast.size() - 1));
-      return jtw.token();
+      return tokens.lastToken();
    }
 
    protected final void writeTagValue(FieldDescriptor fd, Object tagValue) {
@@ -545,19 +577,141 @@ abstract class BaseJsonWriter implements FieldAwareTagHandler {
       }
    }
 
+   /**
+    * Where the typed scalar callbacks send a value without boxing it: a delegate to pass the callback on to, this writer
+    * to write the value with {@link #writeScalar(FieldDescriptor, JsonTokenWriter)}, or {@code null} to box the value
+    * and hand it to {@link #onTag(int, FieldDescriptor, Object)}, which is the default.
+    */
+   protected FieldAwareTagHandler scalarTarget(int fieldNumber, FieldDescriptor fieldDescriptor) {
+      return null;
+   }
+
+   /**
+    * Writes a scalar value for a field that {@link #scalarTarget(int, FieldDescriptor)} routed to this writer.
+    */
+   protected void writeScalar(FieldDescriptor fieldDescriptor, JsonTokenWriter value) {
+      throw new IllegalStateException("Writer does not accept typed scalar values");
+   }
+
+   @Override
+   public void onInt32(int fieldNumber, FieldDescriptor fieldDescriptor, int value) {
+      FieldAwareTagHandler target = scalarTarget(fieldNumber, fieldDescriptor);
+      if (target == this) {
+         writeScalar(fieldDescriptor, int32Token(fieldDescriptor, value));
+      } else if (target != null) {
+         target.onInt32(fieldNumber, fieldDescriptor, value);
+      } else {
+         onTag(fieldNumber, fieldDescriptor, value);
+      }
+   }
+
+   @Override
+   public void onInt64(int fieldNumber, FieldDescriptor fieldDescriptor, long value) {
+      FieldAwareTagHandler target = scalarTarget(fieldNumber, fieldDescriptor);
+      if (target == this) {
+         writeScalar(fieldDescriptor, int64Token(fieldDescriptor, value));
+      } else if (target != null) {
+         target.onInt64(fieldNumber, fieldDescriptor, value);
+      } else {
+         onTag(fieldNumber, fieldDescriptor, value);
+      }
+   }
+
+   @Override
+   public void onFloat(int fieldNumber, FieldDescriptor fieldDescriptor, float value) {
+      FieldAwareTagHandler target = scalarTarget(fieldNumber, fieldDescriptor);
+      if (target == this) {
+         writeScalar(fieldDescriptor, floatToken(value));
+      } else if (target != null) {
+         target.onFloat(fieldNumber, fieldDescriptor, value);
+      } else {
+         onTag(fieldNumber, fieldDescriptor, value);
+      }
+   }
+
+   @Override
+   public void onDouble(int fieldNumber, FieldDescriptor fieldDescriptor, double value) {
+      FieldAwareTagHandler target = scalarTarget(fieldNumber, fieldDescriptor);
+      if (target == this) {
+         writeScalar(fieldDescriptor, doubleToken(value));
+      } else if (target != null) {
+         target.onDouble(fieldNumber, fieldDescriptor, value);
+      } else {
+         onTag(fieldNumber, fieldDescriptor, value);
+      }
+   }
+
+   @Override
+   public void onBool(int fieldNumber, FieldDescriptor fieldDescriptor, boolean value) {
+      FieldAwareTagHandler target = scalarTarget(fieldNumber, fieldDescriptor);
+      if (target == this) {
+         writeScalar(fieldDescriptor, boolToken(value));
+      } else if (target != null) {
+         target.onBool(fieldNumber, fieldDescriptor, value);
+      } else {
+         onTag(fieldNumber, fieldDescriptor, value);
+      }
+   }
+
+   @Override
+   public void onBytes(int fieldNumber, FieldDescriptor fieldDescriptor, byte[] buffer, int offset, int length) {
+      FieldAwareTagHandler target = scalarTarget(fieldNumber, fieldDescriptor);
+      if (target == this) {
+         writeScalar(fieldDescriptor, bytesToken(buffer, offset, length));
+      } else if (target != null) {
+         target.onBytes(fieldNumber, fieldDescriptor, buffer, offset, length);
+      } else {
+         onTag(fieldNumber, fieldDescriptor, Arrays.copyOfRange(buffer, offset, offset + length));
+      }
+   }
+
+   // The typed counterparts of writeTagValue, which render the value without boxing it.
+
+   protected static JsonTokenWriter int32Token(FieldDescriptor fd, int value) {
+      return switch (fd.getType()) {
+         case UINT32, FIXED32 -> JsonTokenWriter.value(Integer.toUnsignedString(value), false);
+         case ENUM -> JsonTokenWriter.value(fd.getEnumType().findValueByNumber(value).getName(), true);
+         default -> JsonTokenWriter.value(Integer.toString(value), false);
+      };
+   }
+
+   protected static JsonTokenWriter int64Token(FieldDescriptor fd, long value) {
+      return switch (fd.getType()) {
+         case UINT64, FIXED64 -> JsonTokenWriter.value(Long.toUnsignedString(value), false);
+         default -> JsonTokenWriter.value(Long.toString(value), false);
+      };
+   }
+
+   protected static JsonTokenWriter floatToken(float value) {
+      return JsonTokenWriter.value(Float.toString(value), Float.isInfinite(value) || Float.isNaN(value));
+   }
+
+   protected static JsonTokenWriter doubleToken(double value) {
+      return JsonTokenWriter.value(Double.toString(value), Double.isInfinite(value) || Double.isNaN(value));
+   }
+
+   protected static JsonTokenWriter boolToken(boolean value) {
+      return JsonTokenWriter.value(Boolean.toString(value), false);
+   }
+
+   protected static JsonTokenWriter bytesToken(byte[] buffer, int offset, int length) {
+      ByteBuffer encoded = Base64.getEncoder().encode(ByteBuffer.wrap(buffer, offset, length));
+      return JsonTokenWriter.value(new String(encoded.array(), 0, encoded.limit(), StandardCharsets.ISO_8859_1), true);
+   }
+
    protected final FieldAwareTagHandler objectWriter(int fieldNumber, FieldDescriptor fd) {
       FieldAwareTagHandler d = verifyDelegate(fieldNumber, fd);
-      return d == null ? new ObjectJsonWriter(ctx, ast, fd) : d;
+      return d == null ? new ObjectJsonWriter(ctx, tokens, fd) : d;
    }
 
    protected final FieldAwareTagHandler repeatedWriter(int fieldNumber, FieldDescriptor fd) {
       FieldAwareTagHandler d = verifyDelegate(fieldNumber, fd);
-      return d == null ? new ArrayJsonWriter(ctx, ast, fd) : d;
+      return d == null ? new ArrayJsonWriter(ctx, tokens, fd) : d;
    }
 
    protected final FieldAwareTagHandler mapWriter(int fieldNumber, FieldDescriptor fd) {
       FieldAwareTagHandler d = verifyDelegate(fieldNumber, fd);
-      return d == null ? new MapJsonWriter(ctx, ast, fd) : d;
+      return d == null ? new MapJsonWriter(ctx, tokens, fd) : d;
    }
 
    private FieldAwareTagHandler verifyDelegate(int fieldNumber, FieldDescriptor fd) {
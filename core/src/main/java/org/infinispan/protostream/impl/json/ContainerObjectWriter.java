@@ -2,13 +2,19 @@ package org.infinispan.protostream.impl.json;
 
 import static org.infinispan.protostream.impl.json.JsonHelper.JSON_VALUE_FIELD;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 import org.infinispan.protostream.ImmutableSerializationContext;
 import org.infinispan.protostream.TagHandler;
+import org.infinispan.protostream.TagReader;
 import org.infinispan.protostream.WrappedMessage;
+import org.infinispan.protostream.containers.PrimitiveElementContainerAdapter;
+import org.infinispan.protostream.descriptors.Descriptor;
 import org.infinispan.protostream.descriptors.FieldDescriptor;
 import org.infinispan.protostream.descriptors.GenericDescriptor;
+import org.infinispan.protostream.descriptors.Type;
+import org.infinispan.protostream.impl.TagReaderImpl;
 
 /**
  * Specialized writer to handle container types.
@@ -30,8 +36,11 @@ final class ContainerObjectWriter extends BaseJsonWriter {
 
    private int containerFields = 1;
 
-   ContainerObjectWriter(ImmutableSerializationContext ctx, List<JsonTokenWriter> ast, FieldDescriptor descriptor) {
-      super(ctx, ast, descriptor);
+   private final GenericDescriptor containerDescriptor;
+
+   ContainerObjectWriter(ImmutableSerializationContext ctx, JsonTokenStream tokens, FieldDescriptor descriptor, GenericDescriptor containerDescriptor) {
+      super(ctx, tokens, descriptor);
+      this.containerDescriptor = containerDescriptor;
    }
 
    @Override
@@ -53,12 +62,13 @@ final class ContainerObjectWriter extends BaseJsonWriter {
       // After reading all the fields, we create an array to populate with the actual elements coming next.
       // Each element in the container is a WrappedMessage.
       if (containerFields == 4) {
-         if (JsonToken.followedByComma(lastToken())) {
-            pushToken(JsonToken.COMMA);
-         }
-         pushToken(JsonTokenWriter.string(JSON_VALUE_FIELD));
-         pushToken(JsonToken.COLON);
-         pushToken(JsonToken.LEFT_BRACKET);
+         startElements();
+      }
+
+      // The elements of a primitive container may instead come all packed in a single field.
+      if (fieldNumber == WrappedMessage.WRAPPED_CONTAINER_ELEMENTS) {
+         writePackedElements((byte[]) tagValue);
+         return;
       }
 
       // In case the container has multiple elements, we separate them with a comma.
@@ -97,7 +107,7 @@ final class ContainerObjectWriter extends BaseJsonWriter {
          default: {
             // We retrieve the WrappedMessage descriptor to wrap the container element.
             GenericDescriptor descriptor = ctx.getDescriptorByTypeId(WrappedMessage.PROTOBUF_TYPE_ID);
-            TagHandler delegate = new RootJsonWriter(ctx, ast);
+            TagHandler delegate = new RootJsonWriter(ctx, tokens);
             delegate.onStart(descriptor);
             delegate.onTag(fieldNumber, fieldDescriptor, tagValue);
             delegate.onEnd();
@@ -110,6 +120,54 @@ final class ContainerObjectWriter extends BaseJsonWriter {
       return false;
    }
 
+   private void startElements() {
+      if (JsonToken.followedByComma(lastToken())) {
+         pushToken(JsonToken.COMMA);
+      }
+      pushToken(JsonTokenWriter.string(JSON_VALUE_FIELD));
+      pushToken(JsonToken.COLON);
+      pushToken(JsonToken.LEFT_BRACKET);
+   }
+
+   /**
+    * Writes the packed elements the same way as wrapped primitive elements, so both encodings give the same JSON.
+    */
+   private void writePackedElements(byte[] packedElements) {
+      PrimitiveElementContainerAdapter<?, ?> adapter = (PrimitiveElementContainerAdapter<?, ?>) ctx.getMarshaller(containerDescriptor.getFullName());
+      Type elementType = adapter.getElementType();
+      Descriptor wrapperDescriptor = (Descriptor) ctx.getDescriptorByTypeId(WrappedMessage.PROTOBUF_TYPE_ID);
+      FieldDescriptor elementDescriptor = wrapperDescriptor.findFieldByNumber(JsonReader.getPrimitiveFieldId(elementType));
+      try {
+         TagReader in = TagReaderImpl.newInstance(ctx, packedElements);
+         while (!in.isAtEnd()) {
+            if (JsonToken.followedByComma(lastToken()))
+               pushToken(JsonToken.COMMA);
+            writePrimitiveContainer(elementDescriptor, readElement(elementType, in));
+         }
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   private static Object readElement(Type type, TagReader in) throws IOException {
+      return switch (type) {
+         case DOUBLE -> in.readDouble();
+         case FLOAT -> in.readFloat();
+         case INT64 -> in.readInt64();
+         case UINT64 -> in.readUInt64();
+         case INT32 -> in.readInt32();
+         case FIXED64 -> in.readFixed64();
+         case FIXED32 -> in.readFixed32();
+         case BOOL -> in.readBool();
+         case UINT32 -> in.readUInt32();
+         case SFIXED32 -> in.readSFixed32();
+         case SFIXED64 -> in.readSFixed64();
+         case SINT32 -> in.readSInt32();
+         case SINT64 -> in.readSInt64();
+         default -> throw new IllegalStateException("Unsupported packed element type " + type);
+      };
+   }
+
    private void writePrimitiveContainer(FieldDescriptor fieldDescriptor, Object tagValue) {
       pushToken(JsonToken.LEFT_BRACE);
       pushToken(JsonTokenWriter.string(fieldDescriptor.getTypeName()));
@@ -120,6 +178,10 @@ final class ContainerObjectWriter extends BaseJsonWriter {
 
    @Override
    public void onEnd() {
+      // An empty container has no elements to open the array with.
+      if (containerFields < 4) {
+         startElements();
+      }
       pushToken(JsonToken.RIGHT_BRACKET);
    }
 }
@@ -4,6 +4,7 @@ import static com.fasterxml.jackson.core.JsonToken.START_OBJECT;
 import static com.fasterxml.jackson.core.JsonToken.VALUE_NULL;
 import static org.infinispan.protostream.WrappedMessage.WRAPPED_BOOL;
 import static org.infinispan.protostream.WrappedMessage.WRAPPED_BYTES;
+import static org.infinispan.protostream.WrappedMessage.WRAPPED_CONTAINER_ELEMENTS;
 import static org.infinispan.protostream.WrappedMessage.WRAPPED_CONTAINER_TYPE_ID;
 import static org.infinispan.protostream.WrappedMessage.WRAPPED_CONTAINER_TYPE_NAME;
 import static org.infinispan.protostream.WrappedMessage.WRAPPED_DOUBLE;
@@ -27,9 +28,10 @@ import static org.infinispan.protostream.impl.json.JsonHelper.EMPTY_ARRAY;
 import static org.infinispan.protostream.impl.json.JsonHelper.JSON_TYPE_FIELD;
 import static org.infinispan.protostream.impl.json.JsonHelper.JSON_VALUE_FIELD;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Objects;
 
@@ -38,6 +40,7 @@ import org.infinispan.protostream.ProtobufUtil;
 import org.infinispan.protostream.RandomAccessOutputStream;
 import org.infinispan.protostream.TagWriter;
 import org.infinispan.protostream.WrappedMessage;
+import org.infinispan.protostream.containers.PrimitiveElementContainerAdapter;
 import org.infinispan.protostream.descriptors.Descriptor;
 import org.infinispan.protostream.descriptors.EnumDescriptor;
 import org.infinispan.protostream.descriptors.EnumValueDescriptor;
@@ -80,22 +83,49 @@ public final class JsonReader {
    private JsonReader() { }
 
    public static byte[] fromJson(ImmutableSerializationContext ctx, Reader reader) throws IOException {
-      try (reader) {
-         JsonParser parser = JSON_FACTORY.createParser(reader);
+      try (reader; RandomAccessOutputStream raos = new RandomAccessOutputStreamImpl(ProtobufUtil.DEFAULT_ARRAY_BUFFER_SIZE)) {
+         if (!fromJson(ctx, JSON_FACTORY.createParser(reader), raos))
+            return EMPTY_ARRAY;
+
+         return raos.toByteArray();
+      }
+   }
+
+   /**
+    * Parses the JSON from the stream and writes the Protobuf encoding directly to the output, starting at its current
+    * position. The input stream is not closed.
+    */
+   public static void fromJson(ImmutableSerializationContext ctx, InputStream in, RandomAccessOutputStream out) throws IOException {
+      JsonParser parser = JSON_FACTORY.createParser(in);
+      parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+      fromJson(ctx, parser, out);
+   }
+
+   /**
+    * Parses the JSON from the remaining bytes of the buffer and writes the Protobuf encoding directly to the output,
+    * starting at its current position. The position of the buffer is not modified.
+    */
+   public static void fromJson(ImmutableSerializationContext ctx, ByteBuffer buf, RandomAccessOutputStream out) throws IOException {
+      JsonParser parser = buf.hasArray()
+            ? JSON_FACTORY.createParser(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining())
+            : JSON_FACTORY.createParser(new ByteBufferInputStream(buf.duplicate()));
+      fromJson(ctx, parser, out);
+   }
+
+   private static boolean fromJson(ImmutableSerializationContext ctx, JsonParser parser, RandomAccessOutputStream out) throws IOException {
+      try (parser) {
          JsonToken token = parser.nextToken();
 
          if (token == null || token == VALUE_NULL)
-            return EMPTY_ARRAY;
+            return false;
 
          if (token != START_OBJECT)
             throw new IllegalStateException("Invalid top level object! Found token: " + token);
 
-         try (RandomAccessOutputStream raos = new RandomAccessOutputStreamImpl(ProtobufUtil.DEFAULT_ARRAY_BUFFER_SIZE)) {
-            TagWriter writer = TagWriterImpl.newInstance(ctx, raos);
-            processDocument(ctx, parser, writer, null, null);
-            writer.flush();
-            return raos.toByteArray();
-         }
+         TagWriter writer = TagWriterImpl.newInstance(ctx, out);
+         processDocument(ctx, parser, writer, null, null);
+         writer.flush();
+         return true;
       } catch (JsonProcessingException e) {
          throw new IllegalStateException("Invalid JSON", e);
       }
@@ -145,10 +175,51 @@ public final class JsonReader {
 
    private static void processObject(ImmutableSerializationContext ctx, JsonParser parser, TagWriter writer, Descriptor messageDescriptor, Integer fieldNumber, boolean topLevel) throws IOException {
       assertDescriptorField(messageDescriptor);
-      RandomAccessOutputStream raos = new RandomAccessOutputStreamImpl(ProtobufUtil.DEFAULT_ARRAY_BUFFER_SIZE);
-      TagWriter nestedWriter = TagWriterImpl.newInstance(ctx, raos);
       boolean isContainerAdapter = JsonHelper.isContainerAdapter(ctx, messageDescriptor);
 
+      // Write the prefix of the current object, then its fields are written in place.
+      // The prefix usually involves the type id or name, and the field number.
+      // The lengths of the nested messages are backpatched when closing the sub-writers.
+      // The sub-writers share the underlying stream, so we track which were opened to close them in order.
+      TagWriter outerWriter = null;
+      TagWriter nestedWriter;
+      boolean nestedOpened = true;
+      if (WrappedMessage.knownWrappedDescriptor(ctx, messageDescriptor)) {
+         // Known types are here for backwards compatibility.
+         // These values are written manually, and as such we just write the bytes out.
+         nestedWriter = writer;
+         nestedOpened = false;
+      } else if (topLevel) {
+         // Otherwise, if this written by something else, we need to write the prefixed bytes.
+         // The field number is optional, so it might be skipped in some occasions.
+         // This is needed in occasions we need to wrap the nested message twice:
+         // WRAPPED_MESSAGE_1, TYPE, WRAPPED_MESSAGE_2, <INNER_BUFFER>
+         TagWriter out = writer;
+         if (fieldNumber != null) {
+            outerWriter = out = writer.subWriter(fieldNumber, true);
+         }
+
+         Integer topLevelTypeId = messageDescriptor.getTypeId();
+         if (topLevelTypeId == null) {
+            int tag = isContainerAdapter
+                  ? WRAPPED_CONTAINER_TYPE_NAME
+                  : WRAPPED_TYPE_NAME;
+            out.writeString(tag, messageDescriptor.getFullName());
+         } else {
+            int tag = isContainerAdapter
+                  ? WRAPPED_CONTAINER_TYPE_ID
+                  : WRAPPED_TYPE_ID;
+            out.writeUInt32(tag, topLevelTypeId);
+         }
+
+         // A container adapter writes its fields directly to the output.
+         // Otherwise, everything is always wrapped in a WrappedMessage.
+         nestedOpened = !isContainerAdapter;
+         nestedWriter = nestedOpened ? out.subWriter(WRAPPED_MESSAGE, true) : out;
+      } else {
+         nestedWriter = writer.subWriter(Objects.requireNonNull(fieldNumber), true);
+      }
+
       String currentField = null;
 
       OUT:
@@ -186,7 +257,12 @@ public final class JsonReader {
                // A container writes the values directly into the stream without a name, to have something in the JSON
                // representation, we use a field named `_container`.
                expectField(JSON_VALUE_FIELD, currentField);
-               processArray(ctx, parser, nestedWriter, messageDescriptor.getFullName(), currentField, WRAPPED_MESSAGE);
+               if (ctx.getConfiguration().packPrimitiveContainerElements()
+                     && ctx.getMarshaller(messageDescriptor.getFullName()) instanceof PrimitiveElementContainerAdapter<?, ?> adapter) {
+                  processPrimitiveContainerArray(ctx, parser, nestedWriter, adapter.getElementType());
+               } else {
+                  processArray(ctx, parser, nestedWriter, messageDescriptor.getFullName(), currentField, WRAPPED_MESSAGE);
+               }
                break;
             }
 
@@ -246,68 +322,18 @@ public final class JsonReader {
          }
       }
 
-      // Now wrap the current object with the prefix bytes.
-      // The prefix bytes usually involve the type id or name, and the field number.
-      // Both values followed by the local bytes from the nested writer.
-      if (WrappedMessage.knownWrappedDescriptor(ctx, messageDescriptor)) {
-         // Known types are here for backwards compatibility.
-         // These values are written manually, and as such we just write the bytes out.
-         nestedWriter.flush();
-         byte[] serialized = raos.toByteArray();
-         writer.writeRawBytes(serialized, 0, serialized.length);
-      } else if (topLevel) {
-         // Otherwise, if this written by something else, we need to write the prefixed bytes.
-         // The field number is optional, so it might be skipped in some occasions.
-         nestedWriter.flush();
-         byte[] nestedData = raos.toByteArray();
-
-         // This is needed in occasions we need to wrap the nested message twice.
-         // We have WRAPPED_MESSAGE_1, TYPE, WRAPPED_MESSAGE_2, <INNER_BUFFER>
-         // Since we need the complete byte array when writing the bytes with WRAPPED_MESSAGE, we need this extra allocation.
-         // In the new output we write: TYPE, WRAPPED_MESSAGE_2, <INNER_BUFFER>.
-         // Then we flush it in the original writer with: WRAPPED_MESSAGE_1, <EXTRA_BUFFER>
-         // In cases this extra wrapping is not needed, we can write directly to the original writer.
-         RandomAccessOutputStream extraBuffer = null;
-         TagWriter out = writer;
-         if (fieldNumber != null) {
-            extraBuffer = new RandomAccessOutputStreamImpl(nestedData.length + 128);
-            out = TagWriterImpl.newInstance(ctx, extraBuffer);
-         }
-
-         Integer topLevelTypeId = messageDescriptor.getTypeId();
-         if (topLevelTypeId == null) {
-            int tag = isContainerAdapter
-                  ? WRAPPED_CONTAINER_TYPE_NAME
-                  : WRAPPED_TYPE_NAME;
-            out.writeString(tag, messageDescriptor.getFullName());
-         } else {
-            int tag = isContainerAdapter
-                  ? WRAPPED_CONTAINER_TYPE_ID
-                  : WRAPPED_TYPE_ID;
-            out.writeUInt32(tag, topLevelTypeId);
-         }
-
-         // A container adapter writes the bytes from the inner buffer directly to the output.
-         // Otherwise, everything is always wrapped in a WrappedMessage.
-         if (isContainerAdapter) {
-            out.writeRawBytes(nestedData, 0, nestedData.length);
-         } else {
-            out.writeBytes(WRAPPED_MESSAGE, nestedData);
-         }
-
-         if (fieldNumber != null) {
-            out.flush();
-            writer.writeBytes(fieldNumber, Objects.requireNonNull(extraBuffer).toByteArray());
-         }
-      } else {
-         nestedWriter.flush();
-         writer.writeBytes(Objects.requireNonNull(fieldNumber), raos.toByteArray());
+      if (nestedOpened) {
+         nestedWriter.close();
+      }
+      if (outerWriter != null) {
+         outerWriter.close();
       }
-
       writer.flush();
    }
 
    private static void processArray(ImmutableSerializationContext ctx, JsonParser parser, TagWriter writer, String type, String field, Integer fieldNumber) throws IOException {
+      // the writer of the packed elements, opened with the first element of a packed repeated field
+      TagWriter packedWriter = null;
       OUT:
       while (true) {
          JsonToken token = parser.nextToken();
@@ -324,20 +350,14 @@ public final class JsonReader {
                Descriptor parentDescriptor = (Descriptor) ctx.getDescriptorByName(type);
                FieldDescriptor fd = parentDescriptor != null ? parentDescriptor.findFieldByName(field) : null;
                Descriptor elementType = fd != null ? fd.getMessageType() : null;
-               RandomAccessOutputStream raos = new RandomAccessOutputStreamImpl(ProtobufUtil.DEFAULT_ARRAY_BUFFER_SIZE);
-               TagWriter nestedWriter = TagWriterImpl.newInstance(ctx, raos);
                if (elementType != null) {
                   // Element type is known from the schema: processObject handles both _type-present
                   // and _type-absent cases, and correctly bundles all fields
-                  processObject(ctx, parser, nestedWriter, elementType, fieldNumber, false);
+                  processObject(ctx, parser, writer, elementType, fieldNumber, false);
                } else {
                   // Element type is unknown (e.g. container adapter): fall back to reading _type.
-                  processSingleDocument(ctx, parser, nestedWriter, parentDescriptor, fieldNumber);
+                  processSingleDocument(ctx, parser, writer, parentDescriptor, fieldNumber);
                }
-               nestedWriter.flush();
-
-               byte[] value = raos.toByteArray();
-               writer.writeRawBytes(value, 0, value.length);
                break;
             }
             case VALUE_STRING:
@@ -370,7 +390,12 @@ public final class JsonReader {
                   }
                   throw new IllegalStateException("Field '" + fd.getName() + "' is not an array");
                }
-               if (fd.getType() == Type.ENUM) {
+               if (ctx.getConfiguration().packRepeatedScalarFields() && fd.isPacked()) {
+                  if (packedWriter == null) {
+                     packedWriter = writer.subWriter(fd.getNumber(), true);
+                  }
+                  writePackedElement(parser, packedWriter, fd);
+               } else if (fd.getType() == Type.ENUM) {
                   writeEnumField(parser, writer, fd, fd.getNumber());
                } else {
                   writeField(parser, writer, fd.getType(), fd.getNumber());
@@ -379,6 +404,38 @@ public final class JsonReader {
             }
          }
       }
+      if (packedWriter != null) {
+         packedWriter.close();
+      }
+   }
+
+   /**
+    * Reads the elements of a primitive container, each one written as {@code {"<primitive type>": <value>}}, into a
+    * single packed field, the same way {@link WrappedMessage} writes them.
+    */
+   private static void processPrimitiveContainerArray(ImmutableSerializationContext ctx, JsonParser parser, TagWriter writer, Type elementType) throws IOException {
+      FieldDescriptor fd = ((Descriptor) ctx.getDescriptorByTypeId(WrappedMessage.PROTOBUF_TYPE_ID)).findFieldByNumber(getPrimitiveFieldId(elementType));
+      TagWriter packedWriter = null;
+      while (true) {
+         JsonToken token = parser.nextToken();
+         if (token == null || token == JsonToken.END_ARRAY) {
+            break;
+         }
+         if (token != JsonToken.START_OBJECT || parser.nextToken() != JsonToken.FIELD_NAME) {
+            throw new IllegalStateException("Invalid primitive container element");
+         }
+         parser.nextToken();
+         if (packedWriter == null) {
+            packedWriter = writer.subWriter(WRAPPED_CONTAINER_ELEMENTS, false);
+         }
+         writePackedElement(parser, packedWriter, fd);
+         if (parser.nextToken() != JsonToken.END_OBJECT) {
+            throw new IllegalStateException("Invalid primitive container element");
+         }
+      }
+      if (packedWriter != null) {
+         packedWriter.close();
+      }
    }
 
    private static void processEnum(JsonParser parser, TagWriter writer, EnumDescriptor enumDescriptor) throws IOException {
@@ -446,8 +503,7 @@ public final class JsonReader {
                break OUT;
 
             case FIELD_NAME: {
-               ByteArrayOutputStream baos = new ByteArrayOutputStream(ProtobufUtil.DEFAULT_ARRAY_BUFFER_SIZE);
-               TagWriter nestedWriter = TagWriterImpl.newInstance(ctx, baos);
+               TagWriter nestedWriter = writer.subWriter(md.getNumber(), true);
                String key = parser.currentName();
                switch (md.getKeyType()) {
                   case STRING -> nestedWriter.writeString(1, key);
@@ -463,8 +519,7 @@ public final class JsonReader {
                   case UINT64 -> nestedWriter.writeUInt64(1, Long.parseLong(key));
                }
                processMapValue(ctx, parser, nestedWriter, md);
-               writer.writeBytes(md.getNumber(), baos.toByteArray());
-               writer.flush();
+               nestedWriter.close();
             }
          }
       }
@@ -545,12 +600,6 @@ public final class JsonReader {
       }
 
       JsonToken token = Objects.requireNonNull(parser.nextToken(), "Field name not followed by value");
-      ByteArrayOutputStream baos = null;
-      TagWriter out = writer;
-      if (outerFieldNumber != null) {
-         baos = new ByteArrayOutputStream(ProtobufUtil.DEFAULT_ARRAY_BUFFER_SIZE);
-         out = TagWriterImpl.newInstance(ctx, baos);
-      }
 
       switch (token) {
          case VALUE_STRING:
@@ -558,15 +607,16 @@ public final class JsonReader {
          case VALUE_NUMBER_FLOAT:
          case VALUE_TRUE:
          case VALUE_FALSE: {
+            boolean wrapped = outerFieldNumber != null;
+            TagWriter out = wrapped ? writer.subWriter(outerFieldNumber, true) : writer;
             if (fd.getType() == Type.ENUM) {
                writeEnumField(parser, out, fd, fd.getNumber());
             } else {
                writeField(parser, out, fd.getType(), fd.getNumber());
             }
 
-            if (outerFieldNumber != null) {
-               out.flush();
-               writer.writeBytes(outerFieldNumber, baos.toByteArray());
+            if (wrapped) {
+               out.close();
             }
 
             break;
@@ -618,6 +668,43 @@ public final class JsonReader {
       writer.writeEnum(fieldNumber, choice);
    }
 
+   /**
+    * Writes an element of a packed repeated field, without a tag. The encoding of each type matches {@link #writeField}.
+    */
+   private static void writePackedElement(JsonParser parser, TagWriter writer, FieldDescriptor fd) throws IOException {
+      switch (fd.getType()) {
+         case INT64 -> writer.writeVarint64(Long.parseLong(parser.getText()));
+         case SFIXED64 -> writer.writeRawFixed64(Long.parseLong(parser.getText()));
+         case SINT64 -> {
+            long value = Long.parseLong(parser.getText());
+            writer.writeVarint64((value << 1) ^ (value >> 63));
+         }
+         case UINT64 -> writer.writeVarint64(Long.parseUnsignedLong(parser.getText()));
+         case FIXED64 -> writer.writeRawFixed64(Long.parseUnsignedLong(parser.getText()));
+         // negative int32 values are sign extended to 64 bits, like TagWriter.writeInt32 does
+         case INT32 -> writer.writeVarint64(Integer.parseInt(parser.getText()));
+         case SFIXED32 -> writer.writeRawFixed32(Integer.parseInt(parser.getText()));
+         case SINT32 -> {
+            int value = Integer.parseInt(parser.getText());
+            writer.writeVarint32((value << 1) ^ (value >> 31));
+         }
+         case FIXED32 -> writer.writeRawFixed32(Integer.parseUnsignedInt(parser.getText()));
+         case UINT32 -> writer.writeVarint32(Integer.parseUnsignedInt(parser.getText()));
+         case DOUBLE -> writer.writeRawFixed64(Double.doubleToRawLongBits(Double.parseDouble(parser.getText())));
+         case FLOAT -> writer.writeRawFixed32(Float.floatToRawIntBits(Float.parseFloat(parser.getText())));
+         case BOOL -> writer.writeVarint32(parser.getBooleanValue() ? 1 : 0);
+         case ENUM -> {
+            String value = parser.getText();
+            EnumValueDescriptor valueDescriptor = fd.getEnumType().findValueByName(value);
+            if (valueDescriptor == null) {
+               throw new IllegalStateException("Invalid enum value '" + value + "'");
+            }
+            writer.writeVarint64(valueDescriptor.getNumber());
+         }
+         default -> throw new IllegalArgumentException("The Protobuf declared field type is not compatible with the written type : " + fd.getType());
+      }
+   }
+
    private static void writeField(JsonParser parser, TagWriter writer, Type fieldType, int fieldNumber) throws IOException {
       switch (fieldType) {
          // Signed 64 bits values.
@@ -655,7 +742,7 @@ public final class JsonReader {
       }
    }
 
-   private static int getPrimitiveFieldId(Type primitiveType) {
+   static int getPrimitiveFieldId(Type primitiveType) {
       return switch (primitiveType) {
          case DOUBLE -> WRAPPED_DOUBLE;
          case FLOAT -> WRAPPED_FLOAT;
@@ -701,4 +788,30 @@ public final class JsonReader {
          throw new IllegalStateException(String.format("Message for '%s' has reserved fields that makes conversion illegal: %n%s", descriptor.getFullName(), sb));
       }
    }
+
+   /**
+    * Reads the JSON from a buffer without a backing array, such as a direct buffer.
+    */
+   private static final class ByteBufferInputStream extends InputStream {
+      private final ByteBuffer buf;
+
+      private ByteBufferInputStream(ByteBuffer buf) {
+         this.buf = buf;
+      }
+
+      @Override
+      public int read() {
+         return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+         if (len == 0) return 0;
+         if (!buf.hasRemaining()) return -1;
+
+         int n = Math.min(len, buf.remaining());
+         buf.get(b, off, n);
+         return n;
+      }
+   }
 }
@@ -1,5 +1,7 @@
 package org.infinispan.protostream.impl.json;
 
+import java.io.IOException;
+
 enum JsonToken implements JsonTokenWriter {
    LEFT_BRACE('{'),
    RIGHT_BRACE('}'),
@@ -17,7 +19,7 @@ enum JsonToken implements JsonTokenWriter {
    }
 
    @Override
-   public void append(StringBuilder out) {
+   public void append(Appendable out) throws IOException {
       if (symbol == Character.UNASSIGNED)
          throw new IllegalStateException(name() + " token should have extra content");
 
@@ -0,0 +1,124 @@
+package org.infinispan.protostream.impl.json;
+
+import static org.infinispan.protostream.impl.json.JsonHelper.JSON_WHITESPACE;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Renders the tokens produced by the writers directly to the output.
+ *
+ * <p>
+ * The writers only ever look at the last token pushed, and occasionally replace it. Therefore, a token is held back
+ * until the next one arrives and every token before it has already been written out. The memory used is bounded by the
+ * nesting depth of the message being converted, regardless of its size.
+ * </p>
+ *
+ * <p>
+ * Failures writing to the output are thrown as {@link UncheckedIOException}, since the writers are driven by the
+ * {@link org.infinispan.protostream.TagHandler} callbacks.
+ * </p>
+ *
+ * @since 6.0.11
+ */
+final class JsonTokenStream {
+
+   private final Appendable out;
+   private final boolean pretty;
+
+   // The token held back, which the writers can still inspect or replace.
+   private JsonTokenWriter pending;
+
+   // The state to indent the pretty output.
+   private JsonToken last;
+   private int level;
+
+   JsonTokenStream(Appendable out, boolean pretty) {
+      this.out = out;
+      this.pretty = pretty;
+   }
+
+   void push(JsonTokenWriter token) {
+      if (pending != null) {
+         render(pending);
+      }
+      pending = token;
+   }
+
+   JsonToken lastToken() {
+      return pending != null ? pending.token() : last;
+   }
+
+   void replaceLastToken(JsonToken prev, JsonTokenWriter curr) {
+      if (pending == null) return;
+
+      if (pending.token() != prev)
+         throw new IllegalArgumentException("Last token is not " + prev);
+
+      pending = curr;
+   }
+
+   /**
+    * Writes the token held back. No more tokens are expected after this.
+    */
+   void finish() {
+      if (pending != null) {
+         render(pending);
+         pending = null;
+      }
+   }
+
+   private void render(JsonTokenWriter writer) {
+      try {
+         if (pretty) {
+            renderPretty(writer);
+         } else {
+            // No need to prettify the JSON output, we can just delegate to the writers.
+            // There is no need to write whitespaces in this case.
+            writer.append(out);
+            last = writer.token();
+         }
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   private void renderPretty(JsonTokenWriter writer) throws IOException {
+      JsonToken token = writer.token();
+
+      // If the token marks a closing object, we're up one level in the indentation.
+      // This must be verified before writing the closing token.
+      if (token.isEnd()) {
+         level--;
+         out.append(System.lineSeparator());
+      }
+
+      // Adjust the token to be written in the same level as the indentation.
+      // In case the previous token was a colon, we do not insert the indentation:
+      // <ws><ws><ws>"property":<ws>{
+      // This handles the case a new nested object is starting.
+      if (token == JsonToken.STRING || token == JsonToken.VALUE || token.isEnd() || token == JsonToken.LEFT_BRACE) {
+         if (last != JsonToken.COLON)
+            out.append(JSON_WHITESPACE.repeat(level));
+      }
+
+      writer.append(out);
+
+      // After a colon we insert a single whitespace.
+      // This separates a property from next token (new object, a value, an array).
+      if (token == JsonToken.COLON) {
+         out.append(" ");
+      }
+
+      // In case this is an opening token, new object or array, we are one level deeper in the indentation.
+      if (token.isOpen()) {
+         level++;
+      }
+
+      // After opening an object or after a key-value is written, we break a line.
+      if (token.isOpen() || token == JsonToken.COMMA)
+         out.append(System.lineSeparator());
+
+      last = token;
+   }
+}
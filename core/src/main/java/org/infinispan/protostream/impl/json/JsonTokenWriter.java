@@ -2,7 +2,7 @@ package org.infinispan.protostream.impl.json;
 
 import static org.infinispan.protostream.impl.json.JsonHelper.NULL;
 
-import org.infinispan.protostream.impl.Appendable;
+import java.io.IOException;
 
 /**
  * Writer for a JSON token.
@@ -13,7 +13,7 @@ import org.infinispan.protostream.impl.Appendable;
  * the property/key in the JSON, and the value is the actual value.
  * </p>
  */
-interface JsonTokenWriter extends Appendable {
+interface JsonTokenWriter extends org.infinispan.protostream.impl.Appendable {
 
    /**
     * @return Which token is backing this writer.
@@ -51,17 +51,17 @@ interface JsonTokenWriter extends Appendable {
 
    record ContentToken(JsonToken token, Object content, boolean quoted) implements JsonTokenWriter {
       @Override
-      public void append(StringBuilder out) {
+      public void append(Appendable out) throws IOException {
          if (quoted) out.append('"');
          switch (token) {
-            case STRING -> out.append(content);
+            case STRING -> out.append(String.valueOf(content));
             case VALUE -> {
                if (content == null) {
                   out.append(NULL);
                   break;
                }
 
-               out.append(content);
+               out.append(String.valueOf(content));
             }
          }
          if (quoted) out.append('"');
@@ -3,7 +3,6 @@ package org.infinispan.protostream.impl.json;
 import static org.infinispan.protostream.impl.json.JsonHelper.MAP_KEY_FIELD;
 import static org.infinispan.protostream.impl.json.JsonHelper.MAP_VALUE_FIELD;
 
-import java.util.List;
 import java.util.Objects;
 
 import org.infinispan.protostream.ImmutableSerializationContext;
@@ -34,8 +33,8 @@ final class MapJsonWriter extends BaseJsonWriter {
    private int lastField = 0;
    private boolean done;
 
-   public MapJsonWriter(ImmutableSerializationContext ctx, List<JsonTokenWriter> ast, FieldDescriptor descriptor) {
-      super(ctx, ast, descriptor);
+   public MapJsonWriter(ImmutableSerializationContext ctx, JsonTokenStream tokens, FieldDescriptor descriptor) {
+      super(ctx, tokens, descriptor);
    }
 
    @Override
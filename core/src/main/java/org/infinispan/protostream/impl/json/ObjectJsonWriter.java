@@ -1,7 +1,5 @@
 package org.infinispan.protostream.impl.json;
 
-import java.util.List;
-
 import org.infinispan.protostream.ImmutableSerializationContext;
 import org.infinispan.protostream.descriptors.FieldDescriptor;
 
@@ -43,8 +41,8 @@ class ObjectJsonWriter extends BaseJsonWriter {
    private FieldAwareTagHandler delegate = null;
    private final boolean complexObject;
 
-   ObjectJsonWriter(ImmutableSerializationContext ctx, List<JsonTokenWriter> ast, FieldDescriptor descriptor) {
-      super(ctx, ast, descriptor);
+   ObjectJsonWriter(ImmutableSerializationContext ctx, JsonTokenStream tokens, FieldDescriptor descriptor) {
+      super(ctx, tokens, descriptor);
       this.complexObject = BaseJsonWriter.isComplexType(descriptor);
    }
 
@@ -84,6 +82,28 @@ class ObjectJsonWriter extends BaseJsonWriter {
       super.onTag(fieldNumber, fieldDescriptor, tagValue);
    }
 
+   @Override
+   protected FieldAwareTagHandler scalarTarget(int fieldNumber, FieldDescriptor fieldDescriptor) {
+      FieldAwareTagHandler d = typedDelegate(fieldNumber);
+      if (d != null) {
+         return d;
+      }
+      return isPlainScalarField(fieldNumber, fieldDescriptor) ? this : null;
+   }
+
+   @Override
+   protected void writeScalar(FieldDescriptor fieldDescriptor, JsonTokenWriter value) {
+      writeValue(fieldDescriptor, value);
+   }
+
+   /**
+    * The delegate that {@link #onTag(int, FieldDescriptor, Object)} would pass the field on to, such as the writer of a
+    * repeated field, so that the typed callbacks can pass it on without boxing.
+    */
+   private FieldAwareTagHandler typedDelegate(int fieldNumber) {
+      return delegate != null && !delegate.isDone() ? delegate : fieldDelegate(fieldNumber);
+   }
+
    @Override
    public void onEnd() {
       if (delegate != null && !delegate.isDone()) {
@@ -1,8 +1,5 @@
 package org.infinispan.protostream.impl.json;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.infinispan.protostream.ImmutableSerializationContext;
 import org.infinispan.protostream.descriptors.FieldDescriptor;
 
@@ -10,17 +7,13 @@ class RootJsonWriter extends BaseJsonWriter {
 
    private final boolean writable;
 
-   RootJsonWriter(ImmutableSerializationContext ctx) {
-      this(ctx, new ArrayList<>(8));
-   }
-
-   RootJsonWriter(ImmutableSerializationContext ctx, List<JsonTokenWriter> ast) {
-      super(ctx, ast);
+   RootJsonWriter(ImmutableSerializationContext ctx, JsonTokenStream tokens) {
+      super(ctx, tokens);
       this.writable = false;
    }
 
-   RootJsonWriter(ImmutableSerializationContext ctx, List<JsonTokenWriter> ast, FieldDescriptor descriptor, boolean writable) {
-      super(ctx, ast, descriptor);
+   RootJsonWriter(ImmutableSerializationContext ctx, JsonTokenStream tokens, FieldDescriptor descriptor, boolean writable) {
+      super(ctx, tokens, descriptor);
       this.writable = writable;
    }
 
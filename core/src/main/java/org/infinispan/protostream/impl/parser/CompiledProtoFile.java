@@ -0,0 +1,438 @@
+package org.infinispan.protostream.impl.parser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.infinispan.protostream.DescriptorParserException;
+import org.infinispan.protostream.RandomAccessOutputStream;
+import org.infinispan.protostream.TagWriter;
+import org.infinispan.protostream.descriptors.Descriptor;
+import org.infinispan.protostream.descriptors.EnumDescriptor;
+import org.infinispan.protostream.descriptors.EnumValueDescriptor;
+import org.infinispan.protostream.descriptors.FieldDescriptor;
+import org.infinispan.protostream.descriptors.FileDescriptor;
+import org.infinispan.protostream.descriptors.Label;
+import org.infinispan.protostream.descriptors.MapDescriptor;
+import org.infinispan.protostream.descriptors.OneOfDescriptor;
+import org.infinispan.protostream.descriptors.Option;
+import org.infinispan.protostream.descriptors.ReservableDescriptor;
+import org.infinispan.protostream.descriptors.ReservedContainer;
+import org.infinispan.protostream.descriptors.WireType;
+import org.infinispan.protostream.impl.Log;
+import org.infinispan.protostream.impl.RandomAccessOutputStreamImpl;
+import org.infinispan.protostream.impl.TagReaderImpl;
+import org.infinispan.protostream.impl.TagWriterImpl;
+
+/**
+ * A compact binary form of a parsed .proto file, which can be turned back into a {@link FileDescriptor} without
+ * lexing and parsing the text. It holds exactly what the parser collects from the text, so the descriptor still goes
+ * through the usual type resolution and annotation processing when it is registered.
+ * <p>
+ * The encoding is itself a Protobuf message, prefixed by a format version. A compiled file with an unknown version is
+ * ignored, and the text is parsed instead.
+ *
+ * @since 6.0.11
+ */
+public final class CompiledProtoFile {
+
+   static final int VERSION = 1;
+
+   // FileDescriptor
+   private static final int FILE_VERSION = 1;
+   private static final int FILE_SYNTAX = 2;
+   private static final int FILE_PACKAGE = 3;
+   private static final int FILE_DEPENDENCY = 4;
+   private static final int FILE_PUBLIC_DEPENDENCY = 5;
+   private static final int FILE_OPTION = 6;
+   private static final int FILE_MESSAGE = 7;
+   private static final int FILE_ENUM = 8;
+
+   // Option
+   private static final int OPTION_NAME = 1;
+   private static final int OPTION_VALUE = 2;
+
+   // Descriptor
+   private static final int MESSAGE_NAME = 1;
+   private static final int MESSAGE_DOCUMENTATION = 2;
+   private static final int MESSAGE_OPTION = 3;
+   private static final int MESSAGE_FIELD = 4;
+   private static final int MESSAGE_ONE_OF = 5;
+   private static final int MESSAGE_NESTED_MESSAGE = 6;
+   private static final int MESSAGE_NESTED_ENUM = 7;
+   private static final int MESSAGE_RESERVED_RANGE = 8;
+   private static final int MESSAGE_RESERVED_NAME = 9;
+
+   // FieldDescriptor and MapDescriptor
+   private static final int FIELD_NAME = 1;
+   private static final int FIELD_NUMBER = 2;
+   private static final int FIELD_TYPE_NAME = 3;
+   private static final int FIELD_LABEL = 4;
+   private static final int FIELD_DOCUMENTATION = 5;
+   private static final int FIELD_OPTION = 6;
+   private static final int FIELD_MAP_KEY_TYPE_NAME = 7;
+
+   // OneOfDescriptor
+   private static final int ONE_OF_NAME = 1;
+   private static final int ONE_OF_DOCUMENTATION = 2;
+   private static final int ONE_OF_FIELD = 3;
+
+   // EnumDescriptor
+   private static final int ENUM_NAME = 1;
+   private static final int ENUM_DOCUMENTATION = 2;
+   private static final int ENUM_OPTION = 3;
+   private static final int ENUM_VALUE = 4;
+   private static final int ENUM_RESERVED_RANGE = 5;
+   private static final int ENUM_RESERVED_NAME = 6;
+
+   // EnumValueDescriptor
+   private static final int ENUM_VALUE_NAME = 1;
+   private static final int ENUM_VALUE_NUMBER = 2;
+   private static final int ENUM_VALUE_DOCUMENTATION = 3;
+   private static final int ENUM_VALUE_OPTION = 4;
+
+   // The inclusive range of reserved numbers
+   private static final int RANGE_FROM = 1;
+   private static final int RANGE_TO = 2;
+
+   private CompiledProtoFile() {
+   }
+
+   /**
+    * Parses the text of a .proto file and returns its compiled form. Only the syntax is checked, the types are not
+    * resolved.
+    *
+    * @throws DescriptorParserException if the file cannot be parsed
+    */
+   public static byte[] compile(String fileName, String fileContents) throws DescriptorParserException {
+      FileDescriptor fileDescriptor;
+      try {
+         fileDescriptor = ProtoParser.parse(fileName, new StringReader(fileContents), null);
+      } catch (ParseException e) {
+         Token next = e.currentToken.next;
+         String s = String.format("Syntax error in %s at %d:%d: unexpected label: %s", fileName, next.beginLine, next.endColumn, next.image);
+         throw new DescriptorParserException(s, e);
+      } catch (TokenMgrError e) {
+         throw Log.LOG.parserException(fileName, e.getMessage());
+      } finally {
+         ProtostreamProtoParser.comments.remove();
+      }
+      return encode(fileDescriptor);
+   }
+
+   static byte[] encode(FileDescriptor fileDescriptor) {
+      try {
+         RandomAccessOutputStream out = new RandomAccessOutputStreamImpl();
+         TagWriter writer = TagWriterImpl.newInstance(null, out);
+         writer.writeUInt32(FILE_VERSION, VERSION);
+         writer.writeEnum(FILE_SYNTAX, fileDescriptor.getSyntax().ordinal());
+         writeString(writer, FILE_PACKAGE, fileDescriptor.getPackage());
+         // the public imports are listed after the others by getDependencies()
+         List<String> dependencies = List.copyOf(fileDescriptor.getDependencies());
+         List<String> publicDependencies = fileDescriptor.getPublicDependencies();
+         for (String dependency : dependencies.subList(0, dependencies.size() - publicDependencies.size())) {
+            writer.writeString(FILE_DEPENDENCY, dependency);
+         }
+         for (String dependency : publicDependencies) {
+            writer.writeString(FILE_PUBLIC_DEPENDENCY, dependency);
+         }
+         writeOptions(writer, FILE_OPTION, fileDescriptor.getOptions());
+         for (Descriptor descriptor : fileDescriptor.getMessageTypes()) {
+            writeMessage(writer, FILE_MESSAGE, descriptor);
+         }
+         for (EnumDescriptor enumDescriptor : fileDescriptor.getEnumTypes()) {
+            writeEnum(writer, FILE_ENUM, enumDescriptor);
+         }
+         writer.flush();
+         return out.toByteArray();
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   private static void writeMessage(TagWriter writer, int fieldNumber, Descriptor descriptor) throws IOException {
+      try (TagWriter out = writer.subWriter(fieldNumber, true)) {
+         out.writeString(MESSAGE_NAME, descriptor.getName());
+         writeString(out, MESSAGE_DOCUMENTATION, descriptor.getDocumentation());
+         writeOptions(out, MESSAGE_OPTION, descriptor.getOptions());
+         for (FieldDescriptor fd : descriptor.getFields()) {
+            writeField(out, MESSAGE_FIELD, fd);
+         }
+         for (OneOfDescriptor oneOf : descriptor.getOneOfs()) {
+            try (TagWriter o = out.subWriter(MESSAGE_ONE_OF, true)) {
+               o.writeString(ONE_OF_NAME, oneOf.getName());
+               writeString(o, ONE_OF_DOCUMENTATION, oneOf.getDocumentation());
+               for (FieldDescriptor fd : oneOf.getFields()) {
+                  writeField(o, ONE_OF_FIELD, fd);
+               }
+            }
+         }
+         for (Descriptor nested : descriptor.getNestedTypes()) {
+            writeMessage(out, MESSAGE_NESTED_MESSAGE, nested);
+         }
+         for (EnumDescriptor nested : descriptor.getEnumTypes()) {
+            writeEnum(out, MESSAGE_NESTED_ENUM, nested);
+         }
+         writeReserved(out, MESSAGE_RESERVED_RANGE, MESSAGE_RESERVED_NAME, descriptor);
+      }
+   }
+
+   private static void writeField(TagWriter writer, int fieldNumber, FieldDescriptor fd) throws IOException {
+      try (TagWriter out = writer.subWriter(fieldNumber, true)) {
+         out.writeString(FIELD_NAME, fd.getName());
+         out.writeInt32(FIELD_NUMBER, fd.getNumber());
+         out.writeString(FIELD_TYPE_NAME, fd.getTypeName());
+         out.writeEnum(FIELD_LABEL, fd.getLabel().ordinal());
+         writeString(out, FIELD_DOCUMENTATION, fd.getDocumentation());
+         writeOptions(out, FIELD_OPTION, fd.getOptions());
+         if (fd instanceof MapDescriptor md) {
+            out.writeString(FIELD_MAP_KEY_TYPE_NAME, md.getKeyTypeName());
+         }
+      }
+   }
+
+   private static void writeEnum(TagWriter writer, int fieldNumber, EnumDescriptor enumDescriptor) throws IOException {
+      try (TagWriter out = writer.subWriter(fieldNumber, true)) {
+         out.writeString(ENUM_NAME, enumDescriptor.getName());
+         writeString(out, ENUM_DOCUMENTATION, enumDescriptor.getDocumentation());
+         writeOptions(out, ENUM_OPTION, enumDescriptor.getOptions());
+         for (EnumValueDescriptor value : enumDescriptor.getValues()) {
+            try (TagWriter v = out.subWriter(ENUM_VALUE, true)) {
+               v.writeString(ENUM_VALUE_NAME, value.getName());
+               v.writeInt32(ENUM_VALUE_NUMBER, value.getNumber());
+               writeString(v, ENUM_VALUE_DOCUMENTATION, value.getDocumentation());
+               writeOptions(v, ENUM_VALUE_OPTION, value.getOptions());
+            }
+         }
+         writeReserved(out, ENUM_RESERVED_RANGE, ENUM_RESERVED_NAME, enumDescriptor);
+      }
+   }
+
+   private static void writeReserved(TagWriter out, int rangeField, int nameField, ReservableDescriptor descriptor) throws IOException {
+      // the numbers are written as ranges, as large ranges are commonly reserved
+      int from = descriptor.getReservedNumbers().nextSetBit(0);
+      while (from >= 0) {
+         int to = descriptor.getReservedNumbers().nextClearBit(from) - 1;
+         try (TagWriter range = out.subWriter(rangeField, true)) {
+            range.writeInt32(RANGE_FROM, from);
+            range.writeInt32(RANGE_TO, to);
+         }
+         from = descriptor.getReservedNumbers().nextSetBit(to + 1);
+      }
+      for (String name : descriptor.getReservedNames()) {
+         out.writeString(nameField, name);
+      }
+   }
+
+   private static void writeOptions(TagWriter writer, int fieldNumber, List<Option> options) throws IOException {
+      for (Option option : options) {
+         try (TagWriter out = writer.subWriter(fieldNumber, true)) {
+            out.writeString(OPTION_NAME, option.getName());
+            if (option.getValue() != null) {
+               out.writeString(OPTION_VALUE, option.getValue().toString());
+            }
+         }
+      }
+   }
+
+   private static void writeString(TagWriter out, int fieldNumber, String value) throws IOException {
+      if (value != null) {
+         out.writeString(fieldNumber, value);
+      }
+   }
+
+   /**
+    * Creates the {@link FileDescriptor} of a compiled file, in the same state as one created by parsing the text.
+    *
+    * @return the file descriptor, or {@code null} if the compiled file uses an unknown version of the format
+    * @throws DescriptorParserException if the compiled file is malformed
+    */
+   static FileDescriptor decode(String fileName, byte[] bytes) throws DescriptorParserException {
+      try {
+         TagReaderImpl in = TagReaderImpl.newInstance(null, bytes);
+         if (in.readTag() != WireType.makeTag(FILE_VERSION, WireType.WIRETYPE_VARINT) || in.readUInt32() != VERSION) {
+            return null;
+         }
+         FileDescriptor.Builder builder = new FileDescriptor.Builder().withName(fileName);
+         int tag;
+         while ((tag = in.readTag()) != 0) {
+            switch (WireType.getTagFieldNumber(tag)) {
+               case FILE_SYNTAX -> builder.withSyntax(FileDescriptor.Syntax.values()[in.readEnum()]);
+               case FILE_PACKAGE -> builder.withPackageName(in.readString());
+               case FILE_DEPENDENCY -> builder.addDependency(in.readString());
+               case FILE_PUBLIC_DEPENDENCY -> builder.addPublicDependency(in.readString());
+               case FILE_OPTION -> builder.addOption(readOption(in));
+               case FILE_MESSAGE -> builder.addMessage(readMessage(in, builder.getFullName()));
+               case FILE_ENUM -> builder.addEnum(readEnum(in));
+               default -> in.skipField(tag);
+            }
+         }
+         return builder.build();
+      } catch (IOException | RuntimeException e) {
+         throw new DescriptorParserException("Malformed compiled proto file " + fileName, e);
+      }
+   }
+
+   private static Descriptor.Builder readMessage(TagReaderImpl in, String parentFullName) throws IOException {
+      int limit = in.pushLimit(in.readUInt32());
+      Descriptor.Builder builder = new Descriptor.Builder();
+      int tag;
+      while ((tag = in.readTag()) != 0) {
+         switch (WireType.getTagFieldNumber(tag)) {
+            case MESSAGE_NAME -> {
+               // the name is always first, the nested types need the full name
+               String name = in.readString();
+               builder.withName(name).withFullName(FileDescriptor.fullName(parentFullName, name));
+            }
+            case MESSAGE_DOCUMENTATION -> builder.withDocumentation(in.readString());
+            case MESSAGE_OPTION -> builder.addOption(readOption(in));
+            case MESSAGE_FIELD -> {
+               FieldDescriptor.Builder field = readField(in);
+               if (field instanceof MapDescriptor.Builder map) {
+                  builder.addMap(map);
+               } else {
+                  builder.addField(field);
+               }
+            }
+            case MESSAGE_ONE_OF -> builder.addOneOf(readOneOf(in));
+            case MESSAGE_NESTED_MESSAGE -> builder.addMessage(readMessage(in, builder.getFullName()));
+            case MESSAGE_NESTED_ENUM -> builder.addEnum(readEnum(in));
+            case MESSAGE_RESERVED_RANGE -> readRange(in, builder);
+            case MESSAGE_RESERVED_NAME -> builder.addReserved(in.readString());
+            default -> in.skipField(tag);
+         }
+      }
+      in.checkLastTagWas(0);
+      in.popLimit(limit);
+      return builder;
+   }
+
+   private static FieldDescriptor.Builder readField(TagReaderImpl in) throws IOException {
+      int limit = in.pushLimit(in.readUInt32());
+      String name = null;
+      int number = 0;
+      String typeName = null;
+      Label label = Label.OPTIONAL;
+      String documentation = null;
+      List<Option> options = new ArrayList<>();
+      String keyTypeName = null;
+      int tag;
+      while ((tag = in.readTag()) != 0) {
+         switch (WireType.getTagFieldNumber(tag)) {
+            case FIELD_NAME -> name = in.readString();
+            case FIELD_NUMBER -> number = in.readInt32();
+            case FIELD_TYPE_NAME -> typeName = in.readString();
+            case FIELD_LABEL -> label = Label.values()[in.readEnum()];
+            case FIELD_DOCUMENTATION -> documentation = in.readString();
+            case FIELD_OPTION -> options.add(readOption(in));
+            case FIELD_MAP_KEY_TYPE_NAME -> keyTypeName = in.readString();
+            default -> in.skipField(tag);
+         }
+      }
+      in.checkLastTagWas(0);
+      in.popLimit(limit);
+
+      FieldDescriptor.Builder builder;
+      if (keyTypeName != null) {
+         builder = new MapDescriptor.Builder().withKeyTypeName(keyTypeName).withValueTypeName(typeName);
+      } else {
+         builder = new FieldDescriptor.Builder().withTypeName(typeName).withLabel(label);
+      }
+      return builder.withName(name).withNumber(number).withDocumentation(documentation).withOptions(options);
+   }
+
+   private static OneOfDescriptor.Builder readOneOf(TagReaderImpl in) throws IOException {
+      int limit = in.pushLimit(in.readUInt32());
+      OneOfDescriptor.Builder builder = new OneOfDescriptor.Builder();
+      int tag;
+      while ((tag = in.readTag()) != 0) {
+         switch (WireType.getTagFieldNumber(tag)) {
+            case ONE_OF_NAME -> builder.withName(in.readString());
+            case ONE_OF_DOCUMENTATION -> builder.withDocumentation(in.readString());
+            case ONE_OF_FIELD -> builder.addField(readField(in));
+            default -> in.skipField(tag);
+         }
+      }
+      in.checkLastTagWas(0);
+      in.popLimit(limit);
+      return builder;
+   }
+
+   private static EnumDescriptor.Builder readEnum(TagReaderImpl in) throws IOException {
+      int limit = in.pushLimit(in.readUInt32());
+      EnumDescriptor.Builder builder = new EnumDescriptor.Builder();
+      int tag;
+      while ((tag = in.readTag()) != 0) {
+         switch (WireType.getTagFieldNumber(tag)) {
+            case ENUM_NAME -> builder.withName(in.readString());
+            case ENUM_DOCUMENTATION -> builder.withDocumentation(in.readString());
+            case ENUM_OPTION -> builder.addOption(readOption(in));
+            case ENUM_VALUE -> builder.addValue(readEnumValue(in));
+            case ENUM_RESERVED_RANGE -> readRange(in, builder);
+            case ENUM_RESERVED_NAME -> builder.addReserved(in.readString());
+            default -> in.skipField(tag);
+         }
+      }
+      in.checkLastTagWas(0);
+      in.popLimit(limit);
+      return builder;
+   }
+
+   private static EnumValueDescriptor.Builder readEnumValue(TagReaderImpl in) throws IOException {
+      int limit = in.pushLimit(in.readUInt32());
+      EnumValueDescriptor.Builder builder = new EnumValueDescriptor.Builder();
+      int tag;
+      while ((tag = in.readTag()) != 0) {
+         switch (WireType.getTagFieldNumber(tag)) {
+            case ENUM_VALUE_NAME -> builder.withName(in.readString());
+            case ENUM_VALUE_NUMBER -> builder.withTag(in.readInt32());
+            case ENUM_VALUE_DOCUMENTATION -> builder.withDocumentation(in.readString());
+            case ENUM_VALUE_OPTION -> builder.addOption(readOption(in));
+            default -> in.skipField(tag);
+         }
+      }
+      in.checkLastTagWas(0);
+      in.popLimit(limit);
+      return builder;
+   }
+
+   private static void readRange(TagReaderImpl in, ReservedContainer<?> container) throws IOException {
+      int limit = in.pushLimit(in.readUInt32());
+      int from = 0;
+      int to = 0;
+      int tag;
+      while ((tag = in.readTag()) != 0) {
+         switch (WireType.getTagFieldNumber(tag)) {
+            case RANGE_FROM -> from = in.readInt32();
+            case RANGE_TO -> to = in.readInt32();
+            default -> in.skipField(tag);
+         }
+      }
+      in.checkLastTagWas(0);
+      in.popLimit(limit);
+      if (from == to) {
+         container.addReserved(from);
+      } else {
+         container.addReserved(from, to);
+      }
+   }
+
+   private static Option readOption(TagReaderImpl in) throws IOException {
+      int limit = in.pushLimit(in.readUInt32());
+      String name = null;
+      String value = null;
+      int tag;
+      while ((tag = in.readTag()) != 0) {
+         switch (WireType.getTagFieldNumber(tag)) {
+            case OPTION_NAME -> name = in.readString();
+            case OPTION_VALUE -> value = in.readString();
+            default -> in.skipField(tag);
+         }
+      }
+      in.checkLastTagWas(0);
+      in.popLimit(limit);
+      return new Option(name, value);
+   }
+}
@@ -39,11 +39,16 @@ public final class ProtostreamProtoParser {
     */
    public Map<String, FileDescriptor> parse(FileDescriptorSource fileDescriptorSource) throws DescriptorParserException {
       Map<String, String> input = fileDescriptorSource.getFiles();
+      Map<String, byte[]> compiled = fileDescriptorSource.getCompiledFiles();
       Map<String, FileDescriptor> fileDescriptorMap = new LinkedHashMap<>(input.size());
       for (Map.Entry<String, String> entry : input.entrySet()) {
          String fileName = entry.getKey();
          try {
-            FileDescriptor fileDescriptor = ProtoParser.parse(fileName, new StringReader(entry.getValue()), configuration);
+            byte[] compiledFile = compiled.get(fileName);
+            FileDescriptor fileDescriptor = compiledFile != null ? CompiledProtoFile.decode(fileName, compiledFile) : null;
+            if (fileDescriptor == null) {
+               fileDescriptor = ProtoParser.parse(fileName, new StringReader(entry.getValue()), configuration);
+            }
             fileDescriptor.setConfiguration(configuration);
             fileDescriptor.parseAnnotations();
             fileDescriptorMap.put(fileName, fileDescriptor);
@@ -3,6 +3,7 @@ package org.infinispan.protostream;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -16,6 +17,8 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 
+import org.infinispan.protostream.descriptors.Descriptor;
+import org.infinispan.protostream.descriptors.FieldDescriptor;
 import org.infinispan.protostream.domain.Account;
 import org.infinispan.protostream.domain.Address;
 import org.infinispan.protostream.domain.User;
@@ -108,6 +111,75 @@ public class MarshallingTest extends AbstractProtoStreamTest {
       assertArrayEquals(new Account.Currency[]{Account.Currency.BRL}, decoded.getCurrencies());
    }
 
+   @Test
+   public void testMarshallUsingFieldDescriptors() throws Exception {
+      SerializationContext ctx = createContext();
+      Descriptor descriptor = ctx.getMessageDescriptor("sample_bank_account.User.Address");
+      ctx.registerMarshaller(new FieldDescriptorAddressMarshaller(descriptor, false));
+
+      Address decoded = MarshallingTest.<Address>useByteArray().encodeAndDecode(new Address("Old Street", "XYZ42", -12, true), ctx);
+      assertEquals("Old Street", decoded.getStreet());
+      assertEquals("XYZ42", decoded.getPostCode());
+      assertEquals(-12, decoded.getNumber());
+      assertTrue(decoded.isCommercial());
+
+      ctx.registerMarshaller(new FieldDescriptorAddressMarshaller(descriptor, true));
+      IllegalStateException e = assertThrows(IllegalStateException.class,
+            () -> MarshallingTest.<Address>useByteArray().encodeAndDecode(new Address("Old Street", "XYZ42", -12), ctx));
+      assertEquals("A field cannot be read twice : sample_bank_account.User.Address.street", e.getMessage());
+   }
+
+   /**
+    * Reads the fields out of order and, if asked to, reads one of them twice.
+    */
+   private static final class FieldDescriptorAddressMarshaller implements MessageMarshaller<Address> {
+
+      private final FieldDescriptor street;
+      private final FieldDescriptor postCode;
+      private final FieldDescriptor number;
+      private final FieldDescriptor isCommercial;
+      private final boolean readTwice;
+
+      FieldDescriptorAddressMarshaller(Descriptor descriptor, boolean readTwice) {
+         street = descriptor.findFieldByName("street");
+         postCode = descriptor.findFieldByName("postCode");
+         number = descriptor.findFieldByName("number");
+         isCommercial = descriptor.findFieldByName("isCommercial");
+         this.readTwice = readTwice;
+      }
+
+      @Override
+      public String getTypeName() {
+         return "sample_bank_account.User.Address";
+      }
+
+      @Override
+      public Class<Address> getJavaClass() {
+         return Address.class;
+      }
+
+      @Override
+      public Address readFrom(ProtoStreamReader reader) throws IOException {
+         Address address = new Address();
+         address.setStreet(reader.readString(street));
+         address.setNumber(reader.readInt(number));
+         address.setPostCode(reader.readString(postCode));
+         address.setCommercial(reader.readBoolean(isCommercial));
+         if (readTwice) {
+            reader.readString(street);
+         }
+         return address;
+      }
+
+      @Override
+      public void writeTo(ProtoStreamWriter writer, Address address) throws IOException {
+         writer.writeString(street, address.getStreet());
+         writer.writeString(postCode, address.getPostCode());
+         writer.writeInt(number, address.getNumber());
+         writer.writeBoolean(isCommercial, address.isCommercial());
+      }
+   }
+
    @FunctionalInterface
    private interface EncoderMethod<T> {
       T encodeAndDecode(T object, ImmutableSerializationContext ctx) throws IOException;
@@ -0,0 +1,75 @@
+package org.infinispan.protostream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.infinispan.protostream.descriptors.Descriptor;
+import org.junit.jupiter.api.Test;
+
+public class MessageContextTest {
+
+   private static final class TestMessageContext extends MessageContext<TestMessageContext> {
+
+      TestMessageContext(Descriptor messageDescriptor) {
+         super(null, null, messageDescriptor);
+      }
+   }
+
+   private static Descriptor createDescriptor() {
+      String file = """
+            syntax = "proto3";
+            package test;
+            message M {
+               string a = 1;
+               int32 b = 2;
+               int64 c = 100;
+               bool d = 5000;
+            }""";
+      SerializationContext ctx = ProtobufUtil.newSerializationContext();
+      ctx.registerProtoFiles(FileDescriptorSource.fromString("test.proto", file));
+      return ctx.getMessageDescriptor("test.M");
+   }
+
+   @Test
+   public void testMarkFieldsInOrder() {
+      Descriptor descriptor = createDescriptor();
+      TestMessageContext context = new TestMessageContext(descriptor);
+      assertTrue(context.markField(descriptor.findFieldByNumber(1)));
+      assertTrue(context.markField(descriptor.findFieldByNumber(2)));
+      assertTrue(context.isFieldMarked(2));
+      assertFalse(context.isFieldMarked(100));
+      assertFalse(context.markField(descriptor.findFieldByNumber(1)), "A field should only be marked once");
+      assertTrue(context.isFieldMarked(1));
+      assertTrue(context.isFieldMarked(2));
+      assertEquals(2, context.getMaxSeenFieldNumber());
+   }
+
+   @Test
+   public void testMarkFieldsOutOfOrder() {
+      Descriptor descriptor = createDescriptor();
+      TestMessageContext context = new TestMessageContext(descriptor);
+      assertTrue(context.markField(descriptor.findFieldByNumber(1)));
+      assertTrue(context.markField(descriptor.findFieldByNumber(5000)));
+      assertTrue(context.markField(descriptor.findFieldByNumber(100)));
+      assertTrue(context.markField(70000));
+      assertFalse(context.markField(5000));
+      assertFalse(context.markField(descriptor.findFieldByNumber(100)));
+      assertTrue(context.isFieldMarked(1));
+      assertFalse(context.isFieldMarked(2));
+      assertTrue(context.isFieldMarked(100));
+      assertTrue(context.isFieldMarked(5000));
+      assertFalse(context.isFieldMarked(5001));
+      assertTrue(context.isFieldMarked(70000));
+      assertEquals(70000, context.getMaxSeenFieldNumber());
+
+      context.reset(null, null, descriptor);
+      assertFalse(context.isFieldMarked(1), "A reset context should not have any marked fields");
+      assertFalse(context.isFieldMarked(100));
+      assertFalse(context.isFieldMarked(5000));
+      assertEquals(0, context.getMaxSeenFieldNumber());
+      assertTrue(context.markField(100));
+      assertTrue(context.markField(5000));
+      assertFalse(context.isFieldMarked(70000));
+   }
+}
@@ -0,0 +1,107 @@
+package org.infinispan.protostream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.infinispan.protostream.descriptors.Descriptor;
+import org.infinispan.protostream.domain.Address;
+import org.infinispan.protostream.domain.User;
+import org.infinispan.protostream.impl.TagWriterImpl;
+import org.infinispan.protostream.test.AbstractProtoStreamTest;
+import org.junit.jupiter.api.Test;
+
+public class MessageViewTest extends AbstractProtoStreamTest {
+
+   @Test
+   public void testWrappedMessage() throws Exception {
+      SerializationContext ctx = createContext();
+      MessageView view = MessageView.ofWrapped(ctx, ProtobufUtil.toWrappedByteArray(ctx, createUser()));
+
+      assertEquals("sample_bank_account.User", view.getDescriptor().getFullName());
+      assertEquals(1, view.getField("id"));
+      assertEquals("John", view.getField("name"));
+      assertEquals("Batman", view.getField("surname"));
+      assertEquals(User.Gender.MALE.ordinal(), view.getField("gender"));
+      assertTrue(view.hasField("surname"));
+      assertFalse(view.hasField("salutation"));
+      assertNull(view.getField("salutation"));
+      assertEquals(new HashSet<>(List.of(1, 3)), new HashSet<>(view.getRepeatedField("accountIds")));
+      assertTrue(view.getRepeatedField("notes").isEmpty());
+
+      List<Object> addresses = view.getRepeatedField("addresses");
+      assertEquals(2, addresses.size());
+      MessageView address = assertInstanceOf(MessageView.class, addresses.get(1));
+      assertEquals("Bond Street", address.getField("street"));
+      assertEquals(2, address.getField("number"));
+      assertEquals(true, address.getField("isCommercial"));
+
+      assertThrows(IllegalArgumentException.class, () -> view.getField("unknown"));
+      assertThrows(IllegalArgumentException.class, () -> MessageView.ofWrapped(ctx, ProtobufUtil.toWrappedByteArray(ctx, "text")));
+   }
+
+   @Test
+   public void testBufferAndRange() throws Exception {
+      SerializationContext ctx = createContext();
+      Descriptor descriptor = ctx.getMessageDescriptor("sample_bank_account.User");
+      byte[] bytes = ProtobufUtil.toByteArray(ctx, createUser());
+
+      // the message surrounded by other bytes
+      byte[] padded = new byte[bytes.length + 6];
+      System.arraycopy(bytes, 0, padded, 3, bytes.length);
+
+      ByteBuffer direct = ByteBuffer.allocateDirect(padded.length);
+      direct.put(padded).position(3).limit(3 + bytes.length);
+
+      for (MessageView view : List.of(MessageView.of(descriptor, padded, 3, bytes.length), MessageView.of(descriptor, direct))) {
+         assertEquals("Batman", view.getField("surname"));
+         MessageView address = (MessageView) view.getRepeatedField("addresses").get(0);
+         assertEquals("Old Street", address.getField("street"));
+         assertEquals(-12, address.getField("number"));
+         assertEquals("XYZ42", address.getField("postCode"));
+      }
+      assertEquals(3, direct.position());
+   }
+
+   @Test
+   public void testPackedAndRepeatedOccurrences() throws Exception {
+      SerializationContext ctx = createContext();
+      Descriptor descriptor = ctx.getMessageDescriptor("sample_bank_account.User");
+
+      RandomAccessOutputStream out = RandomAccessOutputStream.withCapacity(32);
+      TagWriter writer = TagWriterImpl.newInstance(ctx, out);
+      writer.writeInt32(1, 7);
+      writer.writeInt32(2, 1);
+      try (TagWriter packed = writer.subWriter(2, false)) {
+         packed.writeVarint32(2);
+         packed.writeVarint32(3);
+      }
+      writer.writeString(3, "first");
+      writer.writeString(3, "last");
+      writer.flush();
+
+      MessageView view = MessageView.of(descriptor, out.toByteArray());
+      assertEquals(List.of(1, 2, 3), view.getRepeatedField(2));
+      assertEquals("last", view.getField(3));
+      assertEquals(7, view.getField(1));
+   }
+
+   private static User createUser() {
+      User user = new User();
+      user.setId(1);
+      user.setName("John");
+      user.setSurname("Batman");
+      user.setGender(User.Gender.MALE);
+      user.setAccountIds(new HashSet<>(Arrays.asList(1, 3)));
+      user.setAddresses(Arrays.asList(new Address("Old Street", "XYZ42", -12, false), new Address("Bond Street", "W23", 2, true)));
+      return user;
+   }
+}
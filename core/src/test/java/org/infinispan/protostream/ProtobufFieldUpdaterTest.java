@@ -1,5 +1,6 @@
 package org.infinispan.protostream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -8,10 +9,14 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.infinispan.protostream.descriptors.Descriptor;
 import org.infinispan.protostream.domain.Address;
 import org.infinispan.protostream.domain.User;
+import org.infinispan.protostream.impl.RandomAccessOutputStreamImpl;
+import org.infinispan.protostream.impl.TagReaderImpl;
+import org.infinispan.protostream.impl.TagWriterImpl;
 import org.infinispan.protostream.test.AbstractProtoStreamTest;
 import org.junit.jupiter.api.Test;
 
@@ -167,6 +172,115 @@ public class ProtobufFieldUpdaterTest extends AbstractProtoStreamTest {
       assertEquals("Old Street", result.getAddresses().get(0).getStreet());
    }
 
+   @Test
+   public void testUpdateNestedField() throws Exception {
+      SerializationContext ctx = createContext();
+      User user = createTestUser();
+      user.setAddresses(List.of(new Address("Old Street", "XYZ42", -12), new Address("Other Street", "ABC1", 7)));
+      byte[] bytes = toMessageBytes(ctx, user);
+
+      Descriptor descriptor = ctx.getMessageDescriptor("sample_bank_account.User");
+      byte[] updated = ProtobufFieldUpdater.update(descriptor, bytes, List.of(
+            new ProtobufFieldUpdater.UpdateOperation(
+                  ProtobufFieldUpdater.OperationType.SET,
+                  new String[]{"addresses", "street"},
+                  List.of("New Street")),
+            new ProtobufFieldUpdater.UpdateOperation(
+                  ProtobufFieldUpdater.OperationType.SET,
+                  new String[]{"addresses", "number"},
+                  List.of(1024))
+      ));
+
+      User result = fromMessageBytes(ctx, updated, User.class);
+      assertEquals("John", result.getName());
+      assertEquals(2, result.getAddresses().size());
+      assertEquals("New Street", result.getAddresses().get(0).getStreet());
+      assertEquals("XYZ42", result.getAddresses().get(0).getPostCode());
+      assertEquals(1024, result.getAddresses().get(0).getNumber());
+      assertEquals("Other Street", result.getAddresses().get(1).getStreet());
+      assertEquals(7, result.getAddresses().get(1).getNumber());
+   }
+
+   @Test
+   public void testSetNestedFieldOfMissingMessage() throws Exception {
+      SerializationContext ctx = createContext();
+      User user = createTestUser();
+      byte[] bytes = toMessageBytes(ctx, user);
+
+      Descriptor descriptor = ctx.getMessageDescriptor("sample_bank_account.User");
+      byte[] updated = ProtobufFieldUpdater.update(descriptor, bytes, List.of(
+            new ProtobufFieldUpdater.UpdateOperation(
+                  ProtobufFieldUpdater.OperationType.SET,
+                  new String[]{"addresses", "street"},
+                  List.of("New Street")),
+            new ProtobufFieldUpdater.UpdateOperation(
+                  ProtobufFieldUpdater.OperationType.SET,
+                  new String[]{"addresses", "number"},
+                  List.of(3)),
+            new ProtobufFieldUpdater.UpdateOperation(
+                  ProtobufFieldUpdater.OperationType.SET,
+                  new String[]{"addresses", "isCommercial"},
+                  List.of(false))
+      ));
+
+      User result = fromMessageBytes(ctx, updated, User.class);
+      assertEquals(1, result.getAddresses().size());
+      assertEquals("New Street", result.getAddresses().get(0).getStreet());
+      assertEquals("Batman", result.getSurname());
+   }
+
+   @Test
+   public void testUnchangedFieldsKeepTheirBytes() throws Exception {
+      SerializationContext ctx = createContext();
+      User user = createTestUser();
+      user.setAddresses(List.of(new Address("Old Street", "XYZ42", -12)));
+      byte[] bytes = toMessageBytes(ctx, user);
+
+      Descriptor descriptor = ctx.getMessageDescriptor("sample_bank_account.User");
+      byte[] updated = ProtobufFieldUpdater.update(descriptor, bytes, List.of(
+            new ProtobufFieldUpdater.UpdateOperation(
+                  ProtobufFieldUpdater.OperationType.SET,
+                  new String[]{"name"},
+                  List.of("John")),
+            new ProtobufFieldUpdater.UpdateOperation(
+                  ProtobufFieldUpdater.OperationType.SET,
+                  new String[]{"addresses", "street"},
+                  List.of("Old Street"))
+      ));
+
+      assertArrayEquals(bytes, updated, "Setting the current values should give back the same bytes");
+   }
+
+   @Test
+   public void testRemoveFromPackedRepeatedField() throws Exception {
+      SerializationContext ctx = createContext();
+      User user = createTestUser();
+      byte[] bytes = toMessageBytes(ctx, user);
+
+      // append the account ids as a packed block
+      var out = new RandomAccessOutputStreamImpl(bytes.length + 16);
+      var writer = TagWriterImpl.newInstance(ctx, (RandomAccessOutputStream) out);
+      writer.writeRawBytes(bytes, 0, bytes.length);
+      try (TagWriter packed = writer.subWriter(2, false)) {
+         packed.writeVarint32(1);
+         packed.writeVarint32(3);
+         packed.writeVarint32(5);
+      }
+      writer.flush();
+
+      Descriptor descriptor = ctx.getMessageDescriptor("sample_bank_account.User");
+      byte[] updated = ProtobufFieldUpdater.update(descriptor, out.toByteArray(), List.of(
+            new ProtobufFieldUpdater.UpdateOperation(
+                  ProtobufFieldUpdater.OperationType.REMOVE,
+                  new String[]{"accountIds"},
+                  List.of(3))
+      ));
+
+      User result = fromMessageBytes(ctx, updated, User.class);
+      assertEquals(Set.of(1, 5), result.getAccountIds());
+      assertEquals("John", result.getName());
+   }
+
    private User createTestUser() {
       User user = new User();
       user.setId(1);
@@ -187,7 +301,7 @@ public class ProtobufFieldUpdaterTest extends AbstractProtoStreamTest {
    }
 
    private byte[] extractInnerMessageBytes(ImmutableSerializationContext ctx, byte[] wrappedBytes) throws IOException {
-      var reader = org.infinispan.protostream.impl.TagReaderImpl.newInstance(ctx, wrappedBytes);
+      var reader = TagReaderImpl.newInstance(ctx, wrappedBytes);
       byte[] innerBytes = null;
       int tag;
       while ((tag = reader.readTag()) != 0) {
@@ -208,8 +322,8 @@ public class ProtobufFieldUpdaterTest extends AbstractProtoStreamTest {
       String typeName = ctx.getMarshaller(clazz).getTypeName();
       Integer typeId = ctx.getDescriptorByName(typeName).getTypeId();
 
-      var baos = new org.infinispan.protostream.impl.RandomAccessOutputStreamImpl(innerBytes.length + 20);
-      var writer = org.infinispan.protostream.impl.TagWriterImpl.newInstance(ctx, (RandomAccessOutputStream) baos);
+      var baos = new RandomAccessOutputStreamImpl(innerBytes.length + 20);
+      var writer = TagWriterImpl.newInstance(ctx, (RandomAccessOutputStream) baos);
 
       if (typeId != null && typeId >= 0) {
          writer.writeUInt32(WrappedMessage.WRAPPED_TYPE_ID, typeId);
@@ -1,16 +1,29 @@
 package org.infinispan.protostream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 
+import org.infinispan.protostream.config.Configuration;
 import org.infinispan.protostream.descriptors.Descriptor;
 import org.infinispan.protostream.descriptors.EnumDescriptor;
 import org.infinispan.protostream.descriptors.FieldDescriptor;
 import org.infinispan.protostream.descriptors.GenericDescriptor;
+import org.infinispan.protostream.descriptors.WireType;
 import org.infinispan.protostream.domain.Address;
 import org.infinispan.protostream.domain.User;
 import org.infinispan.protostream.impl.Log;
+import org.infinispan.protostream.impl.RandomAccessOutputStreamImpl;
+import org.infinispan.protostream.impl.SpecializedParser;
+import org.infinispan.protostream.impl.TagReaderImpl;
+import org.infinispan.protostream.impl.TagWriterImpl;
 import org.infinispan.protostream.test.AbstractProtoStreamTest;
 import org.junit.jupiter.api.Test;
 
@@ -156,4 +169,253 @@ public class ProtobufParserTest extends AbstractProtoStreamTest {
 
       ProtobufParser.INSTANCE.parse(wrapperHandler, wrapperDescriptor, userBytes);
    }
+
+   @Test
+   public void testPackedWritingIsOptIn() throws Exception {
+      User user = new User();
+      user.setId(1);
+      user.setName("John");
+      user.setSurname("Batman");
+      user.setGender(User.Gender.MALE);
+      user.setAccountIds(new HashSet<>(Arrays.asList(12, 24, 36)));
+
+      ImmutableSerializationContext ctx = createContext();
+      ImmutableSerializationContext packingCtx = createContext(Configuration.builder().packRepeatedScalarFields(true));
+      FieldDescriptor accountIds = ctx.getMessageDescriptor("sample_bank_account.User").findFieldByName("accountIds");
+
+      // readers before 6.0.11 do not understand the packed encoding, so it is only written when enabled
+      byte[] unpacked = ProtobufUtil.toByteArray(ctx, user);
+      byte[] packed = ProtobufUtil.toByteArray(packingCtx, user);
+      assertEquals(3, countTags(ctx, unpacked, accountIds.getNumber()));
+      assertEquals(1, countTags(ctx, packed, accountIds.getNumber()));
+
+      assertEquals(user.getAccountIds(), ProtobufUtil.fromByteArray(ctx, packed, User.class).getAccountIds());
+      assertEquals(user.getAccountIds(), ProtobufUtil.fromByteArray(packingCtx, unpacked, User.class).getAccountIds());
+   }
+
+   private static int countTags(ImmutableSerializationContext ctx, byte[] bytes, int fieldNumber) throws IOException {
+      int count = 0;
+      TagReader in = TagReaderImpl.newInstance(ctx, bytes);
+      int tag;
+      while ((tag = in.readTag()) != 0) {
+         if (WireType.getTagFieldNumber(tag) == fieldNumber) {
+            count++;
+         }
+         in.skipField(tag);
+      }
+      return count;
+   }
+
+   @Test
+   public void testPackedRepeatedField() throws Exception {
+      ImmutableSerializationContext ctx = createContext();
+      Descriptor userDescriptor = ctx.getMessageDescriptor("sample_bank_account.User");
+      FieldDescriptor accountIds = userDescriptor.findFieldByName("accountIds");
+      assertTrue(accountIds.isPacked(), "proto3 repeated scalars are packed by default");
+
+      // the same values, packed and then unpacked; parsers must accept both encodings
+      RandomAccessOutputStream out = new RandomAccessOutputStreamImpl();
+      TagWriter writer = TagWriterImpl.newInstance(ctx, out);
+      try (TagWriter packed = writer.subWriter(accountIds.getNumber(), true)) {
+         packed.writeVarint64(1);
+         packed.writeVarint64(300);
+      }
+      writer.writeInt32(accountIds.getNumber(), 7);
+      writer.flush();
+
+      List<Object> values = new ArrayList<>();
+      ProtobufParser.INSTANCE.parse(new TagHandler() {
+         @Override
+         public void onTag(int fieldNumber, FieldDescriptor fieldDescriptor, Object tagValue) {
+            assertEquals(accountIds, fieldDescriptor);
+            values.add(tagValue);
+         }
+      }, userDescriptor, out.toByteArray());
+      assertEquals(List.of(1, 300, 7), values);
+   }
+
+   @Test
+   public void testTypedCallbacks() throws Exception {
+      ImmutableSerializationContext ctx = createContext();
+      Descriptor addressDescriptor = ctx.getMessageDescriptor("sample_bank_account.User.Address");
+      byte[] bytes = ProtobufUtil.toByteArray(ctx, new Address("Old Street", "XYZ42", -12, true));
+
+      List<Object> values = new ArrayList<>();
+      ProtobufParser.INSTANCE.parse(new TagHandler() {
+         @Override
+         public void onTag(int fieldNumber, FieldDescriptor fieldDescriptor, Object tagValue) {
+            // only the strings are not passed to a typed callback
+            values.add(tagValue);
+         }
+
+         @Override
+         public void onInt32(int fieldNumber, FieldDescriptor fieldDescriptor, int value) {
+            values.add("int32 " + fieldDescriptor.getName() + " " + value);
+         }
+
+         @Override
+         public void onBool(int fieldNumber, FieldDescriptor fieldDescriptor, boolean value) {
+            values.add("bool " + fieldDescriptor.getName() + " " + value);
+         }
+      }, addressDescriptor, bytes);
+      assertEquals(List.of("Old Street", "XYZ42", "int32 number -12", "bool isCommercial true"), values);
+   }
+
+   @Test
+   public void testSpecializedParser() throws Exception {
+      String file = """
+            syntax = "proto3";
+            package test;
+            message Outer {
+               string name = 1;
+               repeated int32 values = 2;
+               Inner inner = 3;
+               map<string, Inner> byName = 4;
+               bytes data = 5;
+               oneof choice {
+                  double d = 6;
+                  sint64 s = 7;
+               }
+               Outer next = 1000;
+            }
+            message Inner {
+               fixed32 f = 1;
+               bool b = 2;
+            }""";
+      SerializationContext ctx = ProtobufUtil.newSerializationContext(Configuration.builder().parserSpecializationThreshold(1).build());
+      ctx.registerProtoFiles(FileDescriptorSource.fromString("test.proto", file));
+      Descriptor outer = ctx.getMessageDescriptor("test.Outer");
+
+      RandomAccessOutputStream out = new RandomAccessOutputStreamImpl();
+      TagWriter writer = TagWriterImpl.newInstance(ctx, out);
+      writer.writeString(1, "a");
+      try (TagWriter packed = writer.subWriter(2, true)) {
+         packed.writeVarint32(1);
+         packed.writeVarint32(-2);
+      }
+      writer.writeInt32(2, 3);
+      try (TagWriter inner = writer.subWriter(3, true)) {
+         inner.writeFixed32(1, 42);
+         inner.writeBool(2, true);
+      }
+      try (TagWriter entry = writer.subWriter(4, true)) {
+         entry.writeString(1, "k");
+         try (TagWriter inner = entry.subWriter(2, true)) {
+            inner.writeBool(2, false);
+         }
+      }
+      writer.writeBytes(5, new byte[]{1, 2});
+      writer.writeSInt64(7, -5);
+      writer.writeUInt64(99, 1);
+      try (TagWriter next = writer.subWriter(1000, true)) {
+         next.writeDouble(6, 1.5);
+      }
+      writer.flush();
+      byte[] bytes = out.toByteArray();
+
+      List<String> generic = parse(outer, bytes);
+      assertNull(SpecializedParser.forType(outer, -1), "the parser is not created below the threshold");
+      List<String> specialized = parse(outer, bytes);
+      assertNotNull(SpecializedParser.forType(outer, -1));
+      assertEquals(generic, specialized);
+      assertEquals(List.of("1 name a", "2 values 1", "2 values -2", "2 values 3", "start 3", "1 f 42", "2 b true", "end 3",
+            "start 4", "1 key k", "start 2", "2 b false", "end 2", "end 4", "5 data [1, 2]", "7 s -5", "99 null 1",
+            "start 1000", "6 d 1.5", "end 1000"), specialized);
+
+      ctx.unregisterProtoFile("test.proto");
+      assertNull(SpecializedParser.forType(outer, -1), "the parser is discarded with the file");
+   }
+
+   @Test
+   public void testSpecializedParserWithMalformedInput() throws Exception {
+      String file = """
+            syntax = "proto3";
+            package test;
+            message M {
+               string name = 1;
+               repeated int32 values = 2;
+               M next = 3;
+               sint64 s = 4;
+            }""";
+      SerializationContext genericCtx = ProtobufUtil.newSerializationContext(Configuration.builder().parserSpecializationThreshold(-1).build());
+      genericCtx.registerProtoFiles(FileDescriptorSource.fromString("test.proto", file));
+      SerializationContext specializedCtx = ProtobufUtil.newSerializationContext(Configuration.builder().parserSpecializationThreshold(0).build());
+      specializedCtx.registerProtoFiles(FileDescriptorSource.fromString("test.proto", file));
+
+      List<byte[]> inputs = new ArrayList<>();
+      // a varint for a string
+      inputs.add(encode(w -> w.writeUInt64(1, 5)));
+      // a length delimited value for a scalar that is not repeated
+      inputs.add(encode(w -> w.writeString(4, "x")));
+      // fixed width values for varint fields
+      inputs.add(encode(w -> {
+         w.writeFixed32(2, 7);
+         w.writeFixed64(4, 9);
+      }));
+      // a group for a string and for a message
+      inputs.add(encode(w -> {
+         w.writeTag(1, WireType.WIRETYPE_START_GROUP);
+         w.writeTag(1, WireType.WIRETYPE_END_GROUP);
+         w.writeTag(3, WireType.WIRETYPE_START_GROUP);
+         w.writeString(1, "n");
+         w.writeTag(3, WireType.WIRETYPE_END_GROUP);
+      }));
+      // a varint for a message
+      inputs.add(encode(w -> w.writeUInt64(3, 1)));
+      // invalid wire types
+      inputs.add(encode(w -> w.writeTag(1, WireType.WIRETYPE_END_GROUP)));
+      inputs.add(encode(w -> w.writeVarint32(WireType.makeTag(2, 6))));
+
+      for (byte[] bytes : inputs) {
+         List<String> generic = parseOrFail(genericCtx.getMessageDescriptor("test.M"), bytes);
+         List<String> specialized = parseOrFail(specializedCtx.getMessageDescriptor("test.M"), bytes);
+         assertEquals(generic, specialized, "the input " + Arrays.toString(bytes) + " is parsed differently");
+      }
+      assertNull(SpecializedParser.forType(genericCtx.getMessageDescriptor("test.M"), -1));
+      assertNotNull(SpecializedParser.forType(specializedCtx.getMessageDescriptor("test.M"), -1));
+      assertEquals(List.of("error Unexpected field type string for field 1"), parseOrFail(specializedCtx.getMessageDescriptor("test.M"), inputs.get(0)));
+   }
+
+   @FunctionalInterface
+   private interface TagWriterAction {
+      void write(TagWriter writer) throws IOException;
+   }
+
+   private static byte[] encode(TagWriterAction action) throws IOException {
+      RandomAccessOutputStream out = new RandomAccessOutputStreamImpl();
+      TagWriter writer = TagWriterImpl.newInstance(null, out);
+      action.write(writer);
+      writer.flush();
+      return out.toByteArray();
+   }
+
+   private static List<String> parseOrFail(Descriptor descriptor, byte[] bytes) {
+      try {
+         return parse(descriptor, bytes);
+      } catch (IOException e) {
+         return List.of("error " + e.getMessage());
+      }
+   }
+
+   private static List<String> parse(Descriptor descriptor, byte[] bytes) throws IOException {
+      List<String> events = new ArrayList<>();
+      ProtobufParser.INSTANCE.parse(new TagHandler() {
+         @Override
+         public void onTag(int fieldNumber, FieldDescriptor fieldDescriptor, Object tagValue) {
+            Object value = tagValue instanceof byte[] b ? Arrays.toString(b) : tagValue;
+            events.add(fieldNumber + " " + (fieldDescriptor != null ? fieldDescriptor.getName() : null) + " " + value);
+         }
+
+         @Override
+         public void onStartNested(int fieldNumber, FieldDescriptor fieldDescriptor) {
+            events.add("start " + fieldNumber);
+         }
+
+         @Override
+         public void onEndNested(int fieldNumber, FieldDescriptor fieldDescriptor) {
+            events.add("end " + fieldNumber);
+         }
+      }, descriptor, bytes);
+      return events;
+   }
 }
@@ -7,7 +7,9 @@ import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -17,6 +19,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
@@ -73,6 +79,82 @@ public class ProtobufUtilTest extends AbstractProtoStreamTest {
       assertEquals(expectedMessageSize, messageSize);
    }
 
+   @Test
+   public void testExactSizeSerialization() throws Exception {
+      ImmutableSerializationContext ctx = createContext();
+
+      User user = new User();
+      user.setId(1);
+      user.setName("Jöhn 東");
+      user.setSurname("Batman");
+      user.setGender(User.Gender.MALE);
+      user.setAccountIds(new HashSet<>(Arrays.asList(1, 3)));
+      // a nested message longer than 127 bytes, whose length needs more than one byte
+      user.setAddresses(Arrays.asList(new Address("Old Street".repeat(20), "XYZ42", -12), new Address("Bond Street", "W23", 2)));
+
+      byte[] bytes = ProtobufUtil.toExactByteArray(ctx, user);
+      assertArrayEquals(ProtobufUtil.toByteArray(ctx, user), bytes);
+      assertEquals(user, ProtobufUtil.fromByteArray(ctx, bytes, User.class));
+
+      assertArrayEquals(ProtobufUtil.toWrappedByteArray(ctx, user), ProtobufUtil.toExactWrappedByteArray(ctx, user));
+      assertArrayEquals(ProtobufUtil.toWrappedByteArray(ctx, "text"), ProtobufUtil.toExactWrappedByteArray(ctx, "text"));
+   }
+
+   @Test
+   public void testSessionReuse() throws Exception {
+      ImmutableSerializationContext ctx = createContext();
+      ProtobufSession session = ProtobufSession.current(ctx);
+      assertSame(session, ProtobufSession.current(ctx));
+
+      for (int i = 0; i < 3; i++) {
+         User user = new User();
+         user.setId(i);
+         user.setName("John" + i);
+         user.setSurname("Batman");
+         user.setGender(User.Gender.MALE);
+         user.setAccountIds(new HashSet<>(List.of(i)));
+         user.setAddresses(List.of(new Address("Street " + i, "XYZ42", i)));
+
+         byte[] bytes = session.toByteArray(user);
+         assertArrayEquals(ProtobufUtil.toByteArray(ctx, user), bytes);
+         assertEquals(user, session.fromByteArray(bytes, User.class));
+
+         byte[] wrapped = session.toWrappedByteArray(user);
+         assertArrayEquals(ProtobufUtil.toWrappedByteArray(ctx, user), wrapped);
+         assertEquals(user, session.fromWrappedByteArray(wrapped));
+         assertEquals(i, (Integer) session.fromWrappedByteArray(session.toWrappedByteArray(i)));
+      }
+
+      // a failed call does not break the session
+      assertThrows(IOException.class, () -> session.fromByteArray(new byte[]{(byte) 0xFF}, User.class));
+      User user = new User();
+      user.setId(7);
+      user.setName("Jane");
+      user.setSurname("Doe");
+      user.setAccountIds(new HashSet<>(List.of(7)));
+      user.setAddresses(List.of());
+      assertEquals(user, session.fromByteArray(session.toByteArray(user), User.class));
+   }
+
+   @Test
+   public void testSessionPerContext() throws Exception {
+      ImmutableSerializationContext ctx1 = createContext();
+      ImmutableSerializationContext ctx2 = createContext();
+      ProtobufSession session1 = ProtobufSession.current(ctx1);
+      ProtobufSession session2 = ProtobufSession.current(ctx2);
+      assertNotSame(session1, session2);
+      assertSame(session1, ProtobufSession.current(ctx1), "Switching contexts should not replace the session");
+      assertSame(session2, ProtobufSession.current(ctx2));
+      assertEquals("text", session1.fromWrappedByteArray(session2.toWrappedByteArray("text")));
+
+      ProtobufSession[] other = new ProtobufSession[1];
+      Thread thread = new Thread(() -> other[0] = ProtobufSession.current(ctx1));
+      thread.start();
+      thread.join();
+      assertNotNull(other[0]);
+      assertNotSame(session1, other[0], "Each thread should have its own session");
+   }
+
    @Test
    public void testFromByteArrayWithExtraPadding() throws Exception {
       ImmutableSerializationContext ctx = createContext();
@@ -368,6 +450,97 @@ public class ProtobufUtilTest extends AbstractProtoStreamTest {
       assertEquals("{\"_type\":\"string\",\"_value\":\"This is a line.\\nThis is another line.\\tA tab later in the same line\"}", json);
    }
 
+   @Test
+   public void testStreamingCanonicalJSON() throws Exception {
+      ImmutableSerializationContext ctx = createContext();
+
+      User user = new User();
+      user.setId(1);
+      user.setName("John");
+      user.setSurname("Batman");
+      user.setGender(User.Gender.MALE);
+      user.setAccountIds(new HashSet<>(Arrays.asList(1, 3)));
+      user.setAddresses(Arrays.asList(new Address("Old Street", "XYZ42", -12, false), new Address("Bond Street", "W23", 2, true)));
+
+      for (Object o : Arrays.asList(user, createAccount(), "你好世界! 👋", 3.14, null)) {
+         byte[] marshalled = ProtobufUtil.toWrappedByteArray(ctx, o);
+         for (boolean pretty : new boolean[]{false, true}) {
+            String json = ProtobufUtil.toCanonicalJSON(ctx, marshalled, pretty);
+
+            StringWriter writer = new StringWriter();
+            ProtobufUtil.toCanonicalJSON(ctx, marshalled, writer, pretty);
+            assertEquals(json, writer.toString());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ProtobufUtil.toCanonicalJSONStream(ctx, marshalled, out, pretty);
+            assertEquals(json, out.toString(StandardCharsets.UTF_8));
+         }
+      }
+   }
+
+   @Test
+   public void testStreamingCanonicalJSONFailure() throws Exception {
+      ImmutableSerializationContext ctx = createContext();
+      byte[] marshalled = ProtobufUtil.toWrappedByteArray(ctx, createAccount());
+
+      Writer failing = new Writer() {
+         @Override
+         public void write(char[] cbuf, int off, int len) throws IOException {
+            throw new IOException("Broken pipe");
+         }
+
+         @Override
+         public void flush() {
+         }
+
+         @Override
+         public void close() {
+         }
+      };
+      IOException e = assertThrows(IOException.class, () -> ProtobufUtil.toCanonicalJSON(ctx, marshalled, failing, false));
+      assertEquals("Broken pipe", e.getMessage());
+   }
+
+   @Test
+   public void testCanonicalJSONToOutputStream() throws Exception {
+      ImmutableSerializationContext ctx = createContext();
+
+      User user = new User();
+      user.setId(1);
+      user.setName("John");
+      user.setSurname("Batman");
+      user.setGender(User.Gender.MALE);
+      user.setAccountIds(new HashSet<>(Arrays.asList(1, 3)));
+      user.setAddresses(Arrays.asList(new Address("Old Street", "XYZ42", -12, false), new Address("Bond Street", "W23", 2, true)));
+
+      RandomAccessOutputStream out = RandomAccessOutputStream.withCapacity(16);
+      for (Object o : Arrays.asList(user, createAccount(), "你好世界! 👋", 3.14)) {
+         byte[] marshalled = ProtobufUtil.toWrappedByteArray(ctx, o);
+         String json = ProtobufUtil.toCanonicalJSON(ctx, marshalled, false);
+         byte[] expected = ProtobufUtil.fromCanonicalJSON(ctx, new StringReader(json));
+         byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+
+         out.reset();
+         ProtobufUtil.fromCanonicalJSON(ctx, new ByteArrayInputStream(utf8), out);
+         assertArrayEquals(expected, out.toByteArray());
+
+         // The output is appended after the current position.
+         out.reset();
+         out.write(new byte[]{1, 2, 3});
+         ProtobufUtil.fromCanonicalJSON(ctx, ByteBuffer.wrap(utf8), out);
+         assertArrayEquals(expected, Arrays.copyOfRange(out.toByteArray(), 3, out.getPosition()));
+
+         ByteBuffer direct = ByteBuffer.allocateDirect(utf8.length);
+         direct.put(utf8).flip();
+         out.reset();
+         ProtobufUtil.fromCanonicalJSON(ctx, direct, out);
+         assertArrayEquals(expected, out.toByteArray());
+         assertEquals(0, direct.position());
+
+         assertEquals(o, ProtobufUtil.fromWrappedByteArray(ctx, expected));
+      }
+   }
+
    @Test
    public void testLatin1EncodedString() throws Exception {
       ImmutableSerializationContext ctx = createContext();
@@ -849,6 +1022,57 @@ public class ProtobufUtilTest extends AbstractProtoStreamTest {
       assertEquals(json.replaceAll("[\\s\\n]+", ""), converted);
    }
 
+   @Test
+   public void testScalarTypesJsonRoundTrip() throws Exception {
+      SerializationContext ctx = ProtobufUtil.newSerializationContext();
+      final String protoDefinition = """
+         syntax = "proto2";
+         message Scalars {
+             optional uint32 u32=1;
+             optional fixed64 f64=2;
+             optional sint32 s32=3;
+             optional float f=4;
+             optional double d=5;
+             optional bool b=6;
+             optional bytes data=7;
+             repeated uint64 u64s=8;
+             repeated double ds=9;
+             repeated bool bs=10;
+             repeated bytes datas=11;
+             optional Inner inner=12;
+         }
+         message Inner {
+             optional int64 i64=1;
+             optional float f=2;
+         }""";
+      ctx.registerProtoFiles(FileDescriptorSource.fromString("scalars.proto", protoDefinition));
+
+      final String json = """
+         {
+            "_type": "Scalars",
+            "u32": 4294967295,
+            "f64": 18446744073709551615,
+            "s32": -5,
+            "f": 1.5,
+            "d": "Infinity",
+            "b": true,
+            "data": "AQID",
+            "u64s": [18446744073709551615,1],
+            "ds": [0.25,-2.0],
+            "bs": [false,true],
+            "datas": ["AQID","BAU="],
+            "inner": {
+               "_type": "Inner",
+               "i64": -9223372036854775808,
+               "f": -0.5
+            }
+         }""";
+      byte[] protobuf = ProtobufUtil.fromCanonicalJSON(ctx, new StringReader(json));
+      String converted = ProtobufUtil.toCanonicalJSON(ctx, protobuf);
+      assertValid(converted);
+      assertEquals(json.replaceAll("[\\s\\n]+", ""), converted);
+   }
+
    @Test
    public void testSchemaWithRepeatedFieldsSameNames() throws Exception {
       SerializationContext ctx = ProtobufUtil.newSerializationContext();
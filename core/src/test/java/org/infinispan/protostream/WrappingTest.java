@@ -202,6 +202,60 @@ public class WrappingTest extends AbstractProtoStreamTest {
       roundtrip(null);
    }
 
+   @Test
+   public void testTypeDiscriminatorFollowsSchemaChanges() throws Exception {
+      SerializationContext ctx = createContext();
+      String schema = """
+            syntax = "proto3";
+            package test;
+            %s
+            message Point {
+               int32 x = 1;
+            }""";
+      ctx.registerProtoFiles(FileDescriptorSource.fromString("point.proto", schema.formatted("")));
+      ctx.registerMarshaller(new ProtobufTagMarshaller<Point>() {
+         @Override
+         public Class<Point> getJavaClass() {
+            return Point.class;
+         }
+
+         @Override
+         public String getTypeName() {
+            return "test.Point";
+         }
+
+         @Override
+         public Point read(ReadContext ctx) throws IOException {
+            ctx.getReader().readTag();
+            return new Point(ctx.getReader().readInt32());
+         }
+
+         @Override
+         public void write(WriteContext ctx, Point point) throws IOException {
+            ctx.getWriter().writeInt32(1, point.x());
+         }
+      });
+
+      // the header is cached after the first message
+      for (int i = 0; i < 2; i++) {
+         byte[] bytes = ProtobufUtil.toWrappedByteArray(ctx, new Point(i + 1));
+         MessageView wrapper = MessageView.of(ctx.getMessageDescriptor(WrappedMessage.PROTOBUF_TYPE_NAME), bytes);
+         assertEquals("test.Point", wrapper.getField(WrappedMessage.WRAPPED_TYPE_NAME));
+         assertNull(wrapper.getField(WrappedMessage.WRAPPED_TYPE_ID));
+         assertEquals(new Point(i + 1), ProtobufUtil.fromWrappedByteArray(ctx, bytes));
+      }
+
+      ctx.unregisterProtoFile("point.proto");
+      ctx.registerProtoFiles(FileDescriptorSource.fromString("point.proto", schema.formatted("/** @TypeId(4242) */")));
+      byte[] bytes = ProtobufUtil.toWrappedByteArray(ctx, new Point(3));
+      MessageView wrapper = MessageView.of(ctx.getMessageDescriptor(WrappedMessage.PROTOBUF_TYPE_NAME), bytes);
+      assertEquals(4242, wrapper.getField(WrappedMessage.WRAPPED_TYPE_ID));
+      assertNull(wrapper.getField(WrappedMessage.WRAPPED_TYPE_NAME));
+   }
+
+   private record Point(int x) {
+   }
+
    private Object roundtrip(Object in, BaseMarshaller... marshallers) throws Exception {
       SerializationContext ctx = createContext();
       for (BaseMarshaller m : marshallers) {
@@ -0,0 +1,117 @@
+package org.infinispan.protostream.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.infinispan.protostream.ImmutableSerializationContext;
+import org.infinispan.protostream.ProtobufUtil;
+import org.infinispan.protostream.TagWriter;
+import org.infinispan.protostream.UnknownFieldSet;
+import org.infinispan.protostream.descriptors.WireType;
+import org.infinispan.protostream.domain.Address;
+import org.infinispan.protostream.domain.User;
+import org.infinispan.protostream.test.AbstractProtoStreamTest;
+import org.junit.jupiter.api.Test;
+
+public class RawUnknownFieldSetTest extends AbstractProtoStreamTest {
+
+   private byte[] createMarshalledObject() throws IOException {
+      ImmutableSerializationContext ctx = createContext();
+      User user = new User();
+      user.setId(1);
+      user.setName("John");
+      user.setSurname("Batman");
+      user.setGender(User.Gender.MALE);
+      user.setAccountIds(new HashSet<>(Arrays.asList(1, 3)));
+      user.setAddresses(Collections.singletonList(new Address("Old Street", "XYZ42", -12)));
+      return ProtobufUtil.toByteArray(ctx, user);
+   }
+
+   private byte[] marshall(UnknownFieldSet unknownFieldSet) throws IOException {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      TagWriter tagWriter = TagWriterImpl.newInstance(null, baos);
+      unknownFieldSet.writeTo(tagWriter);
+      tagWriter.flush();
+      return baos.toByteArray();
+   }
+
+   private RawUnknownFieldSet unmarshall(byte[] bytes) throws IOException {
+      RawUnknownFieldSet unknownFieldSet = new RawUnknownFieldSet();
+      unknownFieldSet.readAllFields(TagReaderImpl.newInstance(null, new ByteArrayInputStream(bytes)));
+      return unknownFieldSet;
+   }
+
+   @Test
+   public void testProtobufRoundtrip() throws Exception {
+      byte[] bytes = createMarshalledObject();
+      assertArrayEquals(bytes, marshall(unmarshall(bytes)));
+   }
+
+   @Test
+   public void testSerializationRoundtrip() throws Exception {
+      byte[] bytes = createMarshalledObject();
+
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(baos);
+      oos.writeObject(unmarshall(bytes));
+      oos.flush();
+
+      ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+      assertArrayEquals(bytes, marshall((RawUnknownFieldSet) ois.readObject()));
+   }
+
+   @Test
+   public void testConsumeTag() throws Exception {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      TagWriter writer = TagWriterImpl.newInstance(null, baos);
+      writer.writeInt64(1, -3);
+      writer.writeFixed32(2, 7);
+      writer.writeBytes(3, new byte[]{1, 2, 3});
+      writer.writeTag(4, WireType.WIRETYPE_START_GROUP);
+      writer.writeFixed64(1, 9);
+      writer.writeTag(4, WireType.WIRETYPE_END_GROUP);
+      writer.writeInt64(1, 5);
+      writer.flush();
+      byte[] bytes = baos.toByteArray();
+
+      RawUnknownFieldSet unknownFieldSet = unmarshall(bytes);
+      int varintTag = WireType.makeTag(1, WireType.WIRETYPE_VARINT);
+      assertTrue(unknownFieldSet.hasTag(varintTag));
+      assertFalse(unknownFieldSet.hasTag(WireType.makeTag(1, WireType.WIRETYPE_FIXED64)));
+
+      // repeated values are consumed in order
+      assertEquals(-3L, (Long) unknownFieldSet.consumeTag(varintTag));
+      assertEquals(7, (Integer) unknownFieldSet.consumeTag(WireType.makeTag(2, WireType.WIRETYPE_FIXED32)));
+      UnknownFieldSet group = unknownFieldSet.consumeTag(WireType.makeTag(4, WireType.WIRETYPE_START_GROUP));
+      assertEquals(9L, (Long) group.consumeTag(WireType.makeTag(1, WireType.WIRETYPE_FIXED64)));
+      assertTrue(group.isEmpty());
+
+      // the remaining fields are still written as read
+      baos = new ByteArrayOutputStream();
+      writer = TagWriterImpl.newInstance(null, baos);
+      writer.writeBytes(3, new byte[]{1, 2, 3});
+      writer.writeInt64(1, 5);
+      writer.flush();
+      assertArrayEquals(baos.toByteArray(), marshall(unknownFieldSet));
+
+      assertArrayEquals(new byte[]{1, 2, 3}, unknownFieldSet.consumeTag(WireType.makeTag(3, WireType.WIRETYPE_LENGTH_DELIMITED)));
+      assertEquals(5L, (Long) unknownFieldSet.consumeTag(varintTag));
+      assertNull(unknownFieldSet.consumeTag(varintTag));
+      assertTrue(unknownFieldSet.isEmpty());
+
+      unknownFieldSet.putVarintField(varintTag, -1);
+      assertEquals(-1L, (Long) unknownFieldSet.consumeTag(varintTag));
+   }
+}
@@ -23,6 +23,7 @@ import org.infinispan.protostream.MessageMarshaller;
 import org.infinispan.protostream.ProtobufTagMarshaller;
 import org.infinispan.protostream.ProtobufUtil;
 import org.infinispan.protostream.SerializationContext;
+import org.infinispan.protostream.SerializationContextInitializer;
 import org.infinispan.protostream.TagReader;
 import org.infinispan.protostream.descriptors.FileDescriptor;
 import org.infinispan.protostream.descriptors.WireType;
@@ -604,4 +605,92 @@ public class SerializationContextImplTest {
       });
       assertTrue(ex.getMessage().contains("Enum value test1.E1.M1 clashes with message definition test1.M1"));
    }
+
+   @Test
+   public void testRegisterInitializersInBulk() {
+      SerializationContext ctx = createContext();
+      // the dependant file comes first, as the schemas are resolved together
+      TestInitializer b = new TestInitializer("b.proto", """
+            syntax = "proto3";
+            package test;
+            import "a.proto";
+            message B {
+               A a = 1;
+            }""", "test.B", B.class);
+      TestInitializer a = new TestInitializer("a.proto", """
+            syntax = "proto3";
+            package test;
+            message A {
+               int32 f = 1;
+            }""", "test.A", A.class);
+
+      ctx.register(List.of(b, a));
+
+      assertEquals(List.of(false, false), b.registeredBefore);
+      assertTrue(ctx.canMarshall(A.class));
+      assertTrue(ctx.canMarshall("test.B"));
+      assertEquals("test.A", ctx.getMessageDescriptor("test.B").findFieldByNumber(1).getMessageType().getFullName());
+
+      var ex = assertThrows(DescriptorParserException.class, () -> ctx.register(List.of(new TestInitializer("c.proto", """
+            syntax = "proto3";
+            package test;
+            message C {
+               D d = 1;
+            }""", "test.C", C.class))));
+      assertTrue(ex.getMessage().contains("D"), ex.getMessage());
+      assertFalse(ctx.canMarshall(C.class));
+   }
+
+   private static final class A {
+   }
+
+   private static final class B {
+   }
+
+   private static final class C {
+   }
+
+   private static final class TestInitializer implements SerializationContextInitializer {
+
+      private final String fileName;
+      private final String schema;
+      private final String typeName;
+      private final Class<?> javaClass;
+
+      // whether the schema and the marshaller were visible while registering the marshaller
+      final List<Boolean> registeredBefore = new ArrayList<>();
+
+      TestInitializer(String fileName, String schema, String typeName, Class<?> javaClass) {
+         this.fileName = fileName;
+         this.schema = schema;
+         this.typeName = typeName;
+         this.javaClass = javaClass;
+      }
+
+      @Override
+      public void registerSchema(SerializationContext serCtx) {
+         serCtx.registerProtoFiles(FileDescriptorSource.fromString(fileName, schema));
+      }
+
+      @Override
+      public void registerMarshallers(SerializationContext serCtx) {
+         registeredBefore.add(serCtx.getGenericDescriptors().containsKey(typeName));
+         serCtx.registerMarshaller(new TestMarshaller<>(typeName, javaClass));
+         registeredBefore.add(serCtx.canMarshall(typeName));
+      }
+   }
+
+   private record TestMarshaller<T>(String getTypeName, Class<T> getJavaClass) implements MessageMarshaller<T> {
+
+      @Override
+      public T readFrom(ProtoStreamReader reader) {
+         // never invoked
+         return null;
+      }
+
+      @Override
+      public void writeTo(ProtoStreamWriter writer, T t) {
+         // never invoked
+      }
+   }
 }
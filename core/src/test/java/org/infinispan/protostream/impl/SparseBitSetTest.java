@@ -24,5 +24,10 @@ public class SparseBitSetTest {
       set.set(30, 35);
       assertEquals(2, set.nextClearBit(1));
       assertEquals(35, set.nextClearBit(30));
+      assertEquals(0, set.nextClearBit(0));
+      set.set(64, 128);
+      assertEquals(128, set.nextClearBit(64));
+      set.set(536870911);
+      assertEquals(536870912, set.nextClearBit(536870911));
    }
 }
@@ -0,0 +1,305 @@
+package org.infinispan.protostream.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.infinispan.protostream.BytesView;
+import org.infinispan.protostream.MappedFile;
+import org.infinispan.protostream.ProtobufUtil;
+import org.infinispan.protostream.SerializationContext;
+import org.infinispan.protostream.descriptors.WireType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TagReaderImplTest {
+
+   private final SerializationContext ctx = ProtobufUtil.newSerializationContext();
+
+   @Test
+   public void testInputStreamAcrossBufferBoundaries() throws IOException {
+      String longString = "x".repeat(5000) + "é東";
+      byte[] bytes = writeFields(longString);
+
+      // a stream that hands out at most 3 bytes per read forces every value to straddle a refill
+      assertFields(TagReaderImpl.newInstance(ctx, new TrickleInputStream(bytes, 3)), longString);
+      assertFields(TagReaderImpl.newInstance(ctx, new ByteArrayInputStream(bytes)), longString);
+   }
+
+   @Test
+   public void testCloseGivesBackUnreadBytesToMarkableStream() throws IOException {
+      byte[] bytes = writeFields("abc");
+      InputStream in = new ByteArrayInputStream(bytes);
+      assertUnreadBytesGivenBack(in, bytes);
+   }
+
+   @Test
+   public void testCloseGivesBackUnreadBytesToPushbackStream() throws IOException {
+      byte[] bytes = writeFields("abc");
+      InputStream in = new PushbackInputStream(new TrickleInputStream(bytes, bytes.length), bytes.length);
+      assertUnreadBytesGivenBack(in, bytes);
+   }
+
+   @Test
+   public void testConcatenatedMessagesFromNonMarkableStream() throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ProtobufUtil.toWrappedStream(ctx, out, "first");
+      ProtobufUtil.toWrappedStream(ctx, out, 42L);
+      ProtobufUtil.toWrappedStream(ctx, out, "third");
+      byte[] bytes = out.toByteArray();
+
+      // reports everything as available, like a FileInputStream, but cannot be rewound
+      InputStream in = new TrickleInputStream(bytes, bytes.length);
+      assertEquals("first", ProtobufUtil.fromWrappedStream(ctx, in));
+      assertEquals(42L, (Long) ProtobufUtil.fromWrappedStream(ctx, in));
+      assertEquals("third", ProtobufUtil.fromWrappedStream(ctx, in));
+      assertEquals(-1, in.read());
+   }
+
+   @Test
+   public void testNestedMessageReadInChunksWhenNothingIsAvailable() throws IOException {
+      byte[] fields = writeFields("abc");
+      CountingInputStream in = new CountingInputStream(fields);
+      TagReaderImpl reader = TagReaderImpl.newInstance(ctx, in);
+      reader.pushLimit(fields.length);
+      assertFields(reader, "abc");
+      // the whole nested message is read at once, although the stream reports nothing as available
+      assertEquals(1, in.reads);
+   }
+
+   @Test
+   public void testBytesViews() throws IOException {
+      String s = "key-é東😀";
+      byte[] bytes = writeFields(s);
+      ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+      for (TagReaderImpl reader : List.of(TagReaderImpl.newInstance(ctx, bytes), TagReaderImpl.newInstance(ctx, ByteBuffer.wrap(bytes)),
+            TagReaderImpl.newInstance(ctx, direct), TagReaderImpl.newInstance(ctx, new TrickleInputStream(bytes, 3)))) {
+         BytesView view = new BytesView();
+         int tag;
+         while ((tag = reader.readTag()) != 0) {
+            switch (WireType.getTagFieldNumber(tag)) {
+               case 3 -> {
+                  assertSame(view, reader.readBytesView(view));
+                  assertTrue(view.contentEquals(s));
+                  assertFalse(view.contentEquals("key-é東"));
+                  assertFalse(view.contentEquals(s + "x"));
+                  assertEquals(s, view.toUtf8String());
+                  assertEquals(BytesView.ofUtf8(s), view);
+                  assertEquals(Arrays.hashCode(s.getBytes(StandardCharsets.UTF_8)), view.hashCode());
+                  // code point order, where non ASCII characters come after ASCII ones
+                  assertTrue(view.compareTo(BytesView.ofUtf8("key-z")) > 0);
+                  assertTrue(view.compareTo(BytesView.ofUtf8("key-\uFFFF")) < 0);
+                  assertTrue(view.compareTo(BytesView.ofUtf8("key-")) > 0);
+               }
+               case 6 -> {
+                  reader.readBytesView(view);
+                  assertTrue(view.contentEquals(new byte[]{1, 2, 3}));
+                  assertArrayEquals(new byte[]{1, 2, 3}, view.toByteArray());
+               }
+               default -> reader.skipField(tag);
+            }
+         }
+      }
+      // views over an array do not copy it
+      TagReaderImpl reader = TagReaderImpl.newInstance(ctx, bytes);
+      int tag;
+      while ((tag = reader.readTag()) != WireType.makeTag(3, WireType.WIRETYPE_LENGTH_DELIMITED)) {
+         reader.skipField(tag);
+      }
+      BytesView view = reader.readBytesView(new BytesView());
+      assertSame(bytes, view.array());
+      assertEquals(s, new String(bytes, view.offset(), view.length(), StandardCharsets.UTF_8));
+   }
+
+   @Test
+   public void testDirectBuffers() throws IOException {
+      for (ByteOrder order : List.of(ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN)) {
+         ByteBuffer buffer = ByteBuffer.allocateDirect(100).order(order);
+         TagWriterImpl writer = TagWriterImpl.newInstance(ctx, buffer);
+         writer.writeInt32(1, -7);
+         writer.writeFixed32(2, 0x01020304);
+         writer.writeString(3, "abc");
+         writer.writeFixed64(4, 0x0102030405060708L);
+         writer.writeUInt64(5, Long.MAX_VALUE);
+         writer.writeBytes(6, new byte[]{1, 2, 3});
+         writer.writeDouble(7, 3.5);
+         writer.flush();
+         buffer.flip();
+         byte[] bytes = new byte[buffer.remaining()];
+         buffer.get(buffer.position(), bytes);
+         assertArrayEquals(writeFields("abc"), bytes, "The encoding must not depend on the byte order of the buffer");
+         assertFields(TagReaderImpl.newInstance(ctx, buffer), "abc");
+      }
+   }
+
+   @Test
+   public void testMappedFileLargerThan2GB(@TempDir Path dir) throws IOException {
+      byte[] bytes = writeFields("mapped");
+      // past the 2GB int range, and across the end of a chunk
+      long[] offsets = {(1L << 31) + 7, (3L << 30) - 5};
+      Path file = dir.resolve("entries");
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+         for (long offset : offsets) {
+            channel.write(ByteBuffer.wrap(bytes), offset);
+         }
+      }
+      try (MappedFile mapped = MappedFile.open(file)) {
+         assertEquals(offsets[1] + bytes.length, mapped.size());
+         for (long offset : offsets) {
+            ByteBuffer slice = mapped.slice(offset, bytes.length);
+            assertTrue(slice.isDirect());
+            assertFields(TagReaderImpl.newInstance(ctx, slice), "mapped");
+         }
+      }
+   }
+
+   @Test
+   public void testMappedFileEmptySlices(@TempDir Path dir) throws IOException {
+      Path empty = Files.createFile(dir.resolve("empty"));
+      try (MappedFile mapped = MappedFile.open(empty)) {
+         assertEquals(0, mapped.size());
+         ByteBuffer slice = mapped.slice(0, 0);
+         assertEquals(0, slice.remaining());
+         assertTrue(slice.isDirect());
+         assertThrows(IndexOutOfBoundsException.class, () -> mapped.slice(0, 1));
+      }
+
+      // the end of a file whose size is a multiple of the 1GB chunk size is not in any chunk
+      long chunkSize = 1L << 30;
+      Path file = dir.resolve("chunk");
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+         channel.write(ByteBuffer.wrap(new byte[1]), chunkSize - 1);
+      }
+      try (MappedFile mapped = MappedFile.open(file)) {
+         assertEquals(0, mapped.slice(chunkSize, 0).remaining());
+         assertEquals(1, mapped.slice(chunkSize - 1, 1).remaining());
+      }
+   }
+
+   private void assertUnreadBytesGivenBack(InputStream in, byte[] bytes) throws IOException {
+      try (TagReaderImpl reader = TagReaderImpl.newInstance(ctx, in)) {
+         assertEquals(WireType.makeTag(1, WireType.WIRETYPE_VARINT), reader.readTag());
+         assertEquals(-7, reader.readInt32());
+      }
+      // tag (1 byte) + negative int32 as 10 byte varint
+      byte[] rest = in.readAllBytes();
+      assertEquals(bytes.length - 11, rest.length);
+      assertEquals(bytes[11], rest[0]);
+   }
+
+   private byte[] writeFields(String s) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      TagWriterImpl writer = TagWriterImpl.newInstance(ctx, out);
+      writer.writeInt32(1, -7);
+      writer.writeFixed32(2, 0x01020304);
+      writer.writeString(3, s);
+      writer.writeFixed64(4, 0x0102030405060708L);
+      writer.writeUInt64(5, Long.MAX_VALUE);
+      writer.writeBytes(6, new byte[]{1, 2, 3});
+      writer.writeDouble(7, 3.5);
+      writer.flush();
+      return out.toByteArray();
+   }
+
+   private void assertFields(TagReaderImpl reader, String s) throws IOException {
+      assertEquals(WireType.makeTag(1, WireType.WIRETYPE_VARINT), reader.readTag());
+      assertEquals(-7, reader.readInt32());
+      assertEquals(WireType.makeTag(2, WireType.WIRETYPE_FIXED32), reader.readTag());
+      assertEquals(0x01020304, reader.readFixed32());
+      assertEquals(WireType.makeTag(3, WireType.WIRETYPE_LENGTH_DELIMITED), reader.readTag());
+      assertEquals(s, reader.readString());
+      assertEquals(WireType.makeTag(4, WireType.WIRETYPE_FIXED64), reader.readTag());
+      assertEquals(0x0102030405060708L, reader.readFixed64());
+      assertEquals(WireType.makeTag(5, WireType.WIRETYPE_VARINT), reader.readTag());
+      assertEquals(Long.MAX_VALUE, reader.readUInt64());
+      int tag = reader.readTag();
+      assertEquals(WireType.makeTag(6, WireType.WIRETYPE_LENGTH_DELIMITED), tag);
+      assertTrue(reader.skipField(tag));
+      assertEquals(WireType.makeTag(7, WireType.WIRETYPE_FIXED64), reader.readTag());
+      assertEquals(3.5, reader.readDouble());
+      assertEquals(0, reader.readTag());
+      assertTrue(reader.isAtEnd());
+   }
+
+   /**
+    * A stream without mark support that returns at most {@code chunk} bytes per read, like a socket would.
+    */
+   private static final class TrickleInputStream extends FilterInputStream {
+
+      private final int chunk;
+
+      TrickleInputStream(byte[] bytes, int chunk) {
+         super(new ByteArrayInputStream(bytes));
+         this.chunk = chunk;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         return super.read(b, off, Math.min(len, chunk));
+      }
+
+      @Override
+      public int available() throws IOException {
+         return Math.min(super.available(), chunk);
+      }
+
+      @Override
+      public boolean markSupported() {
+         return false;
+      }
+   }
+
+   /**
+    * A stream without mark support that never reports anything as available, like many network streams, and counts
+    * the reads made against it.
+    */
+   private static final class CountingInputStream extends FilterInputStream {
+
+      int reads;
+
+      CountingInputStream(byte[] bytes) {
+         super(new ByteArrayInputStream(bytes));
+      }
+
+      @Override
+      public int read() throws IOException {
+         reads++;
+         return super.read();
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         reads++;
+         return super.read(b, off, len);
+      }
+
+      @Override
+      public int available() {
+         return 0;
+      }
+
+      @Override
+      public boolean markSupported() {
+         return false;
+      }
+   }
+}
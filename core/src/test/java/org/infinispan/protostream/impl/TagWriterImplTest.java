@@ -2,10 +2,23 @@ package org.infinispan.protostream.impl;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -195,6 +208,263 @@ public class TagWriterImplTest {
       assertArrayEquals(new byte[]{data.bytes[1], data.bytes[2]}, reader.readByteArray());
    }
 
+   @Test
+   public void testNestedMessagesWrittenInPlace() throws IOException {
+      SerializationContext ctx = ProtobufUtil.newSerializationContext();
+      RandomAccessOutputStream out = new RandomAccessOutputStreamImpl();
+      writeNested(TagWriterImpl.newInstance(ctx, out));
+      byte[] expected = out.toByteArray();
+
+      byte[] array = new byte[expected.length + 5];
+      writeNested(TagWriterImpl.newInstance(ctx, array, 5, expected.length));
+      assertArrayEquals(expected, Arrays.copyOfRange(array, 5, array.length), "byte[]");
+
+      ByteBuffer heap = ByteBuffer.allocate(expected.length + 5).position(5);
+      writeNested(TagWriterImpl.newInstance(ctx, heap));
+      assertEquals(heap.capacity(), heap.position(), "heap ByteBuffer position");
+      assertArrayEquals(expected, Arrays.copyOfRange(heap.array(), 5, heap.capacity()), "heap ByteBuffer");
+
+      ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+      writeNested(TagWriterImpl.newInstance(ctx, direct));
+      assertEquals(expected.length, direct.position(), "direct ByteBuffer position");
+      byte[] directBytes = new byte[expected.length];
+      direct.flip().get(directBytes);
+      assertArrayEquals(expected, directBytes, "direct ByteBuffer");
+   }
+
+   @Test
+   public void testChunkedOutputStream() throws IOException {
+      SerializationContext ctx = ProtobufUtil.newSerializationContext();
+      RandomAccessOutputStream out = new RandomAccessOutputStreamImpl();
+      writeChunked(TagWriterImpl.newInstance(ctx, out));
+      byte[] expected = out.toByteArray();
+      assertTrue(expected.length > 20000, "expected length " + expected.length);
+
+      // small chunks, so that values, backpatched lengths and moved nested messages cross chunk boundaries
+      for (int chunkSize : new int[]{5, 16, 1024}) {
+         RandomAccessOutputStream chunked = RandomAccessOutputStream.chunked(chunkSize);
+         writeChunked(TagWriterImpl.newInstance(ctx, chunked));
+         assertEquals(expected.length, chunked.getLongPosition(), "position, chunk size " + chunkSize);
+         assertArrayEquals(expected, chunked.toByteArray(), "toByteArray, chunk size " + chunkSize);
+         ByteArrayOutputStream copy = new ByteArrayOutputStream();
+         chunked.copyTo(new DataOutputStream(copy));
+         assertArrayEquals(expected, copy.toByteArray(), "copyTo, chunk size " + chunkSize);
+         assertEquals(expected[expected.length - 1], chunked.get(expected.length - 1), "get, chunk size " + chunkSize);
+      }
+
+      // only the chunked stream can go beyond the array limit
+      assertThrows(IllegalArgumentException.class, () -> out.setPosition(RandomAccessOutputStreamImpl.MAX_ARRAY_SIZE + 1L));
+      assertThrows(IllegalArgumentException.class, () -> out.setPosition(-1));
+      assertThrows(IllegalStateException.class, () -> out.ensureCapacity(RandomAccessOutputStreamImpl.MAX_ARRAY_SIZE + 1L));
+      assertEquals(expected.length, out.getPosition(), "A rejected position should not move the stream");
+
+      // a position past the written bytes allocates the chunks up to it
+      RandomAccessOutputStream chunked = RandomAccessOutputStream.chunked(16);
+      assertThrows(IllegalArgumentException.class, () -> chunked.setPosition(-1L));
+      chunked.setPosition(100);
+      assertEquals(100, chunked.getLongPosition());
+      assertArrayEquals(new byte[100], chunked.toByteArray());
+      assertEquals(100, chunked.getByteBuffer().remaining());
+      ByteArrayOutputStream copy = new ByteArrayOutputStream();
+      chunked.copyTo(new DataOutputStream(copy));
+      assertEquals(100, copy.size());
+      chunked.setPosition(10);
+      assertEquals(10, chunked.getByteBuffer().remaining());
+   }
+
+   @Test
+   public void testIntAddressedOutputStream() throws IOException {
+      SerializationContext ctx = ProtobufUtil.newSerializationContext();
+      RandomAccessOutputStream out = new RandomAccessOutputStreamImpl();
+      writeChunked(TagWriterImpl.newInstance(ctx, out));
+
+      // an implementation written against the int positions only goes through the long default methods
+      RandomAccessOutputStream legacy = new IntAddressedOutputStream();
+      writeChunked(TagWriterImpl.newInstance(ctx, legacy));
+      assertArrayEquals(out.toByteArray(), legacy.toByteArray());
+      assertEquals(out.getPosition(), legacy.getLongPosition());
+      assertThrows(IllegalArgumentException.class, () -> legacy.setPosition(Integer.MAX_VALUE + 1L));
+   }
+
+   @Test
+   public void testGatheringWrite() throws IOException {
+      SerializationContext ctx = ProtobufUtil.newSerializationContext();
+      RandomAccessOutputStream out = new RandomAccessOutputStreamImpl();
+      writeChunked(TagWriterImpl.newInstance(ctx, out));
+      byte[] expected = out.toByteArray();
+
+      RecordingChannel channel = new RecordingChannel();
+      writeChunked(TagWriterImpl.newInstance(ctx, channel));
+      assertEquals(1, channel.writes, "a single gathering write");
+      assertArrayEquals(expected, channel.out.toByteArray());
+      assertTrue(channel.arrays.stream().anyMatch(a -> a.length == 20000), "large bytes fields are not copied");
+   }
+
+   @Test
+   public void testGatheringWriteRejectsNonBlockingChannel() throws IOException {
+      SerializationContext ctx = ProtobufUtil.newSerializationContext();
+      Pipe pipe = Pipe.open();
+      try {
+         pipe.sink().configureBlocking(false);
+         assertThrows(IllegalBlockingModeException.class, () -> TagWriterImpl.newInstance(ctx, pipe.sink()));
+      } finally {
+         pipe.sink().close();
+         pipe.source().close();
+      }
+
+      // a channel accepting no bytes fails instead of being retried forever
+      RecordingChannel stalled = new RecordingChannel();
+      stalled.stalled = true;
+      TagWriter writer = TagWriterImpl.newInstance(ctx, stalled);
+      writer.writeInt32(1, 42);
+      assertThrows(IllegalBlockingModeException.class, writer::flush);
+      assertEquals(1, stalled.writes);
+   }
+
+   /**
+    * Implements only the int addressed methods of {@link RandomAccessOutputStream}, like implementations written
+    * before the long addressed ones were added.
+    */
+   @SuppressWarnings("deprecation")
+   private static final class IntAddressedOutputStream implements RandomAccessOutputStream {
+
+      private final RandomAccessOutputStreamImpl delegate = new RandomAccessOutputStreamImpl();
+
+      @Override
+      public int getPosition() {
+         return delegate.getPosition();
+      }
+
+      @Override
+      public void setPosition(int position) {
+         delegate.setPosition(position);
+      }
+
+      @Override
+      public void ensureCapacity(int capacity) {
+         delegate.ensureCapacity(capacity);
+      }
+
+      @Override
+      public ByteBuffer getByteBuffer() {
+         return delegate.getByteBuffer();
+      }
+
+      @Override
+      public byte[] toByteArray() {
+         return delegate.toByteArray();
+      }
+
+      @Override
+      public byte get(int position) {
+         return delegate.get(position);
+      }
+
+      @Override
+      public void write(int position, int b) {
+         delegate.write(position, b);
+      }
+
+      @Override
+      public void write(int position, byte[] b, int off, int len) {
+         delegate.write(position, b, off, len);
+      }
+
+      @Override
+      public void move(int startPos, int length, int newPos) {
+         delegate.move(startPos, length, newPos);
+      }
+
+      @Override
+      public void copyTo(DataOutput output) throws IOException {
+         delegate.copyTo(output);
+      }
+
+      @Override
+      public void close() {
+      }
+   }
+
+   /**
+    * Records the bytes written, and the arrays backing the buffers handed to it. A stalled channel accepts no bytes,
+    * as a non-blocking channel does when it is full.
+    */
+   private static final class RecordingChannel implements GatheringByteChannel {
+
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final List<byte[]> arrays = new ArrayList<>();
+      int writes;
+      boolean stalled;
+
+      @Override
+      public long write(ByteBuffer[] srcs, int offset, int length) {
+         writes++;
+         if (stalled) {
+            return 0;
+         }
+         long written = 0;
+         for (int i = offset; i < offset + length; i++) {
+            arrays.add(srcs[i].array());
+            written += write(srcs[i]);
+         }
+         return written;
+      }
+
+      @Override
+      public long write(ByteBuffer[] srcs) {
+         return write(srcs, 0, srcs.length);
+      }
+
+      @Override
+      public int write(ByteBuffer src) {
+         int length = src.remaining();
+         out.write(src.array(), src.arrayOffset() + src.position(), length);
+         src.position(src.limit());
+         return length;
+      }
+
+      @Override
+      public boolean isOpen() {
+         return true;
+      }
+
+      @Override
+      public void close() {
+      }
+   }
+
+   private void writeChunked(TagWriter writer) throws IOException {
+      writer.writeFixed32(6, 0x01020304);
+      writer.writeFixed64(7, 0x0102030405060708L);
+      // Latin-1 characters above 127 grow the length varint, which moves the bytes already written
+      writer.writeString(8, "\u00e9".repeat(100));
+      writer.writeString(9, randomUtf8Characters.substring(0, 100));
+      writeNested(writer);
+   }
+
+   /**
+    * Writes nested messages whose length varints need one, two and three bytes.
+    */
+   private void writeNested(TagWriter writer) throws IOException {
+      byte[] bytes = new byte[20000];
+      new Random(SEED).nextBytes(bytes);
+      writer.writeInt32(1, 42);
+      TagWriter small = writer.subWriter(2, true);
+      small.writeString(1, "small");
+      small.close();
+      TagWriter medium = writer.subWriter(3, true);
+      medium.writeBytes(1, bytes, 0, 200);
+      TagWriter inner = medium.subWriter(2, true);
+      inner.writeBytes(1, bytes, 0, 130);
+      inner.close();
+      medium.close();
+      TagWriter large = writer.subWriter(4, true);
+      large.writeBytes(1, bytes);
+      large.close();
+      writer.writeInt32(5, 43);
+      writer.close();
+   }
+
    private void checkFieldNumber(int expected, TagReader reader) throws IOException {
       assertEquals(expected, WireType.getTagFieldNumber(reader.readTag()));
    }
@@ -237,4 +507,30 @@ public class TagWriterImplTest {
 
       }
    }
+
+   @Test
+   public void testDefaultRawFixedWrites() throws Exception {
+      // a writer implementing only writeRawBytes, as external implementations written before 6.0 do
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      TagWriter legacy = (TagWriter) Proxy.newProxyInstance(TagWriter.class.getClassLoader(), new Class<?>[]{TagWriter.class},
+            (proxy, method, args) -> {
+               if (method.isDefault()) {
+                  return InvocationHandler.invokeDefault(proxy, method, args);
+               }
+               if (method.getName().equals("writeRawBytes")) {
+                  baos.write((byte[]) args[0], (int) args[1], (int) args[2]);
+                  return null;
+               }
+               throw new UnsupportedOperationException(method.getName());
+            });
+      legacy.writeRawFixed32(0x12345678);
+      legacy.writeRawFixed64(-2L);
+
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      TagWriter writer = TagWriterImpl.newInstance(null, expected);
+      writer.writeRawFixed32(0x12345678);
+      writer.writeRawFixed64(-2L);
+      writer.flush();
+      assertArrayEquals(expected.toByteArray(), baos.toByteArray());
+   }
 }
@@ -0,0 +1,99 @@
+package org.infinispan.protostream.impl.parser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+
+import org.infinispan.protostream.DescriptorParserException;
+import org.infinispan.protostream.FileDescriptorSource;
+import org.infinispan.protostream.config.Configuration;
+import org.infinispan.protostream.descriptors.Descriptor;
+import org.infinispan.protostream.descriptors.FileDescriptor;
+import org.junit.jupiter.api.Test;
+
+public class CompiledProtoFileTest {
+
+   private static final String FILE = """
+         syntax = "proto3";
+         package test;
+         import public "dep.proto";
+         option java_package = "org.test";
+
+         /**
+          * @TypeId(1000)
+          */
+         message M {
+            option deprecated = true;
+            reserved 5, 10 to 12, 536870911;
+            reserved "old";
+            /** the name */
+            string name = 1 [deprecated = true];
+            repeated int32 values = 2;
+            map<string, Inner> inners = 3;
+            D d = 4;
+            oneof choice {
+               int64 a = 6;
+               Inner b = 7;
+            }
+            message Inner {
+               optional E e = 1;
+            }
+            enum E {
+               option allow_alias = true;
+               reserved 8;
+               A = 0;
+               B = 1;
+               C = 1 [deprecated = true];
+            }
+         }""";
+
+   private static final String DEPENDENCY = """
+         syntax = "proto2";
+         package test;
+         message D {
+            required bytes data = 1;
+         }""";
+
+   @Test
+   public void testDecodedDescriptorsMatchTheText() {
+      byte[] compiled = CompiledProtoFile.compile("file.proto", FILE);
+      FileDescriptor decoded = CompiledProtoFile.decode("file.proto", compiled);
+      assertArrayEquals(compiled, CompiledProtoFile.encode(decoded), "Decoding lost information");
+
+      Map<String, FileDescriptor> fromText = DescriptorsTest.parseAndResolve(new FileDescriptorSource()
+            .addProtoFile("dep.proto", DEPENDENCY)
+            .addProtoFile("file.proto", FILE), Configuration.builder().build());
+      Map<String, FileDescriptor> fromCompiled = DescriptorsTest.parseAndResolve(new FileDescriptorSource()
+            .addProtoFile("dep.proto", DEPENDENCY, FileDescriptorSource.compile("dep.proto", DEPENDENCY))
+            .addProtoFile("file.proto", FILE, compiled), Configuration.builder().build());
+
+      Descriptor expected = fromText.get("file.proto").getMessageTypes().get(0);
+      Descriptor actual = fromCompiled.get("file.proto").getMessageTypes().get(0);
+      assertEquals(expected.getTypeId(), actual.getTypeId());
+      assertEquals(expected.getDocumentation(), actual.getDocumentation());
+      assertEquals(expected.getReservedNumbers().toString(), actual.getReservedNumbers().toString());
+      assertEquals(expected.getReservedNames(), actual.getReservedNames());
+      assertEquals("test.D", actual.findFieldByName("d").getMessageType().getFullName());
+      assertEquals(expected.findFieldByName("name").getDocumentation(), actual.findFieldByName("name").getDocumentation());
+      assertEquals(expected.getOneOfs().get(0).getFields().size(), actual.getOneOfs().get(0).getFields().size());
+      assertArrayEquals(CompiledProtoFile.encode(fromText.get("file.proto")), CompiledProtoFile.encode(fromCompiled.get("file.proto")));
+   }
+
+   @Test
+   public void testUnknownVersionFallsBackToText() {
+      byte[] compiled = CompiledProtoFile.compile("dep.proto", DEPENDENCY);
+      // the version is the first field of the compiled file
+      compiled[1] = (byte) (CompiledProtoFile.VERSION + 1);
+      Map<String, FileDescriptor> files = DescriptorsTest.parseAndResolve(new FileDescriptorSource()
+            .addProtoFile("dep.proto", DEPENDENCY, compiled), Configuration.builder().build());
+      assertEquals("test.D", files.get("dep.proto").getMessageTypes().get(0).getFullName());
+   }
+
+   @Test
+   public void testCompileErrors() {
+      var ex = assertThrows(DescriptorParserException.class, () -> FileDescriptorSource.compile("bad.proto", "message {"));
+      assertEquals(true, ex.getMessage().contains("bad.proto"), ex.getMessage());
+   }
+}
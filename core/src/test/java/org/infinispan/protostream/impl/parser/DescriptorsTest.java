@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -55,6 +56,36 @@ public class DescriptorsTest {
       assertTrue(ex.getMessage().contains("Syntax error in file1.proto at 3:32: unexpected label: {"));
    }
 
+   @Test
+   public void testFindFieldByNumber() {
+      String file = """
+            syntax = "proto3";
+            message Dense {
+               int32 a = 1;
+               int32 b = 3;
+               oneof c {
+                  string d = 4;
+               }
+            }
+            message Sparse {
+               int32 a = 2;
+               int32 b = 1000;
+               int32 c = 536870911;
+            }""";
+      FileDescriptorSource source = FileDescriptorSource.fromString("file.proto", file);
+      List<Descriptor> messages = parseAndResolve(source).get("file.proto").getMessageTypes();
+      for (Descriptor descriptor : messages) {
+         for (FieldDescriptor field : descriptor.getFields()) {
+            assertSame(field, descriptor.findFieldByNumber(field.getNumber()), field.getFullName());
+         }
+         assertNull(descriptor.findFieldByNumber(0));
+         assertNull(descriptor.findFieldByNumber(-1));
+         assertNull(descriptor.findFieldByNumber(5));
+         assertNull(descriptor.findFieldByNumber(Integer.MAX_VALUE));
+      }
+      assertEquals("d", messages.get(0).findFieldByNumber(4).getName());
+   }
+
    @Test
    public void testInputFromDiskFile() throws Exception {
       String f1 = "org/infinispan/protostream/lib/base.proto";
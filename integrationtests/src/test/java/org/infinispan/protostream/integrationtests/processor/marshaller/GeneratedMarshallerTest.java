@@ -3,6 +3,7 @@ package org.infinispan.protostream.integrationtests.processor.marshaller;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -14,17 +15,26 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Stream;
 
 import org.infinispan.protostream.GeneratedSchema;
 import org.infinispan.protostream.ProtobufUtil;
+import org.infinispan.protostream.RandomAccessOutputStream;
 import org.infinispan.protostream.SerializationContext;
+import org.infinispan.protostream.TagReader;
+import org.infinispan.protostream.TagWriter;
 import org.infinispan.protostream.annotations.ProtoSchema;
 import org.infinispan.protostream.annotations.ProtoSyntax;
+import org.infinispan.protostream.config.Configuration;
+import org.infinispan.protostream.descriptors.WireType;
 import org.infinispan.protostream.exception.ProtoStreamException;
 import org.infinispan.protostream.impl.JsonUtils;
+import org.infinispan.protostream.impl.RandomAccessOutputStreamImpl;
+import org.infinispan.protostream.impl.TagReaderImpl;
+import org.infinispan.protostream.impl.TagWriterImpl;
 import org.infinispan.protostream.integrationtests.processor.marshaller.model.FootballSchema;
 import org.infinispan.protostream.integrationtests.processor.marshaller.model.FootballSchemaImpl;
 import org.infinispan.protostream.integrationtests.processor.marshaller.model.FootballTeam;
@@ -39,6 +49,7 @@ import org.infinispan.protostream.integrationtests.processor.marshaller.model.Mo
 import org.infinispan.protostream.integrationtests.processor.marshaller.model.AdaptedFieldModel;
 import org.infinispan.protostream.integrationtests.processor.marshaller.model.AdaptedFieldSchema;
 import org.infinispan.protostream.integrationtests.processor.marshaller.model.NullTestModel;
+import org.infinispan.protostream.integrationtests.processor.marshaller.model.PackedModel;
 import org.infinispan.protostream.integrationtests.processor.marshaller.model.Player;
 import org.infinispan.protostream.integrationtests.processor.marshaller.model.SimpleEnum;
 import org.infinispan.protostream.integrationtests.processor.marshaller.model.SimpleRecord;
@@ -402,4 +413,122 @@ public class GeneratedMarshallerTest {
       ObjectMapper mapper = new ObjectMapper();
       assertEquals(mapper.readTree(j1), mapper.readTree(j2));
    }
+
+   @Test
+   public void testPackedRepeatedFields() throws IOException {
+      var ctx = newPackingContext();
+
+      var model = new PackedModel();
+      model.ints = new int[]{1, -1, 300};
+      model.longs = List.of(Long.MAX_VALUE, 0L);
+      model.sints = new int[]{-2, 2};
+      model.doubles = new double[]{1.5, -0.25};
+      model.booleans = new boolean[]{true, false};
+      model.enums = List.of(SimpleEnum.SECOND, SimpleEnum.FIRST);
+      model.strings = List.of("a", "b");
+
+      byte[] bytes = ProtobufUtil.toByteArray(ctx, model);
+      // proto3 scalars are packed: a single length-delimited record per field
+      assertEquals(1, countTags(bytes, 1), "int32 field should be packed");
+      assertEquals(1, countTags(bytes, 4), "double field should be packed");
+      assertEquals(2, countTags(bytes, 7), "string field cannot be packed");
+
+      PackedModel copy = ProtobufUtil.fromByteArray(ctx, bytes, PackedModel.class);
+      assertArrayEquals(model.ints, copy.ints);
+      assertEquals(model.longs, copy.longs);
+      assertArrayEquals(model.sints, copy.sints);
+      assertArrayEquals(model.doubles, copy.doubles);
+      assertArrayEquals(model.booleans, copy.booleans);
+      assertEquals(model.enums, copy.enums);
+      assertEquals(model.strings, copy.strings);
+
+      byte[] wrapped = ProtobufUtil.toWrappedByteArray(ctx, model);
+      String json = JsonUtils.toCanonicalJSON(ctx, wrapped, false);
+      assertArrayEquals(wrapped, JsonUtils.fromCanonicalJSON(ctx, new StringReader(json)));
+
+      // without the option, readers older than 6.0.11 must still be able to read the payload
+      var defaultCtx = ProtobufUtil.newSerializationContext();
+      PackedModel.PackedSchema.INSTANCE.register(defaultCtx);
+      byte[] unpacked = ProtobufUtil.toByteArray(defaultCtx, model);
+      assertEquals(3, countTags(unpacked, 1), "int32 field should not be packed by default");
+      assertEquals(2, countTags(unpacked, 4), "double field should not be packed by default");
+      copy = ProtobufUtil.fromByteArray(ctx, unpacked, PackedModel.class);
+      assertArrayEquals(model.ints, copy.ints);
+      assertArrayEquals(model.doubles, copy.doubles);
+      copy = ProtobufUtil.fromByteArray(defaultCtx, bytes, PackedModel.class);
+      assertArrayEquals(model.ints, copy.ints);
+      assertEquals(model.enums, copy.enums);
+
+      byte[] defaultWrapped = ProtobufUtil.toWrappedByteArray(defaultCtx, model);
+      json = JsonUtils.toCanonicalJSON(defaultCtx, defaultWrapped, false);
+      assertArrayEquals(defaultWrapped, JsonUtils.fromCanonicalJSON(defaultCtx, new StringReader(json)));
+   }
+
+   @Test
+   public void testEmptyPackedIterable() throws IOException {
+      var ctx = newPackingContext();
+
+      var model = new PackedModel();
+      model.iterable = List.of();
+      byte[] bytes = ProtobufUtil.toByteArray(ctx, model);
+      // an empty packed field is not written, not even as a zero length record
+      assertEquals(0, countTags(bytes, 8));
+      PackedModel copy = ProtobufUtil.fromByteArray(ctx, bytes, PackedModel.class);
+      assertFalse(copy.iterable != null && copy.iterable.iterator().hasNext());
+
+      model.iterable = List.of(3, -7);
+      bytes = ProtobufUtil.toByteArray(ctx, model);
+      assertEquals(1, countTags(bytes, 8));
+      copy = ProtobufUtil.fromByteArray(ctx, bytes, PackedModel.class);
+      assertEquals(model.iterable, copy.iterable);
+   }
+
+   @Test
+   public void testLargePrimitiveArrays() throws IOException {
+      var ctx = ProtobufUtil.newSerializationContext();
+      PackedModel.PackedSchema.INSTANCE.register(ctx);
+
+      var model = new PackedModel();
+      model.ints = new int[1000];
+      model.doubles = new double[1000];
+      for (int i = 0; i < 1000; i++) {
+         model.ints[i] = i * 31;
+         model.doubles[i] = i / 3.0;
+      }
+      PackedModel copy = ProtobufUtil.fromByteArray(ctx, ProtobufUtil.toByteArray(ctx, model), PackedModel.class);
+      assertArrayEquals(model.ints, copy.ints);
+      assertArrayEquals(model.doubles, copy.doubles);
+
+      // the unpacked encoding grows the arrays one element at a time
+      RandomAccessOutputStream out = new RandomAccessOutputStreamImpl();
+      TagWriter writer = TagWriterImpl.newInstance(ctx, out);
+      for (int i = 0; i < 1000; i++) {
+         writer.writeInt32(1, model.ints[i]);
+         writer.writeDouble(4, model.doubles[i]);
+      }
+      writer.flush();
+      copy = ProtobufUtil.fromByteArray(ctx, out.toByteArray(), PackedModel.class);
+      assertArrayEquals(model.ints, copy.ints);
+      assertArrayEquals(model.doubles, copy.doubles);
+      assertEquals(0, copy.sints.length);
+   }
+
+   private static SerializationContext newPackingContext() {
+      var ctx = ProtobufUtil.newSerializationContext(Configuration.builder().packRepeatedScalarFields(true).build());
+      PackedModel.PackedSchema.INSTANCE.register(ctx);
+      return ctx;
+   }
+
+   private static int countTags(byte[] bytes, int fieldNumber) throws IOException {
+      int count = 0;
+      TagReader in = TagReaderImpl.newInstance(ProtobufUtil.newSerializationContext(), bytes);
+      int tag;
+      while ((tag = in.readTag()) != 0) {
+         if (WireType.getTagFieldNumber(tag) == fieldNumber) {
+            count++;
+         }
+         in.skipField(tag);
+      }
+      return count;
+   }
 }
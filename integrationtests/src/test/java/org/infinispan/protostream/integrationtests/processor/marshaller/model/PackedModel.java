@@ -0,0 +1,58 @@
+package org.infinispan.protostream.integrationtests.processor.marshaller.model;
+
+import java.util.List;
+
+import org.infinispan.protostream.GeneratedSchema;
+import org.infinispan.protostream.annotations.ProtoField;
+import org.infinispan.protostream.annotations.ProtoSchema;
+import org.infinispan.protostream.annotations.ProtoSyntax;
+import org.infinispan.protostream.descriptors.Type;
+
+public class PackedModel {
+
+   @ProtoField(1)
+   public int[] ints;
+
+   @ProtoField(2)
+   public List<Long> longs;
+
+   @ProtoField(number = 3, type = Type.SINT32)
+   public int[] sints;
+
+   @ProtoField(4)
+   public double[] doubles;
+
+   @ProtoField(5)
+   public boolean[] booleans;
+
+   @ProtoField(6)
+   public List<SimpleEnum> enums;
+
+   @ProtoField(7)
+   public List<String> strings;
+
+   public Iterable<Integer> iterable;
+
+   @ProtoField(8)
+   public Iterable<Integer> getIterable() {
+      return iterable;
+   }
+
+   public void setIterable(Iterable<Integer> iterable) {
+      this.iterable = iterable;
+   }
+
+   @ProtoSchema(
+         syntax = ProtoSyntax.PROTO3,
+         includeClasses = {
+               PackedModel.class,
+               SimpleEnum.class
+         },
+         schemaPackageName = "packed",
+         schemaFileName = "packed.proto",
+         schemaFilePath = "proto"
+   )
+   public interface PackedSchema extends GeneratedSchema {
+      GeneratedSchema INSTANCE = new PackedSchemaImpl();
+   }
+}
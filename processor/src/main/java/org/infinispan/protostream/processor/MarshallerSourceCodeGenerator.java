@@ -20,6 +20,9 @@ import org.infinispan.protostream.EnumMarshallerDelegate;
 import org.infinispan.protostream.GeneratedMarshallerBase;
 import org.infinispan.protostream.ProtobufTagMarshaller;
 import org.infinispan.protostream.SerializationContext;
+import org.infinispan.protostream.TagReader;
+import org.infinispan.protostream.TagWriter;
+import org.infinispan.protostream.annotations.ProtoSyntax;
 import org.infinispan.protostream.annotations.impl.AbstractMarshallerCodeGenerator;
 import org.infinispan.protostream.annotations.impl.IndentWriter;
 import org.infinispan.protostream.annotations.impl.ProtoEnumTypeMetadata;
@@ -31,6 +34,8 @@ import org.infinispan.protostream.annotations.impl.types.XClass;
 import org.infinispan.protostream.annotations.impl.types.XTypeFactory;
 import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
 import org.infinispan.protostream.containers.IterableElementContainerAdapter;
+import org.infinispan.protostream.containers.PrimitiveElementContainerAdapter;
+import org.infinispan.protostream.descriptors.Type;
 import org.infinispan.protostream.impl.Log;
 import org.infinispan.protostream.processor.types.HasModelElement;
 
@@ -65,7 +70,13 @@ final class MarshallerSourceCodeGenerator extends AbstractMarshallerCodeGenerato
    }
 
    private String makeUniqueMarshallerClassName(ProtoTypeMetadata ptm) {
-      String hash = hashStrings(ptm.getAnnotatedClass().getName(), makeQualifiedTypeName(ptm.getFullName()));
+      String hash;
+      if (ptm instanceof ProtoMessageTypeMetadata pmtm && pmtm.hasPackedFields()) {
+         // the same message written by a proto2 and a proto3 schema has a different encoding so it needs its own marshaller
+         hash = hashStrings(ptm.getAnnotatedClass().getName(), makeQualifiedTypeName(ptm.getFullName()), ProtoSyntax.PROTO3.name());
+      } else {
+         hash = hashStrings(ptm.getAnnotatedClass().getName(), makeQualifiedTypeName(ptm.getFullName()));
+      }
       return ptm.getAnnotatedClass().getSimpleName() + "$___Marshaller_" + hash;
    }
 
@@ -183,7 +194,8 @@ final class MarshallerSourceCodeGenerator extends AbstractMarshallerCodeGenerato
       String elementType = null;
       if (pmtm.isIndexedContainer()) {
          elementType = pmtm.getAnnotatedClass().getGenericInterfaceParameterTypes(IndexedElementContainerAdapter.class)[1];
-         iw.printf(", %s<%s, %s>", IndexedElementContainerAdapter.class.getName(), pmtm.getJavaClassName(), elementType);
+         Class<?> containerInterface = pmtm.isPrimitiveContainer() ? PrimitiveElementContainerAdapter.class : IndexedElementContainerAdapter.class;
+         iw.printf(", %s<%s, %s>", containerInterface.getName(), pmtm.getJavaClassName(), elementType);
       } else if (pmtm.isIterableContainer()) {
          elementType = pmtm.getAnnotatedClass().getGenericInterfaceParameterTypes(IterableElementContainerAdapter.class)[1];
          iw.printf(", %s<%s, %s>", IterableElementContainerAdapter.class.getName(), pmtm.getJavaClassName(), elementType);
@@ -221,6 +233,14 @@ final class MarshallerSourceCodeGenerator extends AbstractMarshallerCodeGenerato
             iw.printf("public %s getElement(%s container, int index) { return %s.getElement(container, index); }\n", elementType, pmtm.getJavaClassName(), ADAPTER_FIELD_NAME);
             iw.println("@Override");
             iw.printf("public void setElement(%s container, int index, %s element) { %s.setElement(container, index, element); }\n", pmtm.getJavaClassName(), elementType, ADAPTER_FIELD_NAME);
+            if (pmtm.isPrimitiveContainer()) {
+               iw.println("@Override");
+               iw.printf("public %s getElementType() { return %s.getElementType(); }\n", Type.class.getName(), ADAPTER_FIELD_NAME);
+               iw.println("@Override");
+               iw.printf("public void writeElements(%s container, %s out) throws java.io.IOException { %s.writeElements(container, out); }\n", pmtm.getJavaClassName(), TagWriter.class.getName(), ADAPTER_FIELD_NAME);
+               iw.println("@Override");
+               iw.printf("public void readElements(%s container, int numElements, %s in) throws java.io.IOException { %s.readElements(container, numElements, in); }\n", pmtm.getJavaClassName(), TagReader.class.getName(), ADAPTER_FIELD_NAME);
+            }
          } else {
             iw.println("@Override");
             iw.printf("public int getNumElements(%s container) { return ((%s) container).getNumElements(); }\n", pmtm.getJavaClassName(), IndexedElementContainerAdapter.class.getName());
@@ -3,6 +3,7 @@ package org.infinispan.protostream.processor;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -33,6 +34,7 @@ import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 
 import org.infinispan.protostream.DescriptorParserException;
+import org.infinispan.protostream.FileDescriptorSource;
 import org.infinispan.protostream.GeneratedSchema;
 import org.infinispan.protostream.ProtobufUtil;
 import org.infinispan.protostream.SerializationContext;
@@ -61,6 +63,11 @@ public final class ProtoSchemaAnnotationProcessor extends AbstractProcessor {
 
    public static final String FULLY_QUALIFIED_ANNOTATIONS = "protostream.fullyqualifiedannotations";
 
+   /**
+    * The maximum length of an ASCII string constant in a class file.
+    */
+   private static final int MAX_STRING_CONSTANT_LENGTH = 65535;
+
    private final ServiceLoaderFileGenerator serviceLoaderFileGenerator = new ServiceLoaderFileGenerator(SerializationContextInitializer.class);
 
    private GeneratedFilesWriter generatedFilesWriter;
@@ -494,6 +501,12 @@ public final class ProtoSchemaAnnotationProcessor extends AbstractProcessor {
          iw.append("private static final String PROTO_SCHEMA = ").append(makeStringLiteral(schemaSrc)).append(";\n\n");
       }
 
+      // The schema is also compiled, so it can be registered without being parsed at runtime
+      String compiledSchema = schemaSrc != null ? compileSchema(fileName, schemaSrc) : null;
+      if (compiledSchema != null) {
+         iw.append("private static final String COMPILED_PROTO_SCHEMA = \"").append(compiledSchema).append("\";\n\n");
+      }
+
       int k = 0;
       for (String s : serCtxInitDeps) {
          iw.append("private final ").append(s).append(" dep").append(String.valueOf(k++)).append(" = new ").append(s).append("();\n\n");
@@ -521,7 +534,9 @@ public final class ProtoSchemaAnnotationProcessor extends AbstractProcessor {
       for (int j = 0; j < serCtxInitDeps.size(); j++) {
          iw.append("dep").append(String.valueOf(j)).append(".registerSchema(serCtx);\n");
       }
-      if (schemaSrc != null) {
+      if (compiledSchema != null) {
+         iw.append("serCtx.registerProtoFiles(new org.infinispan.protostream.FileDescriptorSource().addProtoFile(getProtoFileName(), getProtoFile(), java.util.Base64.getDecoder().decode(COMPILED_PROTO_SCHEMA)));\n");
+      } else if (schemaSrc != null) {
          iw.append("serCtx.registerProtoFiles(org.infinispan.protostream.FileDescriptorSource.fromString(getProtoFileName(), getProtoFile()));\n");
       }
       iw.dec();
@@ -624,6 +639,14 @@ public final class ProtoSchemaAnnotationProcessor extends AbstractProcessor {
       iw.append(")*/\n");
    }
 
+   /**
+    * Returns the compiled schema encoded in Base64, or {@code null} if it does not fit in a string constant.
+    */
+   private static String compileSchema(String fileName, String schemaSrc) {
+      String compiled = Base64.getEncoder().encodeToString(FileDescriptorSource.compile(fileName, schemaSrc));
+      return compiled.length() <= MAX_STRING_CONSTANT_LENGTH ? compiled : null;
+   }
+
    private String makeStringLiteral(String s) {
       return "\"\"\"\n" +
             s +
@@ -1,9 +1,14 @@
 package org.infinispan.protostream.types.java.arrays;
 
+import java.io.IOException;
+
+import org.infinispan.protostream.TagReader;
+import org.infinispan.protostream.TagWriter;
 import org.infinispan.protostream.annotations.ProtoAdapter;
 import org.infinispan.protostream.annotations.ProtoFactory;
 import org.infinispan.protostream.annotations.ProtoName;
-import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
+import org.infinispan.protostream.containers.PrimitiveElementContainerAdapter;
+import org.infinispan.protostream.descriptors.Type;
 
 /**
  * @author anistor@redhat.com
@@ -11,7 +16,7 @@ import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
  */
 @ProtoAdapter(boolean[].class)
 @ProtoName("BooleanArray")
-public final class BooleanArrayAdapter implements IndexedElementContainerAdapter<boolean[], Boolean> {
+public final class BooleanArrayAdapter implements PrimitiveElementContainerAdapter<boolean[], Boolean> {
 
    @ProtoFactory
    public boolean[] create(int size) {
@@ -32,4 +37,23 @@ public final class BooleanArrayAdapter implements IndexedElementContainerAdapter
    public void setElement(boolean[] array, int index, Boolean element) {
       array[index] = element;
    }
+
+   @Override
+   public Type getElementType() {
+      return Type.BOOL;
+   }
+
+   @Override
+   public void writeElements(boolean[] array, TagWriter out) throws IOException {
+      for (boolean v : array) {
+         out.writeVarint32(v ? 1 : 0);
+      }
+   }
+
+   @Override
+   public void readElements(boolean[] array, int numElements, TagReader in) throws IOException {
+      for (int i = 0; i < numElements; i++) {
+         array[i] = in.readBool();
+      }
+   }
 }
@@ -1,9 +1,14 @@
 package org.infinispan.protostream.types.java.arrays;
 
+import java.io.IOException;
+
+import org.infinispan.protostream.TagReader;
+import org.infinispan.protostream.TagWriter;
 import org.infinispan.protostream.annotations.ProtoAdapter;
 import org.infinispan.protostream.annotations.ProtoFactory;
 import org.infinispan.protostream.annotations.ProtoName;
-import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
+import org.infinispan.protostream.containers.PrimitiveElementContainerAdapter;
+import org.infinispan.protostream.descriptors.Type;
 
 /**
  * @author anistor@redhat.com
@@ -11,7 +16,7 @@ import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
  */
 @ProtoAdapter(double[].class)
 @ProtoName("DoubleArray")
-public final class DoubleArrayAdapter implements IndexedElementContainerAdapter<double[], Double> {
+public final class DoubleArrayAdapter implements PrimitiveElementContainerAdapter<double[], Double> {
 
    @ProtoFactory
    public double[] create(int size) {
@@ -32,4 +37,23 @@ public final class DoubleArrayAdapter implements IndexedElementContainerAdapter<
    public void setElement(double[] array, int index, Double element) {
       array[index] = element;
    }
+
+   @Override
+   public Type getElementType() {
+      return Type.DOUBLE;
+   }
+
+   @Override
+   public void writeElements(double[] array, TagWriter out) throws IOException {
+      for (double v : array) {
+         out.writeRawFixed64(Double.doubleToRawLongBits(v));
+      }
+   }
+
+   @Override
+   public void readElements(double[] array, int numElements, TagReader in) throws IOException {
+      for (int i = 0; i < numElements; i++) {
+         array[i] = in.readDouble();
+      }
+   }
 }
@@ -1,9 +1,14 @@
 package org.infinispan.protostream.types.java.arrays;
 
+import java.io.IOException;
+
+import org.infinispan.protostream.TagReader;
+import org.infinispan.protostream.TagWriter;
 import org.infinispan.protostream.annotations.ProtoAdapter;
 import org.infinispan.protostream.annotations.ProtoFactory;
 import org.infinispan.protostream.annotations.ProtoName;
-import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
+import org.infinispan.protostream.containers.PrimitiveElementContainerAdapter;
+import org.infinispan.protostream.descriptors.Type;
 
 /**
  * @author anistor@redhat.com
@@ -11,7 +16,7 @@ import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
  */
 @ProtoAdapter(float[].class)
 @ProtoName("FloatArray")
-public final class FloatArrayAdapter implements IndexedElementContainerAdapter<float[], Float> {
+public final class FloatArrayAdapter implements PrimitiveElementContainerAdapter<float[], Float> {
 
    @ProtoFactory
    public float[] create(int size) {
@@ -32,4 +37,23 @@ public final class FloatArrayAdapter implements IndexedElementContainerAdapter<f
    public void setElement(float[] array, int index, Float element) {
       array[index] = element;
    }
+
+   @Override
+   public Type getElementType() {
+      return Type.FLOAT;
+   }
+
+   @Override
+   public void writeElements(float[] array, TagWriter out) throws IOException {
+      for (float v : array) {
+         out.writeRawFixed32(Float.floatToRawIntBits(v));
+      }
+   }
+
+   @Override
+   public void readElements(float[] array, int numElements, TagReader in) throws IOException {
+      for (int i = 0; i < numElements; i++) {
+         array[i] = in.readFloat();
+      }
+   }
 }
@@ -1,9 +1,14 @@
 package org.infinispan.protostream.types.java.arrays;
 
+import java.io.IOException;
+
+import org.infinispan.protostream.TagReader;
+import org.infinispan.protostream.TagWriter;
 import org.infinispan.protostream.annotations.ProtoAdapter;
 import org.infinispan.protostream.annotations.ProtoFactory;
 import org.infinispan.protostream.annotations.ProtoName;
-import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
+import org.infinispan.protostream.containers.PrimitiveElementContainerAdapter;
+import org.infinispan.protostream.descriptors.Type;
 
 /**
  * @author anistor@redhat.com
@@ -11,7 +16,7 @@ import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
  */
 @ProtoAdapter(int[].class)
 @ProtoName("IntArray")
-public final class IntArrayAdapter implements IndexedElementContainerAdapter<int[], Integer> {
+public final class IntArrayAdapter implements PrimitiveElementContainerAdapter<int[], Integer> {
 
    @ProtoFactory
    public int[] create(int size) {
@@ -32,4 +37,23 @@ public final class IntArrayAdapter implements IndexedElementContainerAdapter<int
    public void setElement(int[] array, int index, Integer element) {
       array[index] = element;
    }
+
+   @Override
+   public Type getElementType() {
+      return Type.INT32;
+   }
+
+   @Override
+   public void writeElements(int[] array, TagWriter out) throws IOException {
+      for (int v : array) {
+         out.writeVarint64(v);
+      }
+   }
+
+   @Override
+   public void readElements(int[] array, int numElements, TagReader in) throws IOException {
+      for (int i = 0; i < numElements; i++) {
+         array[i] = in.readInt32();
+      }
+   }
 }
@@ -1,9 +1,14 @@
 package org.infinispan.protostream.types.java.arrays;
 
+import java.io.IOException;
+
+import org.infinispan.protostream.TagReader;
+import org.infinispan.protostream.TagWriter;
 import org.infinispan.protostream.annotations.ProtoAdapter;
 import org.infinispan.protostream.annotations.ProtoFactory;
 import org.infinispan.protostream.annotations.ProtoName;
-import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
+import org.infinispan.protostream.containers.PrimitiveElementContainerAdapter;
+import org.infinispan.protostream.descriptors.Type;
 
 /**
  * @author anistor@redhat.com
@@ -11,7 +16,7 @@ import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
  */
 @ProtoAdapter(long[].class)
 @ProtoName("LongArray")
-public final class LongArrayAdapter implements IndexedElementContainerAdapter<long[], Long> {
+public final class LongArrayAdapter implements PrimitiveElementContainerAdapter<long[], Long> {
 
    @ProtoFactory
    public long[] create(int size) {
@@ -32,4 +37,23 @@ public final class LongArrayAdapter implements IndexedElementContainerAdapter<lo
    public void setElement(long[] array, int index, Long element) {
       array[index] = element;
    }
+
+   @Override
+   public Type getElementType() {
+      return Type.INT64;
+   }
+
+   @Override
+   public void writeElements(long[] array, TagWriter out) throws IOException {
+      for (long v : array) {
+         out.writeVarint64(v);
+      }
+   }
+
+   @Override
+   public void readElements(long[] array, int numElements, TagReader in) throws IOException {
+      for (int i = 0; i < numElements; i++) {
+         array[i] = in.readInt64();
+      }
+   }
 }
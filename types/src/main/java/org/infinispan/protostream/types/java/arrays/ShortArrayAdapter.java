@@ -1,9 +1,14 @@
 package org.infinispan.protostream.types.java.arrays;
 
+import java.io.IOException;
+
+import org.infinispan.protostream.TagReader;
+import org.infinispan.protostream.TagWriter;
 import org.infinispan.protostream.annotations.ProtoAdapter;
 import org.infinispan.protostream.annotations.ProtoFactory;
 import org.infinispan.protostream.annotations.ProtoName;
-import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
+import org.infinispan.protostream.containers.PrimitiveElementContainerAdapter;
+import org.infinispan.protostream.descriptors.Type;
 
 /**
  * @author anistor@redhat.com
@@ -11,7 +16,7 @@ import org.infinispan.protostream.containers.IndexedElementContainerAdapter;
  */
 @ProtoAdapter(short[].class)
 @ProtoName("ShortArray")
-public final class ShortArrayAdapter implements IndexedElementContainerAdapter<short[], Short> {
+public final class ShortArrayAdapter implements PrimitiveElementContainerAdapter<short[], Short> {
 
    @ProtoFactory
    public short[] create(int size) {
@@ -32,4 +37,23 @@ public final class ShortArrayAdapter implements IndexedElementContainerAdapter<s
    public void setElement(short[] array, int index, Short element) {
       array[index] = element;
    }
+
+   @Override
+   public Type getElementType() {
+      return Type.INT32;
+   }
+
+   @Override
+   public void writeElements(short[] array, TagWriter out) throws IOException {
+      for (short v : array) {
+         out.writeVarint64(v);
+      }
+   }
+
+   @Override
+   public void readElements(short[] array, int numElements, TagReader in) throws IOException {
+      for (int i = 0; i < numElements; i++) {
+         array[i] = (short) in.readInt32();
+      }
+   }
 }
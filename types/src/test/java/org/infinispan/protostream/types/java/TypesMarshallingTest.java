@@ -2,6 +2,7 @@ package org.infinispan.protostream.types.java;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import java.io.ByteArrayInputStream;
@@ -11,6 +12,7 @@ import java.io.StringReader;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -218,6 +220,55 @@ public class TypesMarshallingTest {
       assertEquals(list, listCopy);
    }
 
+   @ParameterizedTest(name = "{0}")
+   @MethodSource("marshallingMethods")
+   public void testPrimitiveArrays(TestConfiguration testConfiguration) throws IOException {
+      assumeTrue(testConfiguration.runTest && testConfiguration.isArray);
+      for (boolean packElements : new boolean[]{false, true}) {
+         ImmutableSerializationContext context = newContext(true, packElements);
+         for (Object array : primitiveArrays()) {
+            if (!packElements && array instanceof short[] && testConfiguration.method == MarshallingMethodType.JSON) {
+               // wrapped short elements are int32 in JSON, so they do not convert back to the same bytes
+               continue;
+            }
+            testConfiguration.method.marshallAndUnmarshallTest(array, context, true);
+         }
+      }
+   }
+
+   @ParameterizedTest(name = "{0}")
+   @MethodSource("marshallingMethods")
+   public void testPrimitiveArrayCompatibility(TestConfiguration testConfiguration) throws IOException {
+      assumeTrue(testConfiguration.method == MarshallingMethodType.WRAPPED_MESSAGE);
+      int[] array = {1, -2, 300};
+
+      // the layout written before primitive arrays were packed, with one element after the other
+      var out = new ByteArrayOutputStream();
+      byte[] typeName = "org.infinispan.protostream.commons.IntArray".getBytes(StandardCharsets.UTF_8);
+      writeVarint(out, WrappedMessage.WRAPPED_CONTAINER_TYPE_NAME << 3 | 2);
+      writeVarint(out, typeName.length);
+      out.write(typeName);
+      writeVarint(out, WrappedMessage.WRAPPED_CONTAINER_SIZE << 3);
+      writeVarint(out, array.length);
+      writeVarint(out, WrappedMessage.WRAPPED_CONTAINER_MESSAGE << 3 | 2);
+      writeVarint(out, 0);
+      for (int element : array) {
+         writeVarint(out, WrappedMessage.WRAPPED_INT32 << 3);
+         writeVarint(out, element);
+      }
+      byte[] data = out.toByteArray();
+
+      assertArrayEquals(array, (int[]) ProtobufUtil.fromWrappedByteArray(newContext(false), data));
+      assertArrayEquals(array, (int[]) ProtobufUtil.fromWrappedByteArray(newContext(true), data));
+
+      // the packed layout is only written when enabled, and is read with either setting
+      byte[] unpacked = ProtobufUtil.toWrappedByteArray(newContext(true, false), array);
+      byte[] packed = ProtobufUtil.toWrappedByteArray(newContext(true, true), array);
+      assertFalse(Arrays.equals(unpacked, packed), "The elements should only be packed when enabled");
+      assertArrayEquals(array, (int[]) ProtobufUtil.fromWrappedByteArray(newContext(true, false), packed));
+      assertArrayEquals(array, (int[]) ProtobufUtil.fromWrappedByteArray(newContext(true, true), unpacked));
+   }
+
    @ParameterizedTest(name = "{0}")
    @MethodSource("marshallingMethods")
    public void testLocalDate(TestConfiguration testConfiguration) throws IOException {
@@ -327,7 +378,14 @@ public class TypesMarshallingTest {
    }
 
    private static ImmutableSerializationContext newContext(boolean wrapCollectionElements) {
-      var config = Configuration.builder().wrapCollectionElements(wrapCollectionElements).build();
+      return newContext(wrapCollectionElements, false);
+   }
+
+   private static ImmutableSerializationContext newContext(boolean wrapCollectionElements, boolean packPrimitiveContainerElements) {
+      var config = Configuration.builder()
+            .wrapCollectionElements(wrapCollectionElements)
+            .packPrimitiveContainerElements(packPrimitiveContainerElements)
+            .build();
       var ctx = ProtobufUtil.newSerializationContext(config);
       register(new CommonTypesSchema(), ctx);
       register(new CommonContainerTypesSchema(), ctx);
@@ -361,6 +419,31 @@ public class TypesMarshallingTest {
       return new String[]{"a", "b", "c"};
    }
 
+   private static List<Object> primitiveArrays() {
+      return List.of(
+            new int[]{1, -2, 300, Integer.MIN_VALUE, Integer.MAX_VALUE},
+            new int[0],
+            new long[]{1L, -2L, Long.MIN_VALUE, Long.MAX_VALUE},
+            new double[]{0.5, -1.25, Double.MAX_VALUE},
+            new float[]{0.5f, -1.25f, Float.MIN_VALUE},
+            new boolean[]{true, false, true},
+            new short[]{1, -2, Short.MIN_VALUE, Short.MAX_VALUE}
+      );
+   }
+
+   private static void writeVarint(ByteArrayOutputStream out, long value) {
+      while ((value & ~0x7FL) != 0) {
+         out.write((int) (value & 0x7F) | 0x80);
+         value >>>= 7;
+      }
+      out.write((int) value);
+   }
+
+   private static void assertArrayContentEquals(Object expected, Object actual) {
+      // wrapping the arrays compares their contents, whether they hold objects or primitives
+      assertArrayEquals(new Object[]{expected}, new Object[]{actual});
+   }
+
    private static Object[] bookArray() {
       return new Object[]{
             new Book("Book1", "Description1", 2020),
@@ -377,7 +460,7 @@ public class TypesMarshallingTest {
             var copy = ProtobufUtil.fromWrappedByteArray(ctx, bytes);
             log.debugf("Wrapped Message: bytes length=%s, original=%s, copy=%s", bytes.length, original, copy);
             if (isArray) {
-               assertArrayEquals((Object[]) original, (Object[]) copy);
+               assertArrayContentEquals(original, copy);
             } else {
                assertEquals(original, copy);
             }
@@ -392,7 +475,7 @@ public class TypesMarshallingTest {
             var copy = ProtobufUtil.readFrom(ctx, bais, original.getClass());
             log.debugf("Input Stream: bytes length=%s, original=%s, copy=%s", baos.size(), original, copy);
             if (isArray) {
-               assertArrayEquals((Object[]) original, (Object[]) copy);
+               assertArrayContentEquals(original, copy);
             } else {
                assertEquals(original, copy);
             }
@@ -406,7 +489,7 @@ public class TypesMarshallingTest {
             var copy = ProtobufUtil.fromByteArray(ctx, baos.toByteArray(), original.getClass());
             log.debugf("Byte Array: bytes length=%s, original=%s, copy=%s", baos.size(), original, copy);
             if (isArray) {
-               assertArrayEquals((Object[]) original, (Object[]) copy);
+               assertArrayContentEquals(original, copy);
             } else {
                assertEquals(original, copy);
             }
@@ -424,7 +507,7 @@ public class TypesMarshallingTest {
 
             log.debugf("JSON: JSON bytes length=%s, JSON String=%s, original=%s, copy=%s", jsonBytes.length, json, original, copy);
             if (isArray) {
-               assertArrayEquals((Object[]) original, (Object[]) copy);
+               assertArrayContentEquals(original, copy);
             } else {
                assertEquals(original, copy);
             }